@@ -24,27 +24,26 @@
  */
 package com.intel.bluetooth;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Stack;
 import java.util.Vector;
 
 import javax.bluetooth.DataElement;
 import javax.bluetooth.ServiceRecord;
 import javax.bluetooth.UUID;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Read XML representation of Service records to JAR-82 format records.
@@ -55,6 +54,8 @@ class BlueZServiceRecordXML {
     private static final Map<String, Integer> integerXMLtypes = new HashMap<String, Integer>();
 
     private static final Map<Integer, String> allXMLtypes = new HashMap<Integer, String>();
+
+    private static final SAXParserFactory parserFactory = SAXParserFactory.newInstance();
     
     static {
         integerXMLtypes.put("uint8", DataElement.U_INT_1);
@@ -173,6 +174,9 @@ class BlueZServiceRecordXML {
     }
     
     public static String exportXMLRecord(ServiceRecord serviceRecord) {
+        if (serviceRecord instanceof ServiceRecordImpl) {
+            return exportXMLRecord((ServiceRecordImpl) serviceRecord);
+        }
         StringBuffer b = new StringBuffer();
         b.append("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
         b.append("<record>\n");
@@ -183,93 +187,205 @@ class BlueZServiceRecordXML {
         }
         Collections.sort(sorted);
         for(Integer id : sorted) {
-            b.append("<attribute id=\"0x").append(Long.toHexString(id)).append("\" >\n");
-            appendDataElement(b, serviceRecord.getAttributeValue(id));
-            b.append("</attribute>\n");
+            appendAttribute(b, id, serviceRecord.getAttributeValue(id));
         }
         b.append("</record>");
         return b.toString();
     }
-    
-    public static Map<Integer, DataElement> parsXMLRecord(String xml) throws IOException {
-        try {
-            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = builder.parse(new InputSource(new ByteArrayInputStream(xml.getBytes())));
-            Element root = doc.getDocumentElement();
-            if (!"record".equals(root.getTagName())) {
-                throw new IOException("SDP xml record expected, got " + root.getTagName());
-            }
 
-            Map<Integer, DataElement> elements = new HashMap<Integer, DataElement>();
-
-            NodeList nodes = root.getElementsByTagName("attribute");
-            for (int i = 0; i < nodes.getLength(); i++) {
-                Node node = nodes.item(i);
-                Node idNode = node.getAttributes().getNamedItem("id");
-                int id = parsInt(idNode.getNodeValue());
-                NodeList children = node.getChildNodes();
-                for (int j = 0; (children != null) && (j < children.getLength()); j++) {
-                    Node child = children.item(j);
-                    if (child.getNodeType() == Node.ELEMENT_NODE) {
-                        elements.put(id, parsDataElement(child));
-                        break;
-                    }
+    /**
+     * Only attributes changed since the last export are converted to XML
+     * again, sequences are converted on each export.
+     */
+    private static String exportXMLRecord(ServiceRecordImpl serviceRecord) {
+        synchronized (serviceRecord) {
+            StringBuffer b = new StringBuffer();
+            b.append("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+            b.append("<record>\n");
+            int[] ids = serviceRecord.getSortedAttributeIDs();
+            for (int i = 0; i < ids.length; i++) {
+                String attribute = serviceRecord.getAttributeXML(ids[i]);
+                if (attribute == null) {
+                    StringBuffer ab = new StringBuffer();
+                    appendAttribute(ab, ids[i], serviceRecord.getAttributeValue(ids[i]));
+                    attribute = ab.toString();
+                    serviceRecord.setAttributeXML(ids[i], attribute);
                 }
+                b.append(attribute);
+            }
+            b.append("</record>");
+            return b.toString();
+        }
+    }
+
+    private static void appendAttribute(StringBuffer b, int id, DataElement value) {
+        b.append("<attribute id=\"0x").append(Integer.toHexString(id)).append("\" >\n");
+        appendDataElement(b, value);
+        b.append("</attribute>\n");
+    }
+
+    /**
+     * Parsers are reused by the same thread, creating them is more expensive
+     * than parsing one record.
+     */
+    private static final ThreadLocal<SAXParser> parsers = new ThreadLocal<SAXParser>();
+
+    private static SAXParser getParser() throws ParserConfigurationException, SAXException {
+        SAXParser parser = parsers.get();
+        if (parser == null) {
+            synchronized (parserFactory) {
+                parser = parserFactory.newSAXParser();
             }
-            return elements;
+            parsers.set(parser);
+        } else {
+            parser.reset();
+        }
+        return parser;
+    }
+
+    public static Map<Integer, DataElement> parsXMLRecord(String xml) throws IOException {
+        RecordHandler handler = new RecordHandler();
+        try {
+            getParser().parse(new InputSource(new StringReader(xml)), handler);
+            return handler.elements;
         } catch (ParserConfigurationException e) {
             throw (IOException) UtilsJavaSE.initCause(new IOException(e.getMessage()), e);
         } catch (SAXException e) {
+            if (e.getException() instanceof IOException) {
+                throw (IOException) e.getException();
+            }
             throw (IOException) UtilsJavaSE.initCause(new IOException(e.getMessage()), e);
         }
     }
 
+    /**
+     * Builds DataElements while the record is parsed. Only the first element
+     * of each attribute is used.
+     */
+    private static class RecordHandler extends DefaultHandler {
+
+        Map<Integer, DataElement> elements = new HashMap<Integer, DataElement>();
+
+        private boolean root = true;
+
+        private int attributeID = -1;
+
+        private DataElement attributeValue;
+
+        /**
+         * Elements open inside attribute value
+         */
+        private Stack<DataElement> open = new Stack<DataElement>();
+
+        /**
+         * Depth of elements ignored
+         */
+        private int ignore;
+
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
+            try {
+                if (root) {
+                    if (!"record".equals(name)) {
+                        throw new IOException("SDP xml record expected, got " + name);
+                    }
+                    root = false;
+                } else if (ignore > 0) {
+                    ignore++;
+                } else if (attributeID == -1) {
+                    if ("attribute".equals(name)) {
+                        attributeID = parsInt(getValue(attributes, "id", name));
+                        attributeValue = null;
+                    }
+                } else if (open.isEmpty()) {
+                    if (attributeValue != null) {
+                        ignore++;
+                    } else {
+                        attributeValue = parsDataElement(name, attributes);
+                        open.push(attributeValue);
+                    }
+                } else {
+                    DataElement parent = open.peek();
+                    if ((parent.getDataType() != DataElement.DATSEQ) && (parent.getDataType() != DataElement.DATALT)) {
+                        ignore++;
+                    } else {
+                        DataElement element = parsDataElement(name, attributes);
+                        parent.addElement(element);
+                        open.push(element);
+                    }
+                }
+            } catch (IOException e) {
+                throw new SAXException(e);
+            } catch (NumberFormatException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String name) throws SAXException {
+            if (ignore > 0) {
+                ignore--;
+            } else if (!open.isEmpty()) {
+                open.pop();
+            } else if (attributeID != -1) {
+                if (attributeValue != null) {
+                    elements.put(attributeID, attributeValue);
+                }
+                attributeID = -1;
+            }
+        }
+    }
+
+    private static int hexDigit(String value, int index, int radix) {
+        int digit = Character.digit(value.charAt(index), radix);
+        if (digit == -1) {
+            throw new NumberFormatException("For input string: \"" + value + "\"");
+        }
+        return digit;
+    }
+
+    private static long parsHex(String value, int start) {
+        if (start == value.length()) {
+            throw new NumberFormatException("For input string: \"" + value + "\"");
+        }
+        long l = 0;
+        for (int i = start; i < value.length(); i++) {
+            l = (l << 4) | hexDigit(value, i, 16);
+        }
+        return l;
+    }
+
     private static int parsInt(String value) {
         if (value.startsWith("0x")) {
-            return Integer.valueOf(value.substring(2), 16).intValue();
+            return (int) parsHex(value, 2);
         } else {
-            return Integer.valueOf(value).intValue();
+            return Integer.parseInt(value);
         }
     }
 
     private static long parsLong(String value) {
         if (value.startsWith("0x")) {
-            return Long.valueOf(value.substring(2), 16).longValue();
+            return parsHex(value, 2);
         } else if (value.startsWith("-0x")) {
-            return - Long.valueOf(value.substring(3), 16).longValue();
-        } else {
-            return Long.valueOf(value).longValue();
-        }
-    }
-
-    private static long getLongValue(Node node) throws IOException {
-        Node valueNode = node.getAttributes().getNamedItem("value");
-        if (valueNode == null) {
-            throw new IOException("value attribute expected in " + node.getNodeName());
+            return -parsHex(value, 3);
         } else {
-            return parsLong(valueNode.getNodeValue());
+            return Long.parseLong(value);
         }
     }
 
-    private static boolean getBoolValue(Node node) throws IOException {
-        Node valueNode = node.getAttributes().getNamedItem("value");
-        if (valueNode == null) {
-            throw new IOException("value attribute expected in " + node.getNodeName());
-        } else {
-            return "true".equals(valueNode.getNodeValue());
+    private static String getValue(Attributes attributes, String attribute, String name) throws IOException {
+        String value = attributes.getValue(attribute);
+        if (value == null) {
+            throw new IOException(attribute + " attribute expected in " + name);
         }
+        return value;
     }
 
-    private static UUID getUUIDValue(Node node) throws IOException {
-        Node valueNode = node.getAttributes().getNamedItem("value");
-        if (valueNode == null) {
-            throw new IOException("value attribute expected in " + node.getNodeName());
-        }
-        String value = valueNode.getNodeValue();
+    private static UUID getUUIDValue(String value) throws IOException {
         if (value.length() == 32) {
-            return new UUID(value.replace("-", ""), false);
+            return new UUID(value, false);
         } else if (value.startsWith("0x")) {
-            return new UUID(Long.valueOf(value.substring(2), 16).longValue());
+            return new UUID(parsHex(value, 2));
         } else {
             String value2 = value.replace("-", "");
             if (value2.length() == 32) {
@@ -279,106 +395,76 @@ class BlueZServiceRecordXML {
         }
     }
 
-    private static byte[] getByteArrayValue(Node node, int length) throws IOException {
-        Node valueNode = node.getAttributes().getNamedItem("value");
-        if (valueNode == null) {
-            throw new IOException("value attribute expected in " + node.getNodeName());
-        }
-        String value = valueNode.getNodeValue();
+    private static byte[] getByteArrayValue(String value, int length) throws IOException {
         if (length != value.length() / 2) {
             throw new IOException("value attribute invalid length " + value.length());
         }
         byte[] result = new byte[length];
         for (int i = 0; i < length; i++) {
-            result[(length - 1) - i] = (byte)(Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16) & 0xFF);
+            result[(length - 1) - i] = (byte) ((hexDigit(value, i * 2, 16) << 4) | hexDigit(value, i * 2 + 1, 16));
         }
         return result;
     }
 
-    private static byte[] getByteArrayUINT8(Node node, int length) throws IOException {
-        Node valueNode = node.getAttributes().getNamedItem("value");
-        if (valueNode == null) {
-            throw new IOException("value attribute expected in " + node.getNodeName());
-        }
-        String value = valueNode.getNodeValue();
+    private static byte[] getByteArrayUINT8(String value, int length) throws IOException {
         int radix = 10;
+        int start = 0;
         if (value.startsWith("0x")) {
-            value = value.substring(2);
+            start = 2;
             radix = 16;
         }
-        if (length != value.length() / 2) {
-            throw new IOException("value attribute invalid length " + value.length());
+        if (length != (value.length() - start) / 2) {
+            throw new IOException("value attribute invalid length " + (value.length() - start));
         }
         byte[] result = new byte[length];
         for (int i = 0; i < length; i++) {
-            result[i] = (byte)(Integer.parseInt(value.substring(i * 2, i * 2 + 2), radix) & 0xFF);
+            int idx = start + i * 2;
+            result[i] = (byte) (hexDigit(value, idx, radix) * radix + hexDigit(value, idx + 1, radix));
         }
         return result;
     }
-    
-    private static String getTextValue(Node node) throws IOException {
-        Node valueNode = node.getAttributes().getNamedItem("value");
-        if (valueNode == null) {
-            throw new IOException("value attribute expected in " + node.getNodeName());
-        } else {
-            Node encodingNode = node.getAttributes().getNamedItem("encoding");
-            if (encodingNode == null) {
-                return valueNode.getNodeValue();
-            }
-            if ("hex".equals(encodingNode.getNodeValue())) {
-                StringBuffer b = new StringBuffer();
-                String value = valueNode.getNodeValue();
-                for (int i = 0; i < value.length() / 2; i++) {
-                    b.append((char) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16));
-                }
-                return b.toString();
-            } else {
-                throw new IOException("Unknown text encoding " + encodingNode.getNodeValue());
+
+    private static String getTextValue(String name, Attributes attributes) throws IOException {
+        String value = getValue(attributes, "value", name);
+        String encoding = attributes.getValue("encoding");
+        if (encoding == null) {
+            return value;
+        }
+        if ("hex".equals(encoding)) {
+            char[] chars = new char[value.length() / 2];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) ((hexDigit(value, i * 2, 16) << 4) | hexDigit(value, i * 2 + 1, 16));
             }
+            return new String(chars);
+        } else {
+            throw new IOException("Unknown text encoding " + encoding);
         }
     }
 
-    private static DataElement parsDataElement(Node node) throws IOException {
-        String name = node.getNodeName();
+    private static DataElement parsDataElement(String name, Attributes attributes) throws IOException {
         Integer intValueType = integerXMLtypes.get(name);
         if (intValueType != null) {
-            return new DataElement(intValueType.intValue(), getLongValue(node));
+            return new DataElement(intValueType.intValue(), parsLong(getValue(attributes, "value", name)));
         } else if ("sequence".equals(name)) {
-            DataElement seq = new DataElement(DataElement.DATSEQ);
-            NodeList children = node.getChildNodes();
-            for (int j = 0; (children != null) && (j < children.getLength()); j++) {
-                Node child = children.item(j);
-                if (child.getNodeType() == Node.ELEMENT_NODE) {
-                    seq.addElement(parsDataElement(child));
-                }
-            }
-            return seq;
+            return new DataElement(DataElement.DATSEQ);
         } else if ("alternate".equals(name)) {
-            DataElement seq = new DataElement(DataElement.DATALT);
-            NodeList children = node.getChildNodes();
-            for (int j = 0; (children != null) && (j < children.getLength()); j++) {
-                Node child = children.item(j);
-                if (child.getNodeType() == Node.ELEMENT_NODE) {
-                    seq.addElement(parsDataElement(child));
-                }
-            }
-            return seq;
+            return new DataElement(DataElement.DATALT);
         } else if ("uuid".equals(name)) {
-            return new DataElement(DataElement.UUID, getUUIDValue(node));
+            return new DataElement(DataElement.UUID, getUUIDValue(getValue(attributes, "value", name)));
         } else if ("text".equals(name)) {
-            return new DataElement(DataElement.STRING, getTextValue(node));
+            return new DataElement(DataElement.STRING, getTextValue(name, attributes));
         } else if ("url".equals(name)) {
-            return new DataElement(DataElement.URL, getTextValue(node));
+            return new DataElement(DataElement.URL, getTextValue(name, attributes));
         } else if ("nil".equals(name)) {
             return new DataElement(DataElement.NULL);
         } else if ("boolean".equals(name)) {
-            return new DataElement(getBoolValue(node));
+            return new DataElement("true".equals(getValue(attributes, "value", name)));
         } else if ("uint64".equals(name)) {
-            return new DataElement(DataElement.U_INT_8, getByteArrayUINT8(node, 8));
+            return new DataElement(DataElement.U_INT_8, getByteArrayUINT8(getValue(attributes, "value", name), 8));
         } else if ("int128".equals(name)) {
-            return new DataElement(DataElement.INT_16, getByteArrayValue(node, 16));
+            return new DataElement(DataElement.INT_16, getByteArrayValue(getValue(attributes, "value", name), 16));
         } else if ("uint128".equals(name)) {
-            return new DataElement(DataElement.U_INT_16, getByteArrayValue(node, 16));   
+            return new DataElement(DataElement.U_INT_16, getByteArrayValue(getValue(attributes, "value", name), 16));
         } else {
             throw new IOException("Unrecognized DataElement " + name);
         }
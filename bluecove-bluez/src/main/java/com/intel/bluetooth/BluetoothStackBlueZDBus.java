@@ -32,6 +32,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.bluetooth.BluetoothStateException;
 import javax.bluetooth.DataElement;
@@ -103,15 +108,31 @@ class BluetoothStackBlueZDBus implements BluetoothStack, DeviceInquiryRunnable,
 
     private DiscoveryListener discoveryListener;
 
-    private boolean deviceInquiryCanceled = false;
+    private volatile boolean deviceInquiryCanceled = false;
+
+    /**
+     * Threads used to get friendly names of discovered devices at the end of
+     * inquiry.
+     */
+    private static final int NAME_RESOLUTION_THREADS = 4;
+
+    private volatile ExecutorService nameResolver;
 
     private class DiscoveryData {
 
+        final long address;
+
         public int deviceClass;
 
         public String name;
 
         boolean paired;
+
+        boolean reported;
+
+        DiscoveryData(long address) {
+            this.address = address;
+        }
     }
 
     BluetoothStackBlueZDBus() {
@@ -451,13 +472,24 @@ class BluetoothStackBlueZDBus implements BluetoothStack, DeviceInquiryRunnable,
         return DeviceInquiryThread.startInquiry(this, this, accessCode, listener);
     }
 
-    public int runDeviceInquiry(final DeviceInquiryThread startedNotify, int accessCode, DiscoveryListener listener) throws BluetoothStateException {
+    public int runDeviceInquiry(final DeviceInquiryThread startedNotify, int accessCode, final DiscoveryListener listener)
+            throws BluetoothStateException {
         DebugLog.debug("runDeviceInquiry()");
+        final boolean reportAsap = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_INQUIRY_REPORT_ASAP, false);
+        // Devices are found by D-Bus signal thread and by name resolver
+        // threads, the listener is called from this one thread.
+        final ExecutorService listenerDispatcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "BlueZDeviceDiscovered");
+                t.setDaemon(true);
+                return t;
+            }
+        });
         try {
 
             // Different signal handlers get different device attributes
-            // so we cache the data until device discovery is finished
-            // and then create the RemoteDevice objects.
+            // so we cache the data and report the device to the listener as
+            // soon as its name is known or right away when report_asap is set.
             final Map<Long, DiscoveryData> address2DiscoveryData = new HashMap<Long, DiscoveryData>();
 
             BlueZAPI.DeviceInquiryListener bluezDiscoveryListener = new BlueZAPI.DeviceInquiryListener() {
@@ -469,16 +501,29 @@ class BluetoothStackBlueZDBus implements BluetoothStack, DeviceInquiryRunnable,
 
                 public void deviceDiscovered(String deviceAddr, String deviceName, int deviceClass, boolean paired) {
                     long longAddress = convertBTAddress(deviceAddr);
-                    DiscoveryData discoveryData = address2DiscoveryData.get(longAddress);
-                    if (discoveryData == null) {
-                        discoveryData = new DiscoveryData();
-                        address2DiscoveryData.put(longAddress, discoveryData);
+                    DiscoveryData discoveryData;
+                    boolean report;
+                    synchronized (address2DiscoveryData) {
+                        discoveryData = address2DiscoveryData.get(longAddress);
+                        if (discoveryData == null) {
+                            discoveryData = new DiscoveryData(longAddress);
+                            address2DiscoveryData.put(longAddress, discoveryData);
+                        }
                     }
-                    if (deviceName != null) {
-                        discoveryData.name = deviceName;
+                    synchronized (discoveryData) {
+                        if (deviceName != null) {
+                            discoveryData.name = deviceName;
+                        }
+                        if (deviceClass >= 0) {
+                            discoveryData.deviceClass = deviceClass;
+                        }
+                        if (paired) {
+                            discoveryData.paired = true;
+                        }
+                        report = (reportAsap || (discoveryData.name != null));
                     }
-                    if (deviceClass >= 0) {
-                        discoveryData.deviceClass = deviceClass;
+                    if (report && !deviceInquiryCanceled) {
+                        reportDiscoveredDevice(listenerDispatcher, listener, discoveryData);
                     }
                 }
             };
@@ -494,24 +539,12 @@ class BluetoothStackBlueZDBus implements BluetoothStack, DeviceInquiryRunnable,
                 }
             }
 
-            for (Long address : address2DiscoveryData.keySet()) {
-                DiscoveryData discoveryData = address2DiscoveryData.get(address);
-                if (discoveryData.name == null) {
-                    try {
-                        discoveryData.name = blueZ.getRemoteDeviceFriendlyName(toHexString(address));
-                    } catch (Throwable e) {
-                        DebugLog.error("can't get device name", e);
-                    }
-                    if (discoveryData.name == null) {
-                        discoveryData.name = "";
-                    }
-                }
-                RemoteDevice remoteDevice = RemoteDeviceHelper.createRemoteDevice(BluetoothStackBlueZDBus.this, address, discoveryData.name,
-                        discoveryData.paired);
-                listener.deviceDiscovered(remoteDevice, new DeviceClass(discoveryData.deviceClass));
-                if (deviceInquiryCanceled) {
-                    break;
+            if (!deviceInquiryCanceled) {
+                List<DiscoveryData> devices;
+                synchronized (address2DiscoveryData) {
+                    devices = new Vector<DiscoveryData>(address2DiscoveryData.values());
                 }
+                resolveDiscoveredDeviceNames(listenerDispatcher, listener, devices);
             }
 
             if (deviceInquiryCanceled) {
@@ -520,10 +553,113 @@ class BluetoothStackBlueZDBus implements BluetoothStack, DeviceInquiryRunnable,
                 return DiscoveryListener.INQUIRY_COMPLETED;
             }
         } finally {
+            // inquiryCompleted is called after all deviceDiscovered
+            listenerDispatcher.shutdown();
+            try {
+                while (!listenerDispatcher.awaitTermination(1, TimeUnit.SECONDS)) {
+                    DebugLog.debug("wait for DiscoveryListener.deviceDiscovered to return");
+                }
+            } catch (InterruptedException e) {
+                listenerDispatcher.shutdownNow();
+            }
             discoveryListener = null;
         }
     }
 
+    /**
+     * Call DiscoveryListener once for each device, later calls only update
+     * the name and paired state of cached RemoteDevice.
+     */
+    private void reportDiscoveredDevice(ExecutorService listenerDispatcher, final DiscoveryListener listener, DiscoveryData discoveryData) {
+        final RemoteDevice remoteDevice;
+        final int deviceClass;
+        synchronized (discoveryData) {
+            remoteDevice = RemoteDeviceHelper.createRemoteDevice(this, discoveryData.address, discoveryData.name, discoveryData.paired);
+            if (discoveryData.reported) {
+                return;
+            }
+            discoveryData.reported = true;
+            deviceClass = discoveryData.deviceClass;
+        }
+        try {
+            listenerDispatcher.execute(new Runnable() {
+                public void run() {
+                    if (!deviceInquiryCanceled) {
+                        listener.deviceDiscovered(remoteDevice, new DeviceClass(deviceClass));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            DebugLog.debug("device found after inquiry ended", discoveryData.address);
+        }
+    }
+
+    /**
+     * Get the names BlueZ did not send during inquiry using a few threads and
+     * report the devices that are still waiting for the name.
+     */
+    private void resolveDiscoveredDeviceNames(final ExecutorService listenerDispatcher, final DiscoveryListener listener,
+            List<DiscoveryData> devices) {
+        List<DiscoveryData> unnamed = new Vector<DiscoveryData>();
+        for (DiscoveryData discoveryData : devices) {
+            boolean named;
+            synchronized (discoveryData) {
+                named = (discoveryData.name != null);
+            }
+            if (named) {
+                reportDiscoveredDevice(listenerDispatcher, listener, discoveryData);
+            } else {
+                unnamed.add(discoveryData);
+            }
+        }
+        if (unnamed.isEmpty()) {
+            return;
+        }
+        ExecutorService resolver = Executors.newFixedThreadPool(Math.min(unnamed.size(), NAME_RESOLUTION_THREADS), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "BlueZNameResolver");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        nameResolver = resolver;
+        try {
+            for (final DiscoveryData discoveryData : unnamed) {
+                resolver.execute(new Runnable() {
+                    public void run() {
+                        String name = null;
+                        try {
+                            name = blueZ.getRemoteDeviceFriendlyName(toHexString(discoveryData.address));
+                        } catch (Throwable e) {
+                            DebugLog.error("can't get device name", e);
+                        }
+                        if (deviceInquiryCanceled) {
+                            return;
+                        }
+                        synchronized (discoveryData) {
+                            if (name != null) {
+                                discoveryData.name = name;
+                            } else if (discoveryData.name == null) {
+                                discoveryData.name = "";
+                            }
+                        }
+                        reportDiscoveredDevice(listenerDispatcher, listener, discoveryData);
+                    }
+                });
+            }
+            resolver.shutdown();
+            while (!resolver.awaitTermination(1, TimeUnit.SECONDS)) {
+                if (deviceInquiryCanceled) {
+                    resolver.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            resolver.shutdownNow();
+        } finally {
+            nameResolver = null;
+        }
+    }
+
     public void deviceDiscoveredCallback(DiscoveryListener listener, long deviceAddr, int deviceClass, String deviceName, boolean paired) {
         // Not used here since there are no native callbacks
     }
@@ -532,6 +668,12 @@ class BluetoothStackBlueZDBus implements BluetoothStack, DeviceInquiryRunnable,
         DebugLog.debug("cancelInquiry()");
         if (discoveryListener != null && discoveryListener == listener) {
             deviceInquiryCanceled = true;
+            ExecutorService resolver = nameResolver;
+            if (resolver != null) {
+                // Inquiry already ended, stop waiting for the names
+                resolver.shutdownNow();
+                return true;
+            }
             try {
                 blueZ.deviceInquiryCancel();
                 return true;
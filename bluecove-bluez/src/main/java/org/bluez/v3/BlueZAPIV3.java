@@ -444,63 +444,154 @@ public class BlueZAPIV3 implements BlueZAPI {
         adapter.CancelDiscovery();
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see org.bluez.BlueZAPI#getRemoteDeviceFriendlyName(java.lang.String)
+    /**
+     * Discovery started to get device names, shared by all threads waiting for
+     * a name until BlueZ reports DiscoveryCompleted.
      */
-    public String getRemoteDeviceFriendlyName(final String deviceAddress) throws DBusException, IOException {
-        final Object discoveryCompletedEvent = new Object();
-        final Vector<String> namesFound = new Vector<String>();
+    private class NameDiscovery {
 
-        DBusSigHandler<Adapter.DiscoveryCompleted> discoveryCompleted = new DBusSigHandler<Adapter.DiscoveryCompleted>() {
+        private final Map<String, String> names = new HashMap<String, String>();
+
+        private boolean completed = false;
+
+        private boolean handlersRemoved = false;
+
+        private final DBusSigHandler<Adapter.DiscoveryCompleted> discoveryCompleted = new DBusSigHandler<Adapter.DiscoveryCompleted>() {
             public void handle(Adapter.DiscoveryCompleted s) {
                 DebugLog.debug("discoveryCompleted.handle()");
-                synchronized (discoveryCompletedEvent) {
-                    discoveryCompletedEvent.notifyAll();
+                synchronized (NameDiscovery.this) {
+                    completed = true;
+                    NameDiscovery.this.notifyAll();
                 }
             }
         };
 
-        DBusSigHandler<Adapter.RemoteNameUpdated> remoteNameUpdated = new DBusSigHandler<Adapter.RemoteNameUpdated>() {
+        private final DBusSigHandler<Adapter.RemoteNameUpdated> remoteNameUpdated = new DBusSigHandler<Adapter.RemoteNameUpdated>() {
             public void handle(Adapter.RemoteNameUpdated s) {
-                if (deviceAddress.equals(s.getDeviceAddress())) {
-                    if (s.getDeviceName() != null) {
-                        namesFound.add(s.getDeviceName());
-                        synchronized (discoveryCompletedEvent) {
-                            discoveryCompletedEvent.notifyAll();
-                        }
-                    } else {
-                        DebugLog.debug("device name is null");
+                if (s.getDeviceName() != null) {
+                    synchronized (NameDiscovery.this) {
+                        names.put(s.getDeviceAddress(), s.getDeviceName());
+                        NameDiscovery.this.notifyAll();
                     }
                 } else {
-                    DebugLog.debug("ignore device name " + s.getDeviceAddress() + " " + s.getDeviceName());
+                    DebugLog.debug("device name is null");
                 }
             }
         };
 
-        try {
-            dbusConn.addSigHandler(Adapter.DiscoveryCompleted.class, discoveryCompleted);
-            dbusConn.addSigHandler(Adapter.RemoteNameUpdated.class, remoteNameUpdated);
+        synchronized String waitForName(String deviceAddress) throws IOException {
+            while ((!names.containsKey(deviceAddress)) && (!completed)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            String name = names.get(deviceAddress);
+            if (name == null) {
+                throw new IOException("Can't retrive device name");
+            }
+            return name;
+        }
+    }
 
-            synchronized (discoveryCompletedEvent) {
+    private final Object nameDiscoveryLock = new Object();
+
+    private NameDiscovery nameDiscovery;
+
+    /**
+     * Lock of one device name request, removed when no thread uses it.
+     */
+    private static class NameRequestLock {
+
+        int users;
+    }
+
+    private final Map<String, NameRequestLock> nameRequestLocks = new HashMap<String, NameRequestLock>();
+
+    private NameDiscovery joinNameDiscovery() throws DBusException {
+        synchronized (nameDiscoveryLock) {
+            if (nameDiscovery != null) {
+                synchronized (nameDiscovery) {
+                    if (!nameDiscovery.completed) {
+                        return nameDiscovery;
+                    }
+                }
+                endNameDiscovery(nameDiscovery);
+            }
+            NameDiscovery discovery = new NameDiscovery();
+            dbusConn.addSigHandler(Adapter.DiscoveryCompleted.class, discovery.discoveryCompleted);
+            dbusConn.addSigHandler(Adapter.RemoteNameUpdated.class, discovery.remoteNameUpdated);
+            nameDiscovery = discovery;
+            boolean started = false;
+            try {
                 adapter.DiscoverDevices();
                 DebugLog.debug("wait for device inquiry to complete...");
+                started = true;
+            } finally {
+                if (!started) {
+                    endNameDiscovery(discovery);
+                }
+            }
+            return discovery;
+        }
+    }
+
+    private void endNameDiscovery(NameDiscovery discovery) {
+        synchronized (nameDiscoveryLock) {
+            if (!discovery.handlersRemoved) {
+                discovery.handlersRemoved = true;
+                quietRemoveSigHandler(Adapter.RemoteNameUpdated.class, discovery.remoteNameUpdated);
+                quietRemoveSigHandler(Adapter.DiscoveryCompleted.class, discovery.discoveryCompleted);
+            }
+            if (nameDiscovery == discovery) {
+                nameDiscovery = null;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.bluez.BlueZAPI#getRemoteDeviceFriendlyName(java.lang.String)
+     * 
+     * Each name request needs a discovery. Requests for different devices made
+     * from several threads wait for the names in the same discovery, requests
+     * for the same device are serialized.
+     */
+    public String getRemoteDeviceFriendlyName(final String deviceAddress) throws DBusException, IOException {
+        NameRequestLock deviceLock;
+        synchronized (nameRequestLocks) {
+            deviceLock = nameRequestLocks.get(deviceAddress);
+            if (deviceLock == null) {
+                deviceLock = new NameRequestLock();
+                nameRequestLocks.put(deviceAddress, deviceLock);
+            }
+            deviceLock.users++;
+        }
+        try {
+            synchronized (deviceLock) {
+                NameDiscovery discovery = joinNameDiscovery();
                 try {
-                    discoveryCompletedEvent.wait();
-                    DebugLog.debug(namesFound.size() + " device name(s) found");
-                    if (namesFound.size() == 0) {
-                        throw new IOException("Can't retrive device name");
+                    String name = discovery.waitForName(deviceAddress);
+                    DebugLog.debug("device name found", name);
+                    return name;
+                } finally {
+                    boolean completed;
+                    synchronized (discovery) {
+                        completed = discovery.completed;
+                    }
+                    if (completed) {
+                        endNameDiscovery(discovery);
                     }
-                    // return the last name found
-                    return namesFound.get(namesFound.size() - 1);
-                } catch (InterruptedException e) {
-                    throw new InterruptedIOException();
                 }
             }
         } finally {
-            quietRemoveSigHandler(Adapter.RemoteNameUpdated.class, remoteNameUpdated);
-            quietRemoveSigHandler(Adapter.DiscoveryCompleted.class, discoveryCompleted);
+            synchronized (nameRequestLocks) {
+                if (--deviceLock.users == 0) {
+                    nameRequestLocks.remove(deviceAddress);
+                }
+            }
         }
     }
 
@@ -296,4 +296,87 @@ public class BlueZServiceRecordXMLTest extends TestCase {
         validateConversion(new DataElement(false));
         validateConversion(new DataElement(DataElement.NULL));
     }
+
+    /**
+     * Records as returned by BlueZ and by exportXMLRecord()
+     */
+    private static final String[] corpus = new String[] {
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n\n<record>\n"
+                    + "\t<attribute id=\"0x0000\">\n\t\t<uint32 value=\"0x00010003\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0001\">\n\t\t<sequence>\n\t\t\t<uuid value=\"0x1105\" />\n\t\t</sequence>\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0004\">\n\t\t<sequence>\n\t\t\t<sequence>\n\t\t\t\t<uuid value=\"0x0100\" />\n\t\t\t</sequence>\n"
+                    + "\t\t\t<sequence>\n\t\t\t\t<uuid value=\"0x0003\" />\n\t\t\t\t<uint8 value=\"0x09\" />\n\t\t\t</sequence>\n"
+                    + "\t\t\t<sequence>\n\t\t\t\t<uuid value=\"0x0008\" />\n\t\t\t</sequence>\n\t\t</sequence>\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0005\">\n\t\t<sequence>\n\t\t\t<uuid value=\"0x1002\" />\n\t\t</sequence>\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0009\">\n\t\t<sequence>\n\t\t\t<sequence>\n\t\t\t\t<uuid value=\"0x1105\" />\n"
+                    + "\t\t\t\t<uint16 value=\"0x0100\" />\n\t\t\t</sequence>\n\t\t</sequence>\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0100\">\n\t\t<text value=\"OBEX Object Push\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0303\">\n\t\t<sequence>\n\t\t\t<uint8 value=\"0x01\" />\n"
+                    + "\t\t\t<uint8 value=\"0xff\" />\n\t\t</sequence>\n\t</attribute>\n</record>\n",
+
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n\n<record>\n"
+                    + "\t<attribute id=\"0x0000\">\n\t\t<uint32 value=\"0x00010004\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0001\">\n\t\t<sequence>\n\t\t\t<uuid value=\"00001101-0000-1000-8000-00805f9b34fb\" />\n"
+                    + "\t\t\t<uuid value=\"b10c0be1111111111111111111110001\" />\n\t\t</sequence>\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0006\">\n\t\t<sequence>\n\t\t\t<uint16 value=\"0x656e\" />\n"
+                    + "\t\t\t<uint16 value=\"0x006a\" />\n\t\t\t<uint16 value=\"0x0100\" />\n\t\t</sequence>\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0008\">\n\t\t<uint8 value=\"0xff\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x000a\">\n\t\t<url value=\"http://www.bluecove.org/\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0100\">\n\t\t<text encoding=\"hex\" value=\"426c7565436f766500\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0101\">\n\t\t<text value=\"Serial &amp; &lt;Port&gt;\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0200\">\n\t\t<alternate>\n\t\t\t<boolean value=\"true\" />\n"
+                    + "\t\t\t<nil />\n\t\t\t<int8 value=\"-0x1e\" />\n\t\t\t<int64 value=\"0x3ec6ef355892ea8c\" />\n"
+                    + "\t\t</alternate>\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0201\">\n\t\t<uint64 value=\"0x01fe0304fb0607f8\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0202\">\n\t\t<uint128 value=\"10737271706f6e92570bbf4c36eb2015\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0203\">\n\t\t<int128 value=\"100f0ef30c0bf6094d0706fb2c21ea0b\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"515\">\n\t\t<int32 value=\"-25678\" />\n\t\t<uint8 value=\"1\" />\n\t</attribute>\n"
+                    + "\t<attribute id=\"0x0204\">\n\t</attribute>\n</record>\n" };
+
+    private void assertSameAsDOM(String xml) throws IOException {
+        Map<Integer, DataElement> expected = BlueZServiceRecordXMLDOM.parsXMLRecord(xml);
+        Map<Integer, DataElement> actual = BlueZServiceRecordXML.parsXMLRecord(xml);
+        assertEquals("attributes in " + xml, expected.keySet(), actual.keySet());
+        for (Map.Entry<Integer, DataElement> e : expected.entrySet()) {
+            assertEquals("attribute " + e.getKey() + " in " + xml, e.getValue(), actual.get(e.getKey()));
+        }
+    }
+
+    public void testCorpus() throws Exception {
+        for (String xml : corpus) {
+            assertSameAsDOM(xml);
+        }
+
+        ServiceRecordImpl serviceRecord = new ServiceRecordImpl(null, null, 0);
+        serviceRecord.populateRFCOMMAttributes(0x10003, 2, new UUID("B10C0BE1111111111111111111110001", false),
+                "BlueCove", true);
+        assertSameAsDOM(BlueZServiceRecordXML.exportXMLRecord(serviceRecord));
+
+        serviceRecord.populateAttributeValue(0x0200, new DataElement(DataElement.U_INT_16, new byte[] { 21, -32, 43,
+                54, -65, 76, 87, 98, 11, -110, 111, 112, -113, 114, 115, 16 }));
+        serviceRecord.populateAttributeValue(0x0201, new DataElement(DataElement.INT_8, -0x7F893012AB39FB72l));
+        serviceRecord.populateAttributeValue(0x0202, new DataElement(DataElement.URL, "btspp://localhost:1"));
+        assertSameAsDOM(BlueZServiceRecordXML.exportXMLRecord(serviceRecord));
+    }
+
+    public void testInvalidRecord() throws Exception {
+        try {
+            BlueZServiceRecordXML.parsXMLRecord("<attribute id=\"0x0000\"><uint8 value=\"4\" /></attribute>");
+            fail("record expected");
+        } catch (IOException e) {
+        }
+        try {
+            BlueZServiceRecordXML.parsXMLRecord("<record><attribute id=\"0x0000\"><uint8 value=\"4z\" /></attribute></record>");
+            fail("invalid number");
+        } catch (IOException e) {
+        }
+        try {
+            BlueZServiceRecordXML.parsXMLRecord("<record><attribute id=\"0x0000\"><float value=\"4\" /></attribute></record>");
+            fail("invalid type");
+        } catch (IOException e) {
+        }
+        // Parser is reused after error
+        assertParser(new DataElement(DataElement.U_INT_1, 0x4), 0, new String[] { "<record>",
+                "<attribute id=\"0x0000\">", "<uint8 value=\"4\" />", "</attribute>", "</record>" });
+    }
 }
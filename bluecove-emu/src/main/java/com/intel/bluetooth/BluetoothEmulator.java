@@ -34,7 +34,7 @@ import javax.bluetooth.RemoteDevice;
 import javax.bluetooth.ServiceRegistrationException;
 import javax.bluetooth.UUID;
 
-class BluetoothEmulator implements BluetoothStack {
+class BluetoothEmulator implements BluetoothStack, BluetoothStackTimedRead {
 
 	static final int NATIVE_LIBRARY_VERSION = BlueCoveImpl.nativeLibraryVersionExpected;
 
@@ -158,6 +158,11 @@ class BluetoothEmulator implements BluetoothStack {
 		return localDevice.setLocalDeviceDiscoverable(mode);
 	}
 
+	boolean isDataChannelConnection(long handle) throws IOException {
+		EmulatorConnection c = activeLocalDevice().getConnection(handle);
+		return (c instanceof EmulatorLinkedConnection) && ((EmulatorLinkedConnection) c).isDataChannel();
+	}
+
 	private EmulatorLocalDevice activeLocalDevice() throws BluetoothStateException {
 		assertClosed();
 		if (!localDevice.isActive()) {
@@ -411,6 +416,10 @@ class BluetoothEmulator implements BluetoothStack {
 		return ((EmulatorRFCOMMClient) activeLocalDevice().getConnection(handle)).read(b, off, len);
 	}
 
+	public int connectionRfRead(long handle, byte[] b, int off, int len, long timeout) throws IOException {
+		return ((EmulatorRFCOMMClient) activeLocalDevice().getConnection(handle)).read(b, off, len, timeout);
+	}
+
 	public int connectionRfReadAvailable(long handle) throws IOException {
 		return ((EmulatorRFCOMMClient) activeLocalDevice().getConnection(handle)).available();
 	}
@@ -0,0 +1,301 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Michael Lifshits
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.intel.bluetooth.emu.CommandChannel;
+import com.intel.bluetooth.emu.DataChannel;
+import com.intel.bluetooth.emu.DeviceCommand;
+import com.intel.bluetooth.emu.DeviceCommandListener;
+import com.intel.bluetooth.rmi.Client;
+
+/**
+ * Receives commands pushed by emulator server for all local devices of this JVM.
+ * 
+ * In process server pushes commands directly to this object, remote server uses one socket on data channel port.
+ * Single thread executes commands, heartbeat to remote server is sent by timer so frames are read without timeout.
+ * 
+ * @see com.intel.bluetooth.emu.CommandChannel
+ */
+class EmulatorCommandChannel implements DeviceCommandListener {
+
+	private static final String IN_PROCESS = "";
+
+	private static Map<String, EmulatorCommandChannel> channels = new HashMap<String, EmulatorCommandChannel>();
+
+	private final String key;
+
+	private final Map<Long, EmulatorLocalDevice> devices = new Hashtable<Long, EmulatorLocalDevice>();
+
+	private CommandChannel localChannel;
+
+	private final LinkedList<Object[]> queue = new LinkedList<Object[]>();
+
+	private Socket socket;
+
+	private DataInputStream in;
+
+	private DataOutputStream out;
+
+	private Timer heartbeatTimer;
+
+	private volatile boolean closed = false;
+
+	private EmulatorCommandChannel(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * @return false if commands can't be pushed to the device, then it should poll the server.
+	 */
+	static synchronized boolean attach(EmulatorLocalDevice device) {
+		if (!device.getConfiguration().isCommandChannel()) {
+			return false;
+		}
+		String key = IN_PROCESS;
+		if (Client.getRemoteServiceHost() != null) {
+			if (device.getDataChannelPort() == 0) {
+				return false;
+			}
+			key = device.getDataChannelHost() + ":" + device.getDataChannelPort();
+		}
+		EmulatorCommandChannel channel = channels.get(key);
+		try {
+			if (channel == null) {
+				channel = new EmulatorCommandChannel(key);
+				if (key == IN_PROCESS) {
+					channel.openLocal();
+				} else {
+					channel.openSocket(device.getDataChannelHost(), device.getDataChannelPort(), device
+							.getConfiguration().getKeepAliveSeconds() * 1000 / 2);
+				}
+				channels.put(key, channel);
+			}
+			channel.attachDevice(device);
+			return true;
+		} catch (IOException e) {
+			DebugLog.debug("command channel not available", e);
+			return false;
+		}
+	}
+
+	static synchronized void detach(EmulatorLocalDevice device) {
+		for (EmulatorCommandChannel channel : channels.values()) {
+			if (channel.devices.remove(new Long(device.getAddress())) != null) {
+				channel.detachDevice(device.getAddress());
+				if (channel.devices.isEmpty()) {
+					channel.close();
+				}
+				return;
+			}
+		}
+	}
+
+	private static synchronized void remove(EmulatorCommandChannel channel) {
+		if (channels.get(channel.key) == channel) {
+			channels.remove(channel.key);
+		}
+	}
+
+	private void openLocal() {
+		localChannel = new CommandChannel(this, false);
+		startThread(new Runnable() {
+			public void run() {
+				dispatchLocal();
+			}
+		});
+	}
+
+	private void openSocket(String host, int port, int heartbeatMillis) throws IOException {
+		socket = new Socket(host, port);
+		boolean success = false;
+		try {
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			synchronized (out) {
+				out.writeInt(DataChannel.COMMAND_MAGIC);
+				out.flush();
+			}
+			success = true;
+		} finally {
+			if (!success) {
+				socket.close();
+			}
+		}
+		startThread(new Runnable() {
+			public void run() {
+				receiveSocket();
+			}
+		});
+		long period = Math.max(1000, heartbeatMillis);
+		heartbeatTimer = new Timer("BlueCoveEmulatorCommandHeartbeat", true);
+		heartbeatTimer.schedule(new TimerTask() {
+			public void run() {
+				heartbeat();
+			}
+		}, period, period);
+	}
+
+	private void heartbeat() {
+		try {
+			synchronized (out) {
+				out.writeByte(DataChannel.FRAME_HEARTBEAT);
+				out.flush();
+			}
+		} catch (IOException e) {
+			if (!closed) {
+				DebugLog.error("command channel error", e);
+			}
+			close();
+		}
+	}
+
+	private void startThread(Runnable runnable) {
+		Thread t = new Thread(runnable, "BlueCoveEmulatorCommandChannel");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private void attachDevice(EmulatorLocalDevice device) throws IOException {
+		devices.put(new Long(device.getAddress()), device);
+		if (localChannel != null) {
+			localChannel.attach(device.getAddress());
+		} else {
+			synchronized (out) {
+				out.writeByte(DataChannel.FRAME_ATTACH);
+				out.writeLong(device.getAddress());
+				out.flush();
+			}
+		}
+	}
+
+	private void detachDevice(long address) {
+		if (localChannel != null) {
+			localChannel.detach(address);
+		} else {
+			try {
+				synchronized (out) {
+					out.writeByte(DataChannel.FRAME_DETACH);
+					out.writeLong(address);
+					out.flush();
+				}
+			} catch (IOException e) {
+				DebugLog.debug("command channel error", e);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.intel.bluetooth.emu.DeviceCommandListener#deviceCommand(long, com.intel.bluetooth.emu.DeviceCommand)
+	 */
+	public void deviceCommand(long address, DeviceCommand command) {
+		synchronized (queue) {
+			queue.addLast(new Object[] { new Long(address), command });
+			queue.notifyAll();
+		}
+	}
+
+	private void execute(long address, DeviceCommand command) {
+		EmulatorLocalDevice device = devices.get(new Long(address));
+		if (device != null) {
+			EmulatorCommandReceiver.execute(device, command);
+		}
+	}
+
+	private void dispatchLocal() {
+		while (true) {
+			Object[] item;
+			synchronized (queue) {
+				while (queue.isEmpty() && (!closed)) {
+					try {
+						queue.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed) {
+					return;
+				}
+				item = queue.removeFirst();
+			}
+			execute(((Long) item[0]).longValue(), (DeviceCommand) item[1]);
+		}
+	}
+
+	private void receiveSocket() {
+		try {
+			while (!closed) {
+				byte type = in.readByte();
+				if (type != DataChannel.FRAME_COMMAND) {
+					throw new IOException("Unexpected frame " + type);
+				}
+				long address = in.readLong();
+				execute(address, DataChannel.readCommand(in));
+			}
+		} catch (IOException e) {
+			if (!closed) {
+				DebugLog.error("command channel error", e);
+			}
+		} finally {
+			close();
+		}
+	}
+
+	private void close() {
+		closed = true;
+		remove(this);
+		if (localChannel != null) {
+			localChannel.close();
+			synchronized (queue) {
+				queue.notifyAll();
+			}
+		}
+		if (heartbeatTimer != null) {
+			heartbeatTimer.cancel();
+		}
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+}
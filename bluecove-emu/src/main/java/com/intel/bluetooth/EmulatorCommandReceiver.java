@@ -37,7 +37,7 @@ import java.util.Map;
 import com.intel.bluetooth.emu.DeviceCommand;
 
 /**
- * 
+ * Polls commands of one device, used when the server can't push commands to EmulatorCommandChannel.
  */
 class EmulatorCommandReceiver extends Thread {
 
@@ -60,11 +60,11 @@ class EmulatorCommandReceiver extends Thread {
 			if (cmd == null) {
 				break;
 			}
-			execute(cmd);
+			execute(localDevice, cmd);
 		}
 	}
 
-	private void execute(DeviceCommand command) {
+	static void execute(EmulatorLocalDevice localDevice, DeviceCommand command) {
 		switch (command.getType()) {
 		case keepAlive:
 			break;
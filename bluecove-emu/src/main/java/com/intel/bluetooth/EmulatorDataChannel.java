@@ -0,0 +1,517 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.util.LinkedList;
+
+import com.intel.bluetooth.emu.DataChannel;
+
+/**
+ * Client side of emulator data channel.
+ * 
+ * RFCOMM writes are queued and coalesced by sender thread, received data is pushed by the server within the credit
+ * window granted by this client. Server grants credit back to this client once the data is delivered to the
+ * connection.
+ * 
+ * @see com.intel.bluetooth.emu.DataChannel
+ */
+class EmulatorDataChannel {
+
+	private final Socket socket;
+
+	private final DataInputStream in;
+
+	private final DataOutputStream out;
+
+	private final boolean l2cap;
+
+	private final boolean senderFlushBlock;
+
+	private final int window;
+
+	private final long closeTimeout;
+
+	private volatile boolean closed = false;
+
+	private volatile IOException error;
+
+	// --- send side
+
+	private final Object sendLock = new Object();
+
+	private int sendCredit;
+
+	private byte[] pending;
+
+	private byte[] sendBuffer;
+
+	private int pendingLen = 0;
+
+	private boolean sending = false;
+
+	private Thread senderThread;
+
+	// --- receive side
+
+	private final Object receiveLock = new Object();
+
+	private final LinkedList<byte[]> received = new LinkedList<byte[]>();
+
+	private int receivedOffset = 0;
+
+	private int receivedAvailable = 0;
+
+	private int consumed = 0;
+
+	private boolean eof = false;
+
+	private int flushAcks = 0;
+
+	private boolean closeAck = false;
+
+	EmulatorDataChannel(String host, int port, long localAddress, long connectionId, boolean l2cap, int window,
+			boolean senderFlushBlock, long closeTimeout) throws IOException {
+		this.l2cap = l2cap;
+		this.window = window;
+		this.senderFlushBlock = senderFlushBlock;
+		this.closeTimeout = closeTimeout;
+		this.sendCredit = window;
+		socket = new Socket(host, port);
+		boolean success = false;
+		try {
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(DataChannel.MAGIC);
+			out.writeLong(localAddress);
+			out.writeLong(connectionId);
+			out.writeInt(window);
+			out.flush();
+			if (in.readByte() != 0) {
+				throw new IOException(in.readUTF());
+			}
+			success = true;
+		} finally {
+			if (!success) {
+				socket.close();
+			}
+		}
+		String name = "EmulatorDataChannel-" + connectionId;
+		Thread receiverThread = new Thread(new Runnable() {
+			public void run() {
+				receiveFrames();
+			}
+		}, name);
+		receiverThread.setDaemon(true);
+		receiverThread.start();
+		if (!l2cap) {
+			pending = new byte[DataChannel.MAX_FRAME_DATA];
+			sendBuffer = new byte[DataChannel.MAX_FRAME_DATA];
+			senderThread = new Thread(new Runnable() {
+				public void run() {
+					sendFrames();
+				}
+			}, name + "-sender");
+			senderThread.setDaemon(true);
+			senderThread.start();
+		}
+	}
+
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw error;
+		}
+		if (closed) {
+			throw new IOException("Connection closed");
+		}
+	}
+
+	private void setError(IOException e) {
+		if (error == null) {
+			error = e;
+		}
+		synchronized (sendLock) {
+			sendLock.notifyAll();
+		}
+		synchronized (receiveLock) {
+			receiveLock.notifyAll();
+		}
+	}
+
+	private void receiveFrames() {
+		try {
+			while (true) {
+				byte type = in.readByte();
+				switch (type) {
+				case DataChannel.FRAME_DATA:
+					byte[] b = DataChannel.readData(in);
+					synchronized (receiveLock) {
+						received.addLast(b);
+						receivedAvailable += b.length;
+						receiveLock.notifyAll();
+					}
+					break;
+				case DataChannel.FRAME_CREDIT:
+					int more = in.readInt();
+					synchronized (sendLock) {
+						sendCredit = Math.min(sendCredit + more, window);
+						sendLock.notifyAll();
+					}
+					break;
+				case DataChannel.FRAME_FLUSH_ACK:
+					synchronized (receiveLock) {
+						flushAcks++;
+						receiveLock.notifyAll();
+					}
+					break;
+				case DataChannel.FRAME_CLOSE_ACK:
+					synchronized (receiveLock) {
+						closeAck = true;
+						receiveLock.notifyAll();
+					}
+					return;
+				case DataChannel.FRAME_EOF:
+					synchronized (receiveLock) {
+						eof = true;
+						receiveLock.notifyAll();
+					}
+					break;
+				case DataChannel.FRAME_ERROR:
+					setError(new IOException(in.readUTF()));
+					break;
+				default:
+					throw new IOException("Unexpected frame " + type);
+				}
+			}
+		} catch (IOException e) {
+			if (!closed) {
+				setError(e);
+			}
+		}
+	}
+
+	private void sendFrames() {
+		try {
+			while (true) {
+				int len;
+				synchronized (sendLock) {
+					while (((pendingLen == 0) || (sendCredit <= 0)) && (!closed) && (error == null)) {
+						sendLock.wait();
+					}
+					if ((pendingLen == 0) || (sendCredit <= 0) || (error != null)) {
+						return;
+					}
+					len = Math.min(pendingLen, sendCredit);
+					if (len == pendingLen) {
+						byte[] b = sendBuffer;
+						sendBuffer = pending;
+						pending = b;
+					} else {
+						System.arraycopy(pending, 0, sendBuffer, 0, len);
+						System.arraycopy(pending, len, pending, 0, pendingLen - len);
+					}
+					pendingLen -= len;
+					sendCredit -= len;
+					sending = true;
+					sendLock.notifyAll();
+				}
+				try {
+					synchronized (out) {
+						DataChannel.writeData(out, sendBuffer, 0, len);
+						out.flush();
+					}
+				} finally {
+					synchronized (sendLock) {
+						sending = false;
+						sendLock.notifyAll();
+					}
+				}
+			}
+		} catch (IOException e) {
+			setError(e);
+		} catch (InterruptedException e) {
+			setError(new InterruptedIOException());
+		}
+	}
+
+	// --- RFCOMM
+
+	int read(byte[] b, int off, int len) throws IOException {
+		return read(b, off, len, 0);
+	}
+
+	/**
+	 * @param timeout
+	 *            zero to wait forever
+	 * @return 0 if timeout expired before data arrived
+	 */
+	int read(byte[] b, int off, int len, long timeout) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int rc = 0;
+		long end = System.currentTimeMillis() + timeout;
+		synchronized (receiveLock) {
+			while (receivedAvailable == 0) {
+				if (eof) {
+					return -1;
+				}
+				checkError();
+				long timeleft = 0;
+				if (timeout > 0) {
+					timeleft = end - System.currentTimeMillis();
+					if (timeleft <= 0) {
+						return 0;
+					}
+				}
+				try {
+					receiveLock.wait(timeleft);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			while ((rc < len) && (!received.isEmpty())) {
+				byte[] chunk = received.getFirst();
+				int n = Math.min(len - rc, chunk.length - receivedOffset);
+				System.arraycopy(chunk, receivedOffset, b, off + rc, n);
+				rc += n;
+				receivedOffset += n;
+				if (receivedOffset == chunk.length) {
+					received.removeFirst();
+					receivedOffset = 0;
+				}
+			}
+			receivedAvailable -= rc;
+		}
+		consumed(rc);
+		return rc;
+	}
+
+	int available() throws IOException {
+		synchronized (receiveLock) {
+			if ((receivedAvailable == 0) && (!eof)) {
+				checkError();
+			}
+			return receivedAvailable;
+		}
+	}
+
+	void write(byte[] b, int off, int len) throws IOException {
+		synchronized (sendLock) {
+			while (len > 0) {
+				checkError();
+				int free = pending.length - pendingLen;
+				if (free == 0) {
+					try {
+						sendLock.wait();
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException();
+					}
+					continue;
+				}
+				int n = Math.min(free, len);
+				System.arraycopy(b, off, pending, pendingLen, n);
+				pendingLen += n;
+				off += n;
+				len -= n;
+				sendLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Wait for sender thread to send all queued data.
+	 */
+	private void drain() throws IOException {
+		synchronized (sendLock) {
+			while ((pendingLen > 0) || sending) {
+				checkError();
+				try {
+					sendLock.wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+		}
+		checkError();
+	}
+
+	void flush() throws IOException {
+		drain();
+		if (!senderFlushBlock) {
+			return;
+		}
+		int expected;
+		synchronized (receiveLock) {
+			expected = flushAcks + 1;
+		}
+		synchronized (out) {
+			DataChannel.writeControl(out, DataChannel.FRAME_FLUSH);
+			out.flush();
+		}
+		synchronized (receiveLock) {
+			while (flushAcks < expected) {
+				checkError();
+				try {
+					receiveLock.wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+		}
+	}
+
+	// --- L2CAP
+
+	boolean ready() throws IOException {
+		synchronized (receiveLock) {
+			if (received.isEmpty() && (!eof)) {
+				checkError();
+			}
+			return !received.isEmpty();
+		}
+	}
+
+	byte[] receive() throws IOException {
+		byte[] packet;
+		synchronized (receiveLock) {
+			while (received.isEmpty()) {
+				if (eof) {
+					throw new EOFException();
+				}
+				checkError();
+				try {
+					receiveLock.wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			packet = received.removeFirst();
+			receivedAvailable -= packet.length;
+		}
+		consumed(DataChannel.creditCost(packet.length, window));
+		return packet;
+	}
+
+	void send(byte[] data) throws IOException {
+		int cost = DataChannel.creditCost(data.length, window);
+		synchronized (sendLock) {
+			while (sendCredit < cost) {
+				checkError();
+				if (closed) {
+					throw new IOException("Connection closed");
+				}
+				try {
+					sendLock.wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			checkError();
+			sendCredit -= cost;
+		}
+		synchronized (out) {
+			DataChannel.writeData(out, data, 0, data.length);
+			out.flush();
+		}
+	}
+
+	int getSendCredit() {
+		synchronized (sendLock) {
+			return sendCredit;
+		}
+	}
+
+	/**
+	 * Return credit to server once half of the window consumed.
+	 */
+	private void consumed(int len) throws IOException {
+		int credit = 0;
+		synchronized (receiveLock) {
+			consumed += len;
+			if (consumed >= window / 2) {
+				credit = consumed;
+				consumed = 0;
+			}
+		}
+		if ((credit > 0) && (error == null) && (!closed)) {
+			synchronized (out) {
+				DataChannel.writeCredit(out, credit);
+				out.flush();
+			}
+		}
+	}
+
+	/**
+	 * Deliver all queued data to the connection and close the socket.
+	 */
+	void close() {
+		if (closed) {
+			return;
+		}
+		try {
+			if (error == null) {
+				if (!l2cap) {
+					drain();
+				}
+				synchronized (out) {
+					DataChannel.writeControl(out, DataChannel.FRAME_CLOSE);
+					out.flush();
+				}
+				long end = System.currentTimeMillis() + closeTimeout;
+				synchronized (receiveLock) {
+					while ((!closeAck) && (error == null)) {
+						long timeleft = end - System.currentTimeMillis();
+						if (timeleft <= 0) {
+							break;
+						}
+						receiveLock.wait(timeleft);
+					}
+				}
+			}
+		} catch (IOException e) {
+			DebugLog.debug("data channel close error", e);
+		} catch (InterruptedException e) {
+		} finally {
+			closed = true;
+			synchronized (sendLock) {
+				sendLock.notifyAll();
+			}
+			try {
+				socket.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+}
@@ -58,14 +58,17 @@ class EmulatorHelper {
 			throw (BluetoothStateException) UtilsJavaSE.initCause(new BluetoothStateException(e.getMessage()), e);
 		}
 		EmulatorLocalDevice device = new EmulatorLocalDevice(service, deviceDescriptor);
-		EmulatorCommandReceiver receiver = new EmulatorCommandReceiver(device);
-		receivers.put(device, receiver);
-		receiver.setDaemon(true);
-		receiver.start();
+		if (!EmulatorCommandChannel.attach(device)) {
+			EmulatorCommandReceiver receiver = new EmulatorCommandReceiver(device);
+			receivers.put(device, receiver);
+			receiver.setDaemon(true);
+			receiver.start();
+		}
 		return device;
 	}
 
 	static void releaseDevice(EmulatorLocalDevice device) {
+		EmulatorCommandChannel.detach(device);
 		EmulatorCommandReceiver receiver = receivers.remove(device);
 		if (receiver != null) {
 			receiver.shutdownReceiver();
@@ -57,6 +57,7 @@ class EmulatorL2CAPClient extends EmulatorLinkedConnection {
 		} else {
 			this.transmitMTU = remoteDeviceReceiveMTU;
 		}
+		openDataChannel();
 	}
 
 	void connect(long remoteAddress, long connectionHandle, int receiveMTU, int transmitMTU) throws IOException {
@@ -74,13 +75,24 @@ class EmulatorL2CAPClient extends EmulatorLinkedConnection {
 	}
 
 	boolean ready() throws IOException {
+		if (dataChannel != null) {
+			return dataChannel.ready();
+		}
 		return localDevice.getDeviceManagerService().l2Ready(localDevice.getAddress(), this.connectionHandle);
 	}
 
 	int receive(byte[] inBuf) throws IOException {
-		byte[] packetData = localDevice.getDeviceManagerService().l2Receive(localDevice.getAddress(),
-				this.connectionHandle, this.receiveMTU);
+		byte[] packetData;
+		if (dataChannel != null) {
+			packetData = dataChannel.receive();
+		} else {
+			packetData = localDevice.getDeviceManagerService().l2Receive(localDevice.getAddress(),
+					this.connectionHandle, this.receiveMTU);
+		}
 		int length = packetData.length;
+		if (length > receiveMTU) {
+			length = receiveMTU;
+		}
 		if (length > inBuf.length) {
 			length = inBuf.length;
 		}
@@ -94,6 +106,10 @@ class EmulatorL2CAPClient extends EmulatorLinkedConnection {
 			System.arraycopy(data, 0, b, 0, transmitMTU);
 			data = b;
 		}
+		if (dataChannel != null) {
+			dataChannel.send(data);
+			return;
+		}
 		localDevice.getDeviceManagerService().l2Send(localDevice.getAddress(), this.connectionHandle, data);
 	}
 
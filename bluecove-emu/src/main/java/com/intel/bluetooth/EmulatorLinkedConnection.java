@@ -36,6 +36,8 @@ abstract class EmulatorLinkedConnection extends EmulatorConnection {
 
 	protected long remoteAddress;
 
+	protected EmulatorDataChannel dataChannel;
+
 	EmulatorLinkedConnection(EmulatorLocalDevice localDevice, long handle) {
 		super(localDevice, handle);
 	}
@@ -54,6 +56,29 @@ abstract class EmulatorLinkedConnection extends EmulatorConnection {
 	void connect(long remoteAddress, long connectionHandle) throws IOException {
 		this.connectionHandle = connectionHandle;
 		this.remoteAddress = remoteAddress;
+		openDataChannel();
+	}
+
+	/**
+	 * Stream connection data over socket when emulator server is remote, RMI is used if not available.
+	 */
+	void openDataChannel() {
+		int port = localDevice.getDataChannelPort();
+		if (port <= 0) {
+			return;
+		}
+		try {
+			dataChannel = new EmulatorDataChannel(localDevice.getDataChannelHost(), port, localDevice.getAddress(),
+					this.connectionHandle, (this instanceof EmulatorL2CAPClient), localDevice.getConfiguration()
+							.getConnectionBufferSize(), localDevice.getConfiguration().isSenderFlushBlock(),
+					localDevice.getConfiguration().getKeepAliveSeconds() * 1000);
+		} catch (IOException e) {
+			DebugLog.debug("data channel not available", e);
+		}
+	}
+
+	boolean isDataChannel() {
+		return (dataChannel != null);
 	}
 
 	int getSecurityOpt(int expected) throws IOException {
@@ -71,6 +96,9 @@ abstract class EmulatorLinkedConnection extends EmulatorConnection {
 	}
 
 	void close() throws IOException {
+		if (dataChannel != null) {
+			dataChannel.close();
+		}
 		localDevice.getDeviceManagerService().closeConnection(localDevice.getAddress(), this.connectionHandle);
 	}
 }
@@ -38,6 +38,7 @@ import com.intel.bluetooth.emu.DeviceDescriptor;
 import com.intel.bluetooth.emu.DeviceManagerService;
 import com.intel.bluetooth.emu.EmulatorConfiguration;
 import com.intel.bluetooth.emu.EmulatorUtils;
+import com.intel.bluetooth.rmi.Client;
 
 /**
  * 
@@ -66,6 +67,8 @@ class EmulatorLocalDevice {
 
 	private Map<Long, EmulatorConnection> connections = new Hashtable<Long, EmulatorConnection>();
 
+	private int dataChannelPort = -1;
+
 	EmulatorLocalDevice(DeviceManagerService service, DeviceDescriptor deviceDescriptor) throws BluetoothStateException {
 		this.service = service;
 		this.deviceDescriptor = deviceDescriptor;
@@ -178,6 +181,27 @@ class EmulatorLocalDevice {
 		return configuration;
 	}
 
+	/**
+	 * @return data channel port or 0 if data channel is not used
+	 */
+	synchronized int getDataChannelPort() {
+		if (dataChannelPort == -1) {
+			dataChannelPort = 0;
+			if ((Client.getRemoteServiceHost() != null) && configuration.isDataChannel()) {
+				try {
+					dataChannelPort = service.getDataChannelPort();
+				} catch (IOException e) {
+					DebugLog.debug("data channel not available", e);
+				}
+			}
+		}
+		return dataChannelPort;
+	}
+
+	String getDataChannelHost() {
+		return Client.getRemoteServiceHost();
+	}
+
 	EmulatorConnection getConnection(long handle) throws IOException {
 		Object c = connections.get(new Long(handle));
 		if (c == null) {
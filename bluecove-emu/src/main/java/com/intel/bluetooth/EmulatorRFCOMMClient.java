@@ -42,6 +42,7 @@ class EmulatorRFCOMMClient extends EmulatorLinkedConnection {
 		this.connectionHandle = localDevice.getDeviceManagerService().rfConnect(localDevice.getAddress(),
 				params.address, params.channel, params.authenticate, params.encrypt, params.timeout);
 		this.remoteAddress = params.address;
+		openDataChannel();
 	}
 
 	int read() throws IOException {
@@ -54,6 +55,9 @@ class EmulatorRFCOMMClient extends EmulatorLinkedConnection {
 	}
 
 	int read(byte[] b, int off, int len) throws IOException {
+		if (dataChannel != null) {
+			return dataChannel.read(b, off, len);
+		}
 		byte buf[] = localDevice.getDeviceManagerService().rfRead(localDevice.getAddress(), this.connectionHandle, len);
 		if (buf == null) {
 			return -1;
@@ -62,7 +66,26 @@ class EmulatorRFCOMMClient extends EmulatorLinkedConnection {
 		return buf.length;
 	}
 
+	int read(byte[] b, int off, int len, long timeout) throws IOException {
+		if (dataChannel != null) {
+			if (timeout <= 0) {
+				return (dataChannel.available() == 0) ? 0 : dataChannel.read(b, off, len);
+			}
+			return dataChannel.read(b, off, len, timeout);
+		}
+		byte buf[] = localDevice.getDeviceManagerService().rfRead(localDevice.getAddress(), this.connectionHandle, len,
+				timeout);
+		if (buf == null) {
+			return -1;
+		}
+		System.arraycopy(buf, 0, b, off, buf.length);
+		return buf.length;
+	}
+
 	int available() throws IOException {
+		if (dataChannel != null) {
+			return dataChannel.available();
+		}
 		return localDevice.getDeviceManagerService().rfAvailable(localDevice.getAddress(), this.connectionHandle);
 	}
 
@@ -73,6 +96,10 @@ class EmulatorRFCOMMClient extends EmulatorLinkedConnection {
 	}
 
 	void write(byte[] b, int off, int len) throws IOException {
+		if (dataChannel != null) {
+			dataChannel.write(b, off, len);
+			return;
+		}
 		byte buf[];
 		if ((b.length == len) && (off == 0)) {
 			buf = b;
@@ -84,6 +111,10 @@ class EmulatorRFCOMMClient extends EmulatorLinkedConnection {
 	}
 
 	void flush() throws IOException {
+		if (dataChannel != null) {
+			dataChannel.flush();
+			return;
+		}
 	    localDevice.getDeviceManagerService().rfFlush(localDevice.getAddress(), this.connectionHandle);
 	}
 
@@ -25,7 +25,10 @@
  */
 package com.intel.bluetooth;
 
+import java.io.IOException;
+
 import javax.bluetooth.BluetoothStateException;
+import javax.microedition.io.Connection;
 
 /**
  * 
@@ -151,4 +154,28 @@ public class EmulatorTestsHelper {
 		}
 		return t;
 	}
+
+	/**
+	 * Verify that connection data is streamed over data channel socket
+	 * instead of RMI calls.
+	 * 
+	 * @param connection
+	 *            RFCOMM or L2CAP connection opened by emulator stack
+	 * @return true if the connection is using data channel
+	 */
+	public static boolean isDataChannelConnection(Connection connection) throws IOException {
+		long handle;
+		if (connection instanceof BluetoothRFCommConnection) {
+			handle = ((BluetoothRFCommConnection) connection).handle;
+		} else if (connection instanceof BluetoothL2CAPConnection) {
+			handle = ((BluetoothL2CAPConnection) connection).handle;
+		} else {
+			return false;
+		}
+		BluetoothStack stack = ((BluetoothConnectionAccess) connection).getBluetoothStack();
+		if (!(stack instanceof BluetoothEmulator)) {
+			return false;
+		}
+		return ((BluetoothEmulator) stack).isDataChannelConnection(handle);
+	}
 }
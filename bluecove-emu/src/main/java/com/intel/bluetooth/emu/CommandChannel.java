@@ -0,0 +1,119 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Michael Lifshits
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import java.util.Hashtable;
+
+import com.intel.bluetooth.DebugLog;
+
+/**
+ * Commands for all devices of one client JVM are pushed to single DeviceCommandListener.
+ * 
+ * Replaces DeviceManagerService.pollCommand() that parks one server thread for each device. Devices attached to the
+ * channel are alive while the channel is open and heartbeat is received, heartbeat is not required for channel
+ * created in the same JVM.
+ */
+public class CommandChannel {
+
+	private final DeviceCommandListener listener;
+
+	private final boolean heartbeatRequired;
+
+	private volatile long lastHeartbeat = System.currentTimeMillis();
+
+	private volatile boolean closed = false;
+
+	private final Hashtable<Long, Device> devices = new Hashtable<Long, Device>();
+
+	public CommandChannel(DeviceCommandListener listener, boolean heartbeatRequired) {
+		this.listener = listener;
+		this.heartbeatRequired = heartbeatRequired;
+	}
+
+	/**
+	 * Start sending commands of the device to this channel.
+	 * 
+	 * @return false if no such device
+	 */
+	public boolean attach(long address) {
+		Device device = DeviceManagerServiceImpl.getDevice(address);
+		if (device == null) {
+			return false;
+		}
+		devices.put(new Long(address), device);
+		device.setCommandChannel(this);
+		return true;
+	}
+
+	public void detach(long address) {
+		Device device = devices.remove(new Long(address));
+		if (device != null) {
+			device.setCommandChannel(null);
+		}
+	}
+
+	void send(long address, DeviceCommand command) {
+		if (closed) {
+			return;
+		}
+		try {
+			listener.deviceCommand(address, command);
+		} catch (Throwable e) {
+			DebugLog.debug("command channel error", e);
+			close();
+		}
+	}
+
+	public void heartbeat() {
+		lastHeartbeat = System.currentTimeMillis();
+	}
+
+	boolean isAlive() {
+		if (closed) {
+			return false;
+		}
+		if (!heartbeatRequired) {
+			return true;
+		}
+		return System.currentTimeMillis() < (lastHeartbeat + (DeviceManagerServiceImpl.configuration
+				.getKeepAliveSeconds() + 7) * 1000);
+	}
+
+	/**
+	 * Attached devices are considered dead and will be released by server.
+	 */
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		DebugLog.debug("command channel closed, devices", devices.size());
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+}
@@ -28,33 +28,51 @@ package com.intel.bluetooth.emu;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- *
- *
+ * Single-producer/single-consumer circular buffer connecting emulated client and server.
+ * 
+ * Data is copied in bulk with <code>System.arraycopy</code>. Read and write cursors are
+ * volatile and grow monotonically, threads park only when the buffer is empty (reader) or
+ * full (writer). Concurrent readers or concurrent writers are serialized on their side of
+ * the buffer only, so sender and receiver never contend on the same monitor.
  */
 class ConnectedInputStream extends InputStream {
 
+	/**
+	 * Same as wait(1000) used before, state is re-checked after each park.
+	 */
+	private static final long PARK_NANOS = 1000L * 1000L * 1000L;
+
 	/**
 	 * The circular buffer which receives data.
 	 */
-	private byte buffer[];
+	private final byte buffer[];
 
-	private boolean closed = false;
+	private volatile boolean closed = false;
 
-	private boolean receiverClosed = false;
+	private volatile boolean receiverClosed = false;
 
 	/**
-	 * The index of the position in the circular buffer at which the byte of data will be stored.
+	 * Total number of bytes stored in the circular buffer, the position of next byte to be
+	 * written is <code>write % buffer.length</code>.
 	 */
-	private int write = 0;
+	private volatile long write = 0;
 
 	/**
-	 * The index of the position in the circular buffer from which the next byte of data will be read.
+	 * Total number of bytes taken from the circular buffer, the position of next byte to be
+	 * read is <code>read % buffer.length</code>.
 	 */
-	private int read = 0;
+	private volatile long read = 0;
 
-	private int available = 0;
+	private volatile Thread parkedReader;
+
+	private volatile Thread parkedWriter;
+
+	private final Object readLock = new Object();
+
+	private final Object writeLock = new Object();
 
 	private final boolean senderFlushBlock;
 
@@ -69,30 +87,18 @@ class ConnectedInputStream extends InputStream {
 	 * @see java.io.InputStream#read()
 	 */
 	@Override
-	public synchronized int read() throws IOException {
-		while (available == 0) {
-			if (closed) {
-				throw new IOException("Stream closed");
-			}
-			if (receiverClosed) {
+	public int read() throws IOException {
+		synchronized (readLock) {
+			if (waitAvailable(0) < 0) {
 				// EOF
 				return -1;
 			}
-			// Let the receive run
-			notifyAll();
-			try {
-				wait(1000);
-			} catch (InterruptedException e) {
-				throw new InterruptedIOException();
-			}
-		}
-		int r = buffer[read++] & 0xFF;
-		if (read >= buffer.length) {
-			read = 0;
+			long r = read;
+			int b = buffer[(int) (r % buffer.length)] & 0xFF;
+			read = r + 1;
+			unpark(parkedWriter);
+			return b;
 		}
-		available--;
-		notifyAll();
-		return r;
 	}
 
 	/**
@@ -101,121 +107,198 @@ class ConnectedInputStream extends InputStream {
 	 * one byte of input is available.
 	 */
 	@Override
-	public synchronized int read(byte b[], int off, int len) throws IOException {
+	public int read(byte b[], int off, int len) throws IOException {
 		if (off < 0 || len < 0 || off + len > b.length) {
 			throw new IndexOutOfBoundsException();
 		}
 		if (len == 0) {
-			if ((closed) && (available == 0)) {
+			if ((closed) && (write == read)) {
 				throw new IOException("Stream closed");
 			}
 			return 0;
 		}
-		// wait only on first byte
-		int c = read();
-		if (c < 0) {
-			return -1;
-		}
-		b[off] = (byte) (c & 0xFF);
-		int rlen = 1;
-		while ((available > 0) && (--len > 0)) {
-			b[off + rlen] = buffer[read++];
-			rlen++;
-			if (read >= buffer.length) {
-				read = 0;
+		synchronized (readLock) {
+			// wait only on first byte
+			if (waitAvailable(0) < 0) {
+				return -1;
 			}
-			available--;
-			notifyAll();
+			return readAvailable(b, off, len);
 		}
-		return rlen;
 	}
 
-	public synchronized int available() throws IOException {
-		return available;
+	/**
+	 * Same as read(byte[], int, int) but waits for the first byte not longer than <code>timeout</code>.
+	 * 
+	 * @return 0 if no data arrived within timeout, no wait when timeout is not positive
+	 */
+	int read(byte b[], int off, int len, long timeout) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		synchronized (readLock) {
+			int rc = waitAvailable(System.currentTimeMillis() + Math.max(timeout, 0));
+			if (rc <= 0) {
+				return rc;
+			}
+			return readAvailable(b, off, len);
+		}
 	}
 
 	/**
-	 * Block sender till client reads all.
+	 * Called holding readLock when data is available.
 	 */
-	void receiveFlush() throws IOException {
-		if (this.senderFlushBlock) {
-			receiveFlushBlock();
+	private int readAvailable(byte b[], int off, int len) {
+		long r = read;
+		int rlen = (int) Math.min(write - r, len);
+		int pos = (int) (r % buffer.length);
+		int first = Math.min(rlen, buffer.length - pos);
+		System.arraycopy(buffer, pos, b, off, first);
+		if (first < rlen) {
+			System.arraycopy(buffer, 0, b, off + first, rlen - first);
 		}
+		read = r + rlen;
+		unpark(parkedWriter);
+		return rlen;
 	}
 
-	void receiveFlushBlock() throws IOException {
-		while (available != 0) {
+	@Override
+	public int available() throws IOException {
+		return (int) (write - read);
+	}
+
+	/**
+	 * @param end
+	 *            time to stop waiting, 0 to wait without limit
+	 * @return 1 if data is available, 0 if end time passed, -1 on EOF
+	 */
+	private int waitAvailable(long end) throws IOException {
+		while (write == read) {
 			if (closed) {
 				throw new IOException("Stream closed");
 			}
 			if (receiverClosed) {
-				throw new IOException("Connection closed");
+				return -1;
 			}
-			synchronized (this) {
-				try {
-					wait(1000);
-				} catch (InterruptedException e) {
-					throw new InterruptedIOException();
+			long nanos = PARK_NANOS;
+			if (end != 0) {
+				long timeleft = end - System.currentTimeMillis();
+				if (timeleft <= 0) {
+					return 0;
 				}
+				nanos = Math.min(nanos, timeleft * 1000L * 1000L);
+			}
+			parkedReader = Thread.currentThread();
+			try {
+				if ((write == read) && (!closed) && (!receiverClosed)) {
+					LockSupport.parkNanos(this, nanos);
+					// Interrupt is ignored if there was a state change, as with notified wait()
+					if ((write == read) && (!closed) && (!receiverClosed) && Thread.interrupted()) {
+						throw new InterruptedIOException();
+					}
+				}
+			} finally {
+				parkedReader = null;
 			}
 		}
+		return 1;
 	}
 
-	synchronized void receive(int b) throws IOException {
-		if (closed) {
-			throw new IOException("Connection closed");
-		}
-		if (available == buffer.length) {
-			waitFreeBuffer();
+	/**
+	 * Block sender till client reads all.
+	 */
+	void receiveFlush() throws IOException {
+		if (this.senderFlushBlock) {
+			receiveFlushBlock();
 		}
-		buffer[write++] = (byte) (b & 0xFF);
-		if (write >= buffer.length) {
-			write = 0;
+	}
+
+	void receiveFlushBlock() throws IOException {
+		synchronized (writeLock) {
+			waitFree(buffer.length);
 		}
-		available++;
-		notifyAll();
 	}
 
-	synchronized public void receive(byte b[], int off, int len) throws IOException {
-		for (int i = 0; i < len; i++) {
+	void receive(int b) throws IOException {
+		synchronized (writeLock) {
 			if (closed) {
 				throw new IOException("Connection closed");
 			}
-			if (available == buffer.length) {
-				waitFreeBuffer();
-			}
-			buffer[write++] = b[off + i];
-			if (write >= buffer.length) {
-				write = 0;
+			waitFree(1);
+			long w = write;
+			buffer[(int) (w % buffer.length)] = (byte) (b & 0xFF);
+			write = w + 1;
+			unpark(parkedReader);
+		}
+	}
+
+	public void receive(byte b[], int off, int len) throws IOException {
+		synchronized (writeLock) {
+			while (len > 0) {
+				if (closed) {
+					throw new IOException("Connection closed");
+				}
+				int free = waitFree(1);
+				long w = write;
+				int pos = (int) (w % buffer.length);
+				int wlen = Math.min(Math.min(free, len), buffer.length - pos);
+				System.arraycopy(b, off, buffer, pos, wlen);
+				write = w + wlen;
+				unpark(parkedReader);
+				off += wlen;
+				len -= wlen;
 			}
-			available++;
 		}
-		notifyAll();
 	}
 
-	private void waitFreeBuffer() throws IOException {
-		while (available == buffer.length) {
+	/**
+	 * Wait until at least <code>required</code> bytes are free in the buffer.
+	 * 
+	 * @return number of free bytes
+	 */
+	private int waitFree(int required) throws IOException {
+		int free;
+		while ((free = buffer.length - (int) (write - read)) < required) {
 			if (receiverClosed || closed) {
+				if (required == buffer.length) {
+					throw new IOException(closed ? "Stream closed" : "Connection closed");
+				}
 				throw new IOException("Receiver closed");
 			}
-			// Let the read run
-			notifyAll();
+			parkedWriter = Thread.currentThread();
 			try {
-				wait(1000);
-			} catch (InterruptedException e) {
-				throw new InterruptedIOException();
+				if ((buffer.length - (int) (write - read) < required) && (!closed) && (!receiverClosed)) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+					if ((buffer.length - (int) (write - read) < required) && (!closed) && (!receiverClosed)
+							&& Thread.interrupted()) {
+						throw new InterruptedIOException();
+					}
+				}
+			} finally {
+				parkedWriter = null;
 			}
 		}
+		return free;
+	}
+
+	private static void unpark(Thread t) {
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
 	}
 
-	synchronized void receiverClose() throws IOException {
+	void receiverClose() throws IOException {
 		receiverClosed = true;
-		notifyAll();
+		unpark(parkedReader);
+		unpark(parkedWriter);
 	}
 
 	@Override
-	public synchronized void close() throws IOException {
+	public void close() throws IOException {
 		closed = true;
-		notifyAll();
+		unpark(parkedReader);
+		unpark(parkedWriter);
 	}
 }
@@ -29,6 +29,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import com.intel.bluetooth.DebugLog;
+
 /**
  */
 abstract class ConnectionBuffer {
@@ -53,11 +55,17 @@ abstract class ConnectionBuffer {
 
 	protected MonitorConnectionBuffer monitor;
 
+	/**
+	 * Link used to send data to connected ConnectionBuffer.
+	 */
+	protected LinkModel link;
+
 	protected ConnectionBuffer(long remoteAddress, String portID, InputStream is, OutputStream os) {
 		this.remoteAddress = remoteAddress;
 		this.portID = portID;
 		this.is = is;
 		this.os = os;
+		this.link = new LinkModel(os);
 	}
 
 	void connect(ConnectionBuffer pair) {
@@ -93,15 +101,63 @@ abstract class ConnectionBuffer {
 		return false;
 	}
 
-	synchronized void close() throws IOException {
-		closed = true;
-		monitor.closedTimeStamp = System.currentTimeMillis();
+	void close() throws IOException {
+		synchronized (this) {
+			closed = true;
+			monitor.closedTimeStamp = System.currentTimeMillis();
+		}
+		// Pending data is delivered without holding the lock
+		link.close(false);
 		try {
 			os.close();
 		} finally {
-			is.close();
+			try {
+				is.close();
+			} finally {
+				synchronized (this) {
+					this.notifyAll();
+				}
+			}
 		}
-		this.notifyAll();
+	}
+
+	/**
+	 * Emulate lost radio link. Data not delivered is discarded and both sides are closed.
+	 */
+	void breakConnection() {
+		DebugLog.debug("connection dropped", getPortID());
+		link.close(true);
+		if (connected != null) {
+			connected.link.close(true);
+		}
+		try {
+			close();
+		} catch (IOException ignore) {
+		}
+		if (connected != null) {
+			try {
+				connected.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	/**
+	 * Drop the connection on write if configured by LinkModel.
+	 */
+	protected void checkLinkDropped() throws IOException {
+		if (link.isDropped()) {
+			breakConnection();
+			throw new IOException("Connection dropped");
+		}
+	}
+
+	void setLink(LinkModel link) {
+		this.link = link;
+	}
+
+	LinkModel getLink() {
+		return this.link;
 	}
 
 	boolean isServerSide() {
@@ -51,12 +51,17 @@ class ConnectionBufferL2CAP extends ConnectionBuffer {
 		monitor.writeTimeStamp = System.currentTimeMillis();
 		monitor.writeOperations++;
 		monitor.writeBytes += data.length;
+		checkLinkDropped();
+		if (link.isLost()) {
+			monitor.lostPackets++;
+			return;
+		}
 
 		byte[] packet = new byte[data.length + 2];
 		packet[0] = (byte) ((data.length >> 8) & 0xFF);
 		packet[1] = (byte) (0xFF & data.length);
 		System.arraycopy(data, 0, packet, 2, data.length);
-		os.write(packet);
+		link.write(packet);
 	}
 
 	boolean ready() throws IOException {
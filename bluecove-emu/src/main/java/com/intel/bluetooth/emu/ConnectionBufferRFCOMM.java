@@ -42,13 +42,15 @@ class ConnectionBufferRFCOMM extends ConnectionBuffer {
 		monitor.writeTimeStamp = System.currentTimeMillis();
 		monitor.writeOperations++;
 		monitor.writeBytes += b.length;
-		os.write(b);
+		checkLinkDropped();
+		link.write(b);
 	}
 	
 	/**
 	 * Block till client reads all data.
 	 */
 	void rfFlush() throws IOException {
+	    link.drain();
 	    os.flush();
 	}
 
@@ -58,15 +60,27 @@ class ConnectionBufferRFCOMM extends ConnectionBuffer {
 
 	byte[] rfRead(int len) throws IOException {
 		byte[] b = new byte[len];
-		int rc = is.read(b);
+		return received(b, is.read(b));
+	}
+
+	/**
+	 * @return null on EOF, empty array if no data arrived within timeout
+	 */
+	byte[] rfRead(int len, long timeout) throws IOException {
+		byte[] b = new byte[len];
+		return received(b, ((ConnectedInputStream) is).read(b, 0, len, timeout));
+	}
+
+	private byte[] received(byte[] b, int rc) {
 		if (rc == -1) {
 			return null;
 		}
-		monitor.readTimeStamp = System.currentTimeMillis();
-		monitor.readOperations++;
-		monitor.readBytes += rc;
-
-		if (rc == len) {
+		if (rc > 0) {
+			monitor.readTimeStamp = System.currentTimeMillis();
+			monitor.readOperations++;
+			monitor.readBytes += rc;
+		}
+		if (rc == b.length) {
 			return b;
 		} else {
 			byte[] b2 = new byte[rc];
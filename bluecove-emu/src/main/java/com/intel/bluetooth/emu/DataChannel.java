@@ -0,0 +1,183 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Framing used by emulator data channel.
+ * 
+ * RFCOMM and L2CAP payload is streamed over a persistent socket per connection instead of RMI call per read or write.
+ * Connection management stays on DeviceManagerService.
+ * 
+ * Handshake from client: MAGIC, localAddress, connectionId, initial credit. Server replies with byte
+ * <code>0</code> or <code>1</code> followed by error message. Then each frame is a type byte followed by frame
+ * specific data.
+ */
+public abstract class DataChannel {
+
+	public static final int MAGIC = 0xB1C0DA7A;
+
+	/**
+	 * int length and payload. Same as RFCOMM stream bytes or one L2CAP packet.
+	 */
+	public static final byte FRAME_DATA = 1;
+
+	/**
+	 * Client asks server to flush, server replies FRAME_FLUSH_ACK when receiver read all the data.
+	 */
+	public static final byte FRAME_FLUSH = 2;
+
+	public static final byte FRAME_FLUSH_ACK = 3;
+
+	/**
+	 * int, number of bytes the peer consumed and may be sent in addition. Sent in both directions, initial credit
+	 * from handshake applies to both sides.
+	 */
+	public static final byte FRAME_CREDIT = 4;
+
+	/**
+	 * Client will not send more data, server replies FRAME_CLOSE_ACK when all data delivered to the connection.
+	 */
+	public static final byte FRAME_CLOSE = 5;
+
+	public static final byte FRAME_CLOSE_ACK = 6;
+
+	/**
+	 * End of stream on connection.
+	 */
+	public static final byte FRAME_EOF = 7;
+
+	/**
+	 * UTF message of IOException on connection.
+	 */
+	public static final byte FRAME_ERROR = 8;
+
+	/**
+	 * Handshake of command channel socket, followed by frames without server reply.
+	 * 
+	 * @see CommandChannel
+	 */
+	public static final int COMMAND_MAGIC = 0xB1C0C0DE;
+
+	/**
+	 * long address, client asks to push commands of the device to this channel.
+	 */
+	public static final byte FRAME_ATTACH = 9;
+
+	/**
+	 * long address, device released by client.
+	 */
+	public static final byte FRAME_DETACH = 10;
+
+	/**
+	 * Client JVM is alive, sent every keepAliveSeconds.
+	 */
+	public static final byte FRAME_HEARTBEAT = 11;
+
+	/**
+	 * long address, int length and serialized DeviceCommand. Sent by server.
+	 */
+	public static final byte FRAME_COMMAND = 12;
+
+	/**
+	 * Maximum RFCOMM payload sent in one FRAME_DATA, allows control frames between large writes.
+	 */
+	public static final int MAX_FRAME_DATA = 0x4000;
+
+	/**
+	 * L2CAP packet is sent in one FRAME_DATA.
+	 */
+	public static final int MAX_FRAME_LENGTH = 0xFFFF;
+
+	private DataChannel() {
+	}
+
+	/**
+	 * Credit charged for one FRAME_DATA. L2CAP packet larger than the window is charged the whole window, it is sent
+	 * once all credit returned so credit never goes negative.
+	 */
+	public static int creditCost(int length, int window) {
+		return Math.min(length, window);
+	}
+
+	public static void writeData(DataOutputStream out, byte[] b, int off, int len) throws IOException {
+		out.writeByte(FRAME_DATA);
+		out.writeInt(len);
+		out.write(b, off, len);
+	}
+
+	public static byte[] readData(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		if ((len < 0) || (len > MAX_FRAME_LENGTH)) {
+			throw new IOException("Invalid data frame length " + len);
+		}
+		byte[] b = new byte[len];
+		in.readFully(b);
+		return b;
+	}
+
+	public static void writeControl(DataOutputStream out, byte type) throws IOException {
+		out.writeByte(type);
+	}
+
+	public static void writeCredit(DataOutputStream out, int credit) throws IOException {
+		out.writeByte(FRAME_CREDIT);
+		out.writeInt(credit);
+	}
+
+	public static void writeCommand(DataOutputStream out, long address, DeviceCommand command) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(b);
+		oos.writeObject(command);
+		oos.close();
+		out.writeByte(FRAME_COMMAND);
+		out.writeLong(address);
+		out.writeInt(b.size());
+		b.writeTo(out);
+	}
+
+	public static DeviceCommand readCommand(DataInputStream in) throws IOException {
+		byte[] b = readData(in);
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(b));
+		try {
+			return (DeviceCommand) ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	public static void writeError(DataOutputStream out, String message) throws IOException {
+		out.writeByte(FRAME_ERROR);
+		out.writeUTF((message == null) ? "" : message);
+	}
+}
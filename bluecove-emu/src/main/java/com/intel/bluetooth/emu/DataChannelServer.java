@@ -0,0 +1,442 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedList;
+
+import com.intel.bluetooth.DebugLog;
+
+/**
+ * Accepts emulator data channel sockets.
+ * 
+ * @see DataChannel
+ */
+class DataChannelServer extends Thread {
+
+	private static DataChannelServer server;
+
+	private final ServerSocket serverSocket;
+
+	private volatile boolean stopped = false;
+
+	private DataChannelServer(ServerSocket serverSocket) {
+		super("EmulatorDataChannelServer");
+		this.serverSocket = serverSocket;
+	}
+
+	/**
+	 * Start the server if not running.
+	 * 
+	 * @return listening port
+	 */
+	static synchronized int getPort() throws IOException {
+		if (server == null) {
+			ServerSocket serverSocket = new ServerSocket(DeviceManagerServiceImpl.configuration.getDataChannelPort());
+			server = new DataChannelServer(serverSocket);
+			server.setDaemon(true);
+			server.start();
+			DebugLog.debug("Emulator data channel listening on port", serverSocket.getLocalPort());
+		}
+		return server.serverSocket.getLocalPort();
+	}
+
+	static synchronized void shutdown() {
+		if (server != null) {
+			server.stopped = true;
+			try {
+				server.serverSocket.close();
+			} catch (IOException ignore) {
+			}
+			server = null;
+		}
+	}
+
+	public void run() {
+		while (!stopped) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if (!stopped) {
+					DebugLog.error("data channel accept error", e);
+				}
+				break;
+			}
+			try {
+				socket.setTcpNoDelay(true);
+				DataChannelConnection c = new DataChannelConnection(socket);
+				c.setDaemon(true);
+				c.start();
+			} catch (IOException e) {
+				DebugLog.debug("data channel open error", e);
+				try {
+					socket.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reader thread takes frames from socket and queue them, this thread delivers queued data to ConnectionBuffer and
+	 * returns credit to client. Pump thread sends the data from ConnectionBuffer to socket.
+	 */
+	private static class DataChannelConnection extends Thread {
+
+		/**
+		 * Control frames are queued as marker arrays compared by identity.
+		 */
+		private static final byte[] FLUSH_MARK = new byte[0];
+
+		private static final byte[] CLOSE_MARK = new byte[0];
+
+		private final Socket socket;
+
+		private final DataInputStream in;
+
+		private final DataOutputStream out;
+
+		private ConnectionBuffer connection;
+
+		private boolean l2cap;
+
+		private int credit;
+
+		private int window;
+
+		private final Object creditLock = new Object();
+
+		private final LinkedList<byte[]> queue = new LinkedList<byte[]>();
+
+		private volatile boolean closed = false;
+
+		DataChannelConnection(Socket socket) throws IOException {
+			super("EmulatorDataChannel");
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		private boolean handshake() throws IOException {
+			long localAddress = in.readLong();
+			long connectionId = in.readLong();
+			credit = in.readInt();
+			window = credit;
+			String error = null;
+			Device device = DeviceManagerServiceImpl.getDevice(localAddress);
+			if (device == null) {
+				error = "No such device";
+			} else {
+				connection = device.getConnectionBuffer(connectionId);
+				if (connection == null) {
+					error = "No such connection " + connectionId;
+				}
+			}
+			synchronized (out) {
+				if (error != null) {
+					out.writeByte(1);
+					out.writeUTF(error);
+				} else {
+					out.writeByte(0);
+				}
+				out.flush();
+			}
+			if (error != null) {
+				return false;
+			}
+			l2cap = (connection instanceof ConnectionBufferL2CAP);
+			setName("EmulatorDataChannel-" + connectionId);
+			return true;
+		}
+
+		public void run() {
+			try {
+				int magic = in.readInt();
+				if (magic == DataChannel.COMMAND_MAGIC) {
+					setName("EmulatorCommandChannel");
+					serveCommands();
+					return;
+				}
+				if ((magic != DataChannel.MAGIC) || (!handshake())) {
+					return;
+				}
+				Thread pump = new Thread(new Runnable() {
+					public void run() {
+						pump();
+					}
+				}, getName() + "-pump");
+				pump.setDaemon(true);
+				pump.start();
+				Thread reader = new Thread(new Runnable() {
+					public void run() {
+						receive();
+					}
+				}, getName() + "-reader");
+				reader.setDaemon(true);
+				reader.start();
+				deliver();
+			} catch (IOException e) {
+				if (!closed) {
+					DebugLog.debug("data channel error", e);
+				}
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * One socket for all devices of client JVM. Commands are written by the thread calling Device.putCommand,
+		 * this thread only reads client frames.
+		 */
+		private void serveCommands() throws IOException {
+			CommandChannel channel = new CommandChannel(new DeviceCommandListener() {
+				public void deviceCommand(long address, DeviceCommand command) {
+					try {
+						synchronized (out) {
+							DataChannel.writeCommand(out, address, command);
+							out.flush();
+						}
+					} catch (IOException e) {
+						throw new RuntimeException(e.getMessage());
+					}
+				}
+			}, true);
+			try {
+				while (!closed) {
+					byte type = in.readByte();
+					switch (type) {
+					case DataChannel.FRAME_ATTACH:
+						long address = in.readLong();
+						if (!channel.attach(address)) {
+							DebugLog.debug("command channel, no such device", address);
+						}
+						break;
+					case DataChannel.FRAME_DETACH:
+						channel.detach(in.readLong());
+						break;
+					case DataChannel.FRAME_HEARTBEAT:
+						channel.heartbeat();
+						break;
+					default:
+						throw new IOException("Unexpected frame " + type);
+					}
+				}
+			} catch (EOFException e) {
+				// Client JVM closed the channel
+			} finally {
+				channel.close();
+			}
+		}
+
+		private void enqueue(byte[] frame) {
+			synchronized (queue) {
+				queue.addLast(frame);
+				queue.notifyAll();
+			}
+		}
+
+		private void receive() {
+			try {
+				while (!closed) {
+					byte type = in.readByte();
+					switch (type) {
+					case DataChannel.FRAME_DATA:
+						enqueue(DataChannel.readData(in));
+						break;
+					case DataChannel.FRAME_FLUSH:
+						enqueue(FLUSH_MARK);
+						break;
+					case DataChannel.FRAME_CLOSE:
+						enqueue(CLOSE_MARK);
+						return;
+					case DataChannel.FRAME_CREDIT:
+						int more = in.readInt();
+						synchronized (creditLock) {
+							credit = Math.min(credit + more, window);
+							creditLock.notifyAll();
+						}
+						break;
+					default:
+						throw new IOException("Unexpected frame " + type);
+					}
+				}
+			} catch (IOException e) {
+				if (!closed) {
+					DebugLog.debug("data channel error", e);
+				}
+				close();
+			}
+		}
+
+		private void deliver() throws IOException {
+			boolean failed = false;
+			while (true) {
+				byte[] b;
+				synchronized (queue) {
+					while (queue.isEmpty() && (!closed)) {
+						try {
+							queue.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					if (closed) {
+						return;
+					}
+					b = queue.removeFirst();
+				}
+				if (b == CLOSE_MARK) {
+					sendControl(DataChannel.FRAME_CLOSE_ACK);
+					return;
+				} else if (b == FLUSH_MARK) {
+					if (!failed) {
+						try {
+							((ConnectionBufferRFCOMM) connection).rfFlush();
+						} catch (IOException e) {
+							failed = true;
+							sendError(e);
+						}
+					}
+					sendControl(DataChannel.FRAME_FLUSH_ACK);
+					continue;
+				}
+				if (!failed) {
+					try {
+						if (l2cap) {
+							((ConnectionBufferL2CAP) connection).send(b);
+						} else {
+							((ConnectionBufferRFCOMM) connection).rfWrite(b);
+						}
+					} catch (IOException e) {
+						failed = true;
+						sendError(e);
+					}
+				}
+				synchronized (out) {
+					DataChannel.writeCredit(out, DataChannel.creditCost(b.length, window));
+					out.flush();
+				}
+			}
+		}
+
+		private void pump() {
+			try {
+				while (!closed) {
+					int len;
+					synchronized (creditLock) {
+						while ((credit <= 0) && (!closed)) {
+							try {
+								creditLock.wait();
+							} catch (InterruptedException e) {
+								return;
+							}
+						}
+						len = Math.min(credit, DataChannel.MAX_FRAME_DATA);
+					}
+					if (closed) {
+						return;
+					}
+					byte[] b;
+					if (l2cap) {
+						b = ((ConnectionBufferL2CAP) connection).receive(DataChannel.MAX_FRAME_LENGTH);
+					} else {
+						b = ((ConnectionBufferRFCOMM) connection).rfRead(len);
+					}
+					if (b == null) {
+						sendControl(DataChannel.FRAME_EOF);
+						return;
+					}
+					int cost = DataChannel.creditCost(b.length, window);
+					synchronized (creditLock) {
+						while ((credit < cost) && (!closed)) {
+							try {
+								creditLock.wait();
+							} catch (InterruptedException e) {
+								return;
+							}
+						}
+						if (closed) {
+							return;
+						}
+						credit -= cost;
+					}
+					synchronized (out) {
+						DataChannel.writeData(out, b, 0, b.length);
+						out.flush();
+					}
+				}
+			} catch (EOFException e) {
+				try {
+					sendControl(DataChannel.FRAME_EOF);
+				} catch (IOException ignore) {
+				}
+			} catch (IOException e) {
+				if (!closed) {
+					try {
+						sendError(e);
+					} catch (IOException ignore) {
+					}
+				}
+			}
+		}
+
+		private void sendControl(byte type) throws IOException {
+			synchronized (out) {
+				DataChannel.writeControl(out, type);
+				out.flush();
+			}
+		}
+
+		private void sendError(IOException e) throws IOException {
+			synchronized (out) {
+				DataChannel.writeError(out, e.getMessage());
+				out.flush();
+			}
+		}
+
+		private void close() {
+			closed = true;
+			synchronized (creditLock) {
+				creditLock.notifyAll();
+			}
+			synchronized (queue) {
+				queue.notifyAll();
+			}
+			try {
+				socket.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+}
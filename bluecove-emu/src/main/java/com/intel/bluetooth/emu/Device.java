@@ -60,6 +60,10 @@ class Device {
 
 	private long lastEvent = System.currentTimeMillis();
 
+	private volatile CommandChannel commandChannel;
+
+	private boolean sendingCommands;
+
 	Device(DeviceDescriptor descriptor) {
 		this.descriptor = descriptor;
 		this.serviceListeners = new Vector<ServiceListener>();
@@ -212,9 +216,52 @@ class Device {
 		synchronized (commandQueue) {
 			commandQueue.add(command);
 			commandQueue.notifyAll();
+			if ((commandChannel == null) || sendingCommands) {
+				return;
+			}
+			sendingCommands = true;
+		}
+		sendCommands();
+	}
+
+	/**
+	 * Commands are written to the channel outside the commandQueue lock, one thread at a time to keep the order.
+	 */
+	private void sendCommands() {
+		while (true) {
+			CommandChannel channel;
+			DeviceCommand command;
+			synchronized (commandQueue) {
+				channel = commandChannel;
+				command = (channel == null) ? null : commandQueue.poll();
+				if (command == null) {
+					sendingCommands = false;
+					return;
+				}
+			}
+			channel.send(descriptor.getAddress(), command);
 		}
 	}
 
+	/**
+	 * Commands are pushed to the channel instead of pollCommand(), liveness of device is defined by the channel.
+	 */
+	void setCommandChannel(CommandChannel channel) {
+		synchronized (commandQueue) {
+			this.commandChannel = channel;
+			commandQueue.notifyAll();
+			if (channel == null) {
+				lastEvent = System.currentTimeMillis();
+				return;
+			}
+			if (sendingCommands || commandQueue.isEmpty()) {
+				return;
+			}
+			sendingCommands = true;
+		}
+		sendCommands();
+	}
+
 	DeviceCommand pollCommand() {
 		lastEvent = System.currentTimeMillis();
 		DeviceCommand command = null;
@@ -238,6 +285,10 @@ class Device {
 	}
 
 	boolean isAlive() {
+		CommandChannel channel = commandChannel;
+		if (channel != null) {
+			return channel.isAlive();
+		}
 		return System.currentTimeMillis() < (lastEvent + (DeviceManagerServiceImpl.configuration.getKeepAliveSeconds() + 7) * 1000);
 	}
 
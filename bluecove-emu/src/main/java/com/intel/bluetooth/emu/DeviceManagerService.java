@@ -108,9 +108,20 @@ public interface DeviceManagerService /* extends RoHService */{
 
 	public byte[] rfRead(long localAddress, long connectionId, int len) throws IOException;
 
+	/**
+	 * @return null on EOF, empty array if no data arrived within timeout
+	 */
+	public byte[] rfRead(long localAddress, long connectionId, int len, long timeout) throws IOException;
+
 	public boolean l2Ready(long localAddress, long connectionId) throws IOException;
 
 	public byte[] l2Receive(long localAddress, long connectionId, int len) throws IOException;
 
 	public void l2Send(long localAddress, long connectionId, byte[] data) throws IOException;
+
+	/**
+	 * @return port of socket used to stream RFCOMM and L2CAP data, 0 if not available
+	 * @see DataChannel
+	 */
+	public int getDataChannelPort() throws IOException;
 }
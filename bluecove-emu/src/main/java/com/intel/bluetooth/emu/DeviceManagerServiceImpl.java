@@ -26,11 +26,11 @@
 package com.intel.bluetooth.emu;
 
 import java.io.IOException;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.bluetooth.BluetoothConnectionException;
 import javax.bluetooth.BluetoothStateException;
@@ -46,7 +46,10 @@ public class DeviceManagerServiceImpl implements DeviceManagerService {
 
 	static final EmulatorConfiguration configuration;
 
-	private static Map<Long, Device> devices = new Hashtable<Long, Device>();
+	/**
+	 * Lookups and inquiry are not blocked, creation of devices is synchronized on the map.
+	 */
+	private static ConcurrentHashMap<Long, Device> devices = new ConcurrentHashMap<Long, Device>();
 
 	static {
 		configuration = new EmulatorConfiguration();
@@ -64,6 +67,7 @@ public class DeviceManagerServiceImpl implements DeviceManagerService {
 			}
 			devices.clear();
 		}
+		DataChannelServer.shutdown();
 	}
 
 	public DeviceDescriptor createNewDevice(String deviceID, String deviceAddress) throws BluetoothStateException {
@@ -113,17 +117,21 @@ public class DeviceManagerServiceImpl implements DeviceManagerService {
 	}
 
 	static Device getDevice(long address) {
-		Device d = ((Device) devices.get(new Long(address)));
+		Long key = new Long(address);
+		Device d = devices.get(key);
 		if ((d != null) && (!d.isAlive())) {
-			synchronized (devices) {
-				devices.remove(new Long(address));
-			}
-			d.died();
+			removeDied(key, d);
 			return null;
 		}
 		return d;
 	}
 
+	private static void removeDied(Long key, Device device) {
+		if (devices.remove(key, device)) {
+			device.died();
+		}
+	}
+
 	private Device getActiveDevice(long address) {
 		Device d = getDevice(address);
 		if ((d != null) && (!d.getDescriptor().isPoweredOn())) {
@@ -151,37 +159,33 @@ public class DeviceManagerServiceImpl implements DeviceManagerService {
 
 	public static List<MonitorDevice> getMonitorDevices() {
 		Vector<MonitorDevice> monitorDevices = new Vector<MonitorDevice>();
-		synchronized (devices) {
-			for (Iterator<Device> iterator = devices.values().iterator(); iterator.hasNext();) {
-				Device device = iterator.next();
-				if (!device.isAlive()) {
-					iterator.remove();
-					device.died();
-					continue;
-				}
-				isDiscoverable(device.getDescriptor());
-				monitorDevices.add(new MonitorDevice(device));
+		for (Iterator<Map.Entry<Long, Device>> iterator = devices.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Long, Device> entry = iterator.next();
+			Device device = entry.getValue();
+			if (!device.isAlive()) {
+				removeDied(entry.getKey(), device);
+				continue;
 			}
+			isDiscoverable(device.getDescriptor());
+			monitorDevices.add(new MonitorDevice(device));
 		}
 		return monitorDevices;
 	}
 
 	public DeviceDescriptor[] getDiscoveredDevices(long address) {
 		Vector<DeviceDescriptor> discoveredDevice = new Vector<DeviceDescriptor>();
-		synchronized (devices) {
-			for (Iterator<Device> iterator = devices.values().iterator(); iterator.hasNext();) {
-				Device device = iterator.next();
-				if (!device.isAlive()) {
-					iterator.remove();
-					device.died();
-					continue;
-				}
-				if (device.getDescriptor().getAddress() == address) {
-					continue;
-				}
-				if (isDiscoverable(device.getDescriptor())) {
-					discoveredDevice.addElement(device.getDescriptor());
-				}
+		for (Iterator<Map.Entry<Long, Device>> iterator = devices.entrySet().iterator(); iterator.hasNext();) {
+			Map.Entry<Long, Device> entry = iterator.next();
+			Device device = entry.getValue();
+			if (!device.isAlive()) {
+				removeDied(entry.getKey(), device);
+				continue;
+			}
+			if (device.getDescriptor().getAddress() == address) {
+				continue;
+			}
+			if (isDiscoverable(device.getDescriptor())) {
+				discoveredDevice.addElement(device.getDescriptor());
 			}
 		}
 		return (DeviceDescriptor[]) discoveredDevice.toArray(new DeviceDescriptor[discoveredDevice.size()]);
@@ -452,6 +456,10 @@ public class DeviceManagerServiceImpl implements DeviceManagerService {
 		return ((ConnectionBufferRFCOMM) getConnectionBuffer(localAddress, connectionId)).rfRead(len);
 	}
 
+	public byte[] rfRead(long localAddress, long connectionId, int len, long timeout) throws IOException {
+		return ((ConnectionBufferRFCOMM) getConnectionBuffer(localAddress, connectionId)).rfRead(len, timeout);
+	}
+
 	public void closeConnection(long localAddress, long connectionId) throws IOException {
 		Device localDevice = getDevice(localAddress);
 		if (localDevice == null) {
@@ -483,4 +491,11 @@ public class DeviceManagerServiceImpl implements DeviceManagerService {
 	public void l2Send(long localAddress, long connectionId, byte[] data) throws IOException {
 		((ConnectionBufferL2CAP) getConnectionBuffer(localAddress, connectionId)).send(data);
 	}
+
+	public int getDataChannelPort() throws IOException {
+		if (!configuration.isDataChannel()) {
+			return 0;
+		}
+		return DataChannelServer.getPort();
+	}
 }
@@ -25,21 +25,27 @@
  */
 package com.intel.bluetooth.emu;
 
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.intel.bluetooth.DebugLog;
 import com.intel.bluetooth.RemoteDeviceHelper;
 
 /**
- * 
+ * Service records of one device. UUID index maps each UUID to handles of services that have it, search is done on
+ * the shortest list of handles.
  */
 class DeviceSDP {
 
 	private long address;
 
-	private Hashtable<Long, ServicesDescriptor> services = new Hashtable<Long, ServicesDescriptor>();
+	private Map<Long, ServicesDescriptor> services = new ConcurrentHashMap<Long, ServicesDescriptor>();
+
+	private Map<String, Map<Long, Boolean>> uuidIndex = new ConcurrentHashMap<String, Map<Long, Boolean>>();
 
 	DeviceSDP(long address) {
 		this.address = address;
@@ -47,55 +53,90 @@ class DeviceSDP {
 
 	synchronized void updateServiceRecord(long handle, ServicesDescriptor sdpData) {
 		Long key = new Long(handle);
-		boolean update = (services.get(key) != null);
-		services.put(key, sdpData);
-
+		ServicesDescriptor previous = services.put(key, sdpData);
+		boolean update = (previous != null);
+		if (update) {
+			unindex(key, previous);
+		}
 		String[] serviceUuidSet = sdpData.getUuidSet();
 		for (int i = 0; i < serviceUuidSet.length; i++) {
-			DebugLog.debug((update ? "Update" : "Create") + " Srv on "
-					+ RemoteDeviceHelper.getBluetoothAddress(address) + " " + handle + " " + i + " "
-					+ serviceUuidSet[i]);
+			Map<Long, Boolean> handles = uuidIndex.get(serviceUuidSet[i]);
+			if (handles == null) {
+				handles = new ConcurrentHashMap<Long, Boolean>();
+				uuidIndex.put(serviceUuidSet[i], handles);
+			}
+			handles.put(key, Boolean.TRUE);
+			if (DebugLog.isDebugEnabled()) {
+				DebugLog.debugFormat("{} Srv on {} {} {}", update ? "Update" : "Create", RemoteDeviceHelper
+						.getBluetoothAddress(address), key, serviceUuidSet[i]);
+			}
 		}
 	}
 
 	synchronized void removeServiceRecord(long handle) {
-		ServicesDescriptor srv = (ServicesDescriptor) services.remove(new Long(handle));
+		Long key = new Long(handle);
+		ServicesDescriptor srv = services.remove(key);
 		if (srv != null) {
-			DebugLog.debug("Remove Srv on " + RemoteDeviceHelper.getBluetoothAddress(address) + " " + handle);
+			unindex(key, srv);
+			if (DebugLog.isDebugEnabled()) {
+				DebugLog.debugFormat("Remove Srv on {} {}", RemoteDeviceHelper.getBluetoothAddress(address), key);
+			}
 		}
 	}
 
-	ServicesDescriptor getServicesDescriptor(long handle) {
-		return (ServicesDescriptor) services.get(new Long(handle));
+	private void unindex(Long key, ServicesDescriptor srv) {
+		String[] serviceUuidSet = srv.getUuidSet();
+		for (int i = 0; i < serviceUuidSet.length; i++) {
+			Map<Long, Boolean> handles = uuidIndex.get(serviceUuidSet[i]);
+			if (handles != null) {
+				handles.remove(key);
+				if (handles.isEmpty()) {
+					uuidIndex.remove(serviceUuidSet[i]);
+				}
+			}
+		}
 	}
 
-	synchronized long[] searchServices(String[] uuidSet) {
-		Vector<Long> handles = new Vector<Long>();
+	ServicesDescriptor getServicesDescriptor(long handle) {
+		return services.get(new Long(handle));
+	}
 
-		for (Enumeration<Long> iterator = services.keys(); iterator.hasMoreElements();) {
-			Long key = (Long) iterator.nextElement();
-			ServicesDescriptor service = (ServicesDescriptor) services.get(key);
-			String[] serviceUuidSet = service.getUuidSet();
-			// No duplicate values in any set!
-			int match = 0;
-			for (int i = 0; i < serviceUuidSet.length; i++) {
-				for (int k = 0; k < uuidSet.length; k++) {
-					if (uuidSet[k].equals(serviceUuidSet[i])) {
-						match++;
-						break;
-					}
+	/**
+	 * @return handles of services that have all UUIDs from uuidSet
+	 */
+	long[] searchServices(String[] uuidSet) {
+		Collection<Long> candidates;
+		Map<Long, Boolean> shortest = null;
+		if (uuidSet.length == 0) {
+			candidates = services.keySet();
+		} else {
+			for (int k = 0; k < uuidSet.length; k++) {
+				Map<Long, Boolean> handles = uuidIndex.get(uuidSet[k]);
+				if (handles == null) {
+					return new long[0];
+				}
+				if ((shortest == null) || (handles.size() < shortest.size())) {
+					shortest = handles;
 				}
 			}
-			if (match == uuidSet.length) {
-				handles.addElement(key);
+			candidates = shortest.keySet();
+		}
+		Vector<Long> found = new Vector<Long>();
+		candidatesLoop: for (Iterator<Long> iterator = candidates.iterator(); iterator.hasNext();) {
+			Long key = iterator.next();
+			for (int k = 0; k < uuidSet.length; k++) {
+				Map<Long, Boolean> handles = uuidIndex.get(uuidSet[k]);
+				if ((handles != shortest) && ((handles == null) || (!handles.containsKey(key)))) {
+					continue candidatesLoop;
+				}
 			}
+			found.addElement(key);
 		}
-
-		long[] h = new long[handles.size()];
-		int i = 0;
-		for (Enumeration<Long> e = handles.elements(); e.hasMoreElements();) {
-			h[i++] = ((Long) e.nextElement()).intValue();
+		long[] h = new long[found.size()];
+		for (int i = 0; i < h.length; i++) {
+			h[i] = found.elementAt(i).longValue();
 		}
+		Arrays.sort(h);
 		return h;
 	}
 }
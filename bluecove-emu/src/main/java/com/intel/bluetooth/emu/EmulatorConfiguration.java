@@ -81,6 +81,52 @@ public class EmulatorConfiguration implements Serializable {
 	 */
 	public static final String deviceClass = "deviceClass";
 
+	/**
+	 * Emulated radio link bandwidth in bytes per second for data sent by device. Defaults to <code>0</code>, no
+	 * limit. Link parameters can be defined for all devices or for each device. <br/>
+	 * Example
+	 * 
+	 * <pre>
+	 * # Slow device, 1 Mbit/s and 20 msec latency
+	 * 0B1000000001.linkBandwidth=131072
+	 * 0B1000000001.linkLatency=20
+	 * # Busy air for all devices
+	 * linkJitter=10
+	 * linkPacketLoss=2
+	 * 
+	 * <pre>
+	 * Can be changed for each connection at runtime using MonitoringService.
+	 */
+	public static final String linkBandwidth = "linkBandwidth";
+
+	/**
+	 * Emulated radio link delay of data delivery in milliseconds.
+	 * 
+	 * @see linkBandwidth
+	 */
+	public static final String linkLatency = "linkLatency";
+
+	/**
+	 * Random delay in milliseconds added to linkLatency, data is still delivered in order.
+	 * 
+	 * @see linkBandwidth
+	 */
+	public static final String linkJitter = "linkJitter";
+
+	/**
+	 * Percentage of L2CAP packets lost by emulated radio link.
+	 * 
+	 * @see linkBandwidth
+	 */
+	public static final String linkPacketLoss = "linkPacketLoss";
+
+	/**
+	 * Percentage of RFCOMM and L2CAP writes that break the connection.
+	 * 
+	 * @see linkBandwidth
+	 */
+	public static final String linkDropRate = "linkDropRate";
+
 	/**
 	 * Defaults to '0B1000000000'.
 	 */
@@ -134,6 +180,23 @@ public class EmulatorConfiguration implements Serializable {
 	 */
 	protected int keepAliveSeconds = 5;
 
+	/**
+	 * Stream RFCOMM and L2CAP data over a socket per connection when emulator server is accessed using RMI. Defaults
+	 * to <code>true</code>.
+	 */
+	protected boolean dataChannel = true;
+
+	/**
+	 * Push commands to all devices of client JVM using one channel instead of polling server by each device. Over RMI
+	 * the channel uses data channel port. Defaults to <code>true</code>.
+	 */
+	protected boolean commandChannel = true;
+
+	/**
+	 * Data channel listening port. Defaults to <code>0</code>, any free port.
+	 */
+	protected int dataChannelPort = 0;
+
 	private Map<String, String> propertiesMap;
 
 	public EmulatorConfiguration() {
@@ -331,4 +394,16 @@ public class EmulatorConfiguration implements Serializable {
 	public boolean isSenderFlushBlock() {
 		return this.senderFlushBlock;
 	}
+
+	public boolean isDataChannel() {
+		return this.dataChannel;
+	}
+
+	public boolean isCommandChannel() {
+		return this.commandChannel;
+	}
+
+	public int getDataChannelPort() {
+		return this.dataChannelPort;
+	}
 }
@@ -0,0 +1,350 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Michael Lifshits
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Random;
+
+import com.intel.bluetooth.DebugLog;
+
+/**
+ * Radio link between emulated devices in one direction.
+ * 
+ * Bandwidth is limited by token bucket, sender is blocked when the bucket is empty. Data is delivered to receiver
+ * after latency plus random jitter, the order of delivered data is preserved. L2CAP packets can be lost and
+ * connection can be dropped on write with given probability. Link without limits writes directly to receiver.
+ * 
+ * Parameters can be changed at runtime.
+ */
+class LinkModel {
+
+	/**
+	 * Bucket size as time of transmission at configured bandwidth.
+	 */
+	private static final int BURST_MSEC = 100;
+
+	private static int threadNumber;
+
+	private static synchronized int nextThreadNum() {
+		return threadNumber++;
+	}
+
+	private final OutputStream os;
+
+	private final Random random = new Random();
+
+	/**
+	 * Bytes per second, 0 for no limit.
+	 */
+	private int bandwidth;
+
+	private int latency;
+
+	private int jitter;
+
+	/**
+	 * Percentage of lost L2CAP packets.
+	 */
+	private int packetLoss;
+
+	/**
+	 * Percentage of writes that break the connection.
+	 */
+	private int dropRate;
+
+	private double tokens;
+
+	private long tokensTimeStamp;
+
+	/**
+	 * Data waiting for delivery, in order of delivery time.
+	 */
+	private final LinkedList<Packet> queue = new LinkedList<Packet>();
+
+	private long lastDeliveryTime;
+
+	private Thread deliveryThread;
+
+	private IOException deliveryException;
+
+	private boolean closed;
+
+	private static class Packet {
+
+		final byte[] data;
+
+		final long deliveryTime;
+
+		Packet(byte[] data, long deliveryTime) {
+			this.data = data;
+			this.deliveryTime = deliveryTime;
+		}
+	}
+
+	LinkModel(OutputStream os) {
+		this.os = os;
+	}
+
+	/**
+	 * Creates the link with parameters configured for sending device.
+	 */
+	static LinkModel create(OutputStream os, EmulatorConfiguration configuration, long senderAddress) {
+		LinkModel link = new LinkModel(os);
+		link.setParameters(getInt(configuration, senderAddress, EmulatorConfiguration.linkBandwidth), getInt(
+				configuration, senderAddress, EmulatorConfiguration.linkLatency), getInt(configuration, senderAddress,
+				EmulatorConfiguration.linkJitter), getInt(configuration, senderAddress,
+				EmulatorConfiguration.linkPacketLoss), getInt(configuration, senderAddress,
+				EmulatorConfiguration.linkDropRate));
+		return link;
+	}
+
+	private static int getInt(EmulatorConfiguration configuration, long address, String property) {
+		String value = configuration.getProperty(address, property);
+		if (value == null) {
+			return 0;
+		}
+		try {
+			return EmulatorConfiguration.valueToInt(value);
+		} catch (NumberFormatException e) {
+			DebugLog.error("Invalid " + property + " " + value);
+			return 0;
+		}
+	}
+
+	synchronized void setParameters(int bandwidth, int latency, int jitter, int packetLoss, int dropRate) {
+		this.bandwidth = Math.max(0, bandwidth);
+		this.latency = Math.max(0, latency);
+		this.jitter = Math.max(0, jitter);
+		this.packetLoss = Math.max(0, Math.min(100, packetLoss));
+		this.dropRate = Math.max(0, Math.min(100, dropRate));
+		this.tokens = 0;
+		this.tokensTimeStamp = System.currentTimeMillis();
+	}
+
+	synchronized void setLatency(int latency) {
+		this.latency = Math.max(0, latency);
+	}
+
+	synchronized int getBandwidth() {
+		return bandwidth;
+	}
+
+	synchronized int getLatency() {
+		return latency;
+	}
+
+	synchronized int getJitter() {
+		return jitter;
+	}
+
+	synchronized int getPacketLoss() {
+		return packetLoss;
+	}
+
+	synchronized int getDropRate() {
+		return dropRate;
+	}
+
+	/**
+	 * @return true if the connection should be dropped on this write
+	 */
+	synchronized boolean isDropped() {
+		return (dropRate > 0) && (random.nextInt(100) < dropRate);
+	}
+
+	/**
+	 * @return true if the packet is lost
+	 */
+	synchronized boolean isLost() {
+		return (packetLoss > 0) && (random.nextInt(100) < packetLoss);
+	}
+
+	/**
+	 * Send data to receiver after bandwidth and latency delays.
+	 */
+	void write(byte[] data) throws IOException {
+		synchronized (this) {
+			if (deliveryException != null) {
+				throw deliveryException;
+			}
+		}
+		acquireTokens(data.length);
+		long delay;
+		synchronized (this) {
+			// Delivery of earlier data may have failed while waiting for tokens
+			if (deliveryException != null) {
+				throw deliveryException;
+			}
+			delay = latency;
+			if (jitter > 0) {
+				delay += random.nextInt(jitter + 1);
+			}
+			if ((delay != 0) || !queue.isEmpty()) {
+				// Keep the order, data can't overtake data sent before
+				long deliveryTime = Math.max(System.currentTimeMillis() + delay, lastDeliveryTime);
+				lastDeliveryTime = deliveryTime;
+				queue.addLast(new Packet(data, deliveryTime));
+				startDelivery();
+				notifyAll();
+				return;
+			}
+		}
+		os.write(data);
+	}
+
+	/**
+	 * Token bucket, tokens are bytes. Bucket may go into debt for large writes, the sender waits till it is repaid.
+	 */
+	private void acquireTokens(int len) throws IOException {
+		long wait;
+		synchronized (this) {
+			if (bandwidth <= 0) {
+				return;
+			}
+			long now = System.currentTimeMillis();
+			double burst = Math.max(1, (double) bandwidth * BURST_MSEC / 1000);
+			tokens = Math.min(burst, tokens + (double) (now - tokensTimeStamp) * bandwidth / 1000);
+			tokensTimeStamp = now;
+			tokens -= len;
+			if (tokens >= 0) {
+				return;
+			}
+			wait = (long) Math.ceil(-tokens * 1000 / bandwidth);
+		}
+		try {
+			Thread.sleep(wait);
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+	}
+
+	private void startDelivery() {
+		if (deliveryThread != null) {
+			return;
+		}
+		deliveryThread = new Thread(new Runnable() {
+			public void run() {
+				deliver();
+			}
+		}, "EmuLinkDelivery-" + nextThreadNum());
+		deliveryThread.setDaemon(true);
+		deliveryThread.start();
+	}
+
+	private void deliver() {
+		while (true) {
+			Packet packet;
+			synchronized (this) {
+				while (true) {
+					if (queue.isEmpty()) {
+						if (closed) {
+							deliveryThread = null;
+							return;
+						}
+						try {
+							wait();
+						} catch (InterruptedException e) {
+							deliveryThread = null;
+							return;
+						}
+						continue;
+					}
+					long timeout = queue.getFirst().deliveryTime - System.currentTimeMillis();
+					if (timeout <= 0) {
+						break;
+					}
+					try {
+						wait(timeout);
+					} catch (InterruptedException e) {
+						deliveryThread = null;
+						return;
+					}
+				}
+				packet = queue.getFirst();
+			}
+			try {
+				os.write(packet.data);
+			} catch (IOException e) {
+				synchronized (this) {
+					deliveryException = e;
+					queue.clear();
+					notifyAll();
+				}
+				continue;
+			}
+			synchronized (this) {
+				queue.removeFirst();
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Wait till all data is delivered to receiver.
+	 */
+	synchronized void drain() throws IOException {
+		while (!queue.isEmpty()) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+		}
+		if (deliveryException != null) {
+			throw deliveryException;
+		}
+	}
+
+	/**
+	 * Deliver pending data and stop delivery thread.
+	 * 
+	 * @param discard
+	 *            data not yet delivered is lost
+	 */
+	synchronized void close(boolean discard) {
+		closed = true;
+		if (discard) {
+			queue.clear();
+		}
+		notifyAll();
+		// Don't hang when receiver does not read the data
+		long end = System.currentTimeMillis() + latency + jitter + 1000;
+		while ((!queue.isEmpty()) && (deliveryThread != null)) {
+			long timeout = end - System.currentTimeMillis();
+			if (timeout <= 0) {
+				break;
+			}
+			try {
+				wait(timeout);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+}
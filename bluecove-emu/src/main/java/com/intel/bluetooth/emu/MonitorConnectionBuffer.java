@@ -40,6 +40,8 @@ public class MonitorConnectionBuffer implements MonitorItem {
 
 	long writeOperations;
 
+	long lostPackets;
+
 	long closedTimeStamp;
 
 	long readTimeStamp;
@@ -62,6 +64,13 @@ public class MonitorConnectionBuffer implements MonitorItem {
 		return writeOperations;
 	}
 
+	/**
+	 * L2CAP packets lost by emulated link.
+	 */
+	public long getLostPackets() {
+		return lostPackets;
+	}
+
 	public long getClosedTimeStamp() {
 		return closedTimeStamp;
 	}
@@ -48,6 +48,14 @@ public interface MonitoringService {
 
 	public void connectionDellayDelivery(long address, long connectionId, int msecDelay);
 
+	/**
+	 * Change the emulated link used by device to send data on the connection.
+	 * 
+	 * @see EmulatorConfiguration#linkBandwidth
+	 */
+	public void setConnectionLink(long address, long connectionId, int bandwidth, int latency, int jitter,
+			int packetLoss, int dropRate);
+
 	public void connectionBreak(long address, long connectionId);
 
 }
@@ -91,12 +91,34 @@ public class MonitoringServiceImpl implements MonitoringService {
 		}
 	}
 
+	private ConnectionBuffer getConnectionBuffer(long address, long connectionId) {
+		Device d = DeviceManagerServiceImpl.getDevice(address);
+		if (d == null) {
+			return null;
+		}
+		return d.getConnectionBuffer(connectionId);
+	}
+
 	public void connectionDellayDelivery(long address, long connectionId, int msecDelay) {
-		// TODO
+		ConnectionBuffer c = getConnectionBuffer(address, connectionId);
+		if (c != null) {
+			c.getLink().setLatency(msecDelay);
+		}
+	}
+
+	public void setConnectionLink(long address, long connectionId, int bandwidth, int latency, int jitter,
+			int packetLoss, int dropRate) {
+		ConnectionBuffer c = getConnectionBuffer(address, connectionId);
+		if (c != null) {
+			c.getLink().setParameters(bandwidth, latency, jitter, packetLoss, dropRate);
+		}
 	}
 
 	public void connectionBreak(long address, long connectionId) {
-		// TODO
+		ConnectionBuffer c = getConnectionBuffer(address, connectionId);
+		if (c != null) {
+			c.breakConnection();
+		}
 	}
 
 }
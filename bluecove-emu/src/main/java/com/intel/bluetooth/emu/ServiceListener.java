@@ -132,6 +132,10 @@ class ServiceListener {
 						cilentReceiveMTU);
 			}
 			cb.connect(sb);
+			cb.setLink(LinkModel.create(cos, DeviceManagerServiceImpl.configuration, clientDevice.getDescriptor()
+					.getAddress()));
+			sb.setLink(LinkModel.create(sos, DeviceManagerServiceImpl.configuration, serverDevice.getDescriptor()
+					.getAddress()));
 			cb.setSecurityOpt(securityOpt);
 			sb.setSecurityOpt(securityOpt);
 
@@ -177,12 +181,11 @@ class ServiceListener {
 			clientDevice.addConnectionBuffer(id, cb);
 			clientConnected = true;
 
-			StringBuffer logMsg = new StringBuffer();
-			logMsg.append(RemoteDeviceHelper.getBluetoothAddress(clientDevice.getDescriptor().getAddress()));
-			logMsg.append(" connected to ");
-			logMsg.append(RemoteDeviceHelper.getBluetoothAddress(serverDevice.getDescriptor().getAddress()));
-			logMsg.append(" ").append(this.getPortID());
-			DebugLog.debug(logMsg.toString());
+			if (DebugLog.isDebugEnabled()) {
+				DebugLog.debugFormat("{} connected to {} {}", RemoteDeviceHelper.getBluetoothAddress(clientDevice
+						.getDescriptor().getAddress()), RemoteDeviceHelper.getBluetoothAddress(serverDevice
+						.getDescriptor().getAddress()), this.getPortID());
+			}
 
 			return id;
 		} finally {
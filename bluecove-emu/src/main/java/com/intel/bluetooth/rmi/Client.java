@@ -37,7 +37,9 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Client {
 
@@ -47,6 +49,10 @@ public class Client {
 
 	private static RemoteService remoteService;
 
+	private static String remoteServiceHost;
+
+	private static Map<Method, Integer> methodIds = new ConcurrentHashMap<Method, Integer>();
+
 	private static class ServiceProxy implements InvocationHandler {
 
 		private AccessControlContext accessControlContext;
@@ -56,13 +62,12 @@ public class Client {
 		}
 
 		public Object invoke(Object proxy, final Method m, Object[] args) throws Throwable {
-			final ServiceRequest request = new ServiceRequest(m.getDeclaringClass().getCanonicalName(), m.getName(), m
-					.getParameterTypes(), args);
+			final Object[] parameters = args;
 			ServiceResponse response;
 			try {
 				response = AccessController.doPrivileged(new PrivilegedExceptionAction<ServiceResponse>() {
 					public ServiceResponse run() throws RuntimeException {
-						return execute(request, m);
+						return execute(new ServiceRequest(getMethodId(m), parameters));
 					}
 				}, accessControlContext);
 			} catch (PrivilegedActionException e) {
@@ -139,7 +144,22 @@ public class Client {
 		return Proxy.newProxyInstance(interfaceClass.getClassLoader(), allInterfaces, new ServiceProxy());
 	}
 
-	private static ServiceResponse execute(ServiceRequest request, Method method) throws RuntimeException {
+	private static int getMethodId(Method m) throws RuntimeException {
+		Integer id = methodIds.get(m);
+		if (id == null) {
+			try {
+				id = Integer.valueOf(remoteService.resolve(m.getDeclaringClass().getCanonicalName(), m.getName(), m
+						.getParameterTypes()));
+			} catch (RemoteException e) {
+				Throwable t = (e.getCause() != null) ? e.getCause() : e;
+				throw new RuntimeException(getRemoteExceptionMessage(e), t);
+			}
+			methodIds.put(m, id);
+		}
+		return id.intValue();
+	}
+
+	private static ServiceResponse execute(ServiceRequest request) throws RuntimeException {
 		try {
 			return remoteService.execute(request);
 		} catch (RemoteException e) {
@@ -162,7 +182,31 @@ public class Client {
 			return new RemoteServiceImpl();
 		} else {
 			Registry registry = LocateRegistry.getRegistry(rmiHost, rmiPort);
-			return (RemoteService) registry.lookup(RemoteService.SERVICE_NAME);
+			RemoteService service = (RemoteService) registry.lookup(RemoteService.SERVICE_NAME);
+			remoteServiceHost = rmiHost;
+			return service;
 		}
 	}
+
+	/**
+	 * Remote service method calls statistics collected by emulator server.
+	 */
+	public static List<MethodStatistics> getMethodStatistics() throws RuntimeException {
+		if (remoteService == null) {
+			return RemoteServiceImpl.getStatistics();
+		}
+		try {
+			return remoteService.getMethodStatistics();
+		} catch (RemoteException e) {
+			Throwable t = (e.getCause() != null) ? e.getCause() : e;
+			throw new RuntimeException(getRemoteExceptionMessage(e), t);
+		}
+	}
+
+	/**
+	 * @return host of emulator server or <code>null</code> when in process server is used
+	 */
+	public static String getRemoteServiceHost() {
+		return remoteServiceHost;
+	}
 }
@@ -0,0 +1,148 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.rmi;
+
+import java.io.Serializable;
+
+/**
+ * Call counts and latency histogram of one remote service method.
+ * 
+ * Histogram bucket <code>0</code> counts calls faster than 1 microsecond, bucket <code>i</code> counts calls that took
+ * from 2^(i-1) to 2^i microseconds, last bucket counts all slower calls.
+ */
+public class MethodStatistics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int HISTOGRAM_BUCKETS = 24;
+
+	private String interfaceName;
+
+	private String methodName;
+
+	private long calls;
+
+	private long errors;
+
+	private long totalNanos;
+
+	private long maxNanos;
+
+	private long[] histogram;
+
+	MethodStatistics(String interfaceName, String methodName, long calls, long errors, long totalNanos, long maxNanos,
+			long[] histogram) {
+		this.interfaceName = interfaceName;
+		this.methodName = methodName;
+		this.calls = calls;
+		this.errors = errors;
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.histogram = histogram;
+	}
+
+	static int histogramBucket(long nanos) {
+		long micros = nanos / 1000;
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		if (bucket >= HISTOGRAM_BUCKETS) {
+			bucket = HISTOGRAM_BUCKETS - 1;
+		}
+		return bucket;
+	}
+
+	/**
+	 * @return upper bound of histogram bucket in microseconds, <code>Long.MAX_VALUE</code> for last bucket
+	 */
+	public static long getHistogramBucketLimit(int bucket) {
+		if (bucket >= HISTOGRAM_BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		return 1L << bucket;
+	}
+
+	public String getInterfaceName() {
+		return interfaceName;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * @return number of calls that ended with exception
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getAverageMicros() {
+		if (calls == 0) {
+			return 0;
+		}
+		return totalNanos / calls / 1000;
+	}
+
+	public long[] getHistogram() {
+		return histogram;
+	}
+
+	public String toString() {
+		StringBuffer buf = new StringBuffer();
+		buf.append(methodName).append(" calls ").append(calls);
+		if (errors != 0) {
+			buf.append(" errors ").append(errors);
+		}
+		buf.append(" avg ").append(getAverageMicros()).append("us");
+		buf.append(" max ").append(maxNanos / 1000).append("us");
+		buf.append(" histogram");
+		for (int i = 0; i < histogram.length; i++) {
+			if (histogram[i] == 0) {
+				continue;
+			}
+			long limit = getHistogramBucketLimit(i);
+			buf.append(' ');
+			if (limit == Long.MAX_VALUE) {
+				buf.append(">=").append(getHistogramBucketLimit(i - 1));
+			} else {
+				buf.append('<').append(limit);
+			}
+			buf.append("us:").append(histogram[i]);
+		}
+		return buf.toString();
+	}
+}
@@ -27,6 +27,7 @@ package com.intel.bluetooth.rmi;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 interface RemoteService extends Remote {
 
@@ -34,6 +35,15 @@ interface RemoteService extends Remote {
 
 	public boolean verify(String interfaceName) throws RemoteException;
 
+	/**
+	 * Find method implementation once, the id is used in ServiceRequest for all the calls.
+	 * 
+	 * @return method id
+	 */
+	public int resolve(String interfaceName, String methodName, Class<?>[] parameterTypes) throws RemoteException;
+
 	public ServiceResponse execute(ServiceRequest request) throws RemoteException;
 
+	public List<MethodStatistics> getMethodStatistics() throws RemoteException;
+
 }
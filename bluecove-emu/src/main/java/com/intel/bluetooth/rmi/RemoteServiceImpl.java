@@ -29,52 +29,166 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.rmi.RemoteException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 class RemoteServiceImpl implements RemoteService {
 
 	private static final long serialVersionUID = 1L;
 
-	private Map<String, Class<?>> cash = new HashMap<String, Class<?>>();
+	/**
+	 * Service implementation instances by interface name, created once.
+	 */
+	private static Map<String, Object> services = new HashMap<String, Object>();
+
+	private static Map<String, Integer> methodIds = new HashMap<String, Integer>();
+
+	/**
+	 * Indexed by method id, replaced on resolve and read without locking.
+	 */
+	private static volatile MethodEntry[] dispatch = new MethodEntry[0];
+
+	private static class MethodEntry {
+
+		final String interfaceName;
+
+		final Method method;
+
+		final Object service;
+
+		final AtomicLong calls = new AtomicLong();
+
+		final AtomicLong errors = new AtomicLong();
+
+		final AtomicLong totalNanos = new AtomicLong();
+
+		final AtomicLong maxNanos = new AtomicLong();
+
+		final AtomicLongArray histogram = new AtomicLongArray(MethodStatistics.HISTOGRAM_BUCKETS);
+
+		MethodEntry(String interfaceName, Method method, Object service) {
+			this.interfaceName = interfaceName;
+			this.method = method;
+			this.service = service;
+		}
+
+		void record(long nanos, boolean error) {
+			calls.incrementAndGet();
+			if (error) {
+				errors.incrementAndGet();
+			}
+			totalNanos.addAndGet(nanos);
+			long max;
+			while (nanos > (max = maxNanos.get())) {
+				if (maxNanos.compareAndSet(max, nanos)) {
+					break;
+				}
+			}
+			histogram.incrementAndGet(MethodStatistics.histogramBucket(nanos));
+		}
+
+		MethodStatistics getStatistics() {
+			long[] h = new long[histogram.length()];
+			for (int i = 0; i < h.length; i++) {
+				h[i] = histogram.get(i);
+			}
+			return new MethodStatistics(interfaceName, method.getName(), calls.get(), errors.get(), totalNanos.get(),
+					maxNanos.get(), h);
+		}
+	}
 
 	public RemoteServiceImpl() throws RemoteException {
 	}
 
-	private Class<?> getClassByInterfaceName(String interfaceName) throws ClassNotFoundException {
-		Class<?> c;
-		synchronized (cash) {
-			c = cash.get(interfaceName);
-			if (c == null) {
-				c = Class.forName(interfaceName + "Impl");
-				cash.put(interfaceName, c);
+	private static Object getServiceByInterfaceName(String interfaceName) throws Exception {
+		synchronized (services) {
+			Object service = services.get(interfaceName);
+			if (service == null) {
+				service = Class.forName(interfaceName + "Impl").newInstance();
+				services.put(interfaceName, service);
 			}
+			return service;
 		}
-		return c;
 	}
 
 	public boolean verify(String interfaceName) throws RemoteException {
 		try {
-			getClassByInterfaceName(interfaceName);
+			getServiceByInterfaceName(interfaceName);
 		} catch (Throwable e) {
 			throw new RemoteException("Service for " + interfaceName + " not ready", e);
 		}
 		return true;
 	}
 
-	public ServiceResponse execute(ServiceRequest request) {
-		try {
-			Class<?> c = getClassByInterfaceName(request.getClassName());
-			Method m = c.getDeclaredMethod(request.getMethodName(), request.getParameterTypes());
-			ServiceResponse response = new ServiceResponse();
+	public int resolve(String interfaceName, String methodName, Class<?>[] parameterTypes) throws RemoteException {
+		StringBuffer key = new StringBuffer();
+		key.append(interfaceName).append('.').append(methodName).append('(');
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i != 0) {
+				key.append(',');
+			}
+			key.append(parameterTypes[i].getName());
+		}
+		key.append(')');
+		synchronized (services) {
+			Integer id = methodIds.get(key.toString());
+			if (id != null) {
+				return id.intValue();
+			}
 			try {
-				response.setReturnValue(m.invoke(c.newInstance(), request.getParameters()));
-			} catch (InvocationTargetException e) {
-				response.setException(e.getTargetException());
+				Object service = getServiceByInterfaceName(interfaceName);
+				Method m = service.getClass().getMethod(methodName, parameterTypes);
+				m.setAccessible(true);
+				MethodEntry[] table = new MethodEntry[dispatch.length + 1];
+				System.arraycopy(dispatch, 0, table, 0, dispatch.length);
+				table[dispatch.length] = new MethodEntry(interfaceName, m, service);
+				id = Integer.valueOf(dispatch.length);
+				dispatch = table;
+				methodIds.put(key.toString(), id);
+				return id.intValue();
+			} catch (Throwable e) {
+				throw new RemoteException("Service method " + key + " not found", e);
 			}
-			return response;
+		}
+	}
+
+	public ServiceResponse execute(ServiceRequest request) {
+		MethodEntry[] table = dispatch;
+		int id = request.getMethodId();
+		if ((id < 0) || (id >= table.length)) {
+			return new ServiceResponse(new IllegalArgumentException("Unknown method id " + id));
+		}
+		MethodEntry entry = table[id];
+		ServiceResponse response = new ServiceResponse();
+		long start = System.nanoTime();
+		boolean error = true;
+		try {
+			response.setReturnValue(entry.method.invoke(entry.service, request.getParameters()));
+			error = false;
+		} catch (InvocationTargetException e) {
+			response.setException(e.getTargetException());
 		} catch (Throwable e) {
-			return new ServiceResponse(e);
+			response.setException(e);
+		} finally {
+			entry.record(System.nanoTime() - start, error);
+		}
+		return response;
+	}
+
+	public List<MethodStatistics> getMethodStatistics() {
+		return getStatistics();
+	}
+
+	static List<MethodStatistics> getStatistics() {
+		MethodEntry[] table = dispatch;
+		List<MethodStatistics> r = new Vector<MethodStatistics>();
+		for (int i = 0; i < table.length; i++) {
+			r.add(table[i].getStatistics());
 		}
+		return r;
 	}
 
 }
@@ -29,54 +29,28 @@ import java.io.Serializable;
 
 class ServiceRequest implements Serializable {
 
-	private static final long serialVersionUID = 1L;
+	private static final long serialVersionUID = 2L;
 
-	private String className;
-
-	private String methodName;
-
-	private Class<?>[] parameterTypes;
+	private int methodId;
 
 	private Object[] parameters;
 
-	public ServiceRequest(String className, String methodName, Class<?>[] parameterTypes, Object[] parameters) {
+	/**
+	 * @param methodId
+	 *            id returned by RemoteService.resolve
+	 */
+	public ServiceRequest(int methodId, Object[] parameters) {
 		super();
-		this.className = className;
-		this.methodName = methodName;
-		this.parameterTypes = parameterTypes;
+		this.methodId = methodId;
 		this.parameters = parameters;
 	}
 
-	public String getClassName() {
-		return className;
-	}
-
-	public void setClassName(String className) {
-		this.className = className;
-	}
-
-	public String getMethodName() {
-		return methodName;
-	}
-
-	public void setMethodName(String methodName) {
-		this.methodName = methodName;
-	}
-
-	public Class<?>[] getParameterTypes() {
-		return parameterTypes;
-	}
-
-	public void setParameterTypes(Class<?>[] parameterTypes) {
-		this.parameterTypes = parameterTypes;
+	public int getMethodId() {
+		return methodId;
 	}
 
 	public Object[] getParameters() {
 		return parameters;
 	}
 
-	public void setParameters(Object[] parameters) {
-		this.parameters = parameters;
-	}
-
 }
@@ -0,0 +1,135 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import junit.framework.TestCase;
+
+import com.intel.bluetooth.emu.DataChannel;
+
+/**
+ * Credit accounting of data channel client against scripted server.
+ */
+public class EmulatorDataChannelTest extends TestCase {
+
+	private static final int WINDOW = 100;
+
+	private ServerSocket serverSocket;
+
+	private Socket peer;
+
+	private DataInputStream in;
+
+	private DataOutputStream out;
+
+	private EmulatorDataChannel channel;
+
+	protected void tearDown() throws Exception {
+		if (peer != null) {
+			peer.close();
+		}
+		if (channel != null) {
+			channel.close();
+		}
+		if (serverSocket != null) {
+			serverSocket.close();
+		}
+		super.tearDown();
+	}
+
+	private void open(boolean l2cap) throws Exception {
+		serverSocket = new ServerSocket(0);
+		Thread accept = new Thread() {
+			public void run() {
+				try {
+					peer = serverSocket.accept();
+					in = new DataInputStream(peer.getInputStream());
+					out = new DataOutputStream(peer.getOutputStream());
+					assertEquals("magic", DataChannel.MAGIC, in.readInt());
+					in.readLong();
+					in.readLong();
+					assertEquals("window", WINDOW, in.readInt());
+					out.writeByte(0);
+					out.flush();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		accept.start();
+		channel = new EmulatorDataChannel("localhost", serverSocket.getLocalPort(), 1, 2, l2cap, WINDOW, false, 100);
+		accept.join();
+	}
+
+	private int readDataFrame() throws Exception {
+		assertEquals("frame", DataChannel.FRAME_DATA, in.readByte());
+		return DataChannel.readData(in).length;
+	}
+
+	private void sendCredit(int credit) throws Exception {
+		DataChannel.writeCredit(out, credit);
+		out.flush();
+	}
+
+	private void assertSendCredit(int expected) throws Exception {
+		long end = System.currentTimeMillis() + 5000;
+		while ((channel.getSendCredit() != expected) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		assertEquals("send credit", expected, channel.getSendCredit());
+	}
+
+	public void testRFCOMMWriteSplitByCredit() throws Exception {
+		open(false);
+		channel.write(new byte[250], 0, 250);
+		assertEquals("first frame", WINDOW, readDataFrame());
+		assertSendCredit(0);
+		sendCredit(WINDOW);
+		assertEquals("second frame", WINDOW, readDataFrame());
+		assertSendCredit(0);
+		sendCredit(WINDOW);
+		assertEquals("last frame", 50, readDataFrame());
+		assertSendCredit(WINDOW - 50);
+		sendCredit(1000);
+		assertSendCredit(WINDOW);
+	}
+
+	public void testL2CAPPacketLargerThanWindow() throws Exception {
+		open(true);
+		channel.send(new byte[300]);
+		assertEquals("packet", 300, readDataFrame());
+		assertSendCredit(0);
+		sendCredit(WINDOW);
+		assertSendCredit(WINDOW);
+		channel.send(new byte[10]);
+		assertEquals("packet", 10, readDataFrame());
+		assertSendCredit(WINDOW - 10);
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Michael Lifshits
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import java.util.List;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ */
+public class CommandChannelTest extends TestCase {
+
+	private DeviceManagerServiceImpl deviceManager;
+
+	private List<DeviceCommand> received = new Vector<DeviceCommand>();
+
+	private List<Long> receivedAddresses = new Vector<Long>();
+
+	private DeviceCommandListener listener = new DeviceCommandListener() {
+		public void deviceCommand(long address, DeviceCommand command) {
+			receivedAddresses.add(new Long(address));
+			received.add(command);
+		}
+	};
+
+	public void setUp() throws Exception {
+		deviceManager = new DeviceManagerServiceImpl();
+	}
+
+	public void tearDown() throws Exception {
+		deviceManager.shutdown();
+	}
+
+	public void testPushCommands() throws Exception {
+		long address1 = deviceManager.createNewDevice(null, null).getAddress();
+		long address2 = deviceManager.createNewDevice(null, null).getAddress();
+		// Queued before attach
+		new MonitoringServiceImpl().setDevicePower(address1, false);
+
+		CommandChannel channel = new CommandChannel(listener, false);
+		assertTrue("attach", channel.attach(address1));
+		assertTrue("attach", channel.attach(address2));
+		assertFalse("no such device", channel.attach(address2 + 0x1000));
+		assertEquals("queued command", 1, received.size());
+		assertEquals("queued command", DeviceCommand.DeviceCommandType.chagePowerState, received.get(0).getType());
+
+		new MonitoringServiceImpl().setDevicePower(address2, false);
+		assertEquals("pushed command", 2, received.size());
+		assertEquals("address", new Long(address2), receivedAddresses.get(1));
+
+		channel.detach(address2);
+		new MonitoringServiceImpl().setDevicePower(address2, true);
+		assertEquals("detached", 2, received.size());
+	}
+
+	public void testLiveness() throws Exception {
+		long address = deviceManager.createNewDevice(null, null).getAddress();
+		CommandChannel channel = new CommandChannel(listener, true);
+		channel.attach(address);
+		channel.heartbeat();
+		assertNotNull("alive", DeviceManagerServiceImpl.getDevice(address));
+		channel.close();
+		assertNull("closed channel", DeviceManagerServiceImpl.getDevice(address));
+	}
+
+	public void testBrokenListener() throws Exception {
+		long address = deviceManager.createNewDevice(null, null).getAddress();
+		CommandChannel channel = new CommandChannel(new DeviceCommandListener() {
+			public void deviceCommand(long address, DeviceCommand command) {
+				throw new RuntimeException("broken");
+			}
+		}, false);
+		channel.attach(address);
+		new MonitoringServiceImpl().setDevicePower(address, false);
+		assertTrue("closed", channel.isClosed());
+	}
+
+	public void testSlowListenerDoesNotBlockPut() throws Exception {
+		long address = deviceManager.createNewDevice(null, null).getAddress();
+		final Object lock = new Object();
+		final boolean[] blocked = new boolean[] { true };
+		CommandChannel channel = new CommandChannel(new DeviceCommandListener() {
+			public void deviceCommand(long address, DeviceCommand command) {
+				synchronized (lock) {
+					received.add(command);
+					lock.notifyAll();
+					while (blocked[0]) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+		}, false);
+		channel.attach(address);
+		final Device device = DeviceManagerServiceImpl.getDevice(address);
+		final DeviceCommand first = new DeviceCommand(DeviceCommand.DeviceCommandType.updateLocalDeviceProperties);
+		Thread sender = new Thread() {
+			public void run() {
+				device.putCommand(first);
+			}
+		};
+		sender.start();
+		synchronized (lock) {
+			while (received.isEmpty()) {
+				lock.wait();
+			}
+		}
+		// Listener is still writing the first command
+		device.putCommand(DeviceCommand.keepAliveCommand);
+		assertEquals("queued", 1, received.size());
+		synchronized (lock) {
+			blocked[0] = false;
+			lock.notifyAll();
+		}
+		sender.join(5000);
+		assertEquals("delivered", 2, received.size());
+		assertSame("order", first, received.get(0));
+		assertSame("order", DeviceCommand.keepAliveCommand, received.get(1));
+	}
+}
@@ -98,6 +98,33 @@ public class ConnectedInputStreamTest extends TestCase {
 		assertEquals("EOF expected", -1, is.read());
 	}
 
+	public void testTimedRead() throws Exception {
+		byte rcv[] = new byte[10];
+		assertEquals("no wait", 0, is.read(rcv, 0, rcv.length, 0));
+		long start = System.currentTimeMillis();
+		assertEquals("timeout", 0, is.read(rcv, 0, rcv.length, 50));
+		assertTrue("waited", System.currentTimeMillis() - start >= 50);
+
+		Thread writer = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(50);
+					os.write(new byte[] { 1, 2 });
+				} catch (Exception e) {
+				}
+			}
+		};
+		writer.start();
+		start = System.currentTimeMillis();
+		assertEquals("received", 2, is.read(rcv, 0, rcv.length, 5000));
+		// Reader is woken by the writer, not by the end of the timeout
+		assertTrue("wakeup", System.currentTimeMillis() - start < 1000);
+		writer.join();
+
+		os.close();
+		assertEquals("EOF expected", -1, is.read(rcv, 0, rcv.length, 50));
+	}
+
 	public void testWriteReadMoreThanSize() throws IOException {
 		int size = TEST_BUFFER_SIZE - (TEST_BUFFER_SIZE / 4);
 		for (int i = 0; i < 7; i++) {
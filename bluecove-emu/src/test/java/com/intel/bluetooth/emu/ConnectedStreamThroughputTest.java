@@ -0,0 +1,165 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import com.intel.bluetooth.DebugLog;
+
+/**
+ * Producer and consumer running in separate threads, verify data and measure transfer rate.
+ */
+public class ConnectedStreamThroughputTest extends TestCase {
+
+	final static int BUFFER_SIZE = 1024 * 10;
+
+	final static int TRANSFER_SIZE = 1024 * 1024 * 16;
+
+	ConnectedInputStream is;
+
+	ConnectedOutputStream os;
+
+	private Throwable producerError;
+
+	private void createStreams(boolean senderFlushBlock) {
+		is = new ConnectedInputStream(BUFFER_SIZE, senderFlushBlock);
+		os = new ConnectedOutputStream(is);
+	}
+
+	private Thread startProducer(final int writeSize, final boolean flush) {
+		Thread t = new Thread("ThroughputProducer") {
+			public void run() {
+				try {
+					byte data[] = new byte[writeSize];
+					int sent = 0;
+					while (sent < TRANSFER_SIZE) {
+						int len = Math.min(writeSize, TRANSFER_SIZE - sent);
+						for (int i = 0; i < len; i++) {
+							data[i] = (byte) (sent + i);
+						}
+						os.write(data, 0, len);
+						if (flush) {
+							os.flush();
+						}
+						sent += len;
+					}
+					os.close();
+				} catch (Throwable e) {
+					producerError = e;
+				}
+			}
+		};
+		t.start();
+		return t;
+	}
+
+	private void verifyTransfer(int writeSize, int readSize, boolean flush) throws Exception {
+		Thread producer = startProducer(writeSize, flush);
+		long start = System.currentTimeMillis();
+		byte rcv[] = new byte[readSize];
+		int received = 0;
+		int rc;
+		while ((rc = is.read(rcv)) != -1) {
+			for (int i = 0; i < rc; i++) {
+				if (rcv[i] != (byte) (received + i)) {
+					fail("recieved data at " + (received + i));
+				}
+			}
+			received += rc;
+		}
+		long duration = Math.max(1, System.currentTimeMillis() - start);
+		producer.join();
+		if (producerError != null) {
+			throw new Exception("producer error " + producerError, producerError);
+		}
+		assertEquals("received", TRANSFER_SIZE, received);
+		DebugLog.debug("write " + writeSize + " read " + readSize + " transfer rate KB/s",
+				(TRANSFER_SIZE / 1024) * 1000L / duration);
+	}
+
+	public void testBulkTransfer() throws Exception {
+		createStreams(false);
+		verifyTransfer(4096, 4096, false);
+	}
+
+	public void testSmallWritesLargeReads() throws Exception {
+		createStreams(false);
+		verifyTransfer(17, BUFFER_SIZE * 2, false);
+	}
+
+	public void testLargeWritesSmallReads() throws Exception {
+		createStreams(false);
+		verifyTransfer(BUFFER_SIZE * 3, 100, false);
+	}
+
+	public void testSenderFlushBlock() throws Exception {
+		createStreams(true);
+		verifyTransfer(1000, 333, true);
+	}
+
+	public void testReceiverCloseUnblocksReader() throws Exception {
+		createStreams(false);
+		Thread closer = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(200);
+					os.close();
+				} catch (Throwable e) {
+					producerError = e;
+				}
+			}
+		};
+		closer.start();
+		long start = System.currentTimeMillis();
+		assertEquals("EOF expected", -1, is.read());
+		assertTrue("reader unblocked", System.currentTimeMillis() - start < 1000);
+		closer.join();
+	}
+
+	public void testCloseUnblocksWriter() throws Exception {
+		createStreams(false);
+		os.write(new byte[BUFFER_SIZE]);
+		Thread closer = new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(200);
+					is.close();
+				} catch (Throwable e) {
+					producerError = e;
+				}
+			}
+		};
+		closer.start();
+		try {
+			os.write(1);
+			fail("IOException expected");
+		} catch (IOException e) {
+		}
+		closer.join();
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Michael Lifshits
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ */
+public class DeviceSDPTest extends TestCase {
+
+	private static final String L2CAP = "0100";
+
+	private static final String RFCOMM = "0003";
+
+	private static final String OBEX = "0008";
+
+	private static final String SPP = "1101";
+
+	private static final String OPP = "1105";
+
+	private static ServicesDescriptor service(String[] uuidSet) {
+		return new ServicesDescriptor(uuidSet, new byte[0], 0);
+	}
+
+	private static void assertHandles(String message, long[] expected, long[] actual) {
+		assertEquals(message + " length", expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(message, expected[i], actual[i]);
+		}
+	}
+
+	public void testSearch() {
+		DeviceSDP sdp = new DeviceSDP(1);
+		sdp.updateServiceRecord(0x10001, service(new String[] { L2CAP, RFCOMM, SPP }));
+		sdp.updateServiceRecord(0x10002, service(new String[] { L2CAP, RFCOMM, OBEX, OPP }));
+		sdp.updateServiceRecord(0x1FFFFFFFFL, service(new String[] { L2CAP, RFCOMM, SPP }));
+
+		assertHandles("all", new long[] { 0x10001, 0x10002, 0x1FFFFFFFFL }, sdp.searchServices(new String[] { L2CAP }));
+		assertHandles("empty", new long[] { 0x10001, 0x10002, 0x1FFFFFFFFL }, sdp.searchServices(new String[0]));
+		assertHandles("spp", new long[] { 0x10001, 0x1FFFFFFFFL }, sdp.searchServices(new String[] { SPP, L2CAP }));
+		assertHandles("opp", new long[] { 0x10002 }, sdp.searchServices(new String[] { RFCOMM, OPP }));
+		assertHandles("none", new long[0], sdp.searchServices(new String[] { SPP, OPP }));
+		assertHandles("unknown", new long[0], sdp.searchServices(new String[] { "1234" }));
+	}
+
+	public void testUpdateAndRemove() {
+		DeviceSDP sdp = new DeviceSDP(1);
+		sdp.updateServiceRecord(0x10001, service(new String[] { L2CAP, RFCOMM, SPP }));
+		sdp.updateServiceRecord(0x10001, service(new String[] { L2CAP, RFCOMM, OBEX, OPP }));
+		assertHandles("updated", new long[0], sdp.searchServices(new String[] { SPP }));
+		assertHandles("updated", new long[] { 0x10001 }, sdp.searchServices(new String[] { OPP }));
+		sdp.removeServiceRecord(0x10001);
+		assertHandles("removed", new long[0], sdp.searchServices(new String[] { L2CAP }));
+		assertNull("removed", sdp.getServicesDescriptor(0x10001));
+	}
+}
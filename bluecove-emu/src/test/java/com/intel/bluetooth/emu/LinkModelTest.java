@@ -0,0 +1,119 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Michael Lifshits
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.emu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ */
+public class LinkModelTest extends TestCase {
+
+	public void testPassThrough() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		LinkModel link = new LinkModel(os);
+		link.write(new byte[] { 1, 2, 3 });
+		assertEquals("delivered", 3, os.size());
+		link.close(false);
+	}
+
+	public void testLatencyKeepsOrder() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		LinkModel link = new LinkModel(os);
+		link.setParameters(0, 100, 50, 0, 0);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 20; i++) {
+			link.write(new byte[] { (byte) i });
+		}
+		assertEquals("not delivered yet", 0, os.size());
+		link.drain();
+		assertTrue("latency", System.currentTimeMillis() - start >= 100);
+		byte[] received = os.toByteArray();
+		assertEquals("delivered", 20, received.length);
+		for (int i = 0; i < received.length; i++) {
+			assertEquals("order", i, received[i]);
+		}
+		link.close(false);
+	}
+
+	public void testBandwidth() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		LinkModel link = new LinkModel(os);
+		link.setParameters(10000, 0, 0, 0, 0);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 30; i++) {
+			link.write(new byte[100]);
+		}
+		long time = System.currentTimeMillis() - start;
+		// 3000 bytes at 10000 bytes per second
+		assertTrue("too fast " + time, time >= 250);
+		assertEquals("delivered", 3000, os.size());
+	}
+
+	public void testLossAndDrop() throws Exception {
+		LinkModel link = new LinkModel(new ByteArrayOutputStream());
+		assertFalse("no loss", link.isLost());
+		assertFalse("no drop", link.isDropped());
+		link.setParameters(0, 0, 0, 100, 100);
+		assertTrue("lost", link.isLost());
+		assertTrue("dropped", link.isDropped());
+		link.setParameters(0, 0, 0, 50, 0);
+		int lost = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (link.isLost()) {
+				lost++;
+			}
+		}
+		assertTrue("loss rate " + lost, (lost > 350) && (lost < 650));
+	}
+
+	public void testDeliveryFailureReported() throws Exception {
+		LinkModel link = new LinkModel(new OutputStream() {
+			public void write(int b) throws IOException {
+				throw new IOException("receiver closed");
+			}
+		});
+		link.setParameters(0, 20, 0, 0, 0);
+		link.write(new byte[] { 1 });
+		try {
+			link.drain();
+			fail("drain should fail");
+		} catch (IOException e) {
+		}
+		// Delayed writes after the failure are not queued
+		try {
+			link.write(new byte[] { 2 });
+			fail("write should fail");
+		} catch (IOException e) {
+			assertEquals("receiver closed", e.getMessage());
+		}
+		link.close(true);
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.rmi;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+public class RemoteServiceTest extends TestCase {
+
+	private TestService service;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		service = (TestService) Client.getService(TestService.class, false, null, "0");
+	}
+
+	private MethodStatistics getStatistics(String methodName) {
+		List<MethodStatistics> all = Client.getMethodStatistics();
+		for (Iterator<MethodStatistics> i = all.iterator(); i.hasNext();) {
+			MethodStatistics s = i.next();
+			if (s.getInterfaceName().equals(TestService.class.getName()) && s.getMethodName().equals(methodName)) {
+				return s;
+			}
+		}
+		return null;
+	}
+
+	public void testDispatch() throws Exception {
+		Assert.assertEquals("add", 5, service.add(2, 3));
+		Assert.assertEquals("echo", "BlueCove", service.echo("BlueCove"));
+		Assert.assertNull("echo null", service.echo(null));
+		try {
+			service.fail("expected");
+			Assert.fail("Exception expected");
+		} catch (IOException e) {
+			Assert.assertEquals("message", "expected", e.getMessage());
+		}
+	}
+
+	public void testSingletonService() throws Exception {
+		int first = service.next();
+		Assert.assertEquals("same instance", first + 1, service.next());
+		TestService other = (TestService) Client.getService(TestService.class, false, null, "0");
+		Assert.assertEquals("same instance for new proxy", first + 2, other.next());
+	}
+
+	public void testStatistics() throws Exception {
+		final int calls = 100;
+		for (int i = 0; i < calls; i++) {
+			service.add(i, i);
+		}
+		for (int i = 0; i < 3; i++) {
+			try {
+				service.fail("expected");
+			} catch (IOException e) {
+			}
+		}
+		MethodStatistics add = getStatistics("add");
+		Assert.assertNotNull("add statistics", add);
+		Assert.assertTrue("add calls", add.getCalls() >= calls);
+		Assert.assertEquals("add errors", 0, add.getErrors());
+		long total = 0;
+		long[] histogram = add.getHistogram();
+		Assert.assertEquals("buckets", MethodStatistics.HISTOGRAM_BUCKETS, histogram.length);
+		for (int i = 0; i < histogram.length; i++) {
+			total += histogram[i];
+		}
+		Assert.assertEquals("histogram total", add.getCalls(), total);
+
+		MethodStatistics fail = getStatistics("fail");
+		Assert.assertNotNull("fail statistics", fail);
+		Assert.assertTrue("fail errors", fail.getErrors() >= 3);
+		Assert.assertEquals("fail calls", fail.getCalls(), fail.getErrors());
+	}
+
+	public void testHistogramBucket() {
+		Assert.assertEquals(0, MethodStatistics.histogramBucket(999));
+		Assert.assertEquals(1, MethodStatistics.histogramBucket(1000));
+		Assert.assertEquals(2, MethodStatistics.histogramBucket(2000));
+		Assert.assertEquals(2, MethodStatistics.histogramBucket(3999));
+		Assert.assertEquals(3, MethodStatistics.histogramBucket(4000));
+		Assert.assertEquals(MethodStatistics.HISTOGRAM_BUCKETS - 1, MethodStatistics.histogramBucket(Long.MAX_VALUE));
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package net.sf.bluecove;
+
+import javax.bluetooth.LocalDevice;
+
+import junit.framework.TestCase;
+
+import com.intel.bluetooth.BlueCoveConfigProperties;
+import com.intel.bluetooth.BlueCoveImpl;
+import com.intel.bluetooth.EmulatorTestsHelper;
+
+/**
+ * Emulator accessed over RMI, commands for all devices of the JVM are pushed over one command channel.
+ */
+public class CommandChannelThreadsTest extends TestCase {
+
+	private static final int DEVICES = 10;
+
+	private Thread[] deviceThreads = new Thread[DEVICES];
+
+	private final Object stop = new Object();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_STACK, BlueCoveImpl.STACK_EMULATOR);
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_EMULATOR_PORT, "8093");
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_EMULATOR_RMI_REGISTRY, "true");
+		LocalDevice.getLocalDevice();
+		BlueCoveImpl.useThreadLocalBluetoothStack();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		synchronized (stop) {
+			stop.notifyAll();
+		}
+		for (int i = 0; i < DEVICES; i++) {
+			if (deviceThreads[i] != null) {
+				deviceThreads[i].interrupt();
+				deviceThreads[i].join(5000);
+			}
+		}
+		EmulatorTestsHelper.stopInProcessServer();
+	}
+
+	private static int countThreads(String name) {
+		Thread[] threads = new Thread[Thread.activeCount() + 50];
+		int count = Thread.enumerate(threads);
+		int found = 0;
+		for (int i = 0; i < count; i++) {
+			if (threads[i].getName().startsWith(name)) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	public void testOneChannelForAllDevices() throws Exception {
+		for (int i = 0; i < DEVICES; i++) {
+			deviceThreads[i] = EmulatorTestsHelper.runNewEmulatorStack(new Runnable() {
+				public void run() {
+					synchronized (stop) {
+						try {
+							stop.wait();
+						} catch (InterruptedException e) {
+						}
+					}
+				}
+			});
+		}
+		assertEquals("poll threads", 0, countThreads("BlueCoveEmulatorCommandReceiver"));
+		assertEquals("channel threads", 1, countThreads("BlueCoveEmulatorCommandChannel"));
+		assertTrue("devices alive", LocalDevice.getLocalDevice().getDiscoveryAgent() != null);
+	}
+}
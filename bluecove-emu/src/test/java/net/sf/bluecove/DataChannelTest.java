@@ -0,0 +1,204 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Michael Lifshits
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package net.sf.bluecove;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import javax.bluetooth.DiscoveryAgent;
+import javax.bluetooth.L2CAPConnection;
+import javax.bluetooth.L2CAPConnectionNotifier;
+import javax.bluetooth.LocalDevice;
+import javax.bluetooth.ServiceRecord;
+import javax.bluetooth.UUID;
+import javax.microedition.io.Connector;
+import javax.microedition.io.StreamConnection;
+import javax.microedition.io.StreamConnectionNotifier;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import com.intel.bluetooth.BlueCoveConfigProperties;
+import com.intel.bluetooth.BlueCoveImpl;
+import com.intel.bluetooth.EmulatorTestsHelper;
+
+/**
+ * Emulator accessed over RMI, connection data is streamed using data channel.
+ */
+public class DataChannelTest extends TestCase {
+
+	private static final UUID rfcommUUID = new UUID(0x2109);
+
+	private static final UUID l2capUUID = new UUID(0x210A);
+
+	private static final int TRANSFER_SIZE = 256 * 1024;
+
+	private static final int L2CAP_PACKETS = 200;
+
+	private Thread serverThread;
+
+	private volatile boolean stop = false;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_STACK, BlueCoveImpl.STACK_EMULATOR);
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_EMULATOR_PORT, "8092");
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_EMULATOR_RMI_REGISTRY, "true");
+		LocalDevice.getLocalDevice();
+		BlueCoveImpl.useThreadLocalBluetoothStack();
+		serverThread = EmulatorTestsHelper.runNewEmulatorStack(new EchoServerRunnable());
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		stop = true;
+		if ((serverThread != null) && (serverThread.isAlive())) {
+			serverThread.interrupt();
+			serverThread.join(5000);
+		}
+		EmulatorTestsHelper.stopInProcessServer();
+	}
+
+	private class EchoServerRunnable implements Runnable {
+
+		public void run() {
+			StreamConnectionNotifier rfcommService = null;
+			L2CAPConnectionNotifier l2capService = null;
+			try {
+				rfcommService = (StreamConnectionNotifier) Connector.open("btspp://localhost:" + rfcommUUID
+						+ ";name=RFCOMMEcho");
+				l2capService = (L2CAPConnectionNotifier) Connector.open("btl2cap://localhost:" + l2capUUID
+						+ ";name=L2CAPEcho;ReceiveMTU=672;TransmitMTU=672");
+				StreamConnection conn = rfcommService.acceptAndOpen();
+				InputStream is = conn.openInputStream();
+				OutputStream os = conn.openOutputStream();
+				byte[] buf = new byte[1000];
+				int rc;
+				while ((rc = is.read(buf)) != -1) {
+					os.write(buf, 0, rc);
+					os.flush();
+				}
+				conn.close();
+
+				L2CAPConnection l2conn = l2capService.acceptAndOpen();
+				byte[] packet = new byte[l2conn.getReceiveMTU()];
+				for (int i = 0; i < L2CAP_PACKETS; i++) {
+					int len = l2conn.receive(packet);
+					byte[] reply = new byte[len];
+					System.arraycopy(packet, 0, reply, 0, len);
+					l2conn.send(reply);
+				}
+				l2conn.close();
+			} catch (Throwable e) {
+				if (!stop) {
+					e.printStackTrace();
+				}
+			} finally {
+				try {
+					if (rfcommService != null) {
+						rfcommService.close();
+					}
+					if (l2capService != null) {
+						l2capService.close();
+					}
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	private String findService(UUID uuid) throws Exception {
+		DiscoveryAgent discoveryAgent = LocalDevice.getLocalDevice().getDiscoveryAgent();
+		String serverURL = null;
+		int tryCount = 0;
+		while ((serverURL == null) && (tryCount <= 3)) {
+			if (tryCount > 0) {
+				Thread.sleep(700);
+			}
+			tryCount++;
+			serverURL = discoveryAgent.selectService(uuid, ServiceRecord.NOAUTHENTICATE_NOENCRYPT, false);
+		}
+		Assert.assertNotNull("service not found", serverURL);
+		return serverURL;
+	}
+
+	public void testRFCOMMAndL2CAPEcho() throws Exception {
+		StreamConnection conn = (StreamConnection) Connector.open(findService(rfcommUUID));
+		Assert.assertTrue("data channel", EmulatorTestsHelper.isDataChannelConnection(conn));
+		final OutputStream os = conn.openOutputStream();
+		InputStream is = conn.openInputStream();
+		final Random rnd = new Random();
+		final byte[] data = new byte[TRANSFER_SIZE];
+		rnd.nextBytes(data);
+		Thread writer = new Thread() {
+			public void run() {
+				try {
+					int sent = 0;
+					while (sent < data.length) {
+						int len = Math.min(1 + rnd.nextInt(300), data.length - sent);
+						os.write(data, sent, len);
+						sent += len;
+					}
+					os.flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		writer.start();
+		byte[] buf = new byte[777];
+		int received = 0;
+		while (received < data.length) {
+			int rc = is.read(buf);
+			Assert.assertTrue("EOF at " + received, rc > 0);
+			for (int i = 0; i < rc; i++) {
+				Assert.assertEquals("data at " + (received + i), data[received + i], buf[i]);
+			}
+			received += rc;
+		}
+		writer.join();
+		os.close();
+		is.close();
+		conn.close();
+
+		L2CAPConnection l2conn = (L2CAPConnection) Connector.open(findService(l2capUUID));
+		Assert.assertTrue("L2CAP data channel", EmulatorTestsHelper.isDataChannelConnection(l2conn));
+		byte[] packet = new byte[l2conn.getReceiveMTU()];
+		for (int i = 0; i < L2CAP_PACKETS; i++) {
+			byte[] send = new byte[1 + rnd.nextInt(l2conn.getTransmitMTU())];
+			rnd.nextBytes(send);
+			l2conn.send(send);
+			int len = l2conn.receive(packet);
+			Assert.assertEquals("packet len", send.length, len);
+			for (int k = 0; k < len; k++) {
+				Assert.assertEquals("packet " + i + " data at " + k, send[k], packet[k]);
+			}
+		}
+		l2conn.close();
+	}
+}
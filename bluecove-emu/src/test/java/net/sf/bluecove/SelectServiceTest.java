@@ -0,0 +1,142 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package net.sf.bluecove;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import javax.bluetooth.DiscoveryAgent;
+import javax.bluetooth.LocalDevice;
+import javax.bluetooth.ServiceRecord;
+import javax.bluetooth.UUID;
+import javax.microedition.io.Connector;
+import javax.microedition.io.StreamConnectionNotifier;
+
+import junit.framework.TestCase;
+
+import com.intel.bluetooth.EmulatorTestsHelper;
+
+/**
+ * 
+ */
+public class SelectServiceTest extends TestCase {
+
+	private static final UUID uuid = new UUID(0x2109);
+
+	private static final UUID otherUUID = new UUID(0x210A);
+
+	private Vector serverThreads = new Vector();
+
+	private Vector serverAddresses = new Vector();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		EmulatorTestsHelper.startInProcessServer();
+		EmulatorTestsHelper.useThreadLocalEmulator();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		for (int i = 0; i < serverThreads.size(); i++) {
+			Thread serverThread = (Thread) serverThreads.elementAt(i);
+			if (serverThread.isAlive()) {
+				serverThread.interrupt();
+				serverThread.join();
+			}
+		}
+		EmulatorTestsHelper.stopInProcessServer();
+	}
+
+	private class ServerRunnable implements Runnable {
+
+		private UUID serverUUID;
+
+		private boolean registered = false;
+
+		ServerRunnable(UUID serverUUID) {
+			this.serverUUID = serverUUID;
+		}
+
+		public void run() {
+			StreamConnectionNotifier service = null;
+			try {
+				service = (StreamConnectionNotifier) Connector.open("btspp://localhost:" + serverUUID.toString()
+						+ ";name=TServer");
+				synchronized (this) {
+					serverAddresses.addElement(LocalDevice.getLocalDevice().getBluetoothAddress());
+					registered = true;
+					notifyAll();
+				}
+				service.acceptAndOpen().close();
+			} catch (Throwable e) {
+			} finally {
+				synchronized (this) {
+					registered = true;
+					notifyAll();
+				}
+				if (service != null) {
+					try {
+						service.close();
+					} catch (IOException ignore) {
+					}
+				}
+			}
+		}
+	}
+
+	private String startServer(UUID serverUUID) throws Exception {
+		ServerRunnable r = new ServerRunnable(serverUUID);
+		serverThreads.addElement(EmulatorTestsHelper.runNewEmulatorStack(r));
+		synchronized (r) {
+			while (!r.registered) {
+				r.wait();
+			}
+		}
+		return (String) serverAddresses.lastElement();
+	}
+
+	public void testSelectFromManyDevices() throws Exception {
+		startServer(otherUUID);
+		startServer(otherUUID);
+		String address = startServer(uuid);
+		startServer(otherUUID);
+		DiscoveryAgent discoveryAgent = LocalDevice.getLocalDevice().getDiscoveryAgent();
+		String url = discoveryAgent.selectService(uuid, ServiceRecord.NOAUTHENTICATE_NOENCRYPT, false);
+		assertNotNull("service not found", url);
+		assertTrue("device " + url, url.indexOf(address) != -1);
+
+		// Second time the service is found on known device
+		url = discoveryAgent.selectService(uuid, ServiceRecord.NOAUTHENTICATE_NOENCRYPT, false);
+		assertNotNull("service not found in cached devices", url);
+		assertTrue("cached device " + url, url.indexOf(address) != -1);
+	}
+
+	public void testServiceNotFound() throws Exception {
+		startServer(otherUUID);
+		startServer(otherUUID);
+		DiscoveryAgent discoveryAgent = LocalDevice.getLocalDevice().getDiscoveryAgent();
+		assertNull("service found", discoveryAgent.selectService(uuid, ServiceRecord.NOAUTHENTICATE_NOENCRYPT, false));
+	}
+}
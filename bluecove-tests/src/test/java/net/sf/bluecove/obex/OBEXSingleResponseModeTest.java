@@ -0,0 +1,233 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2008-2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package net.sf.bluecove.obex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.microedition.io.Connector;
+import javax.obex.ClientSession;
+import javax.obex.HeaderSet;
+import javax.obex.Operation;
+import javax.obex.ResponseCodes;
+import javax.obex.ServerRequestHandler;
+import javax.obex.SessionNotifier;
+
+import net.sf.bluecove.TestCaseRunnable;
+
+import com.intel.bluetooth.BlueCoveConfigProperties;
+import com.intel.bluetooth.BlueCoveImpl;
+import com.intel.bluetooth.DebugLog;
+import com.intel.bluetooth.obex.BlueCoveInternals;
+
+/**
+ * Compare Put and Get operations with and without OBEX Single Response Mode.
+ */
+public class OBEXSingleResponseModeTest extends OBEXBaseEmulatorTestCase {
+
+	private static final int TEST_DATA_LENGTH = 0x40000;
+
+	/**
+	 * One client session without and one with SRM
+	 */
+	private static final int SESSIONS_COUNT = 2;
+
+	private byte[] serverData;
+
+	private byte[] testData;
+
+	private int packetSize;
+
+	private class RequestHandler extends ServerRequestHandler {
+
+		@Override
+		public int onPut(Operation op) {
+			try {
+				serverRequestHandlerInvocations++;
+				serverHeaders = op.getReceivedHeaders();
+				InputStream is = op.openInputStream();
+				ByteArrayOutputStream buf = new ByteArrayOutputStream();
+				byte[] b = new byte[0x400];
+				int len;
+				while ((len = is.read(b)) != -1) {
+					buf.write(b, 0, len);
+				}
+				serverData = buf.toByteArray();
+				op.close();
+				return ResponseCodes.OBEX_HTTP_OK;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return ResponseCodes.OBEX_HTTP_UNAVAILABLE;
+			}
+		}
+
+		@Override
+		public int onGet(Operation op) {
+			try {
+				serverRequestHandlerInvocations++;
+				serverHeaders = op.getReceivedHeaders();
+				HeaderSet hs = createHeaderSet();
+				hs.setHeader(HeaderSet.LENGTH, new Long(testData.length));
+				op.sendHeaders(hs);
+				OutputStream os = op.openOutputStream();
+				os.write(testData);
+				os.close();
+				op.close();
+				return ResponseCodes.OBEX_HTTP_OK;
+			} catch (IOException e) {
+				e.printStackTrace();
+				return ResponseCodes.OBEX_HTTP_UNAVAILABLE;
+			}
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		testData = makeTestData(TEST_DATA_LENGTH);
+		serverData = null;
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_OBEX_SRM, null);
+		super.tearDown();
+	}
+
+	@Override
+	protected ServerRequestHandler createRequestHandler() {
+		return new RequestHandler();
+	}
+
+	@Override
+	protected Runnable createTestServer() {
+		return new TestCaseRunnable() {
+			public void execute() throws Exception {
+				BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_OBEX_SRM, "true");
+				SessionNotifier serverConnection = (SessionNotifier) Connector.open("btgoep://localhost:" + serverUUID
+						+ ";name=ObexTest");
+				for (int i = 0; i < SESSIONS_COUNT; i++) {
+					serverConnection.acceptAndOpen(createRequestHandler());
+				}
+			}
+		};
+	}
+
+	private ClientSession openClientSession(boolean srm) throws IOException {
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_OBEX_SRM, srm ? "true" : "false");
+		ClientSession clientSession = (ClientSession) Connector.open(selectService(serverUUID));
+		HeaderSet hsConnectReply = clientSession.connect(null);
+		assertEquals("connect", ResponseCodes.OBEX_HTTP_OK, hsConnectReply.getResponseCode());
+		return clientSession;
+	}
+
+	/**
+	 * @return number of response packets received by client during PUT
+	 */
+	private int runPUTOperation(boolean srm) throws IOException {
+		ClientSession clientSession = openClientSession(srm);
+		int readPacketsConnect = BlueCoveInternals.getPacketsCountRead(clientSession);
+
+		long start = System.currentTimeMillis();
+		HeaderSet hs = clientSession.createHeaderSet();
+		hs.setHeader(HeaderSet.NAME, "Big.bin");
+		Operation putOperation = clientSession.put(hs);
+		OutputStream os = putOperation.openOutputStream();
+		os.write(testData);
+		os.close();
+		int responseCode = putOperation.getResponseCode();
+		putOperation.close();
+		long time = System.currentTimeMillis() - start;
+
+		int readPackets = BlueCoveInternals.getPacketsCountRead(clientSession) - readPacketsConnect;
+		packetSize = BlueCoveInternals.getPacketSize(clientSession);
+		clientSession.disconnect(null);
+		clientSession.close();
+
+		DebugLog.debug("==TEST== PUT SRM " + srm + " time " + time + " ms, read packets", readPackets);
+		assertEquals("ResponseCodes.OBEX_HTTP_OK", ResponseCodes.OBEX_HTTP_OK, responseCode);
+		assertEquals("data", testData, serverData);
+		serverData = null;
+		return readPackets;
+	}
+
+	/**
+	 * @return number of request packets sent by client during GET
+	 */
+	private int runGETOperation(boolean srm) throws IOException {
+		ClientSession clientSession = openClientSession(srm);
+		int writePacketsConnect = BlueCoveInternals.getPacketsCountWrite(clientSession);
+
+		long start = System.currentTimeMillis();
+		HeaderSet hs = clientSession.createHeaderSet();
+		hs.setHeader(HeaderSet.NAME, "Big.bin");
+		Operation getOperation = clientSession.get(hs);
+		InputStream is = getOperation.openInputStream();
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		byte[] b = new byte[0x400];
+		int len;
+		while ((len = is.read(b)) != -1) {
+			buf.write(b, 0, len);
+		}
+		is.close();
+		int responseCode = getOperation.getResponseCode();
+		getOperation.close();
+		long time = System.currentTimeMillis() - start;
+
+		int writePackets = BlueCoveInternals.getPacketsCountWrite(clientSession) - writePacketsConnect;
+		packetSize = BlueCoveInternals.getPacketSize(clientSession);
+		clientSession.disconnect(null);
+		clientSession.close();
+
+		DebugLog.debug("==TEST== GET SRM " + srm + " time " + time + " ms, write packets", writePackets);
+		assertEquals("ResponseCodes.OBEX_HTTP_OK", ResponseCodes.OBEX_HTTP_OK, responseCode);
+		assertEquals("data", testData, buf.toByteArray());
+		return writePackets;
+	}
+
+	public void testPUTOperation() throws IOException {
+		int packetsStandard = runPUTOperation(false);
+		// Response to each PUT packet
+		assertTrue("responses without SRM " + packetsStandard, packetsStandard >= TEST_DATA_LENGTH / packetSize);
+		int packetsSRM = runPUTOperation(true);
+		// CONTINUE enabling SRM and final SUCCESS
+		assertEquals("responses with SRM", 2, packetsSRM);
+		assertEquals("invocations", SESSIONS_COUNT, serverRequestHandlerInvocations);
+		assertServerErrors();
+	}
+
+	public void testGETOperation() throws IOException {
+		int packetsStandard = runGETOperation(false);
+		// GET request for each response packet
+		assertTrue("requests without SRM " + packetsStandard, packetsStandard >= TEST_DATA_LENGTH / packetSize);
+		int packetsSRM = runGETOperation(true);
+		// Just GET_FINAL with SRM request
+		assertEquals("requests with SRM", 1, packetsSRM);
+		assertEquals("invocations", SESSIONS_COUNT, serverRequestHandlerInvocations);
+		assertServerErrors();
+	}
+}
@@ -53,6 +53,33 @@ public interface BlueCoveConfigProperties {
      */
     public static final String PROPERTY_DEBUG_LOG4J = "bluecove.debug.log4j";
 
+    /**
+     * Print source code location of each debug message printed to
+     * System.out. Requires stack walk for each message, you can disable this
+     * feature. Initialization property.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_DEBUG_LOCATION = "bluecove.debug.location";
+
+    /**
+     * Deliver log messages to System.out and log4j in background thread so
+     * logging threads don't wait for output. Messages over the queue size are
+     * dropped and the count is reported. Default is false. Initialization
+     * property.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_DEBUG_ASYNC = "bluecove.debug.async";
+
+    /**
+     * Log messages queue size for "bluecove.debug.async". Default is 10000.
+     * Initialization property.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_DEBUG_ASYNC_QUEUE = "bluecove.debug.async.queue";
+
     /**
      * If automatic Bluetooth Stack detection is not enough this can be used to
      * force desired Stack Initialization. Values "widcomm", "bluesoleil" or
@@ -82,6 +109,19 @@ public interface BlueCoveConfigProperties {
      */
     public static final String PROPERTY_NATIVE_PATH = "bluecove.native.path";
 
+    /**
+     * "false" to extract native library from resources to new temporary
+     * directory on each start. By default library is extracted once to
+     * `${java.io.tmpdir}/bluecove_${user.name}_cache/${checksum}` and reused
+     * by following starts. The cache is used only when it is accessible by
+     * its owner only and the owner can be verified (Java 7 or later).
+     * Older builds of the same library are removed from the cache.
+     * Initialization property.
+     *
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_NATIVE_CACHE = "bluecove.native.cache";
+
     /**
      * Linux implementation class. Initialization property.
      */
@@ -157,16 +197,54 @@ public interface BlueCoveConfigProperties {
 
     /**
      * Set true to make Device Inquiry call DiscoveryListener?.deviceDiscovered
-     * without waiting for updated service class. WIDCOMM only.
+     * without waiting for updated service class. WIDCOMM and BlueZ only. On
+     * BlueZ the device is reported without waiting for its friendly name, the
+     * name is updated in RemoteDevice when resolved.
      */
     public static final String PROPERTY_INQUIRY_REPORT_ASAP = "bluecove.inquiry.report_asap";
 
+    /**
+     * Maximum number of RemoteDevice instances kept by BlueCove for each
+     * stack. When exceeded the least recently seen devices without open
+     * connections are removed, DiscoveryAgent.retrieveDevices(CACHED) will not
+     * return them. Use 0 for no limit. Default is 1024.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_REMOTE_DEVICES_CACHE_SIZE = "bluecove.remote_devices.cache.size";
+
+    /**
+     * How device inquiry, service search and timer tasks are executed. 'pool'
+     * reusable daemon threads (default), 'thread' new thread for each task,
+     * 'virtual' virtual thread for each task when supported by JVM.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_THREADS = "bluecove.threads";
+
+    /**
+     * Maximum number of idle threads kept for reuse by 'pool' threads.
+     * Default is 8.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_THREADS_POOL_SIZE = "bluecove.threads.pool_size";
+
     /**
      * You can increase OBEX transfer speed by changing mtu to bigger value.
      * Default is 1024
      */
     public static final String PROPERTY_OBEX_MTU = "bluecove.obex.mtu";
 
+    /**
+     * Negotiate OBEX packet size using transport maximum: 0x7FFF for RFCOMM,
+     * 0xFFFF for TCP. Property "bluecove.obex.mtu" is ignored when enabled.
+     * Default is false.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_OBEX_MTU_ADAPTIVE = "bluecove.obex.mtu_adaptive";
+
     /**
      * The amount of time in milliseconds for which the implementation will
      * attempt to successfully transmit a packet before it throws
@@ -174,6 +252,86 @@ public interface BlueCoveConfigProperties {
      */
     public static final String PROPERTY_OBEX_TIMEOUT = "bluecove.obex.timeout";
 
+    /**
+     * Enable OBEX Single Response Mode (SRM) for Put and Get operations. When
+     * both sides agree on SRM the packets are streamed without waiting for
+     * response to each one. Default to 'false' since older implementations
+     * reject SRM headers.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_OBEX_SRM = "bluecove.obex.srm";
+
+    /**
+     * How OBEX server sessions returned by SessionNotifier.acceptAndOpen are
+     * executed. 'thread' new daemon thread for each session (default),
+     * 'virtual' virtual thread for each session when supported by JVM, 'pool'
+     * bounded pool of reusable threads. Class name implementing
+     * com.intel.bluetooth.obex.OBEXServerSessionExecutor can also be used.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_OBEX_SERVER_EXECUTOR = "bluecove.obex.server.executor";
+
+    /**
+     * Maximum number of OBEX server sessions running at the same time for one
+     * SessionNotifier. Default is 0, no limit; 16 for 'pool' executor.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_OBEX_SERVER_MAX_SESSIONS = "bluecove.obex.server.max_sessions";
+
+    /**
+     * Number of accepted OBEX server sessions that can wait for running session
+     * to end when max_sessions is reached. When the queue is full
+     * acceptAndOpen does not accept new connections. Default is 0.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_OBEX_SERVER_QUEUE = "bluecove.obex.server.queue";
+
+    /**
+     * Serve tcpobex server connections by one non-blocking selector thread;
+     * sessions use executor thread only while handling a request. Requires
+     * Java SE 1.4. Default is false.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_OBEX_SERVER_SELECTOR = "bluecove.obex.server.selector";
+
+    /**
+     * Keep service records found by DiscoveryAgent.searchServices() and return
+     * them for the same device, UUID set and attribute set without going to
+     * the radio. Records of the device are removed from cache when connection
+     * to it fails. Default to 'false'.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_SDP_CACHE = "bluecove.sdp.cache";
+
+    /**
+     * Time in seconds service records are kept in cache. Default is 3600.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_SDP_CACHE_TTL = "bluecove.sdp.cache.ttl";
+
+    /**
+     * Maximum number of service searches kept in cache, least recently used
+     * are removed first. Default is 512.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_SDP_CACHE_SIZE = "bluecove.sdp.cache.size";
+
+    /**
+     * File used to save service records cache between application runs. By
+     * default cache is kept in memory only.
+     * 
+     * @since bluecove 2.1.1
+     */
+    public static final String PROPERTY_SDP_CACHE_FILE = "bluecove.sdp.cache.file";
+
     /**
      * Remove JSR-82 1.1 restriction for legal PSM values are in the range
      * (0x1001..0xFFFF).
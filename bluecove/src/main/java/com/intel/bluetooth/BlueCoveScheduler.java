@@ -0,0 +1,367 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.lang.reflect.Method;
+import java.util.Vector;
+
+/**
+ * Runs device inquiry, service search and timer tasks. Depending on
+ * "bluecove.threads" property on pooled threads (default), new thread for each
+ * task or virtual thread for each task when supported by JVM.
+ * 
+ * Tasks never wait for free thread since inquiry and service search wait for
+ * each other, pool size limits only the number of idle threads kept for reuse.
+ * BluetoothStack assigned to thread by task is released when task ends.
+ * 
+ * <p>
+ * <b><u>Your application should not use this class directly.</u></b>
+ */
+class BlueCoveScheduler {
+
+	static final String EXECUTOR_THREAD = "thread";
+
+	static final String EXECUTOR_VIRTUAL = "virtual";
+
+	static final String EXECUTOR_POOL = "pool";
+
+	static final int POOL_DEFAULT_SIZE = 8;
+
+	private static final long POOL_KEEP_ALIVE = 60 * 1000;
+
+	private static Method startVirtualThread;
+
+	static {
+		try {
+			startVirtualThread = Thread.class.getMethod("startVirtualThread", new Class[] { Runnable.class });
+		} catch (Throwable e) {
+			startVirtualThread = null;
+		}
+	}
+
+	private static BlueCoveScheduler instance;
+
+	private static int threadNumber;
+
+	private static synchronized int nextThreadNum() {
+		return threadNumber++;
+	}
+
+	/**
+	 * Handle to task started by execute or schedule.
+	 */
+	static class Task {
+
+		private final Runnable runnable;
+
+		private final String name;
+
+		private long time;
+
+		private Thread thread;
+
+		private boolean canceled = false;
+
+		private boolean interrupted = false;
+
+		private boolean done = false;
+
+		private Task(Runnable runnable, String name) {
+			this.runnable = runnable;
+			this.name = name;
+		}
+
+		private synchronized boolean start(Thread thread) {
+			if (canceled) {
+				done = true;
+				notifyAll();
+				return false;
+			}
+			this.thread = thread;
+			return true;
+		}
+
+		/**
+		 * @return true if thread was interrupted by cancel
+		 */
+		private synchronized boolean finish() {
+			thread = null;
+			done = true;
+			notifyAll();
+			return interrupted;
+		}
+
+		/**
+		 * Task that is not started will not run, thread running the task is
+		 * interrupted.
+		 */
+		synchronized void cancel() {
+			canceled = true;
+			if (thread != null) {
+				interrupted = true;
+				thread.interrupt();
+			}
+		}
+
+		synchronized boolean isDone() {
+			return done;
+		}
+
+		synchronized void join() throws InterruptedException {
+			while (!done) {
+				wait();
+			}
+		}
+	}
+
+	private final boolean pool;
+
+	private final boolean virtual;
+
+	private final int poolSize;
+
+	/**
+	 * Tasks passed to idle pool threads
+	 */
+	private final Vector handoff = new Vector();
+
+	private int idleThreads = 0;
+
+	/**
+	 * Scheduled tasks ordered by time
+	 */
+	private final Vector timers = new Vector();
+
+	private boolean timerRunning = false;
+
+	BlueCoveScheduler(boolean pool, boolean virtual, int poolSize) {
+		this.pool = pool;
+		this.virtual = virtual;
+		this.poolSize = poolSize;
+	}
+
+	private static synchronized BlueCoveScheduler instance() {
+		if (instance == null) {
+			String type = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_THREADS);
+			boolean pool = false;
+			boolean virtual = false;
+			if (EXECUTOR_VIRTUAL.equals(type)) {
+				if (startVirtualThread == null) {
+					DebugLog.debug("virtual threads not supported, using thread per task");
+				}
+				virtual = (startVirtualThread != null);
+			} else if (!EXECUTOR_THREAD.equals(type)) {
+				pool = true;
+			}
+			instance = new BlueCoveScheduler(pool, virtual, BlueCoveImpl.getConfigProperty(
+					BlueCoveConfigProperties.PROPERTY_THREADS_POOL_SIZE, POOL_DEFAULT_SIZE));
+		}
+		return instance;
+	}
+
+	/**
+	 * Run the task in other thread.
+	 * 
+	 * @param name
+	 *            used as thread name while the task is running
+	 */
+	static Task execute(Runnable runnable, String name) {
+		return instance().executeTask(runnable, name);
+	}
+
+	/**
+	 * Schedules the task for execution after the specified delay.
+	 * 
+	 * @param delay
+	 *            delay in milliseconds before task is to be executed.
+	 */
+	static Task schedule(long delay, Runnable runnable, String name) {
+		return instance().scheduleTask(delay, runnable, name);
+	}
+
+	Task executeTask(Runnable runnable, String name) {
+		Task task = new Task(runnable, name);
+		dispatch(task);
+		return task;
+	}
+
+	Task scheduleTask(long delay, Runnable runnable, String name) {
+		Task task = new Task(runnable, name);
+		addTimer(task, System.currentTimeMillis() + delay);
+		return task;
+	}
+
+	private void dispatch(final Task task) {
+		if (pool) {
+			synchronized (this) {
+				if (idleThreads > handoff.size()) {
+					handoff.addElement(task);
+					notifyAll();
+					return;
+				}
+			}
+		}
+		Runnable worker = new Runnable() {
+			public void run() {
+				runTasks(task);
+			}
+		};
+		if (virtual) {
+			try {
+				startVirtualThread.invoke(null, new Object[] { worker });
+				return;
+			} catch (Throwable e) {
+				DebugLog.error("Can't start virtual thread", e);
+			}
+		}
+		Thread thread = new Thread(worker, pool ? ("BlueCovePoolThread-" + nextThreadNum()) : task.name);
+		UtilsJavaSE.threadSetDaemon(thread);
+		thread.start();
+	}
+
+	private void runTasks(Task task) {
+		while (task != null) {
+			if (runTask(task)) {
+				// Interrupted thread is not reused
+				return;
+			}
+			task = nextTask();
+		}
+	}
+
+	/**
+	 * @return true if thread was interrupted by Task.cancel()
+	 */
+	private boolean runTask(Task task) {
+		Thread thread = Thread.currentThread();
+		if (!task.start(thread)) {
+			return false;
+		}
+		String threadName = null;
+		if (pool) {
+			threadName = thread.getName();
+			UtilsJavaSE.threadSetName(thread, task.name);
+		}
+		Object saveID = BlueCoveImpl.getCurrentThreadBluetoothStackID();
+		try {
+			task.runnable.run();
+		} catch (Throwable e) {
+			DebugLog.error(task.name, e);
+		} finally {
+			if (BlueCoveImpl.getCurrentThreadBluetoothStackID() != saveID) {
+				BlueCoveImpl.setThreadBluetoothStackID(saveID);
+			}
+			if (threadName != null) {
+				UtilsJavaSE.threadSetName(thread, threadName);
+			}
+		}
+		return task.finish();
+	}
+
+	/**
+	 * Called when task ends.
+	 * 
+	 * @return next task to run in this thread or <code>null</code> when thread
+	 *         should exit
+	 */
+	private synchronized Task nextTask() {
+		if ((!pool) || (idleThreads >= poolSize)) {
+			return null;
+		}
+		idleThreads++;
+		try {
+			long end = System.currentTimeMillis() + POOL_KEEP_ALIVE;
+			while (handoff.isEmpty()) {
+				long timeout = end - System.currentTimeMillis();
+				if (timeout <= 0) {
+					break;
+				}
+				try {
+					wait(timeout);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			if (handoff.isEmpty()) {
+				return null;
+			}
+			Task task = (Task) handoff.elementAt(0);
+			handoff.removeElementAt(0);
+			return task;
+		} finally {
+			idleThreads--;
+		}
+	}
+
+	private synchronized void addTimer(Task task, long time) {
+		task.time = time;
+		int i = timers.size();
+		while ((i > 0) && (((Task) timers.elementAt(i - 1)).time > time)) {
+			i--;
+		}
+		timers.insertElementAt(task, i);
+		if (timerRunning) {
+			notifyAll();
+		} else {
+			timerRunning = true;
+			Thread thread = new Thread(new Runnable() {
+				public void run() {
+					runTimers();
+				}
+			}, "BlueCoveTimerThread-" + nextThreadNum());
+			UtilsJavaSE.threadSetDaemon(thread);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Single thread waits for scheduled tasks and executes them. The thread
+	 * exits when there are no tasks.
+	 */
+	private void runTimers() {
+		while (true) {
+			Task task;
+			synchronized (this) {
+				if (timers.isEmpty()) {
+					timerRunning = false;
+					return;
+				}
+				task = (Task) timers.elementAt(0);
+				long timeout = task.time - System.currentTimeMillis();
+				if (timeout > 0) {
+					try {
+						wait(timeout);
+					} catch (InterruptedException e) {
+						timerRunning = false;
+						return;
+					}
+					continue;
+				}
+				timers.removeElementAt(0);
+			}
+			dispatch(task);
+		}
+	}
+}
@@ -26,7 +26,7 @@ package com.intel.bluetooth;
 import java.io.IOException;
 import java.io.InputStream;
 
-class BluetoothRFCommInputStream extends InputStream {
+class BluetoothRFCommInputStream extends InputStream implements TimedInputStream {
 
 	volatile private BluetoothRFCommConnection conn;
 
@@ -147,6 +147,36 @@ class BluetoothRFCommInputStream extends InputStream {
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.intel.bluetooth.TimedInputStream#read(byte[], int, int, long)
+	 */
+	public int read(byte[] b, int off, int len, long timeout) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		BluetoothRFCommConnection c = conn;
+		if (c == null) {
+			throw new IOException("Stream closed");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (!(c.bluetoothStack instanceof BluetoothStackTimedRead)) {
+			return Utils.pollingRead(this, b, off, len, timeout);
+		}
+		try {
+			return ((BluetoothStackTimedRead) c.bluetoothStack).connectionRfRead(c.handle, b, off, len, timeout);
+		} catch (IOException e) {
+			if (isClosed()) {
+				return -1;
+			} else {
+				throw e;
+			}
+		}
+	}
+
 	/**
 	 * Closes this input stream and releases any system resources associated with the stream.
 	 * <p>
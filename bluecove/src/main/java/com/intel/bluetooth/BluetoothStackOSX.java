@@ -24,7 +24,6 @@
  */
 package com.intel.bluetooth;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -549,7 +548,7 @@ class BluetoothStackOSX implements BluetoothStack, BluetoothStackExtension {
             try {
                 byte[] blob = getServiceAttributeImpl(address, serviceRecord.getHandle(), id);
                 if (blob != null) {
-                    DataElement element = (new SDPInputStream(new ByteArrayInputStream(blob))).readElement();
+                    DataElement element = SDPDecoder.decode(blob);
                     serviceRecord.populateAttributeValue(id, element);
                     anyRetrived = true;
                     if (debug) {
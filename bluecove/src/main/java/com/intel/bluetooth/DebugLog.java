@@ -53,6 +53,19 @@ public abstract class DebugLog {
 
 	private static boolean debugInternalEnabled = false;
 
+	/**
+	 * System.out log is printed by DebugLogAsyncAppender
+	 */
+	private static boolean asyncStdOut = false;
+
+	private static boolean printLocationEnabled = true;
+
+	private static final Object timeLock = new Object();
+
+	private static long timeCacheSecond = -1;
+
+	private static String timeCachePrefix;
+
 	private static final String FQCN = DebugLog.class.getName();
 
 	private static final Vector fqcnSet = new Vector();
@@ -73,6 +86,13 @@ public abstract class DebugLog {
 		public boolean isLogEnabled(int level);
 	}
 
+	/**
+	 * Appender that receives the time of the event from DebugLogAsyncAppender.
+	 */
+	static interface LoggerAppenderTimed extends LoggerAppender {
+		public void appendLog(long time, int level, String message, Throwable throwable);
+	}
+
 	static {
 		fqcnSet.addElement(FQCN);
 	}
@@ -93,13 +113,25 @@ public abstract class DebugLog {
 		}
 		boolean useStdOut = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_DEBUG_STDOUT, true);
 		debugInternalEnabled = useStdOut && debugEnabled;
+		printLocationEnabled = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_DEBUG_LOCATION, true);
+		boolean async = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_DEBUG_ASYNC, false);
+		int asyncQueueSize = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_DEBUG_ASYNC_QUEUE,
+				DebugLogAsyncAppender.DEFAULT_QUEUE_SIZE);
+		if (async && useStdOut) {
+			asyncStdOut = true;
+			addAppender(new DebugLogAsyncAppender(new StdOutAppender(), asyncQueueSize));
+		}
 		boolean useLog4j = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_DEBUG_LOG4J, true);
 		if (useLog4j) {
 			try {
 				LoggerAppenderExt log4jAppender = (LoggerAppenderExt) Class.forName(
 						"com.intel.bluetooth.DebugLog4jAppender").newInstance();
 				System.out.println("BlueCove log redirected to log4j");
-				addAppender(log4jAppender);
+				if (async) {
+					addAppender(new DebugLogAsyncAppender(log4jAppender, asyncQueueSize));
+				} else {
+					addAppender(log4jAppender);
+				}
 				if (log4jAppender.isLogEnabled(DEBUG)) {
 					debugEnabled = true || debugEnabled;
 				}
@@ -149,15 +181,18 @@ public abstract class DebugLog {
 		if (!debugCompiledOut && isDebugEnabled()) {
 			log(message, " ", t.toString());
 			printLocation();
-			// I have the reson not to make this as function.
-			if (!UtilsJavaSE.javaSECompiledOut) {
-				if (!UtilsJavaSE.ibmJ9midp) {
-					t.printStackTrace(System.out);
-				} else if (debugInternalEnabled) {
+			// In async mode stack trace is printed by StdOutAppender after the message
+			if (!asyncStdOut) {
+				// I have the reson not to make this as function.
+				if (!UtilsJavaSE.javaSECompiledOut) {
+					if (!UtilsJavaSE.ibmJ9midp) {
+						t.printStackTrace(System.out);
+					} else if (debugInternalEnabled) {
+						t.printStackTrace();
+					}
+				} else {
 					t.printStackTrace();
 				}
-			} else {
-				t.printStackTrace();
 			}
 			callAppenders(DEBUG, message, t);
 		}
@@ -211,6 +246,51 @@ public abstract class DebugLog {
 		}
 	}
 
+	/**
+	 * Parameterized message. Each "{}" in the pattern is replaced by the next argument. The message is formatted and
+	 * arguments are converted to String only when debug is enabled.
+	 */
+	public static void debugFormat(String pattern, Object arg1) {
+		if (!debugCompiledOut && isDebugEnabled()) {
+			debugFormatted(pattern, new Object[] { arg1 });
+		}
+	}
+
+	public static void debugFormat(String pattern, Object arg1, Object arg2) {
+		if (!debugCompiledOut && isDebugEnabled()) {
+			debugFormatted(pattern, new Object[] { arg1, arg2 });
+		}
+	}
+
+	public static void debugFormat(String pattern, Object arg1, Object arg2, Object arg3) {
+		if (!debugCompiledOut && isDebugEnabled()) {
+			debugFormatted(pattern, new Object[] { arg1, arg2, arg3 });
+		}
+	}
+
+	public static void debugFormat(String pattern, Object arg1, Object arg2, Object arg3, Object arg4) {
+		if (!debugCompiledOut && isDebugEnabled()) {
+			debugFormatted(pattern, new Object[] { arg1, arg2, arg3, arg4 });
+		}
+	}
+
+	private static void debugFormatted(String pattern, Object[] args) {
+		StringBuffer buf = new StringBuffer(pattern.length() + 32);
+		int argIdx = 0;
+		int start = 0;
+		int idx;
+		while ((argIdx < args.length) && ((idx = pattern.indexOf("{}", start)) != -1)) {
+			buf.append(pattern.substring(start, idx));
+			buf.append(String.valueOf(args[argIdx++]));
+			start = idx + 2;
+		}
+		buf.append(pattern.substring(start));
+		String message = buf.toString();
+		log(message, null, null);
+		printLocation();
+		callAppenders(DEBUG, message, null);
+	}
+
 	public static void debug(String message, byte[] data) {
 		debug(message, data, 0, (data == null) ? 0 : data.length);
 	}
@@ -317,15 +397,18 @@ public abstract class DebugLog {
 		if (!debugCompiledOut && isDebugEnabled()) {
 			log("error ", message, " " + t);
 			printLocation();
-			// I have the reson not to make this as function.
-			if (!UtilsJavaSE.javaSECompiledOut) {
-				if (!UtilsJavaSE.ibmJ9midp) {
-					t.printStackTrace(System.out);
-				} else if (debugInternalEnabled) {
+			// In async mode stack trace is printed by StdOutAppender after the message
+			if (!asyncStdOut) {
+				// I have the reson not to make this as function.
+				if (!UtilsJavaSE.javaSECompiledOut) {
+					if (!UtilsJavaSE.ibmJ9midp) {
+						t.printStackTrace(System.out);
+					} else if (debugInternalEnabled) {
+						t.printStackTrace();
+					}
+				} else {
 					t.printStackTrace();
 				}
-			} else {
-				t.printStackTrace();
 			}
 
 			callAppenders(ERROR, message, t);
@@ -341,15 +424,17 @@ public abstract class DebugLog {
 	public static void fatal(String message, Throwable t) {
 		log("error ", message, " " + t);
 		printLocation();
-		// I have the reson not to make this as function.
-		if (!UtilsJavaSE.javaSECompiledOut) {
-			if (!UtilsJavaSE.ibmJ9midp) {
-				t.printStackTrace(System.out);
-			} else if (debugInternalEnabled) {
+		if (!asyncStdOut) {
+			// I have the reson not to make this as function.
+			if (!UtilsJavaSE.javaSECompiledOut) {
+				if (!UtilsJavaSE.ibmJ9midp) {
+					t.printStackTrace(System.out);
+				} else if (debugInternalEnabled) {
+					t.printStackTrace();
+				}
+			} else {
 				t.printStackTrace();
 			}
-		} else {
-			t.printStackTrace();
 		}
 
 		callAppenders(ERROR, message, t);
@@ -388,20 +473,33 @@ public abstract class DebugLog {
 		}
 	}
 
+	/**
+	 * Calendar is used once a second, milliseconds are appended to cached "HH:mm:ss." prefix.
+	 */
+	private static void appendTime(StringBuffer sb, long time) {
+		long second = time / 1000;
+		String prefix;
+		synchronized (timeLock) {
+			if (second != timeCacheSecond) {
+				Calendar calendar = Calendar.getInstance();
+				calendar.setTime(new Date(time));
+				timeCachePrefix = d00(calendar.get(Calendar.HOUR_OF_DAY)) + ":"
+						+ d00(calendar.get(Calendar.MINUTE)) + ":" + d00(calendar.get(Calendar.SECOND)) + ".";
+				timeCacheSecond = second;
+			}
+			prefix = timeCachePrefix;
+		}
+		sb.append(prefix).append(d000((int) (time % 1000))).append(" ");
+	}
+
 	private static void log(String message, String va1, String va2) {
-		if (!debugInternalEnabled) {
+		if ((!debugInternalEnabled) || asyncStdOut) {
 			return;
 		}
 		try {
-			Calendar calendar = Calendar.getInstance();
-			calendar.setTime(new Date(System.currentTimeMillis()));
-
 			StringBuffer sb;
 			sb = new StringBuffer();
-			sb.append(d00(calendar.get(Calendar.HOUR_OF_DAY))).append(":");
-			sb.append(d00(calendar.get(Calendar.MINUTE))).append(":");
-			sb.append(d00(calendar.get(Calendar.SECOND))).append(".");
-			sb.append(d000(calendar.get(Calendar.MILLISECOND))).append(" ");
+			appendTime(sb, System.currentTimeMillis());
 
 			sb.append(message);
 			if (va1 != null) {
@@ -417,7 +515,7 @@ public abstract class DebugLog {
 	}
 
 	private static void printLocation() {
-		if (java13 || !debugInternalEnabled) {
+		if (java13 || !debugInternalEnabled || asyncStdOut || !printLocationEnabled) {
 			return;
 		}
 		try {
@@ -430,6 +528,39 @@ public abstract class DebugLog {
 		}
 	}
 
+	/**
+	 * Prints messages delivered by DebugLogAsyncAppender.
+	 */
+	private static class StdOutAppender implements LoggerAppenderTimed {
+
+		public void appendLog(int level, String message, Throwable throwable) {
+			appendLog(System.currentTimeMillis(), level, message, throwable);
+		}
+
+		public void appendLog(long time, int level, String message, Throwable throwable) {
+			if (!debugInternalEnabled) {
+				return;
+			}
+			StringBuffer sb = new StringBuffer();
+			appendTime(sb, time);
+			if (level == ERROR) {
+				sb.append("error ");
+			}
+			sb.append(message);
+			if (throwable != null) {
+				sb.append(" ").append(throwable);
+			}
+			System.out.println(sb.toString());
+			if (throwable != null) {
+				if (!UtilsJavaSE.ibmJ9midp) {
+					throwable.printStackTrace(System.out);
+				} else {
+					throwable.printStackTrace();
+				}
+			}
+		}
+	}
+
 	private static String formatLocation(UtilsJavaSE.StackTraceLocation ste) {
 		if (ste == null) {
 			return "";
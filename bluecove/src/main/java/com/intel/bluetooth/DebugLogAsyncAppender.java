@@ -0,0 +1,214 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.util.Vector;
+
+/**
+ * Delivers log messages to another appender in background thread.
+ * <p>
+ * Logging thread only adds the message to bounded queue, delivery thread takes all queued messages at once. When the
+ * queue is full new messages are dropped and the number of dropped messages is logged with next batch. Messages still
+ * queued when JVM exits are delivered by shutdown hook, waiting not longer than FLUSH_ON_EXIT_TIMEOUT.
+ * <p>
+ * Enabled for System.out and log4j using "bluecove.debug.async" property or can be used with custom appender:
+ * <code>DebugLog.addAppender(new DebugLogAsyncAppender(myAppender, 1000))</code>
+ * 
+ * @since bluecove 2.1.1
+ */
+public class DebugLogAsyncAppender implements DebugLog.LoggerAppenderExt, Runnable {
+
+	public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+	private static final long FLUSH_ON_EXIT_TIMEOUT = 2000;
+
+	private final DebugLog.LoggerAppender appender;
+
+	private final int queueSize;
+
+	private final Vector queue = new Vector();
+
+	private Thread deliveryThread;
+
+	private boolean delivering = false;
+
+	private boolean closed = false;
+
+	private int dropped = 0;
+
+	private int droppedTotal = 0;
+
+	private static class LogEntry {
+
+		long time;
+
+		int level;
+
+		String message;
+
+		Throwable throwable;
+
+		LogEntry(long time, int level, String message, Throwable throwable) {
+			this.time = time;
+			this.level = level;
+			this.message = message;
+			this.throwable = throwable;
+		}
+	}
+
+	public DebugLogAsyncAppender(DebugLog.LoggerAppender appender, int queueSize) {
+		if (appender == null) {
+			throw new NullPointerException("appender is null");
+		}
+		if (queueSize <= 0) {
+			throw new IllegalArgumentException("queueSize " + queueSize);
+		}
+		this.appender = appender;
+		this.queueSize = queueSize;
+	}
+
+	public void appendLog(int level, String message, Throwable throwable) {
+		synchronized (queue) {
+			if (closed) {
+				return;
+			}
+			if (queue.size() >= queueSize) {
+				dropped++;
+				droppedTotal++;
+				return;
+			}
+			queue.addElement(new LogEntry(System.currentTimeMillis(), level, message, throwable));
+			if (deliveryThread == null) {
+				deliveryThread = new Thread(this, "BlueCoveLogAppender");
+				UtilsJavaSE.threadSetDaemon(deliveryThread);
+				deliveryThread.start();
+				UtilsJavaSE.runtimeAddShutdownHook(new Thread(new Runnable() {
+					public void run() {
+						flush(FLUSH_ON_EXIT_TIMEOUT);
+					}
+				}, "BlueCoveLogFlush"));
+			} else if (queue.size() == 1) {
+				queue.notifyAll();
+			}
+		}
+	}
+
+	public boolean isLogEnabled(int level) {
+		if (appender instanceof DebugLog.LoggerAppenderExt) {
+			return ((DebugLog.LoggerAppenderExt) appender).isLogEnabled(level);
+		}
+		return true;
+	}
+
+	public void run() {
+		while (true) {
+			LogEntry[] batch;
+			int droppedBatch;
+			synchronized (queue) {
+				delivering = false;
+				queue.notifyAll();
+				while (queue.isEmpty() && (dropped == 0) && (!closed)) {
+					try {
+						queue.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (queue.isEmpty() && (dropped == 0)) {
+					return;
+				}
+				batch = new LogEntry[queue.size()];
+				queue.copyInto(batch);
+				queue.removeAllElements();
+				droppedBatch = dropped;
+				dropped = 0;
+				delivering = true;
+			}
+			if (droppedBatch != 0) {
+				deliver(new LogEntry(System.currentTimeMillis(), DebugLog.ERROR, droppedBatch + " log messages dropped",
+						null));
+			}
+			for (int i = 0; i < batch.length; i++) {
+				deliver(batch[i]);
+			}
+		}
+	}
+
+	private void deliver(LogEntry entry) {
+		try {
+			if (appender instanceof DebugLog.LoggerAppenderTimed) {
+				((DebugLog.LoggerAppenderTimed) appender).appendLog(entry.time, entry.level, entry.message,
+						entry.throwable);
+			} else {
+				appender.appendLog(entry.level, entry.message, entry.throwable);
+			}
+		} catch (Throwable ignore) {
+		}
+	}
+
+	/**
+	 * Wait for queued messages to be delivered.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait in milliseconds
+	 * @return <code>true</code> if all messages delivered
+	 */
+	public boolean flush(long timeout) {
+		long end = System.currentTimeMillis() + timeout;
+		synchronized (queue) {
+			while ((!queue.isEmpty() || delivering) && (deliveryThread != null) && deliveryThread.isAlive()) {
+				long timeleft = end - System.currentTimeMillis();
+				if (timeleft <= 0) {
+					return false;
+				}
+				try {
+					queue.wait(timeleft);
+				} catch (InterruptedException e) {
+					return false;
+				}
+			}
+			return queue.isEmpty();
+		}
+	}
+
+	/**
+	 * Stop accepting messages. Already queued messages are delivered.
+	 */
+	public void close() {
+		synchronized (queue) {
+			closed = true;
+			queue.notifyAll();
+		}
+	}
+
+	/**
+	 * @return the number of messages dropped because the queue was full
+	 */
+	public int getDroppedCount() {
+		synchronized (queue) {
+			return droppedTotal;
+		}
+	}
+}
@@ -33,7 +33,7 @@ import javax.bluetooth.DiscoveryListener;
  * <b><u>Your application should not use this class directly.</u></b>
  * 
  */
-class DeviceInquiryThread extends Thread {
+class DeviceInquiryThread implements Runnable {
 
 	private BluetoothStack stack;
 
@@ -51,6 +51,8 @@ class DeviceInquiryThread extends Thread {
 
 	private Object inquiryStartedEvent = new Object();
 
+	private String name;
+
 	private static int threadNumber;
 
 	private static synchronized int nextThreadNum() {
@@ -59,7 +61,7 @@ class DeviceInquiryThread extends Thread {
 
 	private DeviceInquiryThread(BluetoothStack stack, DeviceInquiryRunnable inquiryRunnable, int accessCode,
 			DiscoveryListener listener) {
-		super("DeviceInquiryThread-" + nextThreadNum());
+		this.name = "DeviceInquiryThread-" + nextThreadNum();
 		this.stack = stack;
 		this.inquiryRunnable = inquiryRunnable;
 		this.accessCode = accessCode;
@@ -72,10 +74,9 @@ class DeviceInquiryThread extends Thread {
 	static boolean startInquiry(BluetoothStack stack, DeviceInquiryRunnable inquiryRunnable, int accessCode,
 			DiscoveryListener listener) throws BluetoothStateException {
 		DeviceInquiryThread t = (new DeviceInquiryThread(stack, inquiryRunnable, accessCode, listener));
-		// In case the BTStack hangs, exit JVM anyway
-		UtilsJavaSE.threadSetDaemon(t);
 		synchronized (t.inquiryStartedEvent) {
-			t.start();
+			// Executed by daemon thread, in case the BTStack hangs exit JVM anyway
+			BlueCoveScheduler.execute(t, t.name);
 			while (!t.started && !t.terminated) {
 				try {
 					t.inquiryStartedEvent.wait();
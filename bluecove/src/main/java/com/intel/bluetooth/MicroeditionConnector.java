@@ -47,6 +47,7 @@ import com.intel.bluetooth.gcf.socket.SocketConnection;
 import com.intel.bluetooth.obex.OBEXClientSessionImpl;
 import com.intel.bluetooth.obex.OBEXConnectionParams;
 import com.intel.bluetooth.obex.OBEXSessionNotifierImpl;
+import com.intel.bluetooth.obex.OBEXTCPSelectorServer;
 
 /**
  * 
@@ -379,6 +380,20 @@ public abstract class MicroeditionConnector {
 					BlueCoveConfigProperties.PROPERTY_OBEX_TIMEOUT, OBEXConnectionParams.DEFAULT_TIMEOUT);
 			obexConnectionParams.mtu = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_OBEX_MTU,
 					OBEXConnectionParams.OBEX_DEFAULT_MTU);
+			obexConnectionParams.mtuAdaptive = BlueCoveImpl.getConfigProperty(
+					BlueCoveConfigProperties.PROPERTY_OBEX_MTU_ADAPTIVE, false);
+			obexConnectionParams.srm = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_OBEX_SRM,
+					false);
+			if (isServer) {
+				obexConnectionParams.serverExecutor = BlueCoveImpl
+						.getConfigProperty(BlueCoveConfigProperties.PROPERTY_OBEX_SERVER_EXECUTOR);
+				obexConnectionParams.serverMaxSessions = BlueCoveImpl.getConfigProperty(
+						BlueCoveConfigProperties.PROPERTY_OBEX_SERVER_MAX_SESSIONS, 0);
+				obexConnectionParams.serverQueue = BlueCoveImpl.getConfigProperty(
+						BlueCoveConfigProperties.PROPERTY_OBEX_SERVER_QUEUE, 0);
+				obexConnectionParams.serverSelector = BlueCoveImpl.getConfigProperty(
+						BlueCoveConfigProperties.PROPERTY_OBEX_SERVER_SELECTOR, false);
+			}
 		}
 
 		/*
@@ -388,7 +403,12 @@ public abstract class MicroeditionConnector {
 			if (isServer) {
 				return new BluetoothRFCommConnectionNotifier(bluetoothStack, notifierParams);
 			} else {
-				return new BluetoothRFCommClientConnection(bluetoothStack, connectionParams);
+				try {
+					return new BluetoothRFCommClientConnection(bluetoothStack, connectionParams);
+				} catch (IOException e) {
+					ServiceRecordsCache.connectionFailed(connectionParams.address);
+					throw e;
+				}
 			}
 		} else if (scheme.equals(BluetoothConsts.PROTOCOL_SCHEME_BT_OBEX)) {
 			if (isServer) {
@@ -396,16 +416,26 @@ public abstract class MicroeditionConnector {
 				return new OBEXSessionNotifierImpl(
 						new BluetoothRFCommConnectionNotifier(bluetoothStack, notifierParams), obexConnectionParams);
 			} else {
-				return new OBEXClientSessionImpl(new BluetoothRFCommClientConnection(bluetoothStack, connectionParams),
-						obexConnectionParams);
+				try {
+					return new OBEXClientSessionImpl(new BluetoothRFCommClientConnection(bluetoothStack,
+							connectionParams), obexConnectionParams);
+				} catch (IOException e) {
+					ServiceRecordsCache.connectionFailed(connectionParams.address);
+					throw e;
+				}
 			}
 		} else if (scheme.equals(BluetoothConsts.PROTOCOL_SCHEME_L2CAP)) {
 			if (isServer) {
 				return new BluetoothL2CAPConnectionNotifier(bluetoothStack, notifierParams, paramL2CAPMTU(values,
 						RECEIVE_MTU), paramL2CAPMTU(values, TRANSMIT_MTU));
 			} else {
-				return new BluetoothL2CAPClientConnection(bluetoothStack, connectionParams, paramL2CAPMTU(values,
-						RECEIVE_MTU), paramL2CAPMTU(values, TRANSMIT_MTU));
+				try {
+					return new BluetoothL2CAPClientConnection(bluetoothStack, connectionParams, paramL2CAPMTU(values,
+							RECEIVE_MTU), paramL2CAPMTU(values, TRANSMIT_MTU));
+				} catch (IOException e) {
+					ServiceRecordsCache.connectionFailed(connectionParams.address);
+					throw e;
+				}
 			}
 		} else if (scheme.equals(BluetoothConsts.PROTOCOL_SCHEME_TCP_OBEX)) {
 			if (isServer) {
@@ -414,6 +444,9 @@ public abstract class MicroeditionConnector {
 				} catch (NumberFormatException e) {
 					throw new IllegalArgumentException("port " + portORuuid);
 				}
+				if (obexConnectionParams.serverSelector) {
+					return new OBEXSessionNotifierImpl(new OBEXTCPSelectorServer(channel), obexConnectionParams);
+				}
 				return new OBEXSessionNotifierImpl(new ServerSocketConnection(channel), obexConnectionParams);
 			} else {
 				return new OBEXClientSessionImpl(new SocketConnection(host, channel), obexConnectionParams);
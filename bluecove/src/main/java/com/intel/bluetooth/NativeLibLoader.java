@@ -25,18 +25,30 @@
  */
 package com.intel.bluetooth;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
 import java.util.Hashtable;
 
 /**
  * Load native library from resources.
  * 
  * 
- * By default Native Library is extracted from from jar to temporary directory
- * `${java.io.tmpdir}/bluecove_${user.name}_N` and loaded from this location.
+ * By default Native Library is extracted from from jar to cache directory
+ * `${java.io.tmpdir}/bluecove_${user.name}_cache/${checksum}` and loaded from this location.
+ * Library already extracted by previous start is reused. Once a library is in place, directories holding other
+ * builds of the same library file are removed so the cache keeps one copy per library; remove the cache directory to
+ * clean it up manually. Use `-Dbluecove.native.cache=false`
+ * to extract library to new temporary directory `${java.io.tmpdir}/bluecove_${user.name}_N` on each start.
+ * Cache directory is created accessible only by its owner, directory that is not owned by current user or writable
+ * by others is not used. Ownership is verified on Java 7 or later, on older Java the cache is not used.
  * <p>
  * If you wish to load library (.dll) from another location add this system property
  * `-Dbluecove.native.path=/your/path`.
@@ -67,6 +79,8 @@ public abstract class NativeLibLoader {
 
 	private static Object bluecoveDllDir = null;
 
+	private static final int COPY_BUFFER_SIZE = 0x4000;
+
 	private static class LibState {
 
 		boolean triedToLoadAlredy = false;
@@ -163,6 +177,7 @@ public abstract class NativeLibLoader {
 			return state.libraryAvailable;
 		}
 		state.loadErrors = new StringBuffer();
+		long start = System.currentTimeMillis();
 		String libName = name;
 		String libFileName = libName;
 
@@ -270,6 +285,12 @@ public abstract class NativeLibLoader {
 		        System.err.println("Native Library " + libName + " not available");
 		    }
 			DebugLog.debug("java.library.path", System.getProperty("java.library.path"));
+			if (DebugLog.isDebugEnabled()) {
+				DebugLog.debug("Library " + libName + " not loaded, load time " + (System.currentTimeMillis() - start)
+						+ " ms");
+			}
+		} else if (DebugLog.isDebugEnabled()) {
+			DebugLog.debug("Library " + libName + " load time " + (System.currentTimeMillis() - start) + " ms");
 		}
 		state.triedToLoadAlredy = true;
 		return state.libraryAvailable;
@@ -377,12 +398,9 @@ public abstract class NativeLibLoader {
 			loadErrors.append("\nresource not found ").append(libFileName);
 			return false;
 		}
-		File fd = makeTempName(libFileName);
+		byte[] data;
 		try {
-			if (!copy2File(is, fd)) {
-				loadErrors.append("\ncan't create temp file");
-				return false;
-			}
+			data = readResource(is);
 		} finally {
 			try {
 				is.close();
@@ -390,10 +408,26 @@ public abstract class NativeLibLoader {
 				is = null;
 			}
 		}
-		try {
-			fd.deleteOnExit();
-		} catch (Throwable e) {
-			// Java 1.1 or J9
+		if (data == null) {
+			loadErrors.append("\ncan't read resource ").append(libFileName);
+			return false;
+		}
+		File fd = null;
+		File cacheDir = getCacheDir();
+		if (cacheDir != null) {
+			fd = extractToCache(cacheDir, libFileName, data);
+		}
+		if (fd == null) {
+			fd = makeTempName(libFileName);
+			if (!write2File(data, fd)) {
+				loadErrors.append("\ncan't create temp file");
+				return false;
+			}
+			try {
+				fd.deleteOnExit();
+			} catch (Throwable e) {
+				// Java 1.1 or J9
+			}
 		}
 		// deleteOnExit(fd);
 		try {
@@ -411,15 +445,26 @@ public abstract class NativeLibLoader {
 		return true;
 	}
 
-	private static boolean copy2File(InputStream is, File fd) {
-		FileOutputStream fos = null;
+	private static byte[] readResource(InputStream is) {
 		try {
-			fos = new FileOutputStream(fd);
-			byte b[] = new byte[1000];
+			ByteArrayOutputStream buf = new ByteArrayOutputStream(0x40000);
+			byte b[] = new byte[COPY_BUFFER_SIZE];
 			int len;
 			while ((len = is.read(b)) >= 0) {
-				fos.write(b, 0, len);
+				buf.write(b, 0, len);
 			}
+			return buf.toByteArray();
+		} catch (Throwable e) {
+			DebugLog.debug("Can't read resource ", e);
+			return null;
+		}
+	}
+
+	private static boolean write2File(byte[] data, File fd) {
+		FileOutputStream fos = null;
+		try {
+			fos = new FileOutputStream(fd);
+			fos.write(data);
 			return true;
 		} catch (Throwable e) {
 			DebugLog.debug("Can't create temp file ", e);
@@ -436,17 +481,285 @@ public abstract class NativeLibLoader {
 		}
 	}
 
+	private static String getTempDir() {
+		String tmpDir = System.getProperty("java.io.tmpdir");
+		if ((tmpDir == null) || (tmpDir.length() == 0)) {
+			// CrEme 3.29
+			tmpDir = "temp";
+		}
+		return tmpDir;
+	}
+
+	private static File getCacheDir() {
+		String d = System.getProperty(BlueCoveConfigProperties.PROPERTY_NATIVE_CACHE);
+		if ((d != null) && (d.equalsIgnoreCase("false"))) {
+			return null;
+		}
+		return new File(getTempDir(), "bluecove_" + System.getProperty("user.name") + "_cache");
+	}
+
+	/**
+	 * Extract library to sub directory of cacheDir named by library checksum.
+	 * Library is written to temporary file and renamed so other JVM never load
+	 * partially written file. Identical library extracted before is reused.
+	 * Other checksum directories with the same library file are removed.
+	 * 
+	 * @return extracted file or null if cache can't be used
+	 */
+	static File extractToCache(File cacheDir, String libFileName, byte[] data) {
+		if (!isPrivateDir(cacheDir)) {
+			return null;
+		}
+		String checksum = checksum(data);
+		if (checksum == null) {
+			return null;
+		}
+		File dir = new File(cacheDir, checksum);
+		File fd = extractToDir(dir, libFileName, data);
+		if (fd != null) {
+			pruneCache(cacheDir, dir, libFileName);
+		}
+		return fd;
+	}
+
+	/**
+	 * Remove previous builds of the library. Library still used by another JVM
+	 * is removed from directory on Unix or can't be deleted on Windows, both
+	 * are fine.
+	 */
+	private static void pruneCache(File cacheDir, File keepDir, String libFileName) {
+		String[] dirs = cacheDir.list();
+		if (dirs == null) {
+			return;
+		}
+		for (int i = 0; i < dirs.length; i++) {
+			File dir = new File(cacheDir, dirs[i]);
+			if (dir.equals(keepDir) || !dir.isDirectory()) {
+				continue;
+			}
+			File lib = new File(dir, libFileName);
+			if (!lib.exists()) {
+				continue;
+			}
+			if (!lib.delete()) {
+				DebugLog.debug("Can't remove cached library ", lib.getAbsolutePath());
+				continue;
+			}
+			String[] files = dir.list();
+			if (files != null) {
+				for (int j = 0; j < files.length; j++) {
+					// Left by interrupted extract
+					if (files[j].startsWith(libFileName) && files[j].endsWith(".tmp")) {
+						new File(dir, files[j]).delete();
+					}
+				}
+			}
+			if (dir.delete()) {
+				DebugLog.debug("removed cached library", dir.getAbsolutePath());
+			}
+		}
+	}
+
+	private static File extractToDir(File dir, String libFileName, byte[] data) {
+		File fd = new File(dir, libFileName);
+		if (fd.exists()) {
+			if (isSameContent(fd, data)) {
+				DebugLog.debug("use cached library", fd.getAbsolutePath());
+				return fd;
+			}
+			if (!fd.delete()) {
+				DebugLog.debug("Can't replace cached library ", fd.getAbsolutePath());
+				return null;
+			}
+		}
+		if ((!dir.isDirectory()) && (!dir.mkdirs()) && (!dir.isDirectory())) {
+			DebugLog.debug("Can't create cache dir ", dir.getAbsolutePath());
+			return null;
+		}
+		File tmp;
+		try {
+			tmp = File.createTempFile(libFileName, ".tmp", dir);
+		} catch (Throwable e) {
+			// IOException or Java 1.1
+			DebugLog.debug("Can't create file in cache dir ", dir.getAbsolutePath());
+			return null;
+		}
+		if (!write2File(data, tmp)) {
+			tmp.delete();
+			return null;
+		}
+		if (tmp.renameTo(fd)) {
+			DebugLog.debug("library extracted to cache", fd.getAbsolutePath());
+			return fd;
+		}
+		tmp.delete();
+		// Extracted by another JVM at the same time
+		if (isSameContent(fd, data)) {
+			DebugLog.debug("use cached library", fd.getAbsolutePath());
+			return fd;
+		}
+		DebugLog.debug("Can't rename to cached library ", fd.getAbsolutePath());
+		return null;
+	}
+
+	/**
+	 * Other users should not be able to replace the library in cache between
+	 * content check and System.load(). Create the directory accessible only by
+	 * owner or verify existing one.
+	 * 
+	 * @return false if the directory is not owned by current user, is
+	 *         writable by others or this can't be verified
+	 */
+	private static boolean isPrivateDir(File dir) {
+		try {
+			if (!dir.exists()) {
+				if ((!dir.mkdirs()) && (!dir.isDirectory())) {
+					DebugLog.debug("Can't create cache dir ", dir.getAbsolutePath());
+					return false;
+				}
+				// Remove access for everybody then allow it for owner only
+				String[] methods = new String[] { "setReadable", "setWritable", "setExecutable" };
+				for (int i = 0; i < methods.length; i++) {
+					if (!setFilePermission(dir, methods[i], false, false)) {
+						return false;
+					}
+				}
+				for (int i = 0; i < methods.length; i++) {
+					if (!setFilePermission(dir, methods[i], true, true)) {
+						return false;
+					}
+				}
+				File[] files = dir.listFiles();
+				if ((files == null) || (files.length != 0)) {
+					// Created by someone else before permissions were set
+					DebugLog.debug("Cache dir modified while created ", dir.getAbsolutePath());
+					return false;
+				}
+			}
+			return isOwnedByUser(dir);
+		} catch (Throwable e) {
+			// Java 1.6 or 1.7 API not available
+			DebugLog.debug("Can't verify cache dir " + dir.getAbsolutePath(), e);
+			return false;
+		}
+	}
+
+	private static boolean setFilePermission(File dir, String methodName, boolean value, boolean ownerOnly)
+			throws Exception {
+		Method m = File.class.getMethod(methodName, new Class[] { boolean.class, boolean.class });
+		Boolean rc = (Boolean) m.invoke(dir, new Object[] { new Boolean(value), new Boolean(ownerOnly) });
+		if (!rc.booleanValue()) {
+			DebugLog.debug("Can't change permissions of cache dir ", dir.getAbsolutePath());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * java.nio.file calls made using reflection since BlueCove is compiled for Java 1.3.
+	 */
+	private static boolean isOwnedByUser(File dir) throws Exception {
+		Class filesClass = Class.forName("java.nio.file.Files");
+		Class pathClass = Class.forName("java.nio.file.Path");
+		Class linkOptionClass = Class.forName("java.nio.file.LinkOption");
+		Object noFollowLinks = Array.newInstance(linkOptionClass, 1);
+		Array.set(noFollowLinks, 0, linkOptionClass.getField("NOFOLLOW_LINKS").get(null));
+		Class[] argsTypes = new Class[] { pathClass, noFollowLinks.getClass() };
+		Object path = File.class.getMethod("toPath", new Class[0]).invoke(dir, new Object[0]);
+		Object[] args = new Object[] { path, noFollowLinks };
+
+		Boolean isDirectory = (Boolean) filesClass.getMethod("isDirectory", argsTypes).invoke(null, args);
+		if (!isDirectory.booleanValue()) {
+			// Symbolic link or file
+			DebugLog.debug("Cache dir is not a directory ", dir.getAbsolutePath());
+			return false;
+		}
+		Object owner = filesClass.getMethod("getOwner", argsTypes).invoke(null, args);
+		String ownerName = (String) Class.forName("java.security.Principal").getMethod("getName", new Class[0])
+				.invoke(owner, new Object[0]);
+		String userName = System.getProperty("user.name");
+		// Windows owner name includes domain
+		if ((userName == null) || !(ownerName.equals(userName) || ownerName.endsWith("\\" + userName))) {
+			DebugLog.debug("Cache dir owned by other user " + ownerName + " ", dir.getAbsolutePath());
+			return false;
+		}
+		String permissions;
+		try {
+			permissions = filesClass.getMethod("getPosixFilePermissions", argsTypes).invoke(null, args).toString();
+		} catch (InvocationTargetException e) {
+			if (e.getTargetException() instanceof UnsupportedOperationException) {
+				// Not POSIX file system, temporary directory is per user on Windows
+				return true;
+			}
+			throw e;
+		}
+		if ((permissions.indexOf("GROUP_WRITE") != -1) || (permissions.indexOf("OTHERS_WRITE") != -1)) {
+			DebugLog.debug("Cache dir writable by others " + permissions + " ", dir.getAbsolutePath());
+			return false;
+		}
+		return true;
+	}
+
+	private static String checksum(byte[] data) {
+		byte[] digest;
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			digest = md.digest(data);
+		} catch (Throwable e) {
+			// NoSuchAlgorithmException or J9
+			DebugLog.debug("Can't calculate checksum ", e);
+			return null;
+		}
+		StringBuffer buf = new StringBuffer();
+		for (int i = 0; i < digest.length; i++) {
+			buf.append(Integer.toHexString(digest[i] >> 4 & 0xf));
+			buf.append(Integer.toHexString(digest[i] & 0xf));
+		}
+		return buf.toString();
+	}
+
+	private static boolean isSameContent(File fd, byte[] data) {
+		if ((!fd.isFile()) || (fd.length() != data.length)) {
+			return false;
+		}
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(fd);
+			byte b[] = new byte[COPY_BUFFER_SIZE];
+			int offset = 0;
+			int len;
+			while ((len = fis.read(b)) >= 0) {
+				if (offset + len > data.length) {
+					return false;
+				}
+				for (int i = 0; i < len; i++) {
+					if (b[i] != data[offset + i]) {
+						return false;
+					}
+				}
+				offset += len;
+			}
+			return (offset == data.length);
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (fis != null) {
+				try {
+					fis.close();
+				} catch (IOException ignore) {
+					fis = null;
+				}
+			}
+		}
+	}
+
 	private static File makeTempName(String libFileName) {
 		if (bluecoveDllDir != null) {
 			File f = new File((File)bluecoveDllDir, libFileName);
 			DebugLog.debug("tmp file", f.getAbsolutePath());
 			return f;
 		}
-		String tmpDir = System.getProperty("java.io.tmpdir");
-		if ((tmpDir == null) || (tmpDir.length() == 0)) {
-		    // CrEme 3.29
-		    tmpDir = "temp";
-		}
+		String tmpDir = getTempDir();
 		String uname = System.getProperty("user.name");
 		int count = 0;
 		File fd = null;
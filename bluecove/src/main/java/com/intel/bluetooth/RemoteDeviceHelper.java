@@ -60,6 +60,8 @@ public abstract class RemoteDeviceHelper {
 
         BluetoothStack bluetoothStack;
 
+        private RemoteDeviceRegistry registry;
+
         private Hashtable stackAttributes;
 
         private boolean paired;
@@ -69,9 +71,10 @@ public abstract class RemoteDeviceHelper {
          */
         private WeakVector connections;
 
-        private RemoteDeviceWithExtendedInfo(BluetoothStack bluetoothStack, long address, String name) {
+        private RemoteDeviceWithExtendedInfo(BluetoothStack bluetoothStack, RemoteDeviceRegistry registry, long address, String name) {
             super(RemoteDeviceHelper.getBluetoothAddress(address));
             this.bluetoothStack = bluetoothStack;
+            this.registry = registry;
             this.name = name;
             this.addressLong = address;
         }
@@ -85,6 +88,7 @@ public abstract class RemoteDeviceHelper {
             synchronized (connections) {
                 connections.addElement(connection);
                 DebugLog.debug("connection open, open now", connections.size());
+                registry.connectionsChanged(addressLong, this, connections.size());
             }
         }
 
@@ -95,6 +99,21 @@ public abstract class RemoteDeviceHelper {
             synchronized (connections) {
                 connections.removeElement(connection);
                 DebugLog.debug("connection closed, open now", connections.size());
+                // Connections discarded by the garbage collector are also accounted here
+                registry.connectionsChanged(addressLong, this, connections.size());
+            }
+        }
+
+        /**
+         * Report connections count again, connections discarded by the garbage
+         * collector are no longer counted.
+         */
+        private void purgeConnections() {
+            if (connections == null) {
+                return;
+            }
+            synchronized (connections) {
+                registry.connectionsChanged(addressLong, this, connections.size());
             }
         }
 
@@ -116,6 +135,7 @@ public abstract class RemoteDeviceHelper {
             }
             synchronized (connections) {
                 connections.removeAllElements();
+                registry.connectionsChanged(addressLong, this, 0);
             }
         }
 
@@ -324,18 +344,23 @@ public abstract class RemoteDeviceHelper {
 
     }
 
-    private static synchronized Hashtable devicesCashed(BluetoothStack bluetoothStack) {
-        Hashtable devicesCashed = (Hashtable) stackDevicesCashed.get(bluetoothStack);
+    private static RemoteDeviceRegistry devicesCashed(BluetoothStack bluetoothStack) {
+        RemoteDeviceRegistry devicesCashed = (RemoteDeviceRegistry) stackDevicesCashed.get(bluetoothStack);
         if (devicesCashed == null) {
-            devicesCashed = new Hashtable();
-            stackDevicesCashed.put(bluetoothStack, devicesCashed);
+            synchronized (stackDevicesCashed) {
+                devicesCashed = (RemoteDeviceRegistry) stackDevicesCashed.get(bluetoothStack);
+                if (devicesCashed == null) {
+                    devicesCashed = new RemoteDeviceRegistry(BlueCoveImpl.getConfigProperty(
+                            BlueCoveConfigProperties.PROPERTY_REMOTE_DEVICES_CACHE_SIZE, 1024));
+                    stackDevicesCashed.put(bluetoothStack, devicesCashed);
+                }
+            }
         }
         return devicesCashed;
     }
 
     private static RemoteDeviceWithExtendedInfo getCashedDeviceWithExtendedInfo(BluetoothStack bluetoothStack, long address) {
-        Object key = new Long(address);
-        return (RemoteDeviceWithExtendedInfo) devicesCashed(bluetoothStack).get(key);
+        return (RemoteDeviceWithExtendedInfo) devicesCashed(bluetoothStack).get(address);
     }
 
     static RemoteDevice getCashedDevice(BluetoothStack bluetoothStack, long address) {
@@ -350,20 +375,27 @@ public abstract class RemoteDeviceHelper {
     }
     
     static RemoteDevice createRemoteDevice(BluetoothStack bluetoothStack, long address, String name, boolean paired) {
-        RemoteDeviceWithExtendedInfo dev = getCashedDeviceWithExtendedInfo(bluetoothStack, address);
+        RemoteDeviceRegistry devicesCashed = devicesCashed(bluetoothStack);
+        RemoteDeviceWithExtendedInfo dev = (RemoteDeviceWithExtendedInfo) devicesCashed.get(address);
         if (dev == null) {
             Object saveID = BlueCoveImpl.getCurrentThreadBluetoothStackID();
             try {
                 BlueCoveImpl.setThreadBluetoothStack(bluetoothStack);
-                dev = new RemoteDeviceWithExtendedInfo(bluetoothStack, address, name);
+                dev = new RemoteDeviceWithExtendedInfo(bluetoothStack, devicesCashed, address, name);
             } finally {
                 if (saveID != null) {
                     BlueCoveImpl.setThreadBluetoothStackID(saveID);
                 }
             }
-            devicesCashed(bluetoothStack).put(new Long(address), dev);
-            DebugLog.debug0x("new devicesCashed", address);
-        } else if (!Utils.isStringSet(dev.name)) {
+            RemoteDeviceWithExtendedInfo registered = (RemoteDeviceWithExtendedInfo) devicesCashed.putIfAbsent(address, dev);
+            if (registered == dev) {
+                DebugLog.debug0x("new devicesCashed", address);
+            } else {
+                // Created by other thread
+                dev = registered;
+            }
+        }
+        if (!Utils.isStringSet(dev.name)) {
             // name found
             dev.name = name;
         } else if (Utils.isStringSet(name)) {
@@ -414,14 +446,9 @@ public abstract class RemoteDeviceHelper {
      * @return number of connections
      */
     public static int openConnections() {
-        int c = 0;
-        Hashtable devicesCashed = devicesCashed(getBluetoothStack());
-        synchronized (devicesCashed) {
-            for (Enumeration en = devicesCashed.elements(); en.hasMoreElements();) {
-                c += ((RemoteDeviceWithExtendedInfo) en.nextElement()).connectionsCount();
-            }
-        }
-        return c;
+        RemoteDeviceRegistry registry = devicesCashed(getBluetoothStack());
+        purgeConnections(registry.connectedDevicesList());
+        return registry.openConnections();
     }
 
     /**
@@ -430,11 +457,9 @@ public abstract class RemoteDeviceHelper {
      * @return number of connections
      */
     public static int openConnections(long address) {
-        RemoteDeviceWithExtendedInfo dev = getCashedDeviceWithExtendedInfo(getBluetoothStack(), address);
-        if (dev == null) {
-            return 0;
-        }
-        return dev.connectionsCount();
+        RemoteDeviceRegistry registry = devicesCashed(getBluetoothStack());
+        purgeConnections(registry.connectedDevices(address));
+        return registry.connections(address);
     }
 
     /**
@@ -443,24 +468,20 @@ public abstract class RemoteDeviceHelper {
      * @return number of connections
      */
     public static int connectedDevices() {
-        int c = 0;
-        Hashtable devicesCashed = devicesCashed(getBluetoothStack());
-        synchronized (devicesCashed) {
-            for (Enumeration en = devicesCashed.elements(); en.hasMoreElements();) {
-                if (((RemoteDeviceWithExtendedInfo) en.nextElement()).hasConnections()) {
-                    c++;
-                }
-            }
+        RemoteDeviceRegistry registry = devicesCashed(getBluetoothStack());
+        purgeConnections(registry.connectedDevicesList());
+        return registry.connectedDevices();
+    }
+
+    private static void purgeConnections(Vector devices) {
+        for (Enumeration en = devices.elements(); en.hasMoreElements();) {
+            ((RemoteDeviceWithExtendedInfo) en.nextElement()).purgeConnections();
         }
-        return c;
     }
 
     static void shutdownConnections(BluetoothStack bluetoothStack) {
-        Hashtable devicesCashed = devicesCashed(bluetoothStack);
-        synchronized (devicesCashed) {
-            for (Enumeration en = devicesCashed.elements(); en.hasMoreElements();) {
-                ((RemoteDeviceWithExtendedInfo) en.nextElement()).shutdownConnections();
-            }
+        for (Enumeration en = devicesCashed(bluetoothStack).connectedDevicesList().elements(); en.hasMoreElements();) {
+            ((RemoteDeviceWithExtendedInfo) en.nextElement()).shutdownConnections();
         }
     }
 
@@ -690,7 +711,7 @@ public abstract class RemoteDeviceHelper {
             }
         }
 
-        Hashtable devicesCashed = devicesCashed(bluetoothStack);
+        Vector devicesCashed = devicesCashed(bluetoothStack).devices();
         switch (option) {
         case DiscoveryAgent.PREKNOWN:
             if (devicesCashed.size() == 0) {
@@ -714,12 +735,7 @@ public abstract class RemoteDeviceHelper {
                 // Spec: null if no devices meet the criteria
                 return null;
             }
-            RemoteDevice[] devices = new RemoteDevice[devicesCashed.size()];
-            int k = 0;
-            for (Enumeration en = devicesCashed.elements(); en.hasMoreElements();) {
-                devices[k++] = (RemoteDevice) en.nextElement();
-            }
-            return devices;
+            return remoteDeviceListToArray(devicesCashed);
         default:
             throw new IllegalArgumentException("invalid option");
         }
@@ -0,0 +1,401 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Remote devices known to one BluetoothStack, keyed by bluetooth address.
+ * 
+ * Devices are kept in shards each with own lock and open addressing table of
+ * long addresses, so inquiry results and connections to different devices
+ * rarely wait for each other. Number of open connections and connected devices
+ * is maintained on each change and does not require scan of all devices.
+ * 
+ * When maximum number of devices is set the least recently used device without
+ * open connections is removed from its shard. Device object created for the
+ * same address after removal shares the entry with the old one, connections are
+ * counted per entry summing what each device object reported.
+ * 
+ * <p>
+ * <b><u>Your application should not use this class directly.</u></b>
+ */
+class RemoteDeviceRegistry {
+
+    private static final int SHARDS = 8;
+
+    private static class Entry {
+
+        final long address;
+
+        final Object device;
+
+        int connections;
+
+        /**
+         * Connections reported by each device object, device -> Integer
+         */
+        Hashtable reported;
+
+        /**
+         * LRU list, head is most recently used
+         */
+        Entry prev;
+
+        Entry next;
+
+        Entry(long address, Object device) {
+            this.address = address;
+            this.device = device;
+        }
+    }
+
+    private static class Shard {
+
+        long[] keys = new long[16];
+
+        Entry[] entries = new Entry[16];
+
+        int size;
+
+        Entry head;
+
+        Entry tail;
+
+        int openConnections;
+
+        int connectedDevices;
+
+        int indexOf(long address) {
+            int mask = entries.length - 1;
+            int i = hash(address) & mask;
+            while (entries[i] != null) {
+                if (keys[i] == address) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -(i + 1);
+        }
+
+        Entry get(long address) {
+            int i = indexOf(address);
+            return (i < 0) ? null : entries[i];
+        }
+
+        void insert(Entry e) {
+            if ((size + 1) * 4 > entries.length * 3) {
+                long[] oldKeys = keys;
+                Entry[] oldEntries = entries;
+                keys = new long[oldKeys.length * 2];
+                entries = new Entry[oldEntries.length * 2];
+                for (int i = 0; i < oldEntries.length; i++) {
+                    if (oldEntries[i] != null) {
+                        int j = -(indexOf(oldKeys[i]) + 1);
+                        keys[j] = oldKeys[i];
+                        entries[j] = oldEntries[i];
+                    }
+                }
+            }
+            int i = -(indexOf(e.address) + 1);
+            keys[i] = e.address;
+            entries[i] = e;
+            size++;
+            linkFirst(e);
+        }
+
+        void remove(Entry e) {
+            int mask = entries.length - 1;
+            int i = indexOf(e.address);
+            entries[i] = null;
+            size--;
+            unlink(e);
+            // Move following entries of the same probe sequence to the freed slot
+            int j = (i + 1) & mask;
+            while (entries[j] != null) {
+                int home = hash(keys[j]) & mask;
+                if (((j > i) && ((home <= i) || (home > j))) || ((j < i) && (home <= i) && (home > j))) {
+                    keys[i] = keys[j];
+                    entries[i] = entries[j];
+                    entries[j] = null;
+                    i = j;
+                }
+                j = (j + 1) & mask;
+            }
+        }
+
+        void linkFirst(Entry e) {
+            e.prev = null;
+            e.next = head;
+            if (head != null) {
+                head.prev = e;
+            }
+            head = e;
+            if (tail == null) {
+                tail = e;
+            }
+        }
+
+        void unlink(Entry e) {
+            if (e.prev != null) {
+                e.prev.next = e.next;
+            } else {
+                head = e.next;
+            }
+            if (e.next != null) {
+                e.next.prev = e.prev;
+            } else {
+                tail = e.prev;
+            }
+            e.prev = null;
+            e.next = null;
+        }
+
+        void touch(Entry e) {
+            if (head != e) {
+                unlink(e);
+                linkFirst(e);
+            }
+        }
+
+        /**
+         * Remove least recently used entry without connections. The most
+         * recently used is never removed.
+         */
+        boolean evict() {
+            for (Entry e = tail; (e != null) && (e != head); e = e.prev) {
+                if (e.connections == 0) {
+                    remove(e);
+                    DebugLog.debug0x("evict device", e.address);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final Shard[] shards;
+
+    private final int maxShardSize;
+
+    /**
+     * @param maxDevices
+     *            0 for no limit
+     */
+    RemoteDeviceRegistry(int maxDevices) {
+        this.shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+        if (maxDevices <= 0) {
+            this.maxShardSize = Integer.MAX_VALUE;
+        } else {
+            this.maxShardSize = (maxDevices + SHARDS - 1) / SHARDS;
+        }
+    }
+
+    static int hash(long address) {
+        int h = (int) (address ^ (address >>> 32));
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    private Shard shard(long address) {
+        return shards[(hash(address) >>> 29) & (SHARDS - 1)];
+    }
+
+    Object get(long address) {
+        Shard s = shard(address);
+        synchronized (s) {
+            Entry e = s.get(address);
+            if (e == null) {
+                return null;
+            }
+            s.touch(e);
+            return e.device;
+        }
+    }
+
+    /**
+     * @return device already registered for this address or
+     *         <code>device</code> if it was added
+     */
+    Object putIfAbsent(long address, Object device) {
+        Shard s = shard(address);
+        synchronized (s) {
+            Entry e = s.get(address);
+            if (e != null) {
+                s.touch(e);
+                return e.device;
+            }
+            s.insert(new Entry(address, device));
+            while ((s.size > maxShardSize) && s.evict()) {
+            }
+            return device;
+        }
+    }
+
+    /**
+     * Update number of open connections to the device. Device removed from
+     * registry is added again when it has connections.
+     */
+    void connectionsChanged(long address, Object device, int connections) {
+        Shard s = shard(address);
+        synchronized (s) {
+            Entry e = s.get(address);
+            if (e == null) {
+                if (connections == 0) {
+                    return;
+                }
+                e = new Entry(address, device);
+                s.insert(e);
+            } else {
+                s.touch(e);
+            }
+            int previous = 0;
+            if (e.reported == null) {
+                e.reported = new Hashtable();
+            } else {
+                Integer p = (Integer) e.reported.get(device);
+                if (p != null) {
+                    previous = p.intValue();
+                }
+            }
+            if (connections == 0) {
+                e.reported.remove(device);
+            } else {
+                e.reported.put(device, new Integer(connections));
+            }
+            int total = e.connections + connections - previous;
+            s.openConnections += total - e.connections;
+            if ((e.connections == 0) && (total != 0)) {
+                s.connectedDevices++;
+            } else if ((e.connections != 0) && (total == 0)) {
+                s.connectedDevices--;
+            }
+            e.connections = total;
+        }
+    }
+
+    /**
+     * @return number of open connections reported by all device objects for
+     *         this address
+     */
+    int connections(long address) {
+        Shard s = shard(address);
+        synchronized (s) {
+            Entry e = s.get(address);
+            return (e == null) ? 0 : e.connections;
+        }
+    }
+
+    /**
+     * @return device objects that reported open connections to this address
+     */
+    Vector connectedDevices(long address) {
+        Vector devices = new Vector();
+        Shard s = shard(address);
+        synchronized (s) {
+            addReported(s.get(address), devices);
+        }
+        return devices;
+    }
+
+    /**
+     * @return device objects that reported open connections, including device
+     *         objects no longer registered
+     */
+    Vector connectedDevicesList() {
+        Vector devices = new Vector();
+        for (int i = 0; i < SHARDS; i++) {
+            Shard s = shards[i];
+            synchronized (s) {
+                for (Entry e = s.head; e != null; e = e.next) {
+                    addReported(e, devices);
+                }
+            }
+        }
+        return devices;
+    }
+
+    private static void addReported(Entry e, Vector devices) {
+        if ((e == null) || (e.reported == null)) {
+            return;
+        }
+        for (Enumeration en = e.reported.keys(); en.hasMoreElements();) {
+            devices.addElement(en.nextElement());
+        }
+    }
+
+    int openConnections() {
+        int c = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            synchronized (shards[i]) {
+                c += shards[i].openConnections;
+            }
+        }
+        return c;
+    }
+
+    int connectedDevices() {
+        int c = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            synchronized (shards[i]) {
+                c += shards[i].connectedDevices;
+            }
+        }
+        return c;
+    }
+
+    int size() {
+        int c = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            synchronized (shards[i]) {
+                c += shards[i].size;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * @return copy of registered devices
+     */
+    Vector devices() {
+        Vector devices = new Vector();
+        for (int i = 0; i < SHARDS; i++) {
+            Shard s = shards[i];
+            synchronized (s) {
+                for (Entry e = s.head; e != null; e = e.next) {
+                    devices.addElement(e.device);
+                }
+            }
+        }
+        return devices;
+    }
+}
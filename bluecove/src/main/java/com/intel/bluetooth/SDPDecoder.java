@@ -0,0 +1,295 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.IOException;
+
+import javax.bluetooth.DataElement;
+import javax.bluetooth.UUID;
+
+/**
+ * Decodes SDP DataElements directly from byte array. The position in array is
+ * kept as a cursor so the caller may decode only the elements it needs and
+ * skip the rest, e.g. nested DATSEQ of attribute values that are not
+ * requested.
+ * 
+ * <p>
+ * <b><u>Your application should not use this class directly.</u></b>
+ */
+class SDPDecoder {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final byte[] data;
+
+	private int pos;
+
+	private final int end;
+
+	SDPDecoder(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	SDPDecoder(byte[] data, int offset, int length) {
+		this.data = data;
+		this.pos = offset;
+		this.end = offset + length;
+	}
+
+	static DataElement decode(byte[] data) throws IOException {
+		return (new SDPDecoder(data)).readElement();
+	}
+
+	int getPosition() {
+		return pos;
+	}
+
+	boolean hasMoreElements() {
+		return pos < end;
+	}
+
+	private void require(int size) throws IOException {
+		if ((size < 0) || (pos + size > end)) {
+			throw new IOException("SDP data truncated at " + pos + ", " + size + " bytes expected");
+		}
+	}
+
+	private long readLong(int size) throws IOException {
+		require(size);
+		long result = 0;
+		for (int i = 0; i < size; i++) {
+			result = result << 8 | (data[pos++] & 0xFF);
+		}
+		return result;
+	}
+
+	private byte[] readBytes(int size) throws IOException {
+		require(size);
+		byte[] result = new byte[size];
+		System.arraycopy(data, pos, result, 0, size);
+		pos += size;
+		return result;
+	}
+
+	private int readLength(int sizeDescriptor) throws IOException {
+		switch (sizeDescriptor) {
+		case 5:
+			return (int) readLong(1);
+		case 6:
+			return (int) readLong(2);
+		case 7:
+			long length = readLong(4);
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("SDP data length " + length + " too big");
+			}
+			return (int) length;
+		default:
+			throw new IOException("Invalid size descriptor " + sizeDescriptor);
+		}
+	}
+
+	/**
+	 * @return size of fixed length data or -1 for types that have length
+	 *         field
+	 */
+	private static int fixedSize(int type, int sizeDescriptor) throws IOException {
+		switch (type) {
+		case 0: // NULL
+			return 0;
+		case 1: // U_INT
+		case 2: // INT
+		case 3: // UUID
+		case 5: // BOOL
+			if (sizeDescriptor > 4) {
+				throw new IOException("Invalid size descriptor " + sizeDescriptor + " for type " + type);
+			}
+			return 1 << sizeDescriptor;
+		case 4: // STRING
+		case 6: // DATSEQ
+		case 7: // DATALT
+		case 8: // URL
+			return -1;
+		default:
+			throw new IOException("Unknown type " + type);
+		}
+	}
+
+	private UUID readUUID(int size) throws IOException {
+		switch (size) {
+		case 2:
+		case 4:
+			return new UUID(readLong(size));
+		case 16:
+			require(16);
+			if (isShortUUID(data, pos)) {
+				UUID uuid = new UUID(((data[pos] & 0xFFL) << 24) | ((data[pos + 1] & 0xFF) << 16)
+						| ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF));
+				pos += 16;
+				return uuid;
+			}
+			char[] hex = new char[32];
+			for (int i = 0; i < 16; i++) {
+				int b = data[pos++];
+				hex[i * 2] = HEX_DIGITS[b >> 4 & 0xF];
+				hex[i * 2 + 1] = HEX_DIGITS[b & 0xF];
+			}
+			return new UUID(new String(hex), false);
+		default:
+			throw new IOException("Invalid UUID size " + size);
+		}
+	}
+
+	/**
+	 * Check that last 12 bytes are the same as in Bluetooth Base UUID
+	 * 0000xxxx-0000-1000-8000-00805F9B34FB
+	 */
+	private static boolean isShortUUID(byte[] data, int off) {
+		return (data[off + 4] == 0x00) && (data[off + 5] == 0x00) && (data[off + 6] == 0x10)
+				&& (data[off + 7] == 0x00) && (data[off + 8] == (byte) 0x80) && (data[off + 9] == 0x00)
+				&& (data[off + 10] == 0x00) && (data[off + 11] == (byte) 0x80) && (data[off + 12] == 0x5F)
+				&& (data[off + 13] == (byte) 0x9B) && (data[off + 14] == 0x34) && (data[off + 15] == (byte) 0xFB);
+	}
+
+	/**
+	 * Move cursor to the next element without creating any objects.
+	 */
+	void skipElement() throws IOException {
+		require(1);
+		int header = data[pos++] & 0xFF;
+		int type = header >> 3 & 0x1f;
+		int sizeDescriptor = header & 0x07;
+		int size = fixedSize(type, sizeDescriptor);
+		if (size == -1) {
+			size = readLength(sizeDescriptor);
+		}
+		require(size);
+		pos += size;
+	}
+
+	/**
+	 * Read the header of DATSEQ or DATALT. The elements of the sequence are
+	 * read by following calls to readElement() or skipElement().
+	 * 
+	 * @return position in array after the last element of sequence
+	 */
+	int readSequence() throws IOException {
+		require(1);
+		int header = data[pos++] & 0xFF;
+		int type = header >> 3 & 0x1f;
+		if ((type != 6) && (type != 7)) {
+			throw new IOException("DATSEQ or DATALT expected instead of " + type);
+		}
+		int length = readLength(header & 0x07);
+		require(length);
+		return pos + length;
+	}
+
+	/**
+	 * Read U_INT_2 attribute ID from attribute list.
+	 */
+	int readAttributeID() throws IOException {
+		require(1);
+		int header = data[pos++] & 0xFF;
+		if (header != 0x09) {
+			throw new IOException("U_INT_2 expected instead of 0x" + Integer.toHexString(header));
+		}
+		return (int) readLong(2);
+	}
+
+	DataElement readElement() throws IOException {
+		require(1);
+		int header = data[pos++] & 0xFF;
+		int type = header >> 3 & 0x1f;
+		int sizeDescriptor = header & 0x07;
+		int size = fixedSize(type, sizeDescriptor);
+
+		switch (type) {
+		case 0: // NULL
+			return new DataElement(DataElement.NULL);
+		case 1: // U_INT
+			switch (size) {
+			case 1:
+				return new DataElement(DataElement.U_INT_1, readLong(1));
+			case 2:
+				return new DataElement(DataElement.U_INT_2, readLong(2));
+			case 4:
+				return new DataElement(DataElement.U_INT_4, readLong(4));
+			case 8:
+				return new DataElement(DataElement.U_INT_8, readBytes(8));
+			default:
+				return new DataElement(DataElement.U_INT_16, readBytes(16));
+			}
+		case 2: // INT
+			switch (size) {
+			case 1:
+				return new DataElement(DataElement.INT_1, (long) (byte) readLong(1));
+			case 2:
+				return new DataElement(DataElement.INT_2, (long) (short) readLong(2));
+			case 4:
+				return new DataElement(DataElement.INT_4, (long) (int) readLong(4));
+			case 8:
+				return new DataElement(DataElement.INT_8, readLong(8));
+			default:
+				return new DataElement(DataElement.INT_16, readBytes(16));
+			}
+		case 3: // UUID
+			return new DataElement(DataElement.UUID, readUUID(size));
+		case 4: // STRING
+		{
+			int length = readLength(sizeDescriptor);
+			require(length);
+			String strValue = Utils.newStringUTF8(data, pos, length);
+			pos += length;
+			return new DataElement(DataElement.STRING, strValue);
+		}
+		case 5: // BOOL
+			return new DataElement(readLong(size) != 0);
+		case 6: // DATSEQ
+		case 7: // DATALT
+		{
+			pos--;
+			int sequenceEnd = readSequence();
+			DataElement element = new DataElement((type == 6) ? DataElement.DATSEQ : DataElement.DATALT);
+			while (pos < sequenceEnd) {
+				element.addElement(readElement());
+			}
+			if (pos != sequenceEnd) {
+				throw new IOException(((type == 6) ? "DATSEQ" : "DATALT") + " size corruption " + (sequenceEnd - pos));
+			}
+			return element;
+		}
+		case 8: // URL
+		{
+			int length = readLength(sizeDescriptor);
+			require(length);
+			String urlValue = Utils.newStringASCII(data, pos, length);
+			pos += length;
+			return new DataElement(DataElement.URL, urlValue);
+		}
+		default:
+			throw new IOException("Unknown type " + type);
+		}
+	}
+}
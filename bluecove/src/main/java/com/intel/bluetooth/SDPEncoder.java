@@ -0,0 +1,370 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import javax.bluetooth.DataElement;
+import javax.bluetooth.UUID;
+
+/**
+ * Encodes DataElement tree to SDP binary format in two passes. The first pass
+ * measures the tree bottom-up and remembers the length of each DATSEQ and
+ * DATALT, the second writes the elements to byte array of exact size.
+ * 
+ * When created with <code>reuse</code> the encoded STRING, URL and UUID
+ * elements are kept until the next call so encoding of the same record again
+ * only copies bytes. DataElements of this types are immutable so the same
+ * object would always produce the same bytes.
+ * 
+ * <p>
+ * <b><u>Your application should not use this class directly.</u></b>
+ */
+class SDPEncoder {
+
+	private final boolean reuse;
+
+	private boolean stringsASCII;
+
+	/**
+	 * Encoded values from previous call, DataElement to byte[]
+	 */
+	private Hashtable encoded;
+
+	private Hashtable encodedNext;
+
+	/**
+	 * DATSEQ and DATALT content lengths in tree pre-order
+	 */
+	private int[] sequenceLengths = new int[8];
+
+	private int sequenceCount;
+
+	private int sequenceIndex;
+
+	/**
+	 * STRING, URL and UUID encoding in tree pre-order
+	 */
+	private byte[][] values = new byte[8][];
+
+	private int valuesCount;
+
+	private int valuesIndex;
+
+	SDPEncoder() {
+		this(false);
+	}
+
+	SDPEncoder(boolean reuse) {
+		this.reuse = reuse;
+	}
+
+	synchronized int getLength(DataElement element) {
+		begin();
+		try {
+			return measure(element);
+		} finally {
+			end();
+		}
+	}
+
+	synchronized byte[] encode(DataElement element) throws IOException {
+		begin();
+		try {
+			byte[] buf = new byte[measure(element)];
+			if (write(element, buf, 0) != buf.length) {
+				throw new IOException("SDP encoding size mismatch");
+			}
+			return buf;
+		} finally {
+			end();
+		}
+	}
+
+	/**
+	 * Encode service record attribute list, DATSEQ of attribute ID and value
+	 * pairs, from values already encoded.
+	 */
+	static byte[] encodeAttributes(int[] attrIDs, byte[][] encodedValues) {
+		int length = 0;
+		for (int i = 0; i < attrIDs.length; i++) {
+			length += 3 + encodedValues[i].length;
+		}
+		byte[] buf = new byte[sequenceHeaderLength(length) + length];
+		int off = writeSequenceHeader(0x30, length, buf, 0);
+		for (int i = 0; i < attrIDs.length; i++) {
+			buf[off++] = 0x09;
+			off = writeLong(attrIDs[i], 2, buf, off);
+			System.arraycopy(encodedValues[i], 0, buf, off, encodedValues[i].length);
+			off += encodedValues[i].length;
+		}
+		return buf;
+	}
+
+	private void begin() {
+		boolean ascii = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_STRING_ENCODING_ASCII,
+				false);
+		if (ascii != stringsASCII) {
+			encoded = null;
+			stringsASCII = ascii;
+		}
+		if (reuse) {
+			encodedNext = new Hashtable();
+		}
+		sequenceCount = 0;
+		sequenceIndex = 0;
+		valuesCount = 0;
+		valuesIndex = 0;
+	}
+
+	private void end() {
+		if (reuse) {
+			encoded = encodedNext;
+			encodedNext = null;
+		}
+		for (int i = 0; i < valuesCount; i++) {
+			values[i] = null;
+		}
+	}
+
+	private static int sequenceHeaderLength(int length) {
+		if (length < 0xFE) {
+			return 2;
+		} else if (length < 0xFFFE) {
+			return 3;
+		} else {
+			return 5;
+		}
+	}
+
+	private static int writeSequenceHeader(int type, int length, byte[] buf, int off) {
+		switch (sequenceHeaderLength(length)) {
+		case 2:
+			buf[off] = (byte) (type | 5);
+			return writeLong(length, 1, buf, off + 1);
+		case 3:
+			buf[off] = (byte) (type | 6);
+			return writeLong(length, 2, buf, off + 1);
+		default:
+			buf[off] = (byte) (type | 7);
+			return writeLong(length, 4, buf, off + 1);
+		}
+	}
+
+	private static int writeLong(long l, int size, byte[] buf, int off) {
+		for (int i = size - 1; i >= 0; i--) {
+			buf[off + i] = (byte) l;
+			l >>= 8;
+		}
+		return off + size;
+	}
+
+	private static byte[] encodeString(int type, byte[] b) {
+		byte[] buf;
+		int off;
+		if (b.length < 0x100) {
+			buf = new byte[2 + b.length];
+			buf[0] = (byte) (type | 5);
+			off = writeLong(b.length, 1, buf, 1);
+		} else if (b.length < 0x10000) {
+			buf = new byte[3 + b.length];
+			buf[0] = (byte) (type | 6);
+			off = writeLong(b.length, 2, buf, 1);
+		} else {
+			buf = new byte[5 + b.length];
+			buf[0] = (byte) (type | 7);
+			off = writeLong(b.length, 4, buf, 1);
+		}
+		System.arraycopy(b, 0, buf, off, b.length);
+		return buf;
+	}
+
+	private byte[] encodeValue(DataElement d) {
+		switch (d.getDataType()) {
+		case DataElement.UUID: {
+			UUID uuidValue = (UUID) d.getValue();
+			long uuid = Utils.UUIDTo32Bit(uuidValue);
+			if (uuid == -1) {
+				byte[] buf = new byte[17];
+				buf[0] = 24 | 4;
+				System.arraycopy(Utils.UUIDToByteArray(uuidValue), 0, buf, 1, 16);
+				return buf;
+			} else if (uuid <= 0xFFFF) {
+				byte[] buf = new byte[3];
+				buf[0] = 24 | 1;
+				writeLong(uuid, 2, buf, 1);
+				return buf;
+			} else {
+				byte[] buf = new byte[5];
+				buf[0] = 24 | 2;
+				writeLong(uuid, 4, buf, 1);
+				return buf;
+			}
+		}
+		case DataElement.STRING:
+			if (stringsASCII) {
+				return encodeString(32, Utils.getASCIIBytes((String) d.getValue()));
+			} else {
+				return encodeString(32, Utils.getUTF8Bytes((String) d.getValue()));
+			}
+		default:
+			return encodeString(64, Utils.getASCIIBytes((String) d.getValue()));
+		}
+	}
+
+	private int measureValue(DataElement d) {
+		byte[] b = null;
+		if (encoded != null) {
+			b = (byte[]) encoded.get(d);
+		}
+		if (b == null) {
+			b = encodeValue(d);
+		}
+		if (reuse) {
+			encodedNext.put(d, b);
+		}
+		if (valuesCount == values.length) {
+			byte[][] newValues = new byte[valuesCount * 2][];
+			System.arraycopy(values, 0, newValues, 0, valuesCount);
+			values = newValues;
+		}
+		values[valuesCount++] = b;
+		return b.length;
+	}
+
+	private int measure(DataElement d) {
+		switch (d.getDataType()) {
+		case DataElement.NULL:
+			return 1;
+		case DataElement.BOOL:
+		case DataElement.U_INT_1:
+		case DataElement.INT_1:
+			return 2;
+		case DataElement.U_INT_2:
+		case DataElement.INT_2:
+			return 3;
+		case DataElement.U_INT_4:
+		case DataElement.INT_4:
+			return 5;
+		case DataElement.U_INT_8:
+		case DataElement.INT_8:
+			return 9;
+		case DataElement.U_INT_16:
+		case DataElement.INT_16:
+			return 17;
+		case DataElement.UUID:
+		case DataElement.STRING:
+		case DataElement.URL:
+			return measureValue(d);
+		case DataElement.DATSEQ:
+		case DataElement.DATALT: {
+			if (sequenceCount == sequenceLengths.length) {
+				int[] newLengths = new int[sequenceCount * 2];
+				System.arraycopy(sequenceLengths, 0, newLengths, 0, sequenceCount);
+				sequenceLengths = newLengths;
+			}
+			int index = sequenceCount++;
+			int length = 0;
+			for (Enumeration e = (Enumeration) d.getValue(); e.hasMoreElements();) {
+				length += measure((DataElement) e.nextElement());
+			}
+			sequenceLengths[index] = length;
+			return sequenceHeaderLength(length) + length;
+		}
+		default:
+			throw new IllegalArgumentException();
+		}
+	}
+
+	private int write(DataElement d, byte[] buf, int off) throws IOException {
+		switch (d.getDataType()) {
+		case DataElement.NULL:
+			buf[off] = 0;
+			return off + 1;
+		case DataElement.U_INT_1:
+			buf[off] = 8 | 0;
+			return writeLong(d.getLong(), 1, buf, off + 1);
+		case DataElement.U_INT_2:
+			buf[off] = 8 | 1;
+			return writeLong(d.getLong(), 2, buf, off + 1);
+		case DataElement.U_INT_4:
+			buf[off] = 8 | 2;
+			return writeLong(d.getLong(), 4, buf, off + 1);
+		case DataElement.U_INT_8:
+			buf[off] = 8 | 3;
+			System.arraycopy((byte[]) d.getValue(), 0, buf, off + 1, 8);
+			return off + 9;
+		case DataElement.U_INT_16:
+			buf[off] = 8 | 4;
+			System.arraycopy((byte[]) d.getValue(), 0, buf, off + 1, 16);
+			return off + 17;
+		case DataElement.INT_1:
+			buf[off] = 16 | 0;
+			return writeLong(d.getLong(), 1, buf, off + 1);
+		case DataElement.INT_2:
+			buf[off] = 16 | 1;
+			return writeLong(d.getLong(), 2, buf, off + 1);
+		case DataElement.INT_4:
+			buf[off] = 16 | 2;
+			return writeLong(d.getLong(), 4, buf, off + 1);
+		case DataElement.INT_8:
+			buf[off] = 16 | 3;
+			return writeLong(d.getLong(), 8, buf, off + 1);
+		case DataElement.INT_16:
+			buf[off] = 16 | 4;
+			System.arraycopy((byte[]) d.getValue(), 0, buf, off + 1, 16);
+			return off + 17;
+		case DataElement.BOOL:
+			buf[off] = 40 | 0;
+			buf[off + 1] = (byte) (d.getBoolean() ? 1 : 0);
+			return off + 2;
+		case DataElement.UUID:
+		case DataElement.STRING:
+		case DataElement.URL: {
+			byte[] b = values[valuesIndex++];
+			System.arraycopy(b, 0, buf, off, b.length);
+			return off + b.length;
+		}
+		case DataElement.DATSEQ:
+		case DataElement.DATALT: {
+			int length = sequenceLengths[sequenceIndex++];
+			int type = (d.getDataType() == DataElement.DATSEQ) ? 48 : 56;
+			int start = writeSequenceHeader(type, length, buf, off);
+			off = start;
+			for (Enumeration e = (Enumeration) d.getValue(); e.hasMoreElements();) {
+				off = write((DataElement) e.nextElement(), buf, off);
+			}
+			if (off - start != length) {
+				throw new IOException("DataElement modified during encoding");
+			}
+			return off;
+		}
+		default:
+			throw new IOException();
+		}
+	}
+}
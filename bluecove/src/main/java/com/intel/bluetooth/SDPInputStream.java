@@ -158,7 +158,9 @@ class SDPInputStream extends InputStream {
 				throw new IOException();
 			}
 			String strValue = Utils.newStringUTF8(readBytes(length));
-			DebugLog.debug("DataElement.STRING", strValue, Integer.toString(length - strValue.length()));
+			if (DebugLog.isDebugEnabled()) {
+				DebugLog.debugFormat("DataElement.STRING {} {}", strValue, new Integer(length - strValue.length()));
+			}
 			return new DataElement(DataElement.STRING, strValue);
 		}
 		case 5: // BOOL
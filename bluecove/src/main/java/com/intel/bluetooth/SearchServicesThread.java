@@ -40,7 +40,7 @@ import javax.bluetooth.UUID;
  * <b><u>Your application should not use this class directly.</u></b>
  *
  */
-class SearchServicesThread extends Thread {
+class SearchServicesThread implements Runnable {
 
 	private static int transIDGenerator = 0;
 
@@ -78,7 +78,6 @@ class SearchServicesThread extends Thread {
 
 	private SearchServicesThread(int transID, BluetoothStack stack, SearchServicesRunnable serachRunnable,
 			int[] attrSet, UUID[] uuidSet, RemoteDevice device, DiscoveryListener listener) {
-		super("SearchServicesThread-" + transID);
 		this.stack = stack;
 		this.serachRunnable = serachRunnable;
 		this.transID = transID;
@@ -94,6 +93,12 @@ class SearchServicesThread extends Thread {
 	 */
 	static int startSearchServices(BluetoothStack stack, SearchServicesRunnable searchRunnable, int[] attrSet,
 			UUID[] uuidSet, RemoteDevice device, DiscoveryListener listener) throws BluetoothStateException {
+		SearchServicesRunnable cachedSearch = ServiceRecordsCache.cachedSearchServices(stack, attrSet, uuidSet, device);
+		if (cachedSearch != null) {
+			searchRunnable = cachedSearch;
+		} else {
+			listener = ServiceRecordsCache.cachingListener(attrSet, uuidSet, device, listener);
+		}
 		SearchServicesThread t;
 		synchronized (threads) {
 			int runningCount = countRunningSearchServicesThreads(stack);
@@ -104,10 +109,9 @@ class SearchServicesThread extends Thread {
 			t = (new SearchServicesThread(nextThreadNum(), stack, searchRunnable, attrSet, uuidSet, device, listener));
 			threads.put(new Integer(t.getTransID()), t);
 		}
-		// In case the BTStack hangs, exit JVM anyway
-		UtilsJavaSE.threadSetDaemon(t);
 		synchronized (t.serviceSearchStartedEvent) {
-			t.start();
+			// Executed by daemon thread, in case the BTStack hangs exit JVM anyway
+			BlueCoveScheduler.execute(t, "SearchServicesThread-" + t.getTransID());
 			while (!t.started && !t.finished) {
 				try {
 					t.serviceSearchStartedEvent.wait();
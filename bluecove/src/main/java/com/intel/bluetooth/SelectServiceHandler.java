@@ -24,6 +24,7 @@
  */
 package com.intel.bluetooth;
 
+import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -31,6 +32,7 @@ import javax.bluetooth.BluetoothStateException;
 import javax.bluetooth.DeviceClass;
 import javax.bluetooth.DiscoveryAgent;
 import javax.bluetooth.DiscoveryListener;
+import javax.bluetooth.LocalDevice;
 import javax.bluetooth.RemoteDevice;
 import javax.bluetooth.ServiceRecord;
 import javax.bluetooth.UUID;
@@ -46,25 +48,44 @@ public class SelectServiceHandler implements DiscoveryListener {
 
 	private DiscoveryAgent agent;
 
-	private Object inquiryCompletedEvent = new Object();
-
-	private boolean inquiryCompleted;
+	/**
+	 * Guards all search state, notified on every event
+	 */
+	private Object searchEvent = new Object();
 
-	private Object serviceSearchCompletedEvent = new Object();
+	private boolean inquiryStarted;
 
-	private boolean serviceSearchCompleted;
+	private boolean inquiryCompleted;
 
 	private Hashtable devicesProcessed = new Hashtable();
 
+	/**
+	 * Devices waiting for service search
+	 */
 	private Vector serviceSearchDeviceQueue = new Vector();
 
-	private ServiceRecord servRecordDiscovered;
+	/**
+	 * transID to RemoteDevice of running service searches
+	 */
+	private Hashtable runningSearches = new Hashtable();
 
-	private static int threadNumber;
+	/**
+	 * Service searches completed before searchServices returned transID
+	 */
+	private Hashtable completedSearches = new Hashtable();
 
-	private static synchronized int nextThreadNum() {
-		return threadNumber++;
-	}
+	private int runningCount;
+
+	private int maxSearches;
+
+	private boolean searchRejected;
+
+	private ServiceRecord servRecordDiscovered;
+
+	/**
+	 * UUID to bluetooth address of device that provided the service last time
+	 */
+	private static Hashtable lastFoundDevices = new Hashtable();
 
 	public SelectServiceHandler(DiscoveryAgent agent) {
 		this.agent = agent;
@@ -129,169 +150,169 @@ public class SelectServiceHandler implements DiscoveryListener {
 			throw new IllegalArgumentException();
 		}
 
-		RemoteDevice[] devs = agent.retrieveDevices(DiscoveryAgent.PREKNOWN);
-		for (int i = 0; (devs != null) && (i < devs.length); i++) {
-			ServiceRecord sr = findServiceOnDevice(uuid, devs[i]);
-			if (sr != null) {
-				return sr.getConnectionURL(security, master);
-			}
+		maxSearches = getMaxSearches();
+		String lastFound = (String) lastFoundDevices.get(uuid);
+		synchronized (searchEvent) {
+			addDevices(agent.retrieveDevices(DiscoveryAgent.PREKNOWN), lastFound);
+			addDevices(agent.retrieveDevices(DiscoveryAgent.CACHED), lastFound);
 		}
-		devs = agent.retrieveDevices(DiscoveryAgent.CACHED);
-		for (int i = 0; (devs != null) && (i < devs.length); i++) {
-			ServiceRecord sr = findServiceOnDevice(uuid, devs[i]);
-			if (sr != null) {
-				return sr.getConnectionURL(security, master);
+		ServiceRecord sr = searchQueuedDevices(uuid);
+		if (sr == null) {
+			synchronized (searchEvent) {
+				inquiryStarted = true;
 			}
-		}
-		ParallelSearchServicesThread t = new ParallelSearchServicesThread(uuid);
-		t.start();
-
-		synchronized (inquiryCompletedEvent) {
 			if (!agent.startInquiry(DiscoveryAgent.GIAC, this)) {
 				return null;
 			}
-			while (!inquiryCompleted) {
-				try {
-					inquiryCompletedEvent.wait();
-				} catch (InterruptedException e) {
-					return null;
-				}
-			}
-			agent.cancelInquiry(this);
+			sr = searchQueuedDevices(uuid);
 		}
-
-		if ((servRecordDiscovered == null) && (!t.processedAll())) {
-			synchronized (serviceSearchDeviceQueue) {
-				serviceSearchDeviceQueue.notifyAll();
-			}
-			try {
-				t.join();
-			} catch (InterruptedException e) {
-				return null;
-			}
-		}
-		t.interrupt();
-
-		if (servRecordDiscovered != null) {
-			return servRecordDiscovered.getConnectionURL(security, master);
+		cancelSearches();
+		if (sr == null) {
+			return null;
 		}
-
-		return null;
+		lastFoundDevices.put(uuid, sr.getHostDevice().getBluetoothAddress());
+		return sr.getConnectionURL(security, master);
 	}
 
-	private class ParallelSearchServicesThread extends Thread {
-
-		private boolean stoped = false;
-
-		private int processedNext = 0;
-
-		private int processedSize = 0;
-
-		private UUID uuid;
-
-		ParallelSearchServicesThread(UUID uuid) {
-			super("SelectServiceThread-" + nextThreadNum());
-			this.uuid = uuid;
-		}
-
-		boolean processedAll() {
-			return (processedNext == serviceSearchDeviceQueue.size());
+	private int getMaxSearches() {
+		try {
+			int max = Integer.parseInt(LocalDevice.getProperty(BluetoothConsts.PROPERTY_BLUETOOTH_SD_TRANS_MAX));
+			if (max > 0) {
+				return max;
+			}
+		} catch (Throwable e) {
 		}
+		return 1;
+	}
 
-		public void interrupt() {
-			stoped = true;
-			synchronized (serviceSearchDeviceQueue) {
-				serviceSearchDeviceQueue.notifyAll();
+	/**
+	 * Device that provided the service last time is searched first
+	 */
+	private void addDevices(RemoteDevice[] devs, String lastFound) {
+		for (int i = 0; (devs != null) && (i < devs.length); i++) {
+			if (devicesProcessed.containsKey(devs[i])) {
+				continue;
+			}
+			devicesProcessed.put(devs[i], devs[i]);
+			if (devs[i].getBluetoothAddress().equals(lastFound)) {
+				serviceSearchDeviceQueue.insertElementAt(devs[i], 0);
+			} else {
+				serviceSearchDeviceQueue.addElement(devs[i]);
 			}
-			super.interrupt();
 		}
+	}
 
-		public void run() {
-			mainLoop: while ((!stoped) && (servRecordDiscovered == null)) {
-				synchronized (serviceSearchDeviceQueue) {
-					if ((inquiryCompleted) && (processedSize == serviceSearchDeviceQueue.size())) {
-						return;
+	/**
+	 * Runs up to bluetooth.sd.trans.max service searches at the same time
+	 * until the service is found or all queued devices are searched. When
+	 * inquiry is running waits for discovered devices until it completes.
+	 */
+	private ServiceRecord searchQueuedDevices(UUID uuid) {
+		while (true) {
+			RemoteDevice device;
+			synchronized (searchEvent) {
+				while (true) {
+					if (servRecordDiscovered != null) {
+						return servRecordDiscovered;
 					}
-					if (processedSize == serviceSearchDeviceQueue.size()) {
-						try {
-							serviceSearchDeviceQueue.wait();
-						} catch (InterruptedException e) {
-							return;
-						}
+					if ((!serviceSearchDeviceQueue.isEmpty()) && (runningCount < maxSearches) && (!searchRejected)) {
+						break;
 					}
-					processedSize = serviceSearchDeviceQueue.size();
-				}
-				for (int i = processedNext; i < processedSize; i++) {
-					RemoteDevice btDevice = (RemoteDevice) serviceSearchDeviceQueue.elementAt(i);
-					if (findServiceOnDevice(uuid, btDevice) != null) {
-						break mainLoop;
+					if (serviceSearchDeviceQueue.isEmpty() && (runningCount == 0) && ((!inquiryStarted) || inquiryCompleted)) {
+						return null;
+					}
+					try {
+						searchEvent.wait();
+					} catch (InterruptedException e) {
+						return null;
 					}
 				}
-				processedNext = processedSize + 1;
+				device = (RemoteDevice) serviceSearchDeviceQueue.elementAt(0);
+				serviceSearchDeviceQueue.removeElementAt(0);
+				runningCount++;
 			}
-		}
-
-	}
-
-	private ServiceRecord findServiceOnDevice(UUID uuid, RemoteDevice device) {
-		if (devicesProcessed.containsKey(device)) {
-			return null;
-		}
-		devicesProcessed.put(device, device);
-		DebugLog.debug("searchServices on ", device);
-		synchronized (serviceSearchCompletedEvent) {
+			DebugLog.debug("searchServices on ", device);
+			int transID;
 			try {
-				serviceSearchCompleted = false;
-				agent.searchServices(null, new UUID[] { uuid }, device, this);
+				transID = agent.searchServices(null, new UUID[] { uuid }, device, this);
 			} catch (BluetoothStateException e) {
-				DebugLog.error("searchServices", e);
-				return null;
+				synchronized (searchEvent) {
+					runningCount--;
+					if (runningCount > 0) {
+						// Other searches are running, retry when one of them ends
+						DebugLog.debug("searchServices postponed", e);
+						serviceSearchDeviceQueue.insertElementAt(device, 0);
+						searchRejected = true;
+					} else {
+						DebugLog.error("searchServices", e);
+					}
+				}
+				continue;
 			}
-			while (!serviceSearchCompleted) {
-				try {
-					serviceSearchCompletedEvent.wait();
-				} catch (InterruptedException e) {
-					return null;
+			synchronized (searchEvent) {
+				Integer key = new Integer(transID);
+				if (completedSearches.remove(key) == null) {
+					runningSearches.put(key, device);
 				}
 			}
 		}
-		return servRecordDiscovered;
 	}
 
-	public void deviceDiscovered(final RemoteDevice btDevice, DeviceClass cod) {
-		if (devicesProcessed.containsKey(btDevice)) {
-			return;
+	private void cancelSearches() {
+		Vector transIDs = new Vector();
+		synchronized (searchEvent) {
+			serviceSearchDeviceQueue.removeAllElements();
+			for (Enumeration en = runningSearches.keys(); en.hasMoreElements();) {
+				transIDs.addElement(en.nextElement());
+			}
+		}
+		for (Enumeration en = transIDs.elements(); en.hasMoreElements();) {
+			agent.cancelServiceSearch(((Integer) en.nextElement()).intValue());
 		}
-		synchronized (serviceSearchDeviceQueue) {
+		boolean cancelInquiry;
+		synchronized (searchEvent) {
+			cancelInquiry = inquiryStarted && (!inquiryCompleted);
+		}
+		if (cancelInquiry) {
+			agent.cancelInquiry(this);
+		}
+	}
+
+	public void deviceDiscovered(final RemoteDevice btDevice, DeviceClass cod) {
+		synchronized (searchEvent) {
+			if (devicesProcessed.containsKey(btDevice)) {
+				return;
+			}
+			devicesProcessed.put(btDevice, btDevice);
 			serviceSearchDeviceQueue.addElement(btDevice);
-			serviceSearchDeviceQueue.notifyAll();
+			searchEvent.notifyAll();
 		}
 	}
 
 	public void inquiryCompleted(int discType) {
-		synchronized (inquiryCompletedEvent) {
+		synchronized (searchEvent) {
 			inquiryCompleted = true;
-			inquiryCompletedEvent.notifyAll();
+			searchEvent.notifyAll();
 		}
 	}
 
 	public void serviceSearchCompleted(int transID, int respCode) {
-		synchronized (serviceSearchCompletedEvent) {
-			serviceSearchCompleted = true;
-			serviceSearchCompletedEvent.notifyAll();
+		synchronized (searchEvent) {
+			Integer key = new Integer(transID);
+			if (runningSearches.remove(key) == null) {
+				completedSearches.put(key, key);
+			}
+			runningCount--;
+			searchRejected = false;
+			searchEvent.notifyAll();
 		}
 	}
 
 	public void servicesDiscovered(int transID, ServiceRecord[] servRecord) {
-		if ((servRecord.length > 0) && (servRecordDiscovered == null)) {
-			servRecordDiscovered = servRecord[0];
-			synchronized (serviceSearchCompletedEvent) {
-				serviceSearchCompleted = true;
-				serviceSearchCompletedEvent.notifyAll();
-			}
-			synchronized (inquiryCompletedEvent) {
-				inquiryCompleted = true;
-				inquiryCompletedEvent.notifyAll();
+		synchronized (searchEvent) {
+			if ((servRecord.length > 0) && (servRecordDiscovered == null)) {
+				servRecordDiscovered = servRecord[0];
+				searchEvent.notifyAll();
 			}
 		}
 	}
@@ -23,11 +23,8 @@
  */
 package com.intel.bluetooth;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Enumeration;
-import java.util.Hashtable;
 
 import javax.bluetooth.BluetoothStateException;
 import javax.bluetooth.DataElement;
@@ -46,7 +43,15 @@ class ServiceRecordImpl implements ServiceRecord {
 
 	private long handle;
 
-	Hashtable attributes;
+	/**
+	 * Attribute IDs in ascending order, values and their encodings are kept in
+	 * parallel arrays with the same index.
+	 */
+	private int[] attributeIDs;
+
+	private DataElement[] attributeValues;
+
+	private int attributeCount;
 
 	protected boolean attributeUpdated;
 
@@ -54,6 +59,26 @@ class ServiceRecordImpl implements ServiceRecord {
 
 	int deviceServiceClassesRegistered;
 
+	/**
+	 * Keeps encoded values between calls to toByteArray()
+	 */
+	private SDPEncoder encoder;
+
+	/**
+	 * Encoded attribute values. The value is removed when attribute is changed.
+	 * DATSEQ and DATALT can be modified in place by application holding the
+	 * DataElement so they are never kept and encoded on each call.
+	 */
+	private byte[][] attributeEncoded;
+
+	private boolean encodedASCII;
+
+	/**
+	 * BlueZ XML of attribute values. Maintained by BlueZServiceRecordXML and
+	 * invalidated together with attributeEncoded.
+	 */
+	private String[] attributeXML;
+
 	ServiceRecordImpl(BluetoothStack bluetoothStack, RemoteDevice device, long handle) {
 
 		this.bluetoothStack = bluetoothStack;
@@ -64,63 +89,214 @@ class ServiceRecordImpl implements ServiceRecord {
 
 		this.deviceServiceClassesRegistered = 0;
 
-		this.attributes = new Hashtable();
+		this.attributeIDs = new int[8];
+
+		this.attributeValues = new DataElement[8];
 	}
 
-	byte[] toByteArray() throws IOException {
-	    DataElement rootSeq = new DataElement(DataElement.DATSEQ);
-		final boolean sort = true;
-		if (sort) {
-			int[] sortIDs = new int[attributes.size()];
-			int k = 0;
-			for (Enumeration e = attributes.keys(); e.hasMoreElements();) {
-				Integer key = (Integer) e.nextElement();
-				sortIDs[k] = key.intValue();
-				k++;
+	/**
+	 * @return index of attribute or (-(insertion point) - 1) if not found
+	 */
+	private int indexOf(int attrID) {
+		int low = 0;
+		int high = attributeCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >> 1;
+			int midID = attributeIDs[mid];
+			if (midID < attrID) {
+				low = mid + 1;
+			} else if (midID > attrID) {
+				high = mid - 1;
+			} else {
+				return mid;
 			}
-			// DebugLog.debug("b4 sort", sortIDs);
-			// Sort
-			for (int i = 0; i < sortIDs.length; i++) {
-				for (int j = 0; j < sortIDs.length - i - 1; j++) {
-					if (sortIDs[j] > sortIDs[j + 1]) {
-						int temp = sortIDs[j];
-						sortIDs[j] = sortIDs[j + 1];
-						sortIDs[j + 1] = temp;
-					}
-				}
+		}
+		return -(low + 1);
+	}
+
+	private void insertAttribute(int index, int attrID, DataElement attrValue) {
+		if (attributeCount == attributeIDs.length) {
+			int capacity = attributeCount * 2;
+			int[] ids = new int[capacity];
+			System.arraycopy(attributeIDs, 0, ids, 0, attributeCount);
+			attributeIDs = ids;
+			DataElement[] values = new DataElement[capacity];
+			System.arraycopy(attributeValues, 0, values, 0, attributeCount);
+			attributeValues = values;
+			if (attributeEncoded != null) {
+				byte[][] encoded = new byte[capacity][];
+				System.arraycopy(attributeEncoded, 0, encoded, 0, attributeCount);
+				attributeEncoded = encoded;
+			}
+			if (attributeXML != null) {
+				String[] xml = new String[capacity];
+				System.arraycopy(attributeXML, 0, xml, 0, attributeCount);
+				attributeXML = xml;
+			}
+		}
+		int move = attributeCount - index;
+		if (move > 0) {
+			System.arraycopy(attributeIDs, index, attributeIDs, index + 1, move);
+			System.arraycopy(attributeValues, index, attributeValues, index + 1, move);
+			if (attributeEncoded != null) {
+				System.arraycopy(attributeEncoded, index, attributeEncoded, index + 1, move);
 			}
-			// DebugLog.debug("sorted", sortIDs);
-			for (int i = 0; i < sortIDs.length; i++) {
-			    int attrID  = sortIDs[i];
-			    rootSeq.addElement(new DataElement(DataElement.U_INT_2, attrID));
-			    rootSeq.addElement(getAttributeValue(attrID));
+			if (attributeXML != null) {
+				System.arraycopy(attributeXML, index, attributeXML, index + 1, move);
 			}
+		}
+		attributeIDs[index] = attrID;
+		attributeValues[index] = attrValue;
+		attributeCount++;
+		attributeChanged(index);
+	}
+
+	private void removeAttribute(int index) {
+		attributeCount--;
+		int move = attributeCount - index;
+		if (move > 0) {
+			System.arraycopy(attributeIDs, index + 1, attributeIDs, index, move);
+			System.arraycopy(attributeValues, index + 1, attributeValues, index, move);
+			if (attributeEncoded != null) {
+				System.arraycopy(attributeEncoded, index + 1, attributeEncoded, index, move);
+			}
+			if (attributeXML != null) {
+				System.arraycopy(attributeXML, index + 1, attributeXML, index, move);
+			}
+		}
+		attributeValues[attributeCount] = null;
+		attributeChanged(attributeCount);
+	}
+
+	/**
+	 * @return true if attribute was present
+	 */
+	private boolean putAttribute(int attrID, DataElement attrValue) {
+		int index = indexOf(attrID);
+		if (index >= 0) {
+			if (attrValue == null) {
+				removeAttribute(index);
+			} else {
+				attributeValues[index] = attrValue;
+				attributeChanged(index);
+			}
+			return true;
 		} else {
-			for (Enumeration e = attributes.keys(); e.hasMoreElements();) {
-				Integer key = (Integer) e.nextElement();
-				rootSeq.addElement(new DataElement(DataElement.U_INT_2, key.intValue()));
-				rootSeq.addElement((DataElement) attributes.get(key));
+			if (attrValue != null) {
+				insertAttribute(-(index + 1), attrID, attrValue);
 			}
+			return false;
+		}
+	}
+
+	synchronized int[] getSortedAttributeIDs() {
+		int[] ids = new int[attributeCount];
+		System.arraycopy(attributeIDs, 0, ids, 0, attributeCount);
+		return ids;
+	}
+
+	/**
+	 * DATSEQ and DATALT can be changed after they are set in the record.
+	 */
+	static boolean isSequence(DataElement value) {
+		switch (value.getDataType()) {
+		case DataElement.DATSEQ:
+		case DataElement.DATALT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Encodings of attributes with immutable values are kept between calls,
+	 * sequences are encoded again on each call.
+	 * 
+	 * @return new array with encoded record
+	 */
+	synchronized byte[] toByteArray() throws IOException {
+		boolean ascii = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_STRING_ENCODING_ASCII,
+				false);
+		if ((attributeEncoded == null) || (ascii != encodedASCII)) {
+			attributeEncoded = new byte[attributeIDs.length][];
+			encodedASCII = ascii;
+		}
+		int[] ids = new int[attributeCount];
+		System.arraycopy(attributeIDs, 0, ids, 0, attributeCount);
+		byte[][] values = new byte[attributeCount][];
+		for (int i = 0; i < attributeCount; i++) {
+			values[i] = attributeEncoded[i];
+			if (values[i] == null) {
+				if (encoder == null) {
+					encoder = new SDPEncoder(true);
+				}
+				values[i] = encoder.encode(attributeValues[i]);
+				if (!isSequence(attributeValues[i])) {
+					attributeEncoded[i] = values[i];
+				}
+			}
+		}
+		return SDPEncoder.encodeAttributes(ids, values);
+	}
+
+	synchronized String getAttributeXML(int attrID) {
+		int index = indexOf(attrID);
+		if ((attributeXML == null) || (index < 0)) {
+			return null;
+		}
+		return attributeXML[index];
+	}
+
+	/**
+	 * XML of sequences is not kept.
+	 */
+	synchronized void setAttributeXML(int attrID, String xml) {
+		int index = indexOf(attrID);
+		if ((index < 0) || isSequence(attributeValues[index])) {
+			return;
+		}
+		if (attributeXML == null) {
+			attributeXML = new String[attributeIDs.length];
+		}
+		attributeXML[index] = xml;
+	}
+
+	private void attributeChanged(int index) {
+		if (attributeEncoded != null) {
+			attributeEncoded[index] = null;
+		}
+		if (attributeXML != null) {
+			attributeXML[index] = null;
 		}
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        SDPOutputStream sdpOut = new SDPOutputStream(out);
-        sdpOut.writeElement(rootSeq);
-		return out.toByteArray();
 	}
 
 	void loadByteArray(byte data[]) throws IOException {
-		DataElement element = (new SDPInputStream(new ByteArrayInputStream(data))).readElement();
-		if (element.getDataType() != DataElement.DATSEQ) {
-			throw new IOException("DATSEQ expected instead of " + element.getDataType());
-		}
-		Enumeration en = (Enumeration) element.getValue();
-		while (en.hasMoreElements()) {
-			DataElement id = (DataElement) en.nextElement();
-			if (id.getDataType() != DataElement.U_INT_2) {
-				throw new IOException("U_INT_2 expected instead of " + id.getDataType());
+		loadByteArray(data, null);
+	}
+
+	/**
+	 * Load only attributes in attrIDs, other values are skipped without
+	 * decoding.
+	 */
+	void loadByteArray(byte data[], int[] attrIDs) throws IOException {
+		SDPDecoder decoder = new SDPDecoder(data);
+		int listEnd = decoder.readSequence();
+		nextAttribute: while (decoder.getPosition() < listEnd) {
+			int attrID = decoder.readAttributeID();
+			if (attrIDs != null) {
+				boolean requested = false;
+				for (int i = 0; i < attrIDs.length; i++) {
+					if (attrIDs[i] == attrID) {
+						requested = true;
+						break;
+					}
+				}
+				if (!requested) {
+					decoder.skipElement();
+					continue nextAttribute;
+				}
 			}
-			DataElement value = (DataElement) en.nextElement();
-			this.populateAttributeValue((int) id.getLong(), value);
+			this.populateAttributeValue(attrID, decoder.readElement());
 		}
 	}
 
@@ -133,12 +309,16 @@ class ServiceRecordImpl implements ServiceRecord {
 	 * or equal to 2^16
 	 */
 
-	public DataElement getAttributeValue(int attrID) {
+	public synchronized DataElement getAttributeValue(int attrID) {
 		if (attrID < 0x0000 || attrID > 0xffff) {
 			throw new IllegalArgumentException();
 		}
 
-		return (DataElement) attributes.get(new Integer(attrID));
+		int index = indexOf(attrID);
+		if (index < 0) {
+			return null;
+		}
+		return attributeValues[index];
 	}
 
 	/*
@@ -164,15 +344,7 @@ class ServiceRecordImpl implements ServiceRecord {
 	 */
 
 	public int[] getAttributeIDs() {
-		int[] attrIDs = new int[attributes.size()];
-
-		int i = 0;
-
-		for (Enumeration e = attributes.keys(); e.hasMoreElements();) {
-			attrIDs[i++] = ((Integer) e.nextElement()).intValue();
-		}
-
-		return attrIDs;
+		return getSortedAttributeIDs();
 	}
 
 	/*
@@ -240,17 +412,7 @@ class ServiceRecordImpl implements ServiceRecord {
 		 * duplicates)
 		 */
 
-		int[] sortIDs = new int[attrIDs.length];
-		System.arraycopy(attrIDs, 0, sortIDs, 0, attrIDs.length);
-		for (int i = 0; i < sortIDs.length; i++) {
-			for (int j = 0; j < sortIDs.length - i - 1; j++) {
-				if (sortIDs[j] > sortIDs[j + 1]) {
-					int temp = sortIDs[j];
-					sortIDs[j] = sortIDs[j + 1];
-					sortIDs[j + 1] = temp;
-				}
-			}
-		}
+		int[] sortIDs = Utils.sort(attrIDs);
 		/*
 		 * check for duplicates
 		 */
@@ -262,7 +424,14 @@ class ServiceRecordImpl implements ServiceRecord {
 		}
 		DebugLog.debug0x("srvRec query for attr", sortIDs[sortIDs.length - 1]);
 
-		return this.bluetoothStack.populateServicesRecordAttributeValues(this, sortIDs);
+		if (ServiceRecordsCache.populateRecord(this, sortIDs)) {
+			return true;
+		}
+		boolean populated = this.bluetoothStack.populateServicesRecordAttributeValues(this, sortIDs);
+		if (populated) {
+			ServiceRecordsCache.recordPopulated(this);
+		}
+		return populated;
 	}
 
 	/*
@@ -583,7 +752,7 @@ class ServiceRecordImpl implements ServiceRecord {
 	 * created by a call to DiscoveryAgent.searchServices()
 	 */
 
-	public boolean setAttributeValue(int attrID, DataElement attrValue) {
+	public synchronized boolean setAttributeValue(int attrID, DataElement attrValue) {
 		/*
 		 * check this is a local service record
 		 */
@@ -605,40 +774,30 @@ class ServiceRecordImpl implements ServiceRecord {
 		 */
 
 		attributeUpdated = true;
-		if (attrValue == null) {
-			return (attributes.remove(new Integer(attrID)) != null);
-		} else {
-			attributes.put(new Integer(attrID), attrValue);
-			return true;
-		}
+		boolean present = putAttribute(attrID, attrValue);
+		return (attrValue != null) || present;
 	}
 
 	/**
 	 * Internal implementation function
 	 */
-	void populateAttributeValue(int attrID, DataElement attrValue) {
+	synchronized void populateAttributeValue(int attrID, DataElement attrValue) {
 		if (attrID < 0x0000 || attrID > 0xffff) {
 			throw new IllegalArgumentException();
 		}
-		if (attrValue == null) {
-			attributes.remove(new Integer(attrID));
-		} else {
-			attributes.put(new Integer(attrID), attrValue);
-		}
+		putAttribute(attrID, attrValue);
 	}
 
-	public String toString() {
+	public synchronized String toString() {
 
 		StringBuffer buf = new StringBuffer("{\n");
 
-		for (Enumeration e = attributes.keys(); e.hasMoreElements();) {
-			Integer i = (Integer) e.nextElement();
-
+		for (int i = 0; i < attributeCount; i++) {
 			buf.append("0x");
-			buf.append(Integer.toHexString(i.intValue()));
+			buf.append(Integer.toHexString(attributeIDs[i]));
 			buf.append(":\n\t");
 
-			DataElement d = (DataElement) attributes.get(i);
+			DataElement d = attributeValues[i];
 
 			buf.append(d);
 			buf.append("\n");
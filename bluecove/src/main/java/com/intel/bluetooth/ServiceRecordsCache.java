@@ -0,0 +1,780 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import javax.bluetooth.BluetoothStateException;
+import javax.bluetooth.DataElement;
+import javax.bluetooth.DeviceClass;
+import javax.bluetooth.DiscoveryListener;
+import javax.bluetooth.RemoteDevice;
+import javax.bluetooth.ServiceRecord;
+import javax.bluetooth.UUID;
+
+/**
+ * Service records found by DiscoveryAgent.searchServices() kept per remote
+ * device address, UUID set and attribute set. Enabled by
+ * <code>bluecove.sdp.cache</code> configuration property.
+ * 
+ * Entries expire after TTL, least recently used entries are removed when
+ * cache is full. Entries of the device are removed when connection to it
+ * fails or when the device reports different ServiceRecordState for the same
+ * record.
+ * 
+ * <p>
+ * <b><u>Your application should not use this class directly.</u></b>
+ */
+class ServiceRecordsCache {
+
+	static final int DEFAULT_TTL_SECONDS = 3600;
+
+	static final int DEFAULT_MAX_ENTRIES = 512;
+
+	private static final int FILE_MAGIC = 0x53445043;
+
+	private static final int FILE_VERSION = 1;
+
+	/**
+	 * Changes made during this time are written to the file together.
+	 */
+	static final long SAVE_DELAY = 1000;
+
+	private static ServiceRecordsCache instance;
+
+	private final int maxEntries;
+
+	private final long ttl;
+
+	private final File file;
+
+	private final Hashtable entries = new Hashtable();
+
+	/**
+	 * LRU list, head is the least recently used entry.
+	 */
+	private Entry head;
+
+	private Entry tail;
+
+	/**
+	 * Number of changes, the file is written when it is behind.
+	 */
+	private int changes = 0;
+
+	private boolean saveScheduled = false;
+
+	private final Object fileLock = new Object();
+
+	private int savedChanges = 0;
+
+	static class CachedRecord {
+
+		long handle;
+
+		/**
+		 * ServiceRecordState attribute value or -1
+		 */
+		long state;
+
+		/**
+		 * Sorted attribute IDs present in data
+		 */
+		int[] attrIDs;
+
+		byte[] data;
+
+		CachedRecord(long handle, long state, int[] attrIDs, byte[] data) {
+			this.handle = handle;
+			this.state = state;
+			this.attrIDs = attrIDs;
+			this.data = data;
+		}
+
+		CachedRecord(ServiceRecordImpl record) throws IOException {
+			this(record.getHandle(), getRecordState(record), Utils.sort(record.getAttributeIDs()), record.toByteArray());
+		}
+
+		boolean hasAttributes(int[] ids) {
+			nextID: for (int i = 0; i < ids.length; i++) {
+				for (int k = 0; k < attrIDs.length; k++) {
+					if (attrIDs[k] == ids[i]) {
+						continue nextID;
+					}
+				}
+				return false;
+			}
+			return true;
+		}
+
+		ServiceRecordImpl createServiceRecord(BluetoothStack stack, RemoteDevice device) throws IOException {
+			ServiceRecordImpl record = new ServiceRecordImpl(stack, device, handle);
+			record.loadByteArray(data);
+			return record;
+		}
+	}
+
+	private static class Entry {
+
+		String key;
+
+		long address;
+
+		long created;
+
+		Vector records;
+
+		Entry prev;
+
+		Entry next;
+	}
+
+	/**
+	 * Passes the events to application listener and saves the records when
+	 * search is completed.
+	 */
+	private static class CachingDiscoveryListener implements DiscoveryListener {
+
+		private ServiceRecordsCache cache;
+
+		private DiscoveryListener listener;
+
+		private long address;
+
+		private String key;
+
+		private Vector records = new Vector();
+
+		private boolean recordsValid = true;
+
+		CachingDiscoveryListener(ServiceRecordsCache cache, DiscoveryListener listener, long address, UUID[] uuidSet,
+				int[] attrSet) {
+			this.cache = cache;
+			this.listener = listener;
+			this.address = address;
+			this.key = createKey(address, uuidSet, attrSet);
+		}
+
+		public void deviceDiscovered(RemoteDevice btDevice, DeviceClass cod) {
+			listener.deviceDiscovered(btDevice, cod);
+		}
+
+		public void inquiryCompleted(int discType) {
+			listener.inquiryCompleted(discType);
+		}
+
+		public void servicesDiscovered(int transID, ServiceRecord[] servRecord) {
+			for (int i = 0; (servRecord != null) && (i < servRecord.length); i++) {
+				if (!(servRecord[i] instanceof ServiceRecordImpl)) {
+					recordsValid = false;
+					continue;
+				}
+				try {
+					records.addElement(new CachedRecord((ServiceRecordImpl) servRecord[i]));
+				} catch (IOException e) {
+					DebugLog.error("can't cache service record", e);
+					recordsValid = false;
+				}
+			}
+			listener.servicesDiscovered(transID, servRecord);
+		}
+
+		public void serviceSearchCompleted(int transID, int respCode) {
+			switch (respCode) {
+			case SERVICE_SEARCH_COMPLETED:
+			case SERVICE_SEARCH_NO_RECORDS:
+				if (recordsValid) {
+					cache.put(key, address, records);
+				}
+				break;
+			case SERVICE_SEARCH_DEVICE_NOT_REACHABLE:
+				cache.invalidate(address);
+				break;
+			}
+			listener.serviceSearchCompleted(transID, respCode);
+		}
+	}
+
+	/**
+	 * Replaces Stack search when records are found in cache.
+	 */
+	private static class CachedSearchServices implements SearchServicesRunnable {
+
+		private ServiceRecordsCache cache;
+
+		private BluetoothStack stack;
+
+		private Vector records;
+
+		CachedSearchServices(ServiceRecordsCache cache, BluetoothStack stack, Vector records) {
+			this.cache = cache;
+			this.stack = stack;
+			this.records = records;
+		}
+
+		public int runSearchServices(SearchServicesThread sst, int[] attrSet, UUID[] uuidSet, RemoteDevice device,
+				DiscoveryListener listener) throws BluetoothStateException {
+			sst.searchServicesStartedCallback();
+			if (records.size() == 0) {
+				return DiscoveryListener.SERVICE_SEARCH_NO_RECORDS;
+			}
+			ServiceRecord[] servRecords = new ServiceRecord[records.size()];
+			try {
+				for (int i = 0; i < servRecords.length; i++) {
+					servRecords[i] = ((CachedRecord) records.elementAt(i)).createServiceRecord(stack, device);
+				}
+			} catch (IOException e) {
+				DebugLog.error("invalid cached service record", e);
+				cache.invalidate(RemoteDeviceHelper.getAddress(device));
+				return DiscoveryListener.SERVICE_SEARCH_ERROR;
+			}
+			if (sst.isTerminated()) {
+				return DiscoveryListener.SERVICE_SEARCH_TERMINATED;
+			}
+			DebugLog.debug("services found in cache", servRecords.length);
+			listener.servicesDiscovered(sst.getTransID(), servRecords);
+			return DiscoveryListener.SERVICE_SEARCH_COMPLETED;
+		}
+	}
+
+	ServiceRecordsCache(int maxEntries, long ttl, File file) {
+		this.maxEntries = maxEntries;
+		this.ttl = ttl;
+		this.file = file;
+		if (file != null) {
+			load();
+		}
+	}
+
+	/**
+	 * @return the cache or <code>null</code> when cache is disabled
+	 */
+	static synchronized ServiceRecordsCache getInstance() {
+		if (!BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_CACHE, false)) {
+			return null;
+		}
+		if (instance == null) {
+			int maxEntries = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_CACHE_SIZE,
+					DEFAULT_MAX_ENTRIES);
+			int ttlSeconds = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_CACHE_TTL,
+					DEFAULT_TTL_SECONDS);
+			String fileName = BlueCoveImpl.getConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_CACHE_FILE);
+			File file = null;
+			if (fileName != null) {
+				file = new File(fileName);
+			}
+			instance = new ServiceRecordsCache(maxEntries, ttlSeconds * 1000L, file);
+		}
+		return instance;
+	}
+
+	/**
+	 * Called from SearchServicesThread before Stack search is started.
+	 * 
+	 * @return SearchServicesRunnable that delivers cached records or
+	 *         <code>null</code> if records not found in cache
+	 */
+	static SearchServicesRunnable cachedSearchServices(BluetoothStack stack, int[] attrSet, UUID[] uuidSet,
+			RemoteDevice device) {
+		ServiceRecordsCache cache = getInstance();
+		if (cache == null) {
+			return null;
+		}
+		Vector records = cache.get(RemoteDeviceHelper.getAddress(device), uuidSet, attrSet);
+		if (records == null) {
+			return null;
+		}
+		return new CachedSearchServices(cache, stack, records);
+	}
+
+	/**
+	 * Called from SearchServicesThread when records are not found in cache.
+	 * 
+	 * @return listener that saves search results in cache
+	 */
+	static DiscoveryListener cachingListener(int[] attrSet, UUID[] uuidSet, RemoteDevice device,
+			DiscoveryListener listener) {
+		ServiceRecordsCache cache = getInstance();
+		if (cache == null) {
+			return listener;
+		}
+		return new CachingDiscoveryListener(cache, listener, RemoteDeviceHelper.getAddress(device), uuidSet, attrSet);
+	}
+
+	/**
+	 * Called before ServiceRecord.populateRecord(int[]) contacts remote device.
+	 * 
+	 * @return true if all values found in cache
+	 */
+	static boolean populateRecord(ServiceRecordImpl serviceRecord, int[] attrIDs) {
+		ServiceRecordsCache cache = getInstance();
+		if (cache == null) {
+			return false;
+		}
+		long address = RemoteDeviceHelper.getAddress(serviceRecord.getHostDevice());
+		CachedRecord cached = cache.getRecord(address, serviceRecord.getHandle(), attrIDs);
+		if (cached == null) {
+			return false;
+		}
+		try {
+			serviceRecord.loadByteArray(cached.data, attrIDs);
+		} catch (IOException e) {
+			cache.invalidate(address);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Called after ServiceRecord.populateRecord(int[]) updated the record from
+	 * remote device.
+	 */
+	static void recordPopulated(ServiceRecordImpl serviceRecord) {
+		ServiceRecordsCache cache = getInstance();
+		if (cache == null) {
+			return;
+		}
+		try {
+			cache.updateRecord(RemoteDeviceHelper.getAddress(serviceRecord.getHostDevice()), new CachedRecord(
+					serviceRecord));
+		} catch (IOException e) {
+			DebugLog.error("can't cache service record", e);
+		}
+	}
+
+	/**
+	 * Called when client connection to remote device can't be established.
+	 */
+	static void connectionFailed(long address) {
+		ServiceRecordsCache cache;
+		synchronized (ServiceRecordsCache.class) {
+			cache = instance;
+		}
+		if (cache != null) {
+			cache.invalidate(address);
+		}
+	}
+
+	static String createKey(long address, UUID[] uuidSet, int[] attrSet) {
+		StringBuffer key = new StringBuffer();
+		key.append(Utils.toHexString(address));
+		String[] uuids = new String[uuidSet.length];
+		for (int i = 0; i < uuidSet.length; i++) {
+			uuids[i] = uuidSet[i].toString();
+		}
+		for (int i = 0; i < uuids.length; i++) {
+			for (int j = 0; j < uuids.length - i - 1; j++) {
+				if (uuids[j].compareTo(uuids[j + 1]) > 0) {
+					String temp = uuids[j];
+					uuids[j] = uuids[j + 1];
+					uuids[j + 1] = temp;
+				}
+			}
+		}
+		for (int i = 0; i < uuids.length; i++) {
+			key.append(i == 0 ? '|' : ',').append(uuids[i]);
+		}
+		key.append('|');
+		if (attrSet != null) {
+			int[] attrs = Utils.sort(attrSet);
+			for (int i = 0; i < attrs.length; i++) {
+				if (i != 0) {
+					key.append(',');
+				}
+				key.append(Integer.toHexString(attrs[i]));
+			}
+		}
+		return key.toString();
+	}
+
+	private static long getRecordState(ServiceRecordImpl record) {
+		DataElement state = record.getAttributeValue(BluetoothConsts.ServiceRecordState);
+		if ((state == null) || (state.getDataType() != DataElement.U_INT_4)) {
+			return -1;
+		}
+		return state.getLong();
+	}
+
+	/**
+	 * @return Vector of CachedRecord or <code>null</code> if not found
+	 */
+	synchronized Vector get(long address, UUID[] uuidSet, int[] attrSet) {
+		Entry e = (Entry) entries.get(createKey(address, uuidSet, attrSet));
+		if (e == null) {
+			return null;
+		}
+		if (isExpired(e)) {
+			remove(e);
+			save();
+			return null;
+		}
+		unlink(e);
+		linkLast(e);
+		return e.records;
+	}
+
+	void put(long address, UUID[] uuidSet, int[] attrSet, Vector records) {
+		put(createKey(address, uuidSet, attrSet), address, records);
+	}
+
+	private synchronized void put(String key, long address, Vector records) {
+		Entry e = (Entry) entries.get(key);
+		if (e != null) {
+			remove(e);
+		}
+		invalidateChangedRecords(address, records);
+		e = new Entry();
+		e.key = key;
+		e.address = address;
+		e.created = System.currentTimeMillis();
+		e.records = records;
+		add(e);
+		save();
+	}
+
+	synchronized CachedRecord getRecord(long address, long handle, int[] attrIDs) {
+		for (Entry e = tail; e != null; e = e.prev) {
+			if ((e.address != address) || isExpired(e)) {
+				continue;
+			}
+			for (Enumeration en = e.records.elements(); en.hasMoreElements();) {
+				CachedRecord r = (CachedRecord) en.nextElement();
+				if ((r.handle == handle) && r.hasAttributes(attrIDs)) {
+					return r;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Replace the record with the same handle in all entries of the device.
+	 */
+	synchronized void updateRecord(long address, CachedRecord record) {
+		boolean updated = false;
+		for (Entry e = head; e != null; e = e.next) {
+			if (e.address != address) {
+				continue;
+			}
+			for (int i = 0; i < e.records.size(); i++) {
+				CachedRecord r = (CachedRecord) e.records.elementAt(i);
+				if (r.handle == record.handle) {
+					e.records.setElementAt(record, i);
+					updated = true;
+				}
+			}
+		}
+		if (updated) {
+			save();
+		}
+	}
+
+	synchronized void invalidate(long address) {
+		boolean removed = false;
+		for (Entry e = head; e != null;) {
+			Entry next = e.next;
+			if (e.address == address) {
+				remove(e);
+				removed = true;
+			}
+			e = next;
+		}
+		if (removed) {
+			DebugLog.debug("service records cache invalidated", Utils.toHexString(address));
+			save();
+		}
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		head = null;
+		tail = null;
+		save();
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Remove entries that have the same record handle with different
+	 * ServiceRecordState.
+	 */
+	private void invalidateChangedRecords(long address, Vector records) {
+		for (Entry e = head; e != null;) {
+			Entry next = e.next;
+			if (e.address == address) {
+				changed: for (Enumeration en = e.records.elements(); en.hasMoreElements();) {
+					CachedRecord cached = (CachedRecord) en.nextElement();
+					for (Enumeration rn = records.elements(); rn.hasMoreElements();) {
+						CachedRecord r = (CachedRecord) rn.nextElement();
+						if ((r.handle == cached.handle) && (r.state != cached.state)) {
+							remove(e);
+							break changed;
+						}
+					}
+				}
+			}
+			e = next;
+		}
+	}
+
+	private boolean isExpired(Entry e) {
+		return (ttl > 0) && (System.currentTimeMillis() - e.created > ttl);
+	}
+
+	private void add(Entry e) {
+		entries.put(e.key, e);
+		linkLast(e);
+		while ((maxEntries > 0) && (entries.size() > maxEntries)) {
+			remove(head);
+		}
+	}
+
+	private void remove(Entry e) {
+		entries.remove(e.key);
+		unlink(e);
+	}
+
+	private void linkLast(Entry e) {
+		e.prev = tail;
+		e.next = null;
+		if (tail != null) {
+			tail.next = e;
+		} else {
+			head = e;
+		}
+		tail = e;
+	}
+
+	private void unlink(Entry e) {
+		if (e.prev != null) {
+			e.prev.next = e.next;
+		} else {
+			head = e.next;
+		}
+		if (e.next != null) {
+			e.next.prev = e.prev;
+		} else {
+			tail = e.prev;
+		}
+		e.prev = null;
+		e.next = null;
+	}
+
+	private void load() {
+		if (!file.exists()) {
+			return;
+		}
+		FileInputStream fis = null;
+		try {
+			long length = file.length();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("file too large " + length);
+			}
+			byte[] image = new byte[(int) length];
+			fis = new FileInputStream(file);
+			new DataInputStream(fis).readFully(image);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(image));
+			if ((in.readInt() != FILE_MAGIC) || (in.readInt() != FILE_VERSION)) {
+				DebugLog.debug("ignore service records cache file", file.getAbsolutePath());
+				return;
+			}
+			// key length, address, created and records count
+			int count = readLength(in, 2 + 8 + 8 + 4);
+			for (int i = 0; i < count; i++) {
+				Entry e = new Entry();
+				e.key = in.readUTF();
+				e.address = in.readLong();
+				e.created = in.readLong();
+				// handle, state and two array lengths
+				int recordsCount = readLength(in, 8 + 8 + 4 + 4);
+				e.records = new Vector(recordsCount);
+				for (int r = 0; r < recordsCount; r++) {
+					long handle = in.readLong();
+					long state = in.readLong();
+					int[] attrIDs = new int[readLength(in, 4)];
+					for (int k = 0; k < attrIDs.length; k++) {
+						attrIDs[k] = in.readInt();
+					}
+					byte[] data = new byte[readLength(in, 1)];
+					in.readFully(data);
+					e.records.addElement(new CachedRecord(handle, state, attrIDs, data));
+				}
+				if (!isExpired(e)) {
+					add(e);
+				}
+			}
+			DebugLog.debug("service records loaded from cache", entries.size());
+		} catch (IOException e) {
+			discard(e);
+		} catch (RuntimeException e) {
+			discard(e);
+		} finally {
+			if (fis != null) {
+				try {
+					fis.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read array length and verify the elements fit in the rest of the file.
+	 */
+	private static int readLength(DataInputStream in, int elementSize) throws IOException {
+		int length = in.readInt();
+		if ((length < 0) || ((long) length * elementSize > in.available())) {
+			throw new IOException("invalid length " + length);
+		}
+		return length;
+	}
+
+	private void discard(Throwable e) {
+		DebugLog.error("can't load service records cache " + file.getAbsolutePath(), e);
+		entries.clear();
+		head = null;
+		tail = null;
+		if (!file.delete()) {
+			DebugLog.debug("can't delete service records cache", file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Called with cache lock held, the file is written later by flush().
+	 */
+	private void save() {
+		if (file == null) {
+			return;
+		}
+		changes++;
+		if (!saveScheduled) {
+			saveScheduled = true;
+			Utils.schedule(SAVE_DELAY, new Runnable() {
+				public void run() {
+					flush();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Write the changes to the file. The entries are serialized with cache lock
+	 * held, the file is written outside of it.
+	 */
+	void flush() {
+		byte[] image;
+		int imageChanges;
+		synchronized (this) {
+			saveScheduled = false;
+			if ((file == null) || (changes == savedChanges)) {
+				return;
+			}
+			try {
+				image = toByteArray();
+			} catch (IOException e) {
+				DebugLog.error("can't save service records cache " + file.getAbsolutePath(), e);
+				return;
+			}
+			imageChanges = changes;
+		}
+		synchronized (fileLock) {
+			// Newer image already written by another thread
+			if (imageChanges - savedChanges <= 0) {
+				return;
+			}
+			if (write(image)) {
+				savedChanges = imageChanges;
+			}
+		}
+	}
+
+	private byte[] toByteArray() throws IOException {
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(buf);
+		out.writeInt(FILE_MAGIC);
+		out.writeInt(FILE_VERSION);
+		out.writeInt(entries.size());
+		for (Entry e = head; e != null; e = e.next) {
+			out.writeUTF(e.key);
+			out.writeLong(e.address);
+			out.writeLong(e.created);
+			out.writeInt(e.records.size());
+			for (Enumeration en = e.records.elements(); en.hasMoreElements();) {
+				CachedRecord r = (CachedRecord) en.nextElement();
+				out.writeLong(r.handle);
+				out.writeLong(r.state);
+				out.writeInt(r.attrIDs.length);
+				for (int k = 0; k < r.attrIDs.length; k++) {
+					out.writeInt(r.attrIDs[k]);
+				}
+				out.writeInt(r.data.length);
+				out.write(r.data);
+			}
+		}
+		out.close();
+		return buf.toByteArray();
+	}
+
+	/**
+	 * Write the image to temporary file and rename it so the file is never
+	 * left half written.
+	 */
+	private boolean write(byte[] image) {
+		File tmp = new File(file.getAbsolutePath() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tmp);
+			out.write(image);
+			out.close();
+			out = null;
+			if ((!tmp.renameTo(file)) && ((!file.delete()) || (!tmp.renameTo(file)))) {
+				throw new IOException("can't rename " + tmp.getAbsolutePath());
+			}
+			return true;
+		} catch (IOException e) {
+			DebugLog.error("can't save service records cache " + file.getAbsolutePath(), e);
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+}
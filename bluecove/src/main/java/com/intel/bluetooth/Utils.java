@@ -26,6 +26,7 @@ package com.intel.bluetooth;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Enumeration;
 import java.util.Vector;
@@ -62,7 +63,12 @@ public abstract class Utils {
 			throw new NumberFormatException("The '-' character is not allowed in UUID: " + uuidStringValue);
 		}
 		for (int i = 0; i < 16; i++) {
-			uuidValue[i] = (byte) Integer.parseInt(uuidStringValue.substring(i * 2, i * 2 + 2), 16);
+			int hi = Character.digit(uuidStringValue.charAt(i * 2), 16);
+			int lo = Character.digit(uuidStringValue.charAt(i * 2 + 1), 16);
+			if ((hi == -1) || (lo == -1)) {
+				throw new NumberFormatException("Invalid hex character in UUID: " + uuidStringValue);
+			}
+			uuidValue[i] = (byte) (hi << 4 | lo);
 		}
 		return uuidValue;
 	}
@@ -183,6 +189,16 @@ public abstract class Utils {
 		}
 	}
 
+	static String newStringUTF8(byte bytes[], int off, int len) {
+		try {
+			return new String(bytes, off, len, "UTF-8");
+		} catch (IllegalArgumentException e) {
+			return new String(bytes, off, len);
+		} catch (UnsupportedEncodingException e) {
+			return new String(bytes, off, len);
+		}
+	}
+
 	static byte[] getUTF8Bytes(String str) {
 		try {
 			return str.getBytes("UTF-8");
@@ -203,6 +219,16 @@ public abstract class Utils {
 		}
 	}
 
+	static String newStringASCII(byte bytes[], int off, int len) {
+		try {
+			return new String(bytes, off, len, "US-ASCII");
+		} catch (IllegalArgumentException e) {
+			return new String(bytes, off, len);
+		} catch (UnsupportedEncodingException e) {
+			return new String(bytes, off, len);
+		}
+	}
+
 	static byte[] getASCIIBytes(String str) {
 		try {
 			return str.getBytes("US-ASCII");
@@ -213,6 +239,26 @@ public abstract class Utils {
 		}
 	}
 
+	/**
+	 * J2ME/J9 compatibility instead of Arrays.sort
+	 * 
+	 * @return sorted copy of the array
+	 */
+	static int[] sort(int[] values) {
+		int[] sorted = new int[values.length];
+		System.arraycopy(values, 0, sorted, 0, values.length);
+		for (int i = 1; i < sorted.length; i++) {
+			int v = sorted[i];
+			int j = i - 1;
+			while ((j >= 0) && (sorted[j] > v)) {
+				sorted[j + 1] = sorted[j];
+				j--;
+			}
+			sorted[j + 1] = v;
+		}
+		return sorted;
+	}
+
 	/**
 	 * J2ME/J9 compatibility instead of Vector.toArray
 	 *
@@ -247,41 +293,66 @@ public abstract class Utils {
 		}
 	}
 
-	static class TimerThread extends Thread {
-
-		long delay;
-
-		Runnable run;
-
-		public TimerThread(long delay, Runnable run) {
-			this.delay = delay;
-			this.run = run;
-		}
-
-		public void run() {
-			try {
-				Thread.sleep(delay);
-				run.run();
-			} catch (InterruptedException e) {
-			}
-		}
-
-	}
-
 	/**
 	 * Java 1.1 compatible. Schedules the specified task for execution after the
-	 * specified delay.
+	 * specified delay. Tasks are started by one shared BlueCove timer thread.
 	 *
 	 * @param delay
 	 *            delay in milliseconds before task is to be executed.
 	 * @param run
 	 *            task to be scheduled.
 	 */
-	static TimerThread schedule(final long delay, final Runnable run) {
-		TimerThread t = new TimerThread(delay, run);
-		UtilsJavaSE.threadSetDaemon(t);
-		t.start();
-		return t;
+	static BlueCoveScheduler.Task schedule(final long delay, final Runnable run) {
+		return BlueCoveScheduler.schedule(delay, run, "TimerThread");
+	}
+
+	/**
+	 * Run the task on BlueCove scheduler thread, Bluetooth stack selected by
+	 * the task is released when it ends.
+	 *
+	 * @param name
+	 *            used as thread name while the task is running
+	 */
+	public static void execute(Runnable run, String name) {
+		BlueCoveScheduler.execute(run, name);
+	}
+
+	/**
+	 * Read from the stream waiting for data no longer than timeout.
+	 *
+	 * @return the total number of bytes read into the buffer, 0 on timeout or
+	 *         -1 at end of the stream
+	 * @see com.intel.bluetooth.TimedInputStream#read(byte[], int, int, long)
+	 */
+	public static int read(InputStream is, byte[] b, int off, int len, long timeout) throws IOException {
+		if (is instanceof TimedInputStream) {
+			return ((TimedInputStream) is).read(b, off, len, timeout);
+		}
+		return pollingRead(is, b, off, len, timeout);
+	}
+
+	/**
+	 * For streams that can't wait with timeout. Poll available() starting with
+	 * short pause so quick responses are not delayed, back off to 100 ms.
+	 */
+	static int pollingRead(InputStream is, byte[] b, int off, int len, long timeout) throws IOException {
+		long endOfDellay = System.currentTimeMillis() + timeout;
+		long pause = 1;
+		while (is.available() == 0) {
+			long timeleft = endOfDellay - System.currentTimeMillis();
+			if (timeleft <= 0) {
+				return 0;
+			}
+			try {
+				Thread.sleep(Math.min(pause, timeleft));
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			if (pause < 100) {
+				pause = Math.min(pause * 2, 100);
+			}
+		}
+		return is.read(b, off, len);
 	}
 
 	public static void isLegalAPICall(Vector fqcnSet) throws Error {
@@ -181,6 +181,20 @@ public class UtilsJavaSE {
 		}
 	}
 
+	/**
+	 * Changes the name of the thread, not available on CLDC.
+	 *
+	 * @see java.lang.Thread#setName(String)
+	 */
+	static void threadSetName(Thread thread, String name) {
+		try {
+			if ((!javaSECompiledOut) && (!ibmJ9midp)) {
+				thread.setName(name);
+			}
+		} catch (Throwable javaJ9) {
+		}
+	}
+
 	static boolean runtimeAddShutdownHook(Thread thread) {
 		try {
 			// since Java 1.3
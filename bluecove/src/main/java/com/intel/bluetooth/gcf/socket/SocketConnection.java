@@ -166,7 +166,7 @@ public class SocketConnection implements javax.microedition.io.SocketConnection
 	}
 
 	public InputStream openInputStream() throws IOException {
-		return socket.getInputStream();
+		return new SocketInputStream(socket, socket.getInputStream());
 	}
 
 	public DataInputStream openDataInputStream() throws IOException {
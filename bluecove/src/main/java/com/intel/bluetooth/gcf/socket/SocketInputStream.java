@@ -0,0 +1,73 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.gcf.socket;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import com.intel.bluetooth.TimedInputStream;
+
+/**
+ * Socket InputStream that waits for data with SO_TIMEOUT.
+ *
+ */
+class SocketInputStream extends FilterInputStream implements TimedInputStream {
+
+	private final Socket socket;
+
+	SocketInputStream(Socket socket, InputStream in) {
+		super(in);
+		this.socket = socket;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.intel.bluetooth.TimedInputStream#read(byte[], int, int, long)
+	 */
+	public synchronized int read(byte[] b, int off, int len, long timeout) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (timeout <= 0) {
+			return (in.available() > 0) ? in.read(b, off, len) : 0;
+		}
+		int soTimeout = socket.getSoTimeout();
+		socket.setSoTimeout((int) Math.min(timeout, Integer.MAX_VALUE));
+		try {
+			return in.read(b, off, len);
+		} catch (SocketTimeoutException e) {
+			return 0;
+		} finally {
+			if (!socket.isClosed()) {
+				socket.setSoTimeout(soTimeout);
+			}
+		}
+	}
+
+}
@@ -26,6 +26,8 @@
 package com.intel.bluetooth.obex;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import javax.microedition.io.Connection;
 
@@ -53,6 +55,21 @@ public abstract class BlueCoveOBEX {
         }
     }
 
+    /**
+     * Packet size and traffic counters of OBEX session, snapshot taken when called.
+     * 
+     * @param c
+     *            the OBEX connection, client session or connection returned by SessionNotifier.acceptAndOpen
+     * @return the session statistics
+     */
+    public static OBEXSessionStatistics getSessionStatistics(Connection c) {
+        if (c instanceof OBEXSessionBase) {
+            return ((OBEXSessionBase) c).getStatistics();
+        } else {
+            throw new IllegalArgumentException("Not a BlueCove OBEX Session " + c.getClass().getName());
+        }
+    }
+
     /**
      * Allows to change the MTU before calling clientSession.connect(headers). Alternative
      * is to use java system property "bluecove.obex.mtu" to define the global value.
@@ -70,6 +87,48 @@ public abstract class BlueCoveOBEX {
         }
     }
 
+    /**
+     * Access the executor that runs sessions accepted by OBEX SessionNotifier, e.g. to read the
+     * number of active, queued and rejected sessions.
+     * 
+     * @param notifier
+     *            the OBEX SessionNotifier
+     * @return the executor
+     */
+    public static OBEXServerSessionExecutor getServerSessionExecutor(Connection notifier) {
+        if (notifier instanceof OBEXSessionNotifierImpl) {
+            return ((OBEXSessionNotifierImpl) notifier).getServerSessionExecutor();
+        } else {
+            throw new IllegalArgumentException("Not a BlueCove OBEX SessionNotifier " + notifier.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads all the data from Operation InputStream and writes it to the given stream, e.g.
+     * server can save PUT object to a file. When the InputStream is opened by
+     * Operation.openInputStream() received OBEX packets are written without copying.
+     * 
+     * @param is
+     *            the InputStream of OBEX Operation
+     * @param os
+     *            destination
+     * @return the number of bytes transferred
+     * @throws IOException
+     */
+    public static long transferTo(InputStream is, OutputStream os) throws IOException {
+        if (is instanceof OBEXOperationInputStream) {
+            return ((OBEXOperationInputStream) is).drainTo(os);
+        }
+        long count = 0;
+        byte[] buf = new byte[OBEXOperationCodes.OBEX_DEFAULT_MTU];
+        int len;
+        while ((len = is.read(buf)) != -1) {
+            os.write(buf, 0, len);
+            count += len;
+        }
+        return count;
+    }
+
     /**
      * ConvertOBEX SUCCESS response code to human readable string, useful for debugging
      * applications.
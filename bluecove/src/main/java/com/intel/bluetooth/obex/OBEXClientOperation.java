@@ -74,6 +74,21 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 
 	private boolean authenticationResponseCreated = false;
 
+	/**
+	 * Single Response Mode header has been sent in request.
+	 */
+	private boolean singleResponseModeRequested = false;
+
+	/**
+	 * Server accepted Single Response Mode, request packets are not followed by response until the final one.
+	 */
+	protected boolean singleResponseMode = false;
+
+	/**
+	 * Server asked to wait for response before sending next packet (SRMP header).
+	 */
+	protected boolean singleResponseModeWait = false;
+
 	protected Object lock;
 
 	OBEXClientOperation(OBEXClientSessionImpl session, char operationId, OBEXHeaderSetImpl sendHeaders)
@@ -106,7 +121,14 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 	 * @see com.intel.bluetooth.obex.OBEXOperationReceive#receiveData(com.intel.bluetooth.obex.OBEXOperationInputStream)
 	 */
 	public void receiveData(OBEXOperationInputStream is) throws IOException {
-		if (SHORT_REQUEST_PHASE) {
+		if (singleResponseMode) {
+			if (!requestEnded) {
+				// Server would not respond until the final request packet.
+				endRequestPhase();
+			} else {
+				receiveStreamedPacket();
+			}
+		} else if (SHORT_REQUEST_PHASE) {
 			exchangePacket(this.startOperationHeaders);
 			this.startOperationHeaders = null;
 		} else {
@@ -117,9 +139,9 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.intel.bluetooth.obex.OBEXOperationDelivery#deliverPacket(boolean, byte[])
+	 * @see com.intel.bluetooth.obex.OBEXOperationDelivery#deliverPacket(boolean, byte[], int)
 	 */
-	public void deliverPacket(boolean finalPacket, byte[] buffer) throws IOException {
+	public void deliverPacket(boolean finalPacket, byte[] buffer, int length) throws IOException {
 		if (requestEnded) {
 			return;
 		}
@@ -127,16 +149,18 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 			exchangePacket(this.startOperationHeaders);
 			this.startOperationHeaders = null;
 		}
-		int dataHeaderID = OBEXHeaderSetImpl.OBEX_HDR_BODY;
 		if (finalPacket) {
 			this.operationId |= OBEXOperationCodes.FINAL_BIT;
-			dataHeaderID = OBEXHeaderSetImpl.OBEX_HDR_BODY_END;
 			DebugLog.debug("client Request Phase ended");
 			requestEnded = true;
 		}
 		OBEXHeaderSetImpl dataHeaders = OBEXSessionBase.createOBEXHeaderSetImpl();
-		dataHeaders.setHeader(dataHeaderID, buffer);
-		exchangePacket(dataHeaders);
+		dataHeaders.setOutgoingBody(finalPacket, buffer, length);
+		if (finalPacket) {
+			exchangePacket(dataHeaders);
+		} else {
+			exchangeRequestPacket(dataHeaders);
+		}
 	}
 
 	protected void endRequestPhase() throws IOException {
@@ -155,41 +179,113 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 		}
 	}
 
+	/**
+	 * Not final request packet, in Single Response Mode it is sent without waiting for response.
+	 */
+	private void exchangeRequestPacket(OBEXHeaderSetImpl headers) throws IOException {
+		if ((!singleResponseMode) || singleResponseModeWait) {
+			exchangePacket(headers);
+			return;
+		}
+		boolean success = false;
+		try {
+			if (session.hasIncomingPacket()) {
+				// Server responded before the final packet, error or SRMP wait
+				DebugLog.debug("client got response in Single Response Mode");
+				session.skipWrite();
+				receivePacket(null);
+			}
+			if (isClosed()) {
+				success = true;
+				return;
+			}
+			if (singleResponseModeWait) {
+				exchangePacket(headers);
+			} else {
+				session.writePacket(this.operationId, headers);
+				session.skipRead();
+			}
+			success = true;
+		} finally {
+			if (!success) {
+				errorReceived = true;
+			}
+		}
+	}
+
+	/**
+	 * In Single Response Mode server sends responses without waiting for request packets.
+	 */
+	private void receiveStreamedPacket() throws IOException {
+		boolean success = false;
+		try {
+			session.skipWrite();
+			receivePacket(null);
+			success = true;
+		} finally {
+			if (!success) {
+				errorReceived = true;
+			}
+		}
+	}
+
 	private void exchangePacket(OBEXHeaderSetImpl headers) throws IOException {
 		boolean success = false;
 		try {
-			session.writePacket(this.operationId, headers);
-			byte[] b = session.readPacket();
-			OBEXHeaderSetImpl dataHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 3);
-			session.handleAuthenticationResponse(dataHeaders, null);
-			int responseCode = dataHeaders.getResponseCode();
-			DebugLog.debug0x("client operation got reply", OBEXUtils.toStringObexResponseCodes(responseCode), responseCode);
-			switch (responseCode) {
-			case ResponseCodes.OBEX_HTTP_UNAUTHORIZED:
-                if ((!authenticationResponseCreated) && (dataHeaders.hasAuthenticationChallenge())) {
-                    DebugLog.debug("client resend request with auth response");
-                    // Send the original data again, since it is not accepted
-                    OBEXHeaderSetImpl retryHeaders = OBEXHeaderSetImpl.cloneHeaders(headers);
-                    session.handleAuthenticationChallenge(dataHeaders, retryHeaders);
-                    authenticationResponseCreated = true;
-                    exchangePacket(retryHeaders);
-                } else {
-                    this.errorReceived = true;
-                    this.operationInContinue = false;
-                    processIncommingHeaders(dataHeaders);
-                    throw new IOException("Authentication Failure");
-                }
-                break;
-			case OBEXOperationCodes.OBEX_RESPONSE_SUCCESS:
-				processIncommingHeaders(dataHeaders);
-				processIncommingData(dataHeaders, true);
-				this.operationInProgress = false;
-				this.operationInContinue = false;
-				break;
-			case OBEXOperationCodes.OBEX_RESPONSE_CONTINUE:
-				processIncommingHeaders(dataHeaders);
-				processIncommingData(dataHeaders, false);
-				this.operationInContinue = true;
+			if ((!singleResponseModeRequested) && session.obexConnectionParams.srm) {
+				singleResponseModeRequested = true;
+				session.writePacketSingleResponseMode(this.operationId, headers);
+			} else {
+				session.writePacket(this.operationId, headers);
+			}
+			receivePacket(headers);
+			success = true;
+		} finally {
+			if (!success) {
+				errorReceived = true;
+			}
+		}
+	}
+
+	private void receivePacket(OBEXHeaderSetImpl requestHeaders) throws IOException {
+		byte[] b = session.readPacket();
+		OBEXHeaderSetImpl dataHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 3);
+		session.handleAuthenticationResponse(dataHeaders, null);
+		if (singleResponseModeRequested && dataHeaders.isSingleResponseModeEnabled() && (!singleResponseMode)) {
+			DebugLog.debug("client Single Response Mode enabled");
+			singleResponseMode = true;
+		}
+		singleResponseModeWait = dataHeaders.isSingleResponseModeWait();
+		int responseCode = dataHeaders.getResponseCode();
+		DebugLog.debug0x("client operation got reply", OBEXUtils.toStringObexResponseCodes(responseCode), responseCode);
+		switch (responseCode) {
+		case ResponseCodes.OBEX_HTTP_UNAUTHORIZED:
+            if ((!authenticationResponseCreated) && (dataHeaders.hasAuthenticationChallenge())) {
+                DebugLog.debug("client resend request with auth response");
+                // Send the original data again, since it is not accepted
+                OBEXHeaderSetImpl retryHeaders = OBEXHeaderSetImpl.cloneHeaders(requestHeaders);
+                session.handleAuthenticationChallenge(dataHeaders, retryHeaders);
+                authenticationResponseCreated = true;
+                // Request Single Response Mode again, the request is repeated.
+                singleResponseModeRequested = false;
+                exchangePacket(retryHeaders);
+            } else {
+                this.errorReceived = true;
+                this.operationInContinue = false;
+                processIncommingHeaders(dataHeaders);
+                throw new IOException("Authentication Failure");
+            }
+            break;
+		case OBEXOperationCodes.OBEX_RESPONSE_SUCCESS:
+			processIncommingHeaders(dataHeaders);
+			processIncommingData(dataHeaders, true);
+			this.operationInProgress = false;
+			this.operationInContinue = false;
+			break;
+		case OBEXOperationCodes.OBEX_RESPONSE_CONTINUE:
+			processIncommingHeaders(dataHeaders);
+			processIncommingData(dataHeaders, false);
+			this.operationInContinue = true;
 //				if ((!authenticationResponseCreated) && (dataHeaders.hasAuthenticationChallenge())) {
 //                    // Send the original data again, since it is not accepted = This is bug On Sony Ericsson  
 //				    DebugLog.debug("client resend request with auth response");
@@ -198,26 +294,20 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 //                    authenticationResponseCreated = true;
 //                    exchangePacket(retryHeaders);
 //                }
-				break;
-			default:
-				this.errorReceived = true;
-				this.operationInContinue = false;
-				// responseCode may be reported by getResponseCode()
-				processIncommingHeaders(dataHeaders);
-				processIncommingData(dataHeaders, true);
-
-				// OFF; Rely on getResponseCode() to report the error to the application.
-				// if ((this.operationId & OBEXOperationCodes.FINAL_BIT) == 0) {
-				// throw new IOException("Operation error, 0x" + Integer.toHexString(responseCode) + " "
-				// + OBEXUtils.toStringObexResponseCodes(responseCode));
-				// }
+			break;
+		default:
+			this.errorReceived = true;
+			this.operationInContinue = false;
+			// responseCode may be reported by getResponseCode()
+			processIncommingHeaders(dataHeaders);
+			processIncommingData(dataHeaders, true);
+
+			// OFF; Rely on getResponseCode() to report the error to the application.
+			// if ((this.operationId & OBEXOperationCodes.FINAL_BIT) == 0) {
+			// throw new IOException("Operation error, 0x" + Integer.toHexString(responseCode) + " "
+			// + OBEXUtils.toStringObexResponseCodes(responseCode));
+			// }
 
-			}
-			success = true;
-		} finally {
-			if (!success) {
-				errorReceived = true;
-			}
 		}
 	}
 
@@ -273,6 +363,12 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 			requestEnded = true;
 			byte[] b = session.readPacket();
 			HeaderSet dataHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 3);
+			while (singleResponseMode && (dataHeaders.getResponseCode() == OBEXOperationCodes.OBEX_RESPONSE_CONTINUE)) {
+				// Discard packets server streamed before it received abort
+				session.skipWrite();
+				b = session.readPacket();
+				dataHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 3);
+			}
 			if (dataHeaders.getResponseCode() != OBEXOperationCodes.OBEX_RESPONSE_SUCCESS) {
 				throw new IOException("Fails to abort operation, received "
 						+ OBEXUtils.toStringObexResponseCodes(dataHeaders.getResponseCode()));
@@ -356,7 +452,7 @@ abstract class OBEXClientOperation implements Operation, OBEXOperation, OBEXOper
 			exchangePacket(this.startOperationHeaders);
 			this.startOperationHeaders = null;
 		}
-		exchangePacket((OBEXHeaderSetImpl) headers);
+		exchangeRequestPacket((OBEXHeaderSetImpl) headers);
 	}
 
 	/*
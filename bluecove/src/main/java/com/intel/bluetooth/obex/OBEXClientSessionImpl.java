@@ -93,8 +93,9 @@ public class OBEXClientSessionImpl extends OBEXSessionBase implements ClientSess
 		byte[] connectRequest = new byte[4];
 		connectRequest[0] = OBEXOperationCodes.OBEX_VERSION;
 		connectRequest[1] = 0; /* Flags */
-		connectRequest[2] = OBEXUtils.hiByte(obexConnectionParams.mtu);
-		connectRequest[3] = OBEXUtils.loByte(obexConnectionParams.mtu);
+		int localMTU = getLocalPacketSize();
+		connectRequest[2] = OBEXUtils.hiByte(localMTU);
+		connectRequest[3] = OBEXUtils.loByte(localMTU);
 		writePacketWithFlags(OBEXOperationCodes.CONNECT, connectRequest, (OBEXHeaderSetImpl) headers);
 
 		byte[] b = readPacket();
@@ -108,9 +109,8 @@ public class OBEXClientSessionImpl extends OBEXSessionBase implements ClientSess
 		if (serverMTU < OBEXOperationCodes.OBEX_MINIMUM_MTU) {
 			throw new IOException("Invalid MTU " + serverMTU);
 		}
-		if (serverMTU < this.mtu) {
-			this.mtu = serverMTU;
-		}
+		this.remoteMTU = serverMTU;
+		this.mtu = Math.min(serverMTU, localMTU);
 		DebugLog.debug("mtu selected", this.mtu);
 
 		OBEXHeaderSetImpl responseHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 7);
@@ -54,4 +54,48 @@ public class OBEXConnectionParams {
 	 * Java System property "bluecove.obex.mtu" can be used to define the value.
 	 */
 	public int mtu = OBEX_DEFAULT_MTU;
+
+	/**
+	 * Offer the transport maximum packet size in CONNECT instead of mtu and use the maximum accepted by the other
+	 * side.
+	 * 
+	 * Java System property "bluecove.obex.mtu_adaptive" can be used to define the value.
+	 */
+	public boolean mtuAdaptive = false;
+
+	/**
+	 * Allow Single Response Mode in Put and Get operations when the other side requests or accepts it.
+	 * 
+	 * Java System property "bluecove.obex.srm" can be used to define the value.
+	 */
+	public boolean srm = false;
+
+	/**
+	 * OBEX server sessions executor: "thread", "virtual", "pool" or class name implementing
+	 * {@link OBEXServerSessionExecutor}. <code>null</code> is the same as "thread".
+	 * 
+	 * Java System property "bluecove.obex.server.executor" can be used to define the value.
+	 */
+	public String serverExecutor;
+
+	/**
+	 * Maximum number of server sessions running at the same time, 0 for no limit.
+	 * 
+	 * Java System property "bluecove.obex.server.max_sessions" can be used to define the value.
+	 */
+	public int serverMaxSessions = 0;
+
+	/**
+	 * Number of accepted server sessions waiting for a running session to end.
+	 * 
+	 * Java System property "bluecove.obex.server.queue" can be used to define the value.
+	 */
+	public int serverQueue = 0;
+
+	/**
+	 * Serve tcpobex server connections by non-blocking selector.
+	 * 
+	 * Java System property "bluecove.obex.server.selector" can be used to define the value.
+	 */
+	public boolean serverSelector = false;
 }
@@ -23,9 +23,7 @@
  */
 package com.intel.bluetooth.obex;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
@@ -105,6 +103,20 @@ class OBEXHeaderSetImpl implements HeaderSet {
 	/** Sequence number used in each OBEX packet for reliability (0x93) */
 	static final int OBEX_HDR_SESSIONSEQ = 0x93;
 
+	/** Single Response Mode, enable or disable streaming of Put and Get packets (0x97) */
+	static final int OBEX_HDR_SRM = 0x97;
+
+	/** Single Response Mode Parameters, used to ask the sender to wait for next request (0x98) */
+	static final int OBEX_HDR_SRMP = 0x98;
+
+	static final int OBEX_SRM_DISABLE = 0x00;
+
+	static final int OBEX_SRM_ENABLE = 0x01;
+
+	static final int OBEX_SRM_SUPPORTED = 0x02;
+
+	static final int OBEX_SRMP_WAIT = 0x01;
+
 	// 0x30 to 0x3F user defined - this range includes all combinations of the
 	// upper 2 bits
 	static final int OBEX_HDR_USER = 0x30;
@@ -137,8 +149,27 @@ class OBEXHeaderSetImpl implements HeaderSet {
 
 	private Vector authChallenges;
 
+	/**
+	 * SRM and SRMP are not application headers, they are kept separately from headerValues and are not visible in
+	 * getHeaderList()
+	 */
+	private int singleResponseMode;
+
+	private int singleResponseModeParameter;
+
+	/**
+	 * Outgoing Body is referenced, not copied, and written after all other headers.
+	 */
+	private byte[] outgoingBody;
+
+	private int outgoingBodyLength;
+
+	private boolean outgoingBodyEnd;
+
 	private static final int NO_RESPONSE_CODE = Integer.MIN_VALUE;
 
+	private static final int NO_VALUE = -1;
+
 	OBEXHeaderSetImpl() {
 		this(NO_RESPONSE_CODE);
 	}
@@ -148,6 +179,8 @@ class OBEXHeaderSetImpl implements HeaderSet {
 		this.responseCode = responseCode;
 		this.authResponses = null;
 		this.authChallenges = null;
+		this.singleResponseMode = NO_VALUE;
+		this.singleResponseModeParameter = NO_VALUE;
 	}
 
 	static void validateCreatedHeaderSet(HeaderSet headers) {
@@ -324,6 +357,28 @@ class OBEXHeaderSetImpl implements HeaderSet {
 		return authResponses.elements();
 	}
 
+	void setSingleResponseMode(boolean enable) {
+		this.singleResponseMode = enable ? OBEX_SRM_ENABLE : NO_VALUE;
+	}
+
+	boolean isSingleResponseModeEnabled() {
+		return (this.singleResponseMode == OBEX_SRM_ENABLE);
+	}
+
+	boolean isSingleResponseModeWait() {
+		return (this.singleResponseModeParameter == OBEX_SRMP_WAIT);
+	}
+
+	/**
+	 * Body or End of Body header for packet being sent. The data is not copied and should not be modified until the
+	 * packet is written.
+	 */
+	void setOutgoingBody(boolean finalBody, byte[] data, int length) {
+		this.outgoingBody = data;
+		this.outgoingBodyLength = length;
+		this.outgoingBodyEnd = finalBody;
+	}
+
 	static long readObexInt(byte[] data, int off) throws IOException {
 		long l = 0;
 		for (int i = 0; i < 4; i++) {
@@ -333,84 +388,125 @@ class OBEXHeaderSetImpl implements HeaderSet {
 		return l;
 	}
 
-	static void writeObexInt(OutputStream out, int headerID, long data) throws IOException {
-		byte[] b = new byte[5];
-		b[0] = (byte) headerID;
-		b[1] = (byte) ((data >>> 24) & 0xFF);
-		b[2] = (byte) ((data >>> 16) & 0xFF);
-		b[3] = (byte) ((data >>> 8) & 0xFF);
-		b[4] = (byte) ((data >>> 0) & 0xFF);
-		out.write(b);
+	private static void ensureCapacity(int off, int len, int limit) throws IOException {
+		if (off + len > limit) {
+			throw new IOException("Can't sent more data than in MTU, len=" + (off + len) + ", mtu=" + limit);
+		}
+	}
+
+	static int writeObexInt(byte[] buf, int off, int limit, int headerID, long data) throws IOException {
+		ensureCapacity(off, 5, limit);
+		buf[off] = (byte) headerID;
+		buf[off + 1] = (byte) ((data >>> 24) & 0xFF);
+		buf[off + 2] = (byte) ((data >>> 16) & 0xFF);
+		buf[off + 3] = (byte) ((data >>> 8) & 0xFF);
+		buf[off + 4] = (byte) ((data >>> 0) & 0xFF);
+		return off + 5;
 	}
 
-	static void writeObexLen(OutputStream out, int headerID, int len) throws IOException {
-		byte[] b = new byte[3];
-		b[0] = (byte) headerID;
+	/**
+	 * Writes header ID and length; the length includes these 3 bytes. Capacity is checked for the whole header.
+	 */
+	static int writeObexLen(byte[] buf, int off, int limit, int headerID, int len) throws IOException {
 		if ((len < 0) || len > 0xFFFF) {
 			throw new IOException("very large data" + len);
 		}
-		b[1] = OBEXUtils.hiByte(len);
-		b[2] = OBEXUtils.loByte(len);
-		out.write(b);
+		ensureCapacity(off, len, limit);
+		buf[off] = (byte) headerID;
+		buf[off + 1] = OBEXUtils.hiByte(len);
+		buf[off + 2] = OBEXUtils.loByte(len);
+		return off + 3;
 	}
 
-	static void writeObexASCII(OutputStream out, int headerID, String value) throws IOException {
-		writeObexLen(out, headerID, 3 + value.length() + 1);
-		out.write(value.getBytes("iso-8859-1"));
-		out.write(0);
+	static int writeObexBytes(byte[] buf, int off, int limit, int headerID, byte[] data, int length)
+			throws IOException {
+		off = writeObexLen(buf, off, limit, headerID, 3 + length);
+		System.arraycopy(data, 0, buf, off, length);
+		return off + length;
 	}
 
-	static void writeObexUnicode(OutputStream out, int headerID, String value) throws IOException {
+	static int writeObexASCII(byte[] buf, int off, int limit, int headerID, String value) throws IOException {
+		int len = value.length();
+		off = writeObexLen(buf, off, limit, headerID, 3 + len + 1);
+		for (int i = 0; i < len; i++) {
+			char c = value.charAt(i);
+			// Same as iso-8859-1 encoder
+			buf[off++] = (c > 0xFF) ? (byte) '?' : (byte) c;
+		}
+		buf[off++] = 0;
+		return off;
+	}
+
+	static int writeObexUnicode(byte[] buf, int off, int limit, int headerID, String value) throws IOException {
 		// null terminated Unicode text, length prefixed with 2 byte unsigned
 		// integer
 		// the length field includes the 2 bytes of the null
 		// terminator (0x00, 0x00). Therefore the length of the string `Jumar`
 		// would be 12 bytes; 5 visible
 		// characters plus the null terminator, each two bytes in length.
-		if (value.length() == 0) {
-			writeObexLen(out, headerID, 3);
-			return;
+		int len = value.length();
+		if (len == 0) {
+			return writeObexLen(buf, off, limit, headerID, 3);
 		}
-		byte[] b = OBEXUtils.getUTF16Bytes(value);
-		writeObexLen(out, headerID, 3 + b.length + 2);
-		out.write(b);
-		out.write(new byte[] { 0, 0 });
+		off = writeObexLen(buf, off, limit, headerID, 3 + 2 * len + 2);
+		for (int i = 0; i < len; i++) {
+			char c = value.charAt(i);
+			buf[off++] = OBEXUtils.hiByte(c);
+			buf[off++] = OBEXUtils.loByte(c);
+		}
+		buf[off++] = 0;
+		buf[off++] = 0;
+		return off;
 	}
 
 	static byte[] toByteArray(HeaderSet headers) throws IOException {
 		if (headers == null) {
 			return new byte[0];
 		}
-		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		byte[] buf = new byte[OBEXOperationCodes.OBEX_MAX_PACKET_LEN];
+		int len = writeHeaders(headers, buf, 0, buf.length);
+		byte[] b = new byte[len];
+		System.arraycopy(buf, 0, b, 0, len);
+		return b;
+	}
+
+	/**
+	 * Serialize headers directly to packet buffer.
+	 * 
+	 * @param limit
+	 *            packet size, IOException is thrown when headers do not fit
+	 * @return offset after the last header
+	 */
+	static int writeHeaders(HeaderSet headers, byte[] buf, int off, int limit) throws IOException {
 		int[] headerIDArray = headers.getHeaderList();
 		for (int i = 0; (headerIDArray != null) && (i < headerIDArray.length); i++) {
 			int hi = headerIDArray[i];
 			if (hi == OBEX_HDR_TIME) {
 				Calendar c = (Calendar) headers.getHeader(hi);
-				writeObexLen(buf, hi, 19);
-				writeTimeISO8601(buf, c);
+				off = writeObexLen(buf, off, limit, hi, 19);
+				off = writeTimeISO8601(buf, off, c);
 			} else if (hi == OBEX_HDR_TIME2) {
 				Calendar c = (Calendar) headers.getHeader(hi);
-				writeObexInt(buf, hi, c.getTime().getTime() / 1000);
+				off = writeObexInt(buf, off, limit, hi, c.getTime().getTime() / 1000);
 			} else if (hi == OBEX_HDR_TYPE) {
 				// ASCII string
-				writeObexASCII(buf, hi, (String) headers.getHeader(hi));
+				off = writeObexASCII(buf, off, limit, hi, (String) headers.getHeader(hi));
 			} else {
 				switch (hi & OBEX_HDR_HI_MASK) {
 				case OBEX_STRING:
-					writeObexUnicode(buf, hi, (String) headers.getHeader(hi));
+					off = writeObexUnicode(buf, off, limit, hi, (String) headers.getHeader(hi));
 					break;
 				case OBEX_BYTE_STREAM:
 					byte data[] = (byte[]) headers.getHeader(hi);
-					writeObexLen(buf, hi, 3 + data.length);
-					buf.write(data);
+					off = writeObexBytes(buf, off, limit, hi, data, data.length);
 					break;
 				case OBEX_BYTE:
-					buf.write(hi);
-					buf.write(((Byte) headers.getHeader(hi)).byteValue());
+					ensureCapacity(off, 2, limit);
+					buf[off++] = (byte) hi;
+					buf[off++] = ((Byte) headers.getHeader(hi)).byteValue();
 					break;
 				case OBEX_INT:
-					writeObexInt(buf, hi, ((Long) headers.getHeader(hi)).longValue());
+					off = writeObexInt(buf, off, limit, hi, ((Long) headers.getHeader(hi)).longValue());
 					break;
 				default:
 					throw new IOException("Unsupported encoding " + (hi & OBEX_HDR_HI_MASK));
@@ -420,23 +516,36 @@ class OBEXHeaderSetImpl implements HeaderSet {
 		if ((headerIDArray != null) && (headerIDArray.length != 0)) {
 			DebugLog.debug("written headers", headerIDArray.length);
 		}
-		if (((OBEXHeaderSetImpl) headers).hasAuthenticationChallenge()) {
-			for (Enumeration iter = ((OBEXHeaderSetImpl) headers).authChallenges.elements(); iter.hasMoreElements();) {
+		OBEXHeaderSetImpl hs = (OBEXHeaderSetImpl) headers;
+		if (hs.singleResponseMode != NO_VALUE) {
+			ensureCapacity(off, 2, limit);
+			buf[off++] = (byte) OBEX_HDR_SRM;
+			buf[off++] = (byte) hs.singleResponseMode;
+		}
+		if (hs.singleResponseModeParameter != NO_VALUE) {
+			ensureCapacity(off, 2, limit);
+			buf[off++] = (byte) OBEX_HDR_SRMP;
+			buf[off++] = (byte) hs.singleResponseModeParameter;
+		}
+		if (hs.hasAuthenticationChallenge()) {
+			for (Enumeration iter = hs.authChallenges.elements(); iter.hasMoreElements();) {
 				byte[] authChallenge = (byte[]) iter.nextElement();
-				writeObexLen(buf, OBEX_HDR_AUTH_CHALLENGE, 3 + authChallenge.length);
-				buf.write(authChallenge);
+				off = writeObexBytes(buf, off, limit, OBEX_HDR_AUTH_CHALLENGE, authChallenge, authChallenge.length);
 				DebugLog.debug("written AUTH_CHALLENGE");
 			}
 		}
-		if (((OBEXHeaderSetImpl) headers).hasAuthenticationResponses()) {
-			for (Enumeration iter = ((OBEXHeaderSetImpl) headers).authResponses.elements(); iter.hasMoreElements();) {
+		if (hs.hasAuthenticationResponses()) {
+			for (Enumeration iter = hs.authResponses.elements(); iter.hasMoreElements();) {
 				byte[] authResponse = (byte[]) iter.nextElement();
-				writeObexLen(buf, OBEX_HDR_AUTH_RESPONSE, 3 + authResponse.length);
-				buf.write(authResponse);
+				off = writeObexBytes(buf, off, limit, OBEX_HDR_AUTH_RESPONSE, authResponse, authResponse.length);
 				DebugLog.debug("written AUTH_RESPONSE");
 			}
 		}
-		return buf.toByteArray();
+		if (hs.outgoingBody != null) {
+			off = writeObexBytes(buf, off, limit, hs.outgoingBodyEnd ? OBEX_HDR_BODY_END : OBEX_HDR_BODY,
+					hs.outgoingBody, hs.outgoingBodyLength);
+		}
+		return off;
 	}
 
 	/*
@@ -500,7 +609,15 @@ class OBEXHeaderSetImpl implements HeaderSet {
 				break;
 			case OBEX_BYTE:
 				len = 2;
-				hs.setHeader(hi, new Byte(buf[off + 1]));
+				if (hi == OBEX_HDR_SRM) {
+					hs.singleResponseMode = 0xFF & buf[off + 1];
+					DebugLog.debug("received SRM", hs.singleResponseMode);
+				} else if (hi == OBEX_HDR_SRMP) {
+					hs.singleResponseModeParameter = 0xFF & buf[off + 1];
+					DebugLog.debug("received SRMP", hs.singleResponseModeParameter);
+				} else {
+					hs.setHeader(hi, new Byte(buf[off + 1]));
+				}
 				break;
 			case OBEX_INT:
 				len = 5;
@@ -525,38 +642,29 @@ class OBEXHeaderSetImpl implements HeaderSet {
 		return hs;
 	}
 
-	private static byte[] d4(int i) {
-		byte[] b = new byte[4];
-		int d = 1000;
-		for (int k = 0; k < 4; k++) {
-			b[k] = (byte) (i / d + '0');
-			i %= d;
-			d /= 10;
+	private static int writeDigits(byte[] buf, int off, int value, int digits) {
+		for (int k = digits - 1; k >= 0; k--) {
+			buf[off + k] = (byte) (value % 10 + '0');
+			value /= 10;
 		}
-		return b;
-	}
-
-	private static byte[] d2(int i) {
-		byte[] b = new byte[2];
-		b[0] = (byte) (i / 10 + '0');
-		b[1] = (byte) (i % 10 + '0');
-		return b;
+		return off + digits;
 	}
 
 	/**
 	 * ISO-8601 UTC YYYYMMDDTHHMMSSZ
 	 */
-	static void writeTimeISO8601(OutputStream out, Calendar c) throws IOException {
+	static int writeTimeISO8601(byte[] buf, int off, Calendar c) {
 		Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
 		cal.setTime(c.getTime());
-		out.write(d4(cal.get(Calendar.YEAR)));
-		out.write(d2(cal.get(Calendar.MONTH) + 1));
-		out.write(d2(cal.get(Calendar.DAY_OF_MONTH)));
-		out.write('T');
-		out.write(d2(cal.get(Calendar.HOUR_OF_DAY)));
-		out.write(d2(cal.get(Calendar.MINUTE)));
-		out.write(d2(cal.get(Calendar.SECOND)));
-		out.write('Z');
+		off = writeDigits(buf, off, cal.get(Calendar.YEAR), 4);
+		off = writeDigits(buf, off, cal.get(Calendar.MONTH) + 1, 2);
+		off = writeDigits(buf, off, cal.get(Calendar.DAY_OF_MONTH), 2);
+		buf[off++] = 'T';
+		off = writeDigits(buf, off, cal.get(Calendar.HOUR_OF_DAY), 2);
+		off = writeDigits(buf, off, cal.get(Calendar.MINUTE), 2);
+		off = writeDigits(buf, off, cal.get(Calendar.SECOND), 2);
+		buf[off++] = 'Z';
+		return off;
 	}
 
 	/**
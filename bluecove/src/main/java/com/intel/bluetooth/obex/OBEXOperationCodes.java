@@ -44,6 +44,11 @@ interface OBEXOperationCodes {
 
 	public static final int OBEX_MAX_PACKET_LEN = 0xFFFF;
 
+	/**
+	 * Adaptive MTU offered over RFCOMM, the same as used by OpenOBEX and BlueZ obexd.
+	 */
+	public static final int OBEX_BLUETOOTH_ADAPTIVE_MTU = 0x7FFF;
+
 	public static final char FINAL_BIT = 0x80;
 
 	public static final char CONNECT = 0x00 | FINAL_BIT;
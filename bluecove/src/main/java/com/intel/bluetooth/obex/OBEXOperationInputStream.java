@@ -25,6 +25,8 @@ package com.intel.bluetooth.obex;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Vector;
 
 class OBEXOperationInputStream extends InputStream {
 
@@ -34,11 +36,17 @@ class OBEXOperationInputStream extends InputStream {
 		this.operation = op;
 	}
 
-	private byte[] buffer = new byte[0x100];
+	/**
+	 * Received Body packets, kept as received without copying to a common buffer.
+	 */
+	private Vector chunks = new Vector();
 
-	private int readPos = 0;
+	/**
+	 * Read position in the first chunk.
+	 */
+	private int chunkPos = 0;
 
-	private int appendPos = 0;
+	private int available = 0;
 
 	private Object lock = new Object();
 
@@ -55,18 +63,131 @@ class OBEXOperationInputStream extends InputStream {
 		if (isClosed) {
 			throw new IOException("Stream closed");
 		}
-		if (this.operation.isClosed() && (appendPos == readPos)) {
+		if (this.operation.isClosed() && (available == 0)) {
 			return -1;
 		}
 		synchronized (lock) {
-			while (!eofReceived && (this.operation instanceof OBEXOperationReceive) && !isClosed
-					&& (!this.operation.isClosed()) && (appendPos == readPos)) {
-				((OBEXOperationReceive) this.operation).receiveData(this);
+			if (!receiveData()) {
+				return -1;
 			}
-			if (appendPos == readPos) {
+			byte[] chunk = (byte[]) chunks.firstElement();
+			int b = chunk[chunkPos] & 0xFF;
+			consumed(chunk, 1);
+			return b;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#read(byte[], int, int)
+	 */
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (b == null) {
+			throw new NullPointerException();
+		} else if ((off < 0) || (len < 0) || ((off + len) > b.length)) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (isClosed) {
+			throw new IOException("Stream closed");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (this.operation.isClosed() && (available == 0)) {
+			return -1;
+		}
+		synchronized (lock) {
+			if (!receiveData()) {
 				return -1;
 			}
-			return buffer[readPos++] & 0xFF;
+			int count = 0;
+			while ((count < len) && (available > 0)) {
+				byte[] chunk = (byte[]) chunks.firstElement();
+				int n = Math.min(chunk.length - chunkPos, len - count);
+				System.arraycopy(chunk, chunkPos, b, off + count, n);
+				consumed(chunk, n);
+				count += n;
+			}
+			return count;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.InputStream#skip(long)
+	 */
+	public long skip(long n) throws IOException {
+		if (isClosed) {
+			throw new IOException("Stream closed");
+		}
+		if (n <= 0) {
+			return 0;
+		}
+		synchronized (lock) {
+			if (!receiveData()) {
+				return 0;
+			}
+			long count = 0;
+			while ((count < n) && (available > 0)) {
+				byte[] chunk = (byte[]) chunks.firstElement();
+				int skip = (int) Math.min(chunk.length - chunkPos, n - count);
+				consumed(chunk, skip);
+				count += skip;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Write all remaining data to the stream, received packets are written directly without copying.
+	 *
+	 * @return number of bytes transferred
+	 */
+	long drainTo(OutputStream out) throws IOException {
+		if (isClosed) {
+			throw new IOException("Stream closed");
+		}
+		long count = 0;
+		while (true) {
+			byte[] chunk;
+			int pos;
+			synchronized (lock) {
+				if ((this.operation.isClosed() && (available == 0)) || (!receiveData())) {
+					return count;
+				}
+				chunk = (byte[]) chunks.firstElement();
+				pos = chunkPos;
+				consumed(chunk, chunk.length - pos);
+			}
+			out.write(chunk, pos, chunk.length - pos);
+			count += chunk.length - pos;
+		}
+	}
+
+	/**
+	 * Called with lock held. Receive packets from the operation until some data is available.
+	 *
+	 * @return false on end of stream
+	 */
+	private boolean receiveData() throws IOException {
+		while (!eofReceived && (this.operation instanceof OBEXOperationReceive) && !isClosed
+				&& (!this.operation.isClosed()) && (available == 0)) {
+			((OBEXOperationReceive) this.operation).receiveData(this);
+		}
+		return (available != 0);
+	}
+
+	/**
+	 * Called with lock held. Advance read position in the first chunk, the chunk is released once fully read.
+	 */
+	private void consumed(byte[] chunk, int len) {
+		chunkPos += len;
+		available -= len;
+		if (chunkPos == chunk.length) {
+			chunks.removeElementAt(0);
+			chunkPos = 0;
 		}
 	}
 
@@ -77,7 +198,7 @@ class OBEXOperationInputStream extends InputStream {
 	 */
 	public int available() throws IOException {
 		synchronized (lock) {
-			return (appendPos - readPos);
+			return available;
 		}
 	}
 
@@ -89,10 +210,16 @@ class OBEXOperationInputStream extends InputStream {
 	public void close() throws IOException {
 		isClosed = true;
 		synchronized (lock) {
+			chunks.removeAllElements();
+			chunkPos = 0;
+			available = 0;
 			lock.notifyAll();
 		}
 	}
 
+	/**
+	 * The data array is queued as is, caller should not modify it.
+	 */
 	void appendData(byte[] b, boolean eof) {
 		if (isClosed || eofReceived) {
 			return;
@@ -102,21 +229,10 @@ class OBEXOperationInputStream extends InputStream {
 				eofReceived = true;
 			}
 			if ((b != null) && (b.length != 0)) {
-				if (appendPos + b.length > buffer.length) {
-					int newSize = (b.length + (appendPos - readPos)) * 2;
-					if (newSize < buffer.length) {
-						newSize = buffer.length;
-					}
-					byte[] newBuffer = new byte[newSize];
-					System.arraycopy(buffer, readPos, newBuffer, 0, appendPos - readPos);
-					buffer = newBuffer;
-					appendPos -= readPos;
-					readPos = 0;
-				}
-				System.arraycopy(b, 0, buffer, appendPos, b.length);
-				appendPos += b.length;
+				chunks.addElement(b);
+				available += b.length;
 			}
 			lock.notifyAll();
 		}
 	}
-}
\ No newline at end of file
+}
@@ -71,7 +71,7 @@ class OBEXOperationOutputStream extends OutputStream {
 				bufferLength += available;
 				written += available;
 				if (bufferLength == buffer.length) {
-					this.operation.deliverPacket(false, buffer);
+					this.operation.deliverPacket(false, buffer, bufferLength);
 					bufferLength = 0;
 				}
 			}
@@ -86,9 +86,7 @@ class OBEXOperationOutputStream extends OutputStream {
 
 	void deliverBuffer(boolean finalPacket) throws IOException {
 		synchronized (lock) {
-			byte[] b = new byte[bufferLength];
-			System.arraycopy(buffer, 0, b, 0, bufferLength);
-			this.operation.deliverPacket(finalPacket, b);
+			this.operation.deliverPacket(finalPacket, buffer, bufferLength);
 			bufferLength = 0;
 		}
 	}
@@ -62,9 +62,27 @@ abstract class OBEXServerOperation implements Operation, OBEXOperation {
 
 	protected boolean inputStreamOpened = false;
 
+	/**
+	 * Client requested Single Response Mode and it is allowed by connection params.
+	 */
+	protected boolean singleResponseModeRequested = false;
+
+	/**
+	 * Single Response Mode enabled by server response, packets are not followed by packet from the other side.
+	 */
+	protected boolean singleResponseMode = false;
+
+	/**
+	 * Client asked to wait for next request before sending response (SRMP header).
+	 */
+	protected boolean singleResponseModeWait = false;
+
 	protected OBEXServerOperation(OBEXServerSessionImpl session, OBEXHeaderSetImpl receivedHeaders) throws IOException {
 		this.session = session;
 		this.receivedHeaders = receivedHeaders;
+		this.singleResponseModeRequested = session.obexConnectionParams.srm
+				&& receivedHeaders.isSingleResponseModeEnabled();
+		this.singleResponseModeWait = receivedHeaders.isSingleResponseModeWait();
 		if (receivedHeaders.hasAuthenticationChallenge()) {
 			sendHeaders = OBEXSessionBase.createOBEXHeaderSetImpl();
 			this.session.handleAuthenticationChallenge(receivedHeaders, sendHeaders);
@@ -79,6 +97,21 @@ abstract class OBEXServerOperation implements Operation, OBEXOperation {
 	protected abstract boolean readRequestPacket() throws IOException;
 
 	void writeResponse(int responseCode) throws IOException {
+		if (singleResponseMode) {
+			// Client sends request packets without waiting until the final one
+			if (inputStream != null) {
+				inputStream.close();
+			}
+			while ((!finalPacketReceived) && (!errorReceived) && (!session.isClosed())) {
+				DebugLog.debug("server waits to receive final packet");
+				session.skipWrite();
+				readRequestPacket();
+			}
+			if (errorReceived) {
+				// Error response already sent
+				return;
+			}
+		}
 		DebugLog.debug0x("server operation reply final", responseCode);
 		session.writePacket(responseCode, sendHeaders);
 		sendHeaders = null;
@@ -76,7 +76,16 @@ class OBEXServerOperationGet extends OBEXServerOperation implements OBEXOperatio
 		}
 		requestEnded = true;
 		outputStream = new OBEXOperationOutputStream(session.mtu, this);
-		session.writePacket(OBEXOperationCodes.OBEX_RESPONSE_CONTINUE, sendHeaders);
+		if (singleResponseModeRequested && finalPacketReceived) {
+			DebugLog.debug("server operation reply continue, Single Response Mode enabled");
+			session.writePacketSingleResponseMode(OBEXOperationCodes.OBEX_RESPONSE_CONTINUE, sendHeaders);
+			singleResponseMode = true;
+			if (!singleResponseModeWait) {
+				session.skipRead();
+			}
+		} else {
+			session.writePacket(OBEXOperationCodes.OBEX_RESPONSE_CONTINUE, sendHeaders);
+		}
 		sendHeaders = null;
 		return outputStream;
 	}
@@ -109,7 +118,8 @@ class OBEXServerOperationGet extends OBEXServerOperation implements OBEXOperatio
 			if (finalPacket) {
 				requestEnded = true;
 			}
-			HeaderSet requestHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 3);
+			OBEXHeaderSetImpl requestHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 3);
+			singleResponseModeWait = requestHeaders.isSingleResponseModeWait();
 			OBEXHeaderSetImpl.appendHeaders(this.receivedHeaders, requestHeaders);
 			processIncommingData(requestHeaders, finalPacket);
 			break;
@@ -143,9 +153,13 @@ class OBEXServerOperationGet extends OBEXServerOperation implements OBEXOperatio
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.intel.bluetooth.obex.OBEXOperationDelivery#deliverPacket(boolean, byte[])
+	 * @see com.intel.bluetooth.obex.OBEXOperationDelivery#deliverPacket(boolean, byte[], int)
 	 */
-	public void deliverPacket(boolean finalPacket, byte[] buffer) throws IOException {
+	public void deliverPacket(boolean finalPacket, byte[] buffer, int length) throws IOException {
+		if (singleResponseMode && (!session.requestSent) && session.hasIncomingPacket()) {
+			// Client sent Abort or SRMP while server streams the response
+			session.skipWrite();
+		}
 		if (session.requestSent) {
 			// TODO Consider moving readRequestPacket() to the begging of the function
 			readRequestPacket();
@@ -155,18 +169,18 @@ class OBEXServerOperationGet extends OBEXServerOperation implements OBEXOperatio
 		}
 		OBEXHeaderSetImpl dataHeaders = OBEXSessionBase.createOBEXHeaderSetImpl();
 		int opcode = OBEXOperationCodes.OBEX_RESPONSE_CONTINUE;
-		int dataHeaderID = OBEXHeaderSetImpl.OBEX_HDR_BODY;
-		if (finalPacket) {
-			// opcode = OBEXOperationCodes.OBEX_RESPONSE_SUCCESS;
-			dataHeaderID = OBEXHeaderSetImpl.OBEX_HDR_BODY_END;
-		}
-		dataHeaders.setHeader(dataHeaderID, buffer);
+		// if (finalPacket) opcode = OBEXOperationCodes.OBEX_RESPONSE_SUCCESS;
+		dataHeaders.setOutgoingBody(finalPacket, buffer, length);
 		if (sendHeaders != null) {
 			OBEXHeaderSetImpl.appendHeaders(dataHeaders, sendHeaders);
 			sendHeaders = null;
 		}
 		session.writePacket(opcode, dataHeaders);
-		readRequestPacket();
+		if (singleResponseMode && (!singleResponseModeWait)) {
+			session.skipRead();
+		} else {
+			readRequestPacket();
+		}
 	}
 
 	private void processAbort() throws IOException {
@@ -104,6 +104,7 @@ class OBEXServerOperationPut extends OBEXServerOperation implements OBEXOperatio
 		case OBEXOperationCodes.PUT_FINAL:
 		case OBEXOperationCodes.PUT:
 			OBEXHeaderSetImpl requestHeaders = OBEXHeaderSetImpl.readHeaders(b[0], b, 3);
+			singleResponseModeWait = requestHeaders.isSingleResponseModeWait();
 			if (!session.handleAuthenticationResponse(requestHeaders)) {
 				errorReceived = true;
 				session.writePacket(ResponseCodes.OBEX_HTTP_UNAUTHORIZED, null);
@@ -133,18 +134,28 @@ class OBEXServerOperationPut extends OBEXServerOperation implements OBEXOperatio
 			is.appendData(null, true);
 			return;
 		}
-		DebugLog.debug("server operation reply continue");
-		session.writePacket(OBEXOperationCodes.OBEX_RESPONSE_CONTINUE, sendHeaders);
-		sendHeaders = null;
+		if (singleResponseMode) {
+			// Client does not wait for response
+			session.skipWrite();
+		} else if (singleResponseModeRequested) {
+			DebugLog.debug("server operation reply continue, Single Response Mode enabled");
+			session.writePacketSingleResponseMode(OBEXOperationCodes.OBEX_RESPONSE_CONTINUE, sendHeaders);
+			sendHeaders = null;
+			singleResponseMode = true;
+		} else {
+			DebugLog.debug("server operation reply continue");
+			session.writePacket(OBEXOperationCodes.OBEX_RESPONSE_CONTINUE, sendHeaders);
+			sendHeaders = null;
+		}
 		readRequestPacket();
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.intel.bluetooth.obex.OBEXOperationDelivery#deliverPacket(boolean, byte[])
+	 * @see com.intel.bluetooth.obex.OBEXOperationDelivery#deliverPacket(boolean, byte[], int)
 	 */
-	public void deliverPacket(boolean finalPacket, byte[] buffer) throws IOException {
+	public void deliverPacket(boolean finalPacket, byte[] buffer, int length) throws IOException {
 		if (session.requestSent) {
 			// TODO Consider moving readRequestPacket() to the begging of the function
 			readRequestPacket();
@@ -154,12 +165,8 @@ class OBEXServerOperationPut extends OBEXServerOperation implements OBEXOperatio
 		}
 		OBEXHeaderSetImpl dataHeaders = OBEXSessionBase.createOBEXHeaderSetImpl();
 		int opcode = OBEXOperationCodes.OBEX_RESPONSE_CONTINUE;
-		int dataHeaderID = OBEXHeaderSetImpl.OBEX_HDR_BODY;
-		if (finalPacket) {
-			// opcode = OBEXOperationCodes.OBEX_RESPONSE_SUCCESS;
-			dataHeaderID = OBEXHeaderSetImpl.OBEX_HDR_BODY_END;
-		}
-		dataHeaders.setHeader(dataHeaderID, buffer);
+		// if (finalPacket) opcode = OBEXOperationCodes.OBEX_RESPONSE_SUCCESS;
+		dataHeaders.setOutgoingBody(finalPacket, buffer, length);
 		if (sendHeaders != null) {
 			OBEXHeaderSetImpl.appendHeaders(dataHeaders, sendHeaders);
 			sendHeaders = null;
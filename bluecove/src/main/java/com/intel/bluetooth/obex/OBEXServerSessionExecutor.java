@@ -0,0 +1,78 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.IOException;
+
+/**
+ * Runs OBEX server sessions accepted by SessionNotifier. Non JSR-82.
+ * <p>
+ * Custom implementation can be selected using "bluecove.obex.server.executor" property, the class should have public
+ * default constructor.
+ * <p>
+ * <b>PUBLIC JSR-82 extension</b>
+ * 
+ * @since bluecove 2.1.1
+ */
+public interface OBEXServerSessionExecutor {
+
+	/**
+	 * Called before the next connection is accepted. Blocks while the executor can't take one more session.
+	 * 
+	 * @throws IOException
+	 *             if interrupted
+	 */
+	void awaitCapacity() throws IOException;
+
+	/**
+	 * Run session requests handling loop.
+	 * 
+	 * @param session
+	 *            runs until the session is closed
+	 * @throws IOException
+	 *             if the session is rejected, connection would be closed
+	 */
+	void execute(Runnable session) throws IOException;
+
+	/**
+	 * Called when SessionNotifier is closed. Running and queued sessions are not interrupted.
+	 */
+	void shutdown();
+
+	/**
+	 * @return the number of sessions running
+	 */
+	int getActiveCount();
+
+	/**
+	 * @return the number of accepted sessions waiting for running session to end
+	 */
+	int getQueuedCount();
+
+	/**
+	 * @return the number of sessions rejected by executor since it was created
+	 */
+	int getRejectedCount();
+}
@@ -0,0 +1,264 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.Vector;
+
+import com.intel.bluetooth.DebugLog;
+import com.intel.bluetooth.UtilsJavaSE;
+
+/**
+ * Default OBEX server sessions executor: thread per session, virtual thread per session or pool of threads.
+ * 
+ * Sessions over max sessions limit wait in queue, thread that finished the session takes the next one from the queue.
+ * Pool threads wait for new sessions and exit when idle for POOL_KEEP_ALIVE.
+ */
+class OBEXServerSessionExecutorImpl implements OBEXServerSessionExecutor {
+
+	static final String EXECUTOR_THREAD = "thread";
+
+	static final String EXECUTOR_VIRTUAL = "virtual";
+
+	static final String EXECUTOR_POOL = "pool";
+
+	static final int POOL_DEFAULT_SIZE = 16;
+
+	private static final long POOL_KEEP_ALIVE = 60 * 1000;
+
+	private static Method startVirtualThread;
+
+	static {
+		try {
+			startVirtualThread = Thread.class.getMethod("startVirtualThread", new Class[] { Runnable.class });
+		} catch (Throwable e) {
+			startVirtualThread = null;
+		}
+	}
+
+	private static int threadNumber;
+
+	private static synchronized int nextThreadNum() {
+		return threadNumber++;
+	}
+
+	private final boolean pool;
+
+	private final boolean virtual;
+
+	private final int maxSessions;
+
+	private final int maxQueued;
+
+	/**
+	 * Sessions over maxSessions limit
+	 */
+	private final Vector queue = new Vector();
+
+	/**
+	 * Sessions passed to idle pool threads
+	 */
+	private final Vector handoff = new Vector();
+
+	private int active = 0;
+
+	private int idleThreads = 0;
+
+	private int rejected = 0;
+
+	private boolean shutdown = false;
+
+	static OBEXServerSessionExecutor createExecutor(OBEXConnectionParams params) throws IOException {
+		String type = params.serverExecutor;
+		if ((type == null) || (type.length() == 0) || (type.equals(EXECUTOR_THREAD))) {
+			return new OBEXServerSessionExecutorImpl(false, false, params.serverMaxSessions, params.serverQueue);
+		} else if (type.equals(EXECUTOR_VIRTUAL)) {
+			if (startVirtualThread == null) {
+				DebugLog.debug("virtual threads not supported, using thread per session");
+			}
+			return new OBEXServerSessionExecutorImpl(false, (startVirtualThread != null), params.serverMaxSessions,
+					params.serverQueue);
+		} else if (type.equals(EXECUTOR_POOL)) {
+			int size = (params.serverMaxSessions > 0) ? params.serverMaxSessions : POOL_DEFAULT_SIZE;
+			return new OBEXServerSessionExecutorImpl(true, false, size, params.serverQueue);
+		}
+		try {
+			return (OBEXServerSessionExecutor) Class.forName(type).newInstance();
+		} catch (Throwable e) {
+			throw (IOException) UtilsJavaSE.initCause(new IOException("Can't create OBEX server executor " + type), e);
+		}
+	}
+
+	OBEXServerSessionExecutorImpl(boolean pool, boolean virtual, int maxSessions, int maxQueued) {
+		this.pool = pool;
+		this.virtual = virtual;
+		this.maxSessions = maxSessions;
+		this.maxQueued = maxQueued;
+	}
+
+	private boolean hasCapacity() {
+		return (maxSessions <= 0) || (active < maxSessions) || (queue.size() < maxQueued);
+	}
+
+	public synchronized void awaitCapacity() throws IOException {
+		while ((!shutdown) && (!hasCapacity())) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("OBEX server interrupted");
+			}
+		}
+	}
+
+	public void execute(Runnable session) throws IOException {
+		synchronized (this) {
+			if (shutdown) {
+				rejected++;
+				throw new IOException("OBEX server closed");
+			}
+			if ((maxSessions > 0) && (active >= maxSessions)) {
+				if (queue.size() >= maxQueued) {
+					rejected++;
+					throw new IOException("OBEX server sessions limit reached " + maxSessions);
+				}
+				DebugLog.debug("OBEX server session queued", queue.size());
+				queue.addElement(session);
+				return;
+			}
+			active++;
+			if (idleThreads > handoff.size()) {
+				handoff.addElement(session);
+				notifyAll();
+				return;
+			}
+		}
+		boolean started = false;
+		try {
+			startThread(session);
+			started = true;
+		} finally {
+			if (!started) {
+				synchronized (this) {
+					active--;
+					rejected++;
+					notifyAll();
+				}
+			}
+		}
+	}
+
+	private void startThread(final Runnable session) throws IOException {
+		Runnable worker = new Runnable() {
+			public void run() {
+				runSessions(session);
+			}
+		};
+		if (virtual) {
+			try {
+				startVirtualThread.invoke(null, new Object[] { worker });
+			} catch (Throwable e) {
+				throw (IOException) UtilsJavaSE.initCause(new IOException("Can't start virtual thread"), e);
+			}
+		} else {
+			Thread thread = new Thread(worker, (pool ? "OBEXServerSessionPoolThread-" : "OBEXServerSessionThread-")
+					+ nextThreadNum());
+			UtilsJavaSE.threadSetDaemon(thread);
+			thread.start();
+		}
+	}
+
+	private void runSessions(Runnable session) {
+		while (session != null) {
+			try {
+				session.run();
+			} catch (Throwable e) {
+				DebugLog.error("OBEX server session error", e);
+			}
+			session = nextSession();
+		}
+	}
+
+	/**
+	 * Called when session ends.
+	 * 
+	 * @return next session to run in this thread or <code>null</code> when thread should exit
+	 */
+	private synchronized Runnable nextSession() {
+		if (!queue.isEmpty()) {
+			// queued session takes the slot of finished one
+			Runnable session = (Runnable) queue.elementAt(0);
+			queue.removeElementAt(0);
+			notifyAll();
+			return session;
+		}
+		active--;
+		notifyAll();
+		if (!pool) {
+			return null;
+		}
+		idleThreads++;
+		try {
+			long end = System.currentTimeMillis() + POOL_KEEP_ALIVE;
+			while (handoff.isEmpty() && (!shutdown)) {
+				long timeout = end - System.currentTimeMillis();
+				if (timeout <= 0) {
+					break;
+				}
+				try {
+					wait(timeout);
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			if (handoff.isEmpty()) {
+				return null;
+			}
+			Runnable session = (Runnable) handoff.elementAt(0);
+			handoff.removeElementAt(0);
+			return session;
+		} finally {
+			idleThreads--;
+		}
+	}
+
+	public synchronized void shutdown() {
+		shutdown = true;
+		notifyAll();
+	}
+
+	public synchronized int getActiveCount() {
+		return active;
+	}
+
+	public synchronized int getQueuedCount() {
+		return queue.size();
+	}
+
+	public synchronized int getRejectedCount() {
+		return rejected;
+	}
+}
@@ -35,7 +35,6 @@ import javax.obex.ServerRequestHandler;
 import com.intel.bluetooth.BlueCoveImpl;
 import com.intel.bluetooth.BluetoothServerConnection;
 import com.intel.bluetooth.DebugLog;
-import com.intel.bluetooth.UtilsJavaSE;
 
 class OBEXServerSessionImpl extends OBEXSessionBase implements Runnable, BluetoothServerConnection {
 
@@ -51,13 +50,7 @@ class OBEXServerSessionImpl extends OBEXSessionBase implements Runnable, Bluetoo
 
 	private Object stackID;
 
-	private Thread handlerThread;
-
-	private static int threadNumber;
-
-	private static synchronized int nextThreadNum() {
-		return threadNumber++;
-	}
+	private OBEXTCPSelectorConnection selectorConnection;
 
 	static int errorCount = 0;
 
@@ -68,17 +61,33 @@ class OBEXServerSessionImpl extends OBEXSessionBase implements Runnable, Bluetoo
 		this.handler = handler;
 		this.authenticator = authenticator;
 		stackID = BlueCoveImpl.getCurrentThreadBluetoothStackID();
-		handlerThread = new Thread(this, "OBEXServerSessionThread-" + nextThreadNum());
-		UtilsJavaSE.threadSetDaemon(handlerThread);
+		if (connection instanceof OBEXTCPSelectorConnection) {
+			selectorConnection = (OBEXTCPSelectorConnection) connection;
+		}
 	}
 
-	void startSessionHandlerThread() {
-		handlerThread.start();
+	void startSessionHandler(OBEXServerSessionExecutor executor) throws IOException {
+		if (selectorConnection != null) {
+			// Dispatched to executor when request received
+			selectorConnection.attachSession(this, executor);
+			return;
+		}
+		boolean started = false;
+		try {
+			executor.execute(this);
+			started = true;
+		} finally {
+			if (!started) {
+				DebugLog.debug("OBEXServerSession rejected");
+				super.close();
+			}
+		}
 	}
 
 	public void run() {
 		// Let the acceptAndOpen return to the caller.
 		Thread.yield();
+		boolean released = false;
 		try {
 			if (stackID != null) {
 				BlueCoveImpl.setThreadBluetoothStackID(stackID);
@@ -87,6 +96,11 @@ class OBEXServerSessionImpl extends OBEXSessionBase implements Runnable, Bluetoo
 				if (!handleRequest()) {
 					return;
 				}
+				if ((selectorConnection != null) && selectorConnection.releaseSession()) {
+					// Selector would run the session again on next request
+					released = true;
+					return;
+				}
 			}
 		} catch (Throwable e) {
 			synchronized (OBEXServerSessionImpl.class) {
@@ -98,11 +112,13 @@ class OBEXServerSessionImpl extends OBEXSessionBase implements Runnable, Bluetoo
 				DebugLog.debug("OBEXServerSession error", e);
 			}
 		} finally {
-			DebugLog.debug("OBEXServerSession ends");
-			try {
-				super.close();
-			} catch (IOException e) {
-				DebugLog.debug("OBEXServerSession close error", e);
+			if (!released) {
+				DebugLog.debug("OBEXServerSession ends");
+				try {
+					super.close();
+				} catch (IOException e) {
+					DebugLog.debug("OBEXServerSession close error", e);
+				}
 			}
 		}
 	}
@@ -198,6 +214,7 @@ class OBEXServerSessionImpl extends OBEXSessionBase implements Runnable, Bluetoo
 		if (requestedMTU < OBEXOperationCodes.OBEX_MINIMUM_MTU) {
 			throw new IOException("Invalid MTU " + requestedMTU);
 		}
+		this.remoteMTU = requestedMTU;
 		this.mtu = requestedMTU;
 		DebugLog.debug("mtu selected", this.mtu);
 
@@ -218,12 +235,14 @@ class OBEXServerSessionImpl extends OBEXSessionBase implements Runnable, Bluetoo
 		byte[] connectResponse = new byte[4];
 		connectResponse[0] = OBEXOperationCodes.OBEX_VERSION;
 		connectResponse[1] = 0; /* Flags */
-		connectResponse[2] = OBEXUtils.hiByte(obexConnectionParams.mtu);
-		connectResponse[3] = OBEXUtils.loByte(obexConnectionParams.mtu);
-		writePacketWithFlags(rc, connectResponse, replyHeaders);
+		int localMTU = getLocalPacketSize();
+		connectResponse[2] = OBEXUtils.hiByte(localMTU);
+		connectResponse[3] = OBEXUtils.loByte(localMTU);
+		// Connected before the client receives response
 		if (rc == ResponseCodes.OBEX_HTTP_OK) {
 			this.isConnected = true;
 		}
+		writePacketWithFlags(rc, connectResponse, replyHeaders);
 	}
 
 	boolean handleAuthenticationResponse(OBEXHeaderSetImpl incomingHeaders) throws IOException {
@@ -24,7 +24,6 @@
  */
 package com.intel.bluetooth.obex;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -72,6 +71,15 @@ abstract class OBEXSessionBase implements Connection, BluetoothConnectionAccess
 
     protected int packetsCountRead;
 
+    protected long bytesCountWrite;
+
+    protected long bytesCountRead;
+
+    /**
+     * MTU received from the other side in CONNECT, 0 when not connected yet
+     */
+    protected int remoteMTU;
+
     private Vector authChallengesSent;
 
     /**
@@ -79,6 +87,11 @@ abstract class OBEXSessionBase implements Connection, BluetoothConnectionAccess
      */
     protected boolean requestSent;
 
+    /**
+     * Outgoing packets are assembled in this buffer, allocated once per session.
+     */
+    private byte[] packetBuffer;
+
     public OBEXSessionBase(StreamConnection conn, OBEXConnectionParams obexConnectionParams) throws IOException {
         if (obexConnectionParams == null) {
             throw new NullPointerException("obexConnectionParams is null");
@@ -152,37 +165,39 @@ abstract class OBEXSessionBase implements Connection, BluetoothConnectionAccess
             throw new IOException("Write packet out of order");
         }
         this.requestSent = true;
-        int len = 3;
-        if (this.connectionID != -1) {
-            len += 5;
+        if ((packetBuffer == null) || (packetBuffer.length < mtu)) {
+            packetBuffer = new byte[mtu];
         }
+        byte[] buf = packetBuffer;
+        // Packet length is written when all headers are in the buffer
+        int len = 3;
         if (headerFlagsData != null) {
+            if (len + headerFlagsData.length > mtu) {
+                throw new IOException("Can't sent more data than in MTU, len=" + (len + headerFlagsData.length) + ", mtu=" + mtu);
+            }
+            System.arraycopy(headerFlagsData, 0, buf, len, headerFlagsData.length);
             len += headerFlagsData.length;
         }
-        byte[] data = null;
-        if (headers != null) {
-            data = OBEXHeaderSetImpl.toByteArray(headers);
-            len += data.length;
+        if (this.connectionID != -1) {
+            len = OBEXHeaderSetImpl.writeObexInt(buf, len, mtu, OBEXHeaderSetImpl.OBEX_HDR_CONNECTION, this.connectionID);
         }
-        if (len > mtu) {
-            throw new IOException("Can't sent more data than in MTU, len=" + len + ", mtu=" + mtu);
+        if (headers != null) {
+            len = OBEXHeaderSetImpl.writeHeaders(headers, buf, len, mtu);
         }
+        buf[0] = (byte) commId;
+        buf[1] = OBEXUtils.hiByte(len);
+        buf[2] = OBEXUtils.loByte(len);
         this.packetsCountWrite++;
-        ByteArrayOutputStream buf = new ByteArrayOutputStream();
-        OBEXHeaderSetImpl.writeObexLen(buf, commId, len);
-        if (headerFlagsData != null) {
-            buf.write(headerFlagsData);
+        boolean debug = DebugLog.isDebugEnabled();
+        if (debug) {
+            DebugLog.debug0x("obex send (" + this.packetsCountWrite + ")", OBEXUtils.toStringObexResponseCodes(commId), commId);
         }
-        if (this.connectionID != -1) {
-            OBEXHeaderSetImpl.writeObexInt(buf, OBEXHeaderSetImpl.OBEX_HDR_CONNECTION, this.connectionID);
-        }
-        if (data != null) {
-            buf.write(data);
-        }
-        DebugLog.debug0x("obex send (" + this.packetsCountWrite + ")", OBEXUtils.toStringObexResponseCodes(commId), commId);
-        os.write(buf.toByteArray());
+        os.write(buf, 0, len);
         os.flush();
-        DebugLog.debug("obex sent (" + this.packetsCountWrite + ") len", len);
+        this.bytesCountWrite += len;
+        if (debug) {
+            DebugLog.debug("obex sent (" + this.packetsCountWrite + ") len", len);
+        }
 
         if ((headers != null) && (headers.hasAuthenticationChallenge())) {
             if (authChallengesSent == null) {
@@ -204,14 +219,18 @@ abstract class OBEXSessionBase implements Connection, BluetoothConnectionAccess
         byte[] header = new byte[3];
         OBEXUtils.readFully(is, obexConnectionParams, header);
         this.packetsCountRead++;
-        DebugLog.debug0x("obex received (" + this.packetsCountRead + ")", OBEXUtils.toStringObexResponseCodes(header[0]), header[0] & 0xFF);
+        if (DebugLog.isDebugEnabled()) {
+            DebugLog.debug0x("obex received (" + this.packetsCountRead + ")", OBEXUtils.toStringObexResponseCodes(header[0]), header[0] & 0xFF);
+        }
         int lenght = OBEXUtils.bytesToShort(header[1], header[2]);
         if (lenght == 3) {
+            this.bytesCountRead += lenght;
             return header;
         }
         if ((lenght < 3) || (lenght > OBEXOperationCodes.OBEX_MAX_PACKET_LEN)) {
             throw new IOException("Invalid packet length " + lenght);
         }
+        this.bytesCountRead += lenght;
         byte[] data = new byte[lenght];
         System.arraycopy(header, 0, data, 0, header.length);
         OBEXUtils.readFully(is, obexConnectionParams, data, header.length, lenght - header.length);
@@ -221,6 +240,43 @@ abstract class OBEXSessionBase implements Connection, BluetoothConnectionAccess
         return data;
     }
 
+    /**
+     * Write packet with Single Response Mode header added. The headers are not changed.
+     */
+    protected void writePacketSingleResponseMode(int commId, OBEXHeaderSetImpl headers) throws IOException {
+        if (headers == null) {
+            headers = createOBEXHeaderSetImpl();
+        }
+        headers.setSingleResponseMode(true);
+        try {
+            writePacket(commId, headers);
+        } finally {
+            headers.setSingleResponseMode(false);
+        }
+    }
+
+    /**
+     * Single Response Mode, the packet just written is not followed by packet from the other side. Next packet will
+     * be written.
+     */
+    protected synchronized void skipRead() {
+        this.requestSent = false;
+    }
+
+    /**
+     * Single Response Mode, the packet just read is not followed by packet to the other side. Next packet will be read.
+     */
+    protected synchronized void skipWrite() {
+        this.requestSent = true;
+    }
+
+    /**
+     * Single Response Mode, the other side sent a packet without waiting, e.g. abort or error response.
+     */
+    protected boolean hasIncomingPacket() throws IOException {
+        return (is.available() > 0);
+    }
+
     private void validateBluetoothConnection() {
         if ((conn != null) && !(conn instanceof BluetoothConnectionAccess)) {
             throw new IllegalArgumentException("Not a Bluetooth connection " + conn.getClass().getName());
@@ -414,8 +470,27 @@ abstract class OBEXSessionBase implements Connection, BluetoothConnectionAccess
         if (isConnected) {
             return this.mtu;
         } else {
+            return getLocalPacketSize();
+        }
+    }
+
+    /**
+     * @return MTU sent to the other side in CONNECT
+     */
+    int getLocalPacketSize() {
+        if (!obexConnectionParams.mtuAdaptive) {
             return obexConnectionParams.mtu;
         }
+        // RFCOMM frame size is not known to the stack, use value common for Bluetooth OBEX
+        if (conn instanceof BluetoothConnectionAccess) {
+            return OBEXOperationCodes.OBEX_BLUETOOTH_ADAPTIVE_MTU;
+        }
+        return OBEXOperationCodes.OBEX_MAX_PACKET_LEN;
+    }
+
+    OBEXSessionStatistics getStatistics() {
+        return new OBEXSessionStatistics(getPacketSize(), getLocalPacketSize(), remoteMTU, packetsCountWrite,
+                packetsCountRead, bytesCountWrite, bytesCountRead);
     }
 
     /**
@@ -429,5 +504,6 @@ abstract class OBEXSessionBase implements Connection, BluetoothConnectionAccess
             throw new IOException("Session already connected");
         }
         obexConnectionParams.mtu = mtu;
+        obexConnectionParams.mtuAdaptive = false;
     }
 }
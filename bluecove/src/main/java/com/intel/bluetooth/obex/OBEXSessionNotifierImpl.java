@@ -54,6 +54,8 @@ public class OBEXSessionNotifierImpl implements SessionNotifier, BluetoothConnec
 
 	private OBEXConnectionParams obexConnectionParams;
 
+	private OBEXServerSessionExecutor executor;
+
 	private static final String FQCN = OBEXSessionNotifierImpl.class.getName();
 
 	private static final Vector fqcnSet = new Vector();
@@ -73,6 +75,7 @@ public class OBEXSessionNotifierImpl implements SessionNotifier, BluetoothConnec
 		Utils.isLegalAPICall(fqcnSet);
 		this.notifier = notifier;
 		this.obexConnectionParams = obexConnectionParams;
+		this.executor = OBEXServerSessionExecutorImpl.createExecutor(obexConnectionParams);
 	}
 
 	public Connection acceptAndOpen(ServerRequestHandler handler) throws IOException {
@@ -86,20 +89,30 @@ public class OBEXSessionNotifierImpl implements SessionNotifier, BluetoothConnec
 		if (handler == null) {
 			throw new NullPointerException("handler is null");
 		}
+		// Do not accept new connections while executor is busy
+		executor.awaitCapacity();
+		if (notifier == null) {
+			throw new IOException("Session closed");
+		}
 		OBEXServerSessionImpl sessionImpl = new OBEXServerSessionImpl(notifier.acceptAndOpen(), handler, auth,
 				obexConnectionParams);
-		sessionImpl.startSessionHandlerThread();
+		sessionImpl.startSessionHandler(executor);
 		return sessionImpl;
 	}
 
 	public void close() throws IOException {
 		StreamConnectionNotifier n = this.notifier;
 		this.notifier = null;
+		executor.shutdown();
 		if (n != null) {
 			n.close();
 		}
 	}
 
+	OBEXServerSessionExecutor getServerSessionExecutor() {
+		return executor;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,104 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+/**
+ * OBEX session packet size and traffic counters. Non JSR-82.
+ * <p>
+ * <b>PUBLIC JSR-82 extension</b>
+ * 
+ * @see com.intel.bluetooth.obex.BlueCoveOBEX#getSessionStatistics(javax.microedition.io.Connection)
+ * @since bluecove 2.1.1
+ */
+public class OBEXSessionStatistics {
+
+	private final int packetSize;
+
+	private final int localPacketSize;
+
+	private final int remotePacketSize;
+
+	private final int packetsSent;
+
+	private final int packetsReceived;
+
+	private final long bytesSent;
+
+	private final long bytesReceived;
+
+	OBEXSessionStatistics(int packetSize, int localPacketSize, int remotePacketSize, int packetsSent,
+			int packetsReceived, long bytesSent, long bytesReceived) {
+		this.packetSize = packetSize;
+		this.localPacketSize = localPacketSize;
+		this.remotePacketSize = remotePacketSize;
+		this.packetsSent = packetsSent;
+		this.packetsReceived = packetsReceived;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+	}
+
+	/**
+	 * @return negotiated MTU used for packets sent by this side
+	 */
+	public int getPacketSize() {
+		return this.packetSize;
+	}
+
+	/**
+	 * @return MTU offered by this side in CONNECT
+	 */
+	public int getLocalPacketSize() {
+		return this.localPacketSize;
+	}
+
+	/**
+	 * @return MTU offered by the other side in CONNECT or 0 when not connected yet
+	 */
+	public int getRemotePacketSize() {
+		return this.remotePacketSize;
+	}
+
+	public int getPacketsSent() {
+		return this.packetsSent;
+	}
+
+	public int getPacketsReceived() {
+		return this.packetsReceived;
+	}
+
+	public long getBytesSent() {
+		return this.bytesSent;
+	}
+
+	public long getBytesReceived() {
+		return this.bytesReceived;
+	}
+
+	public String toString() {
+		return "mtu " + packetSize + " (local " + localPacketSize + ", remote " + remotePacketSize + "), sent "
+				+ packetsSent + " packets " + bytesSent + " bytes, received " + packetsReceived + " packets "
+				+ bytesReceived + " bytes";
+	}
+}
@@ -0,0 +1,444 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import javax.microedition.io.StreamConnection;
+
+import com.intel.bluetooth.DebugLog;
+import com.intel.bluetooth.TimedInputStream;
+
+/**
+ * Connection accepted by OBEXTCPSelectorServer.
+ * <p>
+ * Received data is buffered by selector thread and framed using OBEX packet length. Session is dispatched when
+ * complete packet arrives and released back to selector when there are no more packets to handle. The first request
+ * runs on OBEXServerSessionExecutor that admits the session, next requests run on BlueCove scheduler threads.
+ * 
+ */
+class OBEXTCPSelectorConnection implements StreamConnection {
+
+	private static final int INITIAL_BUFFER_SIZE = 0x100;
+
+	/**
+	 * Stop reading from socket when buffered data reach this size; always enough for one complete packet.
+	 */
+	private static final int MAX_BUFFERED = OBEXOperationCodes.OBEX_MAX_PACKET_LEN + 1;
+
+	private final OBEXTCPSelectorServer server;
+
+	private final SocketChannel channel;
+
+	private SelectionKey key;
+
+	// --- receive side, guarded by this
+
+	private byte[] received = new byte[INITIAL_BUFFER_SIZE];
+
+	private int receivedLen = 0;
+
+	private boolean eof = false;
+
+	private IOException error;
+
+	private boolean closed = false;
+
+	private OBEXServerSessionImpl session;
+
+	private OBEXServerSessionExecutor executor;
+
+	private boolean sessionRunning = false;
+
+	private boolean sessionAdmitted = false;
+
+	// --- send side, guarded by writeLock
+
+	private final Object writeLock = new Object();
+
+	private ByteBuffer pendingWrite;
+
+	private InputStream in;
+
+	private OutputStream out;
+
+	OBEXTCPSelectorConnection(OBEXTCPSelectorServer server, SocketChannel channel) {
+		this.server = server;
+		this.channel = channel;
+	}
+
+	void setKey(SelectionKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Called once when session created for this connection; session starts when first request received.
+	 */
+	void attachSession(OBEXServerSessionImpl session, OBEXServerSessionExecutor executor) {
+		synchronized (this) {
+			this.session = session;
+			this.executor = executor;
+			if (!canDispatch()) {
+				return;
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * Called by session when request handled.
+	 * 
+	 * @return <code>true</code> if session released the thread and would be dispatched again on next request,
+	 *         <code>false</code> when next request is already received
+	 */
+	synchronized boolean releaseSession() {
+		if (hasPacket() || eof || (error != null) || closed) {
+			return false;
+		}
+		sessionRunning = false;
+		if ((receivedLen == 0) && (received.length > INITIAL_BUFFER_SIZE)) {
+			// Keep idle connections small
+			received = new byte[INITIAL_BUFFER_SIZE];
+		}
+		return true;
+	}
+
+	private boolean hasPacket() {
+		if (receivedLen < 3) {
+			return false;
+		}
+		int length = OBEXUtils.bytesToShort(received[1], received[2]);
+		// Invalid length is reported by session
+		return (length < 3) || (receivedLen >= length);
+	}
+
+	private boolean canDispatch() {
+		if ((session == null) || sessionRunning) {
+			return false;
+		}
+		if (hasPacket() || eof || (error != null) || closed) {
+			sessionRunning = true;
+			return true;
+		}
+		return false;
+	}
+
+	private void dispatch() {
+		if (sessionAdmitted) {
+			// Established session is not limited and not affected by executor shutdown
+			server.dispatch(session);
+			return;
+		}
+		sessionAdmitted = true;
+		try {
+			executor.execute(session);
+		} catch (IOException e) {
+			DebugLog.debug("OBEXServerSession rejected");
+			try {
+				session.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	int interestOps() {
+		int ops = 0;
+		synchronized (this) {
+			if ((!eof) && (error == null) && (receivedLen < MAX_BUFFERED)) {
+				ops |= SelectionKey.OP_READ;
+			}
+		}
+		synchronized (writeLock) {
+			if (pendingWrite != null) {
+				ops |= SelectionKey.OP_WRITE;
+			}
+		}
+		return ops;
+	}
+
+	void applyInterest() {
+		if (key.isValid()) {
+			key.interestOps(interestOps());
+		}
+	}
+
+	/**
+	 * Called by selector thread when channel is readable.
+	 */
+	void selectedRead(ByteBuffer buffer) {
+		int space;
+		synchronized (this) {
+			space = MAX_BUFFERED - receivedLen;
+		}
+		if (space <= 0) {
+			applyInterest();
+			return;
+		}
+		buffer.clear();
+		buffer.limit(Math.min(space, buffer.capacity()));
+		int n;
+		try {
+			n = channel.read(buffer);
+		} catch (IOException e) {
+			receiveError(e);
+			return;
+		}
+		boolean dispatch;
+		synchronized (this) {
+			if (n < 0) {
+				eof = true;
+			} else if (n > 0) {
+				if (receivedLen + n > received.length) {
+					byte[] b = new byte[Math.max(receivedLen + n, Math.min(received.length * 2, MAX_BUFFERED))];
+					System.arraycopy(received, 0, b, 0, receivedLen);
+					received = b;
+				}
+				buffer.flip();
+				buffer.get(received, receivedLen, n);
+				receivedLen += n;
+			}
+			notifyAll();
+			dispatch = canDispatch();
+		}
+		if ((n < 0) || (space == n)) {
+			applyInterest();
+		}
+		if (dispatch) {
+			dispatch();
+		}
+	}
+
+	void receiveError(IOException e) {
+		boolean dispatch;
+		synchronized (this) {
+			if (error == null) {
+				error = e;
+			}
+			notifyAll();
+			dispatch = canDispatch();
+		}
+		synchronized (writeLock) {
+			writeLock.notifyAll();
+		}
+		server.updateInterest(this);
+		if (dispatch) {
+			dispatch();
+		}
+	}
+
+	/**
+	 * Called by selector thread when channel is writable.
+	 */
+	void selectedWrite() {
+		IOException writeError = null;
+		synchronized (writeLock) {
+			if (pendingWrite != null) {
+				try {
+					channel.write(pendingWrite);
+					if (pendingWrite.hasRemaining()) {
+						return;
+					}
+				} catch (IOException e) {
+					writeError = e;
+				}
+				pendingWrite = null;
+				writeLock.notifyAll();
+			}
+		}
+		if (writeError != null) {
+			receiveError(writeError);
+		} else {
+			applyInterest();
+		}
+	}
+
+	/**
+	 * @param timeout
+	 *            zero to wait forever
+	 */
+	private int read(byte[] b, int off, int len, long timeout) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		int rc;
+		boolean resume;
+		synchronized (this) {
+			long end = System.currentTimeMillis() + timeout;
+			while (receivedLen == 0) {
+				if (closed) {
+					throw new IOException("Connection closed");
+				}
+				if (eof) {
+					return -1;
+				}
+				if (error != null) {
+					throw error;
+				}
+				long timeleft = 0;
+				if (timeout > 0) {
+					timeleft = end - System.currentTimeMillis();
+					if (timeleft <= 0) {
+						return 0;
+					}
+				}
+				try {
+					wait(timeleft);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			resume = (receivedLen >= MAX_BUFFERED);
+			rc = Math.min(len, receivedLen);
+			System.arraycopy(received, 0, b, off, rc);
+			receivedLen -= rc;
+			System.arraycopy(received, rc, received, 0, receivedLen);
+		}
+		if (resume) {
+			server.updateInterest(this);
+		}
+		return rc;
+	}
+
+	private synchronized int available() {
+		return receivedLen;
+	}
+
+	private void write(byte[] b, int off, int len) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+		synchronized (writeLock) {
+			while (pendingWrite != null) {
+				waitWrite();
+			}
+			channel.write(buffer);
+			if (!buffer.hasRemaining()) {
+				return;
+			}
+			// Socket buffer is full, selector thread sends the rest
+			pendingWrite = buffer;
+			server.updateInterest(this);
+			while (pendingWrite != null) {
+				waitWrite();
+			}
+		}
+	}
+
+	private void waitWrite() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				throw new IOException("Connection closed");
+			}
+			if (error != null) {
+				throw error;
+			}
+		}
+		try {
+			writeLock.wait();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		}
+	}
+
+	private class SelectorInputStream extends InputStream implements TimedInputStream {
+
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int rc = read(b, 0, 1);
+			return (rc == -1) ? -1 : (b[0] & 0xFF);
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			return OBEXTCPSelectorConnection.this.read(b, off, len, 0);
+		}
+
+		public int read(byte[] b, int off, int len, long timeout) throws IOException {
+			return OBEXTCPSelectorConnection.this.read(b, off, len, Math.max(timeout, 1));
+		}
+
+		public int available() {
+			return OBEXTCPSelectorConnection.this.available();
+		}
+	}
+
+	public InputStream openInputStream() throws IOException {
+		if (in == null) {
+			in = new SelectorInputStream();
+		}
+		return in;
+	}
+
+	public DataInputStream openDataInputStream() throws IOException {
+		return new DataInputStream(openInputStream());
+	}
+
+	public OutputStream openOutputStream() throws IOException {
+		if (out == null) {
+			out = new OutputStream() {
+
+				public void write(int b) throws IOException {
+					write(new byte[] { (byte) b }, 0, 1);
+				}
+
+				public void write(byte[] b, int off, int len) throws IOException {
+					OBEXTCPSelectorConnection.this.write(b, off, len);
+				}
+			};
+		}
+		return out;
+	}
+
+	public DataOutputStream openDataOutputStream() throws IOException {
+		return new DataOutputStream(openOutputStream());
+	}
+
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+		}
+		synchronized (writeLock) {
+			writeLock.notifyAll();
+		}
+		try {
+			channel.close();
+		} finally {
+			server.connectionClosed(this);
+		}
+	}
+
+}
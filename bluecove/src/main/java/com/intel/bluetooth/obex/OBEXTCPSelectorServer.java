@@ -0,0 +1,315 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Vector;
+
+import javax.microedition.io.ServerSocketConnection;
+import javax.microedition.io.StreamConnection;
+
+import com.intel.bluetooth.DebugLog;
+import com.intel.bluetooth.Utils;
+import com.intel.bluetooth.UtilsJavaSE;
+
+/**
+ * Non-blocking OBEX over TCP server. Java SE 1.4 or later.
+ * <p>
+ * One selector thread accepts connections and receives data for all of them. Accepted sessions do not hold a thread
+ * while waiting for the next request. The first request of a session is dispatched to OBEXServerSessionExecutor, next
+ * requests run on BlueCove scheduler threads.
+ * <p>
+ * Enabled using "bluecove.obex.server.selector" property for tcpobex server connections.
+ * <p>
+ * <b><u>Your application should not use this class directly.</u></b>
+ * 
+ * @since bluecove 2.1.1
+ */
+public class OBEXTCPSelectorServer implements ServerSocketConnection, Runnable {
+
+	/**
+	 * Connections accepted and not yet returned by acceptAndOpen.
+	 */
+	static final int ACCEPT_BACKLOG = 50;
+
+	private static final int READ_BUFFER_SIZE = 0x4000;
+
+
+	private final ServerSocketChannel serverChannel;
+
+	private final Selector selector;
+
+	private final SelectionKey serverKey;
+
+	private final Thread selectorThread;
+
+	/**
+	 * Shared by all connections, used only by selector thread.
+	 */
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+	private final Vector accepted = new Vector();
+
+	/**
+	 * Connections and this server waiting for interest ops update by selector thread.
+	 */
+	private final Vector interestUpdates = new Vector();
+
+	private int connectionsCount = 0;
+
+	private volatile boolean closed = false;
+
+	public OBEXTCPSelectorServer(int port) throws IOException {
+		selector = Selector.open();
+		ServerSocketChannel channel = null;
+		boolean initOK = false;
+		try {
+			channel = ServerSocketChannel.open();
+			channel.socket().bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+			channel.configureBlocking(false);
+			serverKey = channel.register(selector, SelectionKey.OP_ACCEPT);
+			initOK = true;
+		} finally {
+			if (!initOK) {
+				if (channel != null) {
+					channel.close();
+				}
+				selector.close();
+			}
+		}
+		serverChannel = channel;
+		selectorThread = new Thread(this, "OBEXTCPSelector-" + getLocalPort());
+		UtilsJavaSE.threadSetDaemon(selectorThread);
+		selectorThread.start();
+	}
+
+	public String getLocalAddress() throws IOException {
+		InetAddress localHost = InetAddress.getLocalHost();
+		return localHost.getHostAddress();
+	}
+
+	public int getLocalPort() throws IOException {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	public StreamConnection acceptAndOpen() throws IOException {
+		OBEXTCPSelectorConnection c;
+		synchronized (this) {
+			while (accepted.isEmpty()) {
+				if (closed) {
+					throw new IOException("Server closed");
+				}
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			c = (OBEXTCPSelectorConnection) accepted.elementAt(0);
+			accepted.removeElementAt(0);
+		}
+		updateInterest(this);
+		return c;
+	}
+
+	/**
+	 * Running sessions are not closed, selector thread ends when all of them closed.
+	 */
+	public void close() throws IOException {
+		Object[] notAccepted;
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notAccepted = new Object[accepted.size()];
+			accepted.copyInto(notAccepted);
+			notifyAll();
+		}
+		for (int i = 0; i < notAccepted.length; i++) {
+			((OBEXTCPSelectorConnection) notAccepted[i]).close();
+		}
+		serverChannel.close();
+		selector.wakeup();
+	}
+
+	synchronized int getConnectionsCount() {
+		return connectionsCount;
+	}
+
+	/**
+	 * Apply interest ops changes in selector thread.
+	 */
+	void updateInterest(Object source) {
+		if (Thread.currentThread() == selectorThread) {
+			applyInterest(source);
+		} else {
+			synchronized (interestUpdates) {
+				if (!interestUpdates.contains(source)) {
+					interestUpdates.addElement(source);
+				}
+			}
+			selector.wakeup();
+		}
+	}
+
+	private void applyInterest(Object source) {
+		try {
+			if (source == this) {
+				if (serverKey.isValid()) {
+					serverKey.interestOps(acceptReady() ? SelectionKey.OP_ACCEPT : 0);
+				}
+			} else {
+				((OBEXTCPSelectorConnection) source).applyInterest();
+			}
+		} catch (CancelledKeyException e) {
+			// Connection closed
+		}
+	}
+
+	private synchronized boolean acceptReady() {
+		return (!closed) && (accepted.size() < ACCEPT_BACKLOG);
+	}
+
+	void connectionClosed(OBEXTCPSelectorConnection c) {
+		synchronized (this) {
+			connectionsCount--;
+			accepted.removeElement(c);
+		}
+		selector.wakeup();
+	}
+
+	public void run() {
+		try {
+			while (true) {
+				Object[] updates;
+				synchronized (interestUpdates) {
+					updates = new Object[interestUpdates.size()];
+					interestUpdates.copyInto(updates);
+					interestUpdates.removeAllElements();
+				}
+				for (int i = 0; i < updates.length; i++) {
+					applyInterest(updates[i]);
+				}
+				synchronized (this) {
+					if (closed && (connectionsCount == 0)) {
+						break;
+					}
+				}
+				selector.select();
+				for (Iterator iterator = selector.selectedKeys().iterator(); iterator.hasNext();) {
+					SelectionKey key = (SelectionKey) iterator.next();
+					iterator.remove();
+					try {
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							OBEXTCPSelectorConnection c = (OBEXTCPSelectorConnection) key.attachment();
+							if (key.isReadable()) {
+								c.selectedRead(readBuffer);
+							}
+							if (key.isValid() && key.isWritable()) {
+								c.selectedWrite();
+							}
+						}
+					} catch (CancelledKeyException e) {
+						// Connection closed by session
+					}
+				}
+			}
+		} catch (Throwable e) {
+			DebugLog.error("OBEX selector error", e);
+			closeAll();
+		} finally {
+			try {
+				selector.close();
+			} catch (IOException ignore) {
+			}
+			DebugLog.debug("OBEX selector ends");
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		try {
+			channel = serverChannel.accept();
+		} catch (IOException e) {
+			if (closed) {
+				return;
+			}
+			throw e;
+		}
+		if (channel == null) {
+			return;
+		}
+		OBEXTCPSelectorConnection c;
+		try {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			c = new OBEXTCPSelectorConnection(this, channel);
+			c.setKey(channel.register(selector, SelectionKey.OP_READ, c));
+		} catch (IOException e) {
+			DebugLog.debug("OBEX accept error", e);
+			channel.close();
+			return;
+		}
+		synchronized (this) {
+			connectionsCount++;
+			accepted.addElement(c);
+			notifyAll();
+		}
+		applyInterest(this);
+	}
+
+	/**
+	 * Run next request of established session on BlueCove scheduler thread.
+	 */
+	void dispatch(Runnable session) {
+		Utils.execute(session, "OBEXTCPSelectorSession");
+	}
+
+	private void closeAll() {
+		try {
+			close();
+		} catch (IOException ignore) {
+		}
+		for (Iterator iterator = selector.keys().iterator(); iterator.hasNext();) {
+			Object c = ((SelectionKey) iterator.next()).attachment();
+			if (c != null) {
+				((OBEXTCPSelectorConnection) c).receiveError(new IOException("OBEX selector error"));
+			}
+		}
+	}
+}
@@ -33,6 +33,8 @@ import java.io.UnsupportedEncodingException;
 
 import javax.obex.ResponseCodes;
 
+import com.intel.bluetooth.Utils;
+
 /**
  * OBEX IO Utils
  *
@@ -51,24 +53,16 @@ abstract class OBEXUtils {
 		}
 		int got = 0;
 		while (got < len) {
+			int rc;
 			if (obexConnectionParams.timeouts) {
-				long endOfDellay = System.currentTimeMillis() + obexConnectionParams.timeout;
-				int available = 0;
-				do {
-					available = is.available();
-					if (available == 0) {
-						if (System.currentTimeMillis() > endOfDellay) {
-							throw new InterruptedIOException("OBEX read timeout; received " + got + " form " +  len + " expected");
-						}
-						try {
-							Thread.sleep(100);
-						} catch (InterruptedException e) {
-							throw new InterruptedIOException();
-						}
-					}
-				} while (available == 0);
+				// Block until data arrives; timeout restarts on each received chunk
+				rc = Utils.read(is, b, off + got, len - got, obexConnectionParams.timeout);
+				if (rc == 0) {
+					throw new InterruptedIOException("OBEX read timeout; received " + got + " form " +  len + " expected");
+				}
+			} else {
+				rc = is.read(b, off + got, len - got);
 			}
-			int rc = is.read(b, off + got, len - got);
 			if (rc < 0) {
 				throw new EOFException("EOF while reading OBEX packet; received " + got + " form " +  len + " expected");
 			}
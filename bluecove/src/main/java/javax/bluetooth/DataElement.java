@@ -27,7 +27,7 @@
 package javax.bluetooth;
 
 import java.util.Enumeration;
-import java.util.Vector;
+import java.util.NoSuchElementException;
 
 import com.intel.bluetooth.Utils;
 
@@ -259,6 +259,44 @@ public class DataElement {
 
 	private int valueType;
 
+	/**
+	 * Number of elements in DATSEQ and DATALT, the elements are kept in
+	 * <code>value</code> array.
+	 */
+	private int size;
+
+	private static final DataElement[] EMPTY_SEQUENCE = new DataElement[0];
+
+	/**
+	 * Enumeration over elements present in DATSEQ or DATALT when it was
+	 * created. The array is never modified below <code>size</code>, insert
+	 * and remove operations create a new array.
+	 */
+	private static class ElementsEnumeration implements Enumeration {
+
+		private final DataElement[] elements;
+
+		private final int size;
+
+		private int index;
+
+		ElementsEnumeration(DataElement[] elements, int size) {
+			this.elements = elements;
+			this.size = size;
+		}
+
+		public boolean hasMoreElements() {
+			return (index < size);
+		}
+
+		public Object nextElement() {
+			if (index >= size) {
+				throw new NoSuchElementException();
+			}
+			return elements[index++];
+		}
+	}
+
 	/**
 	 * Creates a <code>DataElement</code> of type <code>NULL</code>,
 	 * <code>DATALT</code>, or <code>DATSEQ</code>.
@@ -283,7 +321,7 @@ public class DataElement {
 			break;
 		case DATALT:
 		case DATSEQ:
-			value = new Vector();
+			value = EMPTY_SEQUENCE;
 			break;
 		default:
 			throw new IllegalArgumentException("valueType " + typeToString(valueType)
@@ -545,7 +583,13 @@ public class DataElement {
 		switch (valueType) {
 		case DATALT:
 		case DATSEQ:
-			((Vector) value).addElement(elem);
+			DataElement[] elements = (DataElement[]) value;
+			if (size == elements.length) {
+				DataElement[] grown = new DataElement[(size == 0) ? 4 : size * 2];
+				System.arraycopy(elements, 0, grown, 0, size);
+				value = elements = grown;
+			}
+			elements[size++] = elem;
 			break;
 		default:
 			throw new ClassCastException("DataType is not DATSEQ or DATALT");
@@ -596,7 +640,16 @@ public class DataElement {
 		switch (valueType) {
 		case DATALT:
 		case DATSEQ:
-			((Vector) value).insertElementAt(elem, index);
+			if ((index < 0) || (index > size)) {
+				throw new ArrayIndexOutOfBoundsException(index + " > " + size);
+			}
+			DataElement[] elements = (DataElement[]) value;
+			DataElement[] inserted = new DataElement[Math.max(elements.length, size + 1)];
+			System.arraycopy(elements, 0, inserted, 0, index);
+			inserted[index] = elem;
+			System.arraycopy(elements, index, inserted, index + 1, size - index);
+			value = inserted;
+			size++;
 			break;
 		default:
 			throw new ClassCastException("DataType is not DATSEQ or DATALT");
@@ -620,7 +673,7 @@ public class DataElement {
 		switch (valueType) {
 		case DATALT:
 		case DATSEQ:
-			return ((Vector) value).size();
+			return size;
 		default:
 			throw new ClassCastException("DataType is not DATSEQ or DATALT");
 		}
@@ -664,7 +717,18 @@ public class DataElement {
 		switch (valueType) {
 		case DATALT:
 		case DATSEQ:
-			return ((Vector) value).removeElement(elem);
+			DataElement[] elements = (DataElement[]) value;
+			for (int i = 0; i < size; i++) {
+				if (elem.equals(elements[i])) {
+					DataElement[] removed = new DataElement[elements.length];
+					System.arraycopy(elements, 0, removed, 0, i);
+					System.arraycopy(elements, i + 1, removed, i, size - i - 1);
+					value = removed;
+					size--;
+					return true;
+				}
+			}
+			return false;
 		default:
 			throw new ClassCastException("DataType is not DATSEQ or DATALT");
 		}
@@ -825,7 +889,7 @@ public class DataElement {
 			return Utils.clone((byte[]) value);
 		case DATSEQ:
 		case DATALT:
-			return ((Vector) value).elements();
+			return new ElementsEnumeration((DataElement[]) value, size);
 		default:
 			throw new ClassCastException("DataType is simple java type");
 		}
@@ -911,7 +975,7 @@ public class DataElement {
 		case DATSEQ: {
 			StringBuffer buf = new StringBuffer("DATSEQ {\n");
 
-			for (Enumeration e = ((Vector) value).elements(); e.hasMoreElements();) {
+			for (Enumeration e = new ElementsEnumeration((DataElement[]) value, size); e.hasMoreElements();) {
 				buf.append(e.nextElement());
 				buf.append("\n");
 			}
@@ -923,7 +987,7 @@ public class DataElement {
 		case DATALT: {
 			StringBuffer buf = new StringBuffer("DATALT {\n");
 
-			for (Enumeration e = ((Vector) value).elements(); e.hasMoreElements();) {
+			for (Enumeration e = new ElementsEnumeration((DataElement[]) value, size); e.hasMoreElements();) {
 				buf.append(e.nextElement());
 				buf.append("\n");
 			}
@@ -141,6 +141,8 @@ import com.intel.bluetooth.Utils;
  */
 public class UUID {
 
+	private static final byte[] SHORT_UUID_BASE_VALUE = Utils.UUIDToByteArray("00000000" + BluetoothConsts.SHORT_UUID_BASE);
+
 	private byte[] uuidValue;
 
 	/**
@@ -161,10 +163,14 @@ public class UUID {
 	 *
 	 */
 	public UUID(long uuidValue) {
-		this(Utils.toHexString(uuidValue), true);
 		if (uuidValue < 0 || uuidValue > 0xffffffffl) {
 			throw new IllegalArgumentException("uuidValue is not in the range [0, 2^32 -1]");
 		}
+		this.uuidValue = Utils.clone(SHORT_UUID_BASE_VALUE);
+		this.uuidValue[0] = (byte) (uuidValue >> 24);
+		this.uuidValue[1] = (byte) (uuidValue >> 16);
+		this.uuidValue[2] = (byte) (uuidValue >> 8);
+		this.uuidValue[3] = (byte) uuidValue;
 	}
 
 	/**
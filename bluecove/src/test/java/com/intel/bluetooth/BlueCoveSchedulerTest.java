@@ -0,0 +1,166 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ */
+public class BlueCoveSchedulerTest extends TestCase {
+
+	private static class RecordThread implements Runnable {
+
+		Vector threads;
+
+		RecordThread(Vector threads) {
+			this.threads = threads;
+		}
+
+		public void run() {
+			threads.addElement(Thread.currentThread());
+		}
+	}
+
+	public void testPoolReuse() throws Exception {
+		BlueCoveScheduler scheduler = new BlueCoveScheduler(true, false, 2);
+		Vector threads = new Vector();
+		for (int i = 0; i < 5; i++) {
+			scheduler.executeTask(new RecordThread(threads), "task" + i).join();
+			// Let the thread return to idle state
+			Thread.sleep(20);
+		}
+		assertEquals("runs", 5, threads.size());
+		for (int i = 1; i < threads.size(); i++) {
+			assertSame("same thread", threads.elementAt(0), threads.elementAt(i));
+		}
+	}
+
+	public void testTasksDoNotWait() throws Exception {
+		BlueCoveScheduler scheduler = new BlueCoveScheduler(true, false, 1);
+		final Object lock = new Object();
+		final boolean[] released = new boolean[1];
+		BlueCoveScheduler.Task blocked = scheduler.executeTask(new Runnable() {
+			public void run() {
+				synchronized (lock) {
+					while (!released[0]) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+		}, "blocked");
+		BlueCoveScheduler.Task release = scheduler.executeTask(new Runnable() {
+			public void run() {
+				synchronized (lock) {
+					released[0] = true;
+					lock.notifyAll();
+				}
+			}
+		}, "release");
+		release.join();
+		blocked.join();
+		assertTrue("done", blocked.isDone());
+	}
+
+	public void testSchedule() throws Exception {
+		BlueCoveScheduler scheduler = new BlueCoveScheduler(true, false, 2);
+		final Vector order = new Vector();
+		long start = System.currentTimeMillis();
+		BlueCoveScheduler.Task late = scheduler.scheduleTask(200, new Runnable() {
+			public void run() {
+				order.addElement("late");
+			}
+		}, "late");
+		BlueCoveScheduler.Task early = scheduler.scheduleTask(50, new Runnable() {
+			public void run() {
+				order.addElement("early");
+			}
+		}, "early");
+		BlueCoveScheduler.Task canceled = scheduler.scheduleTask(100, new Runnable() {
+			public void run() {
+				order.addElement("canceled");
+			}
+		}, "canceled");
+		canceled.cancel();
+		late.join();
+		early.join();
+		canceled.join();
+		assertTrue("delay", System.currentTimeMillis() - start >= 200);
+		assertEquals("runs", 2, order.size());
+		assertEquals("early", order.elementAt(0));
+		assertEquals("late", order.elementAt(1));
+	}
+
+	public void testCancelRunning() throws Exception {
+		BlueCoveScheduler scheduler = new BlueCoveScheduler(true, false, 2);
+		final boolean[] interrupted = new boolean[1];
+		final Object started = new Object();
+		BlueCoveScheduler.Task task;
+		synchronized (started) {
+			task = scheduler.executeTask(new Runnable() {
+				public void run() {
+					synchronized (started) {
+						started.notifyAll();
+					}
+					try {
+						Thread.sleep(10000);
+					} catch (InterruptedException e) {
+						interrupted[0] = true;
+					}
+				}
+			}, "sleep");
+			started.wait();
+		}
+		task.cancel();
+		task.join();
+		assertTrue("interrupted", interrupted[0]);
+	}
+
+	public void testStackBindingReleased() throws Exception {
+		BlueCoveScheduler scheduler = new BlueCoveScheduler(true, false, 1);
+		final Object[] stackIDs = new Object[2];
+		scheduler.executeTask(new Runnable() {
+			public void run() {
+				BlueCoveImpl.useThreadLocalBluetoothStack();
+				stackIDs[0] = BlueCoveImpl.getCurrentThreadBluetoothStackID();
+			}
+		}, "bind").join();
+		Thread.sleep(20);
+		scheduler.executeTask(new Runnable() {
+			public void run() {
+				stackIDs[1] = BlueCoveImpl.getCurrentThreadBluetoothStackID();
+			}
+		}, "check").join();
+		assertNotNull("bound", stackIDs[0]);
+		assertNull("released", stackIDs[1]);
+	}
+}
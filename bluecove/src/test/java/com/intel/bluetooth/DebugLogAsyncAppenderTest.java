@@ -0,0 +1,130 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+public class DebugLogAsyncAppenderTest extends TestCase {
+
+	/**
+	 * Collects messages, blocks delivery until released.
+	 */
+	private static class TestAppender implements DebugLog.LoggerAppender {
+
+		Vector messages = new Vector();
+
+		boolean blocked = false;
+
+		String deliveryThreadName;
+
+		public synchronized void appendLog(int level, String message, Throwable throwable) {
+			deliveryThreadName = Thread.currentThread().getName();
+			while (blocked) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+			messages.addElement(message);
+		}
+
+		synchronized void setBlocked(boolean blocked) {
+			this.blocked = blocked;
+			notifyAll();
+		}
+	}
+
+	public void testDeliveryOrder() {
+		TestAppender appender = new TestAppender();
+		DebugLogAsyncAppender async = new DebugLogAsyncAppender(appender, 100);
+		for (int i = 0; i < 50; i++) {
+			async.appendLog(DebugLog.DEBUG, "m" + i, null);
+		}
+		assertTrue("flush", async.flush(5000));
+		assertEquals("delivered", 50, appender.messages.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals("order", "m" + i, appender.messages.elementAt(i));
+		}
+		assertFalse("delivered in background", Thread.currentThread().getName().equals(appender.deliveryThreadName));
+		assertEquals("dropped", 0, async.getDroppedCount());
+		async.close();
+	}
+
+	public void testBoundedQueue() throws Exception {
+		TestAppender appender = new TestAppender();
+		appender.setBlocked(true);
+		DebugLogAsyncAppender async = new DebugLogAsyncAppender(appender, 10);
+		async.appendLog(DebugLog.DEBUG, "first", null);
+		// Wait for delivery thread to take the first message and block
+		long end = System.currentTimeMillis() + 5000;
+		while ((appender.deliveryThreadName == null) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 25; i++) {
+			async.appendLog(DebugLog.DEBUG, "m" + i, null);
+		}
+		assertTrue("logging thread does not wait", System.currentTimeMillis() - start < 1000);
+		assertEquals("dropped", 15, async.getDroppedCount());
+
+		appender.setBlocked(false);
+		assertTrue("flush", async.flush(5000));
+		assertEquals("first", "first", appender.messages.elementAt(0));
+		assertEquals("dropped reported", "15 log messages dropped", appender.messages.elementAt(1));
+		assertEquals("delivered", 1 + 1 + 10, appender.messages.size());
+		async.close();
+		async.appendLog(DebugLog.DEBUG, "after close", null);
+		assertTrue("flush", async.flush(5000));
+		assertEquals("delivered", 12, appender.messages.size());
+	}
+
+	public void testEventTime() throws Exception {
+		final Vector times = new Vector();
+		final TestAppender blocking = new TestAppender();
+		blocking.setBlocked(true);
+		DebugLogAsyncAppender async = new DebugLogAsyncAppender(new DebugLog.LoggerAppenderTimed() {
+			public void appendLog(int level, String message, Throwable throwable) {
+				fail("time not passed");
+			}
+
+			public void appendLog(long time, int level, String message, Throwable throwable) {
+				blocking.appendLog(level, message, throwable);
+				times.addElement(new Long(time));
+			}
+		}, 10);
+		long logged = System.currentTimeMillis();
+		async.appendLog(DebugLog.DEBUG, "m", null);
+		Thread.sleep(200);
+		blocking.setBlocked(false);
+		assertTrue("flush", async.flush(5000));
+		assertEquals("delivered", 1, times.size());
+		long time = ((Long) times.elementAt(0)).longValue();
+		assertTrue("event time " + (time - logged), time - logged < 100);
+		async.close();
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+
+import junit.framework.TestCase;
+
+public class NativeLibLoaderTest extends TestCase {
+
+	private File cacheDir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		cacheDir = new File(System.getProperty("java.io.tmpdir"), "bluecove_test_cache_" + System.currentTimeMillis());
+	}
+
+	protected void tearDown() throws Exception {
+		delete(cacheDir);
+		super.tearDown();
+	}
+
+	private static void delete(File f) {
+		File[] files = f.listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				delete(files[i]);
+			}
+		}
+		f.delete();
+	}
+
+	private static byte[] data(int length, int seed) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (i * 31 + seed);
+		}
+		return data;
+	}
+
+	public void testExtractReuse() throws Exception {
+		byte[] data = data(100000, 1);
+		File fd = NativeLibLoader.extractToCache(cacheDir, "libtest.so", data);
+		assertNotNull("extracted", fd);
+		assertEquals("file name", "libtest.so", fd.getName());
+		assertEquals("length", data.length, fd.length());
+		File dir = fd.getParentFile();
+		assertEquals("only library in dir", 1, dir.listFiles().length);
+
+		fd.setLastModified(1000000000L);
+		File fd2 = NativeLibLoader.extractToCache(cacheDir, "libtest.so", data);
+		assertEquals("same file", fd, fd2);
+		assertEquals("not written again", 1000000000L, fd2.lastModified());
+
+		File fd3 = NativeLibLoader.extractToCache(cacheDir, "libtest.so", data(100000, 2));
+		assertNotNull("extracted", fd3);
+		assertFalse("checksum directory", dir.equals(fd3.getParentFile()));
+		assertEquals("previous build removed", 1, cacheDir.listFiles().length);
+		assertFalse("previous dir", dir.exists());
+	}
+
+	public void testPruneKeepsOtherLibraries() throws Exception {
+		File fd = NativeLibLoader.extractToCache(cacheDir, "libtest.so", data(1000, 5));
+		File other = NativeLibLoader.extractToCache(cacheDir, "libother.so", data(1000, 6));
+		assertNotNull("extracted", other);
+		assertTrue("other library kept", fd.exists());
+
+		File fd2 = NativeLibLoader.extractToCache(cacheDir, "libtest.so", data(1000, 7));
+		assertNotNull("extracted", fd2);
+		assertFalse("previous build removed", fd.exists());
+		assertTrue("other library kept", other.exists());
+		assertEquals("checksum directories", 2, cacheDir.listFiles().length);
+	}
+
+	public void testReplaceCorrupted() throws Exception {
+		byte[] data = data(5000, 3);
+		File fd = NativeLibLoader.extractToCache(cacheDir, "test.dll", data);
+		assertNotNull("extracted", fd);
+		FileOutputStream fos = new FileOutputStream(fd);
+		fos.write(data, 0, 100);
+		fos.close();
+		assertEquals("truncated", 100, fd.length());
+
+		File fd2 = NativeLibLoader.extractToCache(cacheDir, "test.dll", data);
+		assertEquals("same file", fd, fd2);
+		assertEquals("length", data.length, fd2.length());
+		assertEquals("only library in dir", 1, fd2.getParentFile().listFiles().length);
+	}
+
+	private static String exec(String[] cmd) throws Exception {
+		Process p = Runtime.getRuntime().exec(cmd);
+		BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()));
+		String line = r.readLine();
+		p.waitFor();
+		r.close();
+		return line;
+	}
+
+	public void testPrivateDir() throws Exception {
+		if (File.separatorChar != '/') {
+			return;
+		}
+		byte[] data = data(1000, 4);
+		assertNotNull("extracted", NativeLibLoader.extractToCache(cacheDir, "libtest.so", data));
+		String mode = exec(new String[] { "ls", "-ld", cacheDir.getAbsolutePath() });
+		assertTrue("owner only " + mode, mode.startsWith("drwx------"));
+
+		exec(new String[] { "chmod", "777", cacheDir.getAbsolutePath() });
+		assertNull("writable by others", NativeLibLoader.extractToCache(cacheDir, "libtest.so", data));
+		exec(new String[] { "chmod", "700", cacheDir.getAbsolutePath() });
+		assertNotNull("private", NativeLibLoader.extractToCache(cacheDir, "libtest.so", data));
+	}
+}
@@ -0,0 +1,134 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ */
+public class RemoteDeviceRegistryTest extends TestCase {
+
+	private static final long BASE_ADDRESS = 0x0123456789A0L;
+
+	public void testPutGet() {
+		RemoteDeviceRegistry registry = new RemoteDeviceRegistry(0);
+		int count = 1000;
+		for (int i = 0; i < count; i++) {
+			String device = "device" + i;
+			assertSame("added", device, registry.putIfAbsent(BASE_ADDRESS + i * 0x1000, device));
+		}
+		assertEquals("already added", "device7", registry.putIfAbsent(BASE_ADDRESS + 7 * 0x1000, "other"));
+		assertEquals("size", count, registry.size());
+		for (int i = 0; i < count; i++) {
+			assertEquals("get " + i, "device" + i, registry.get(BASE_ADDRESS + i * 0x1000));
+		}
+		assertNull("not added", registry.get(BASE_ADDRESS + 1));
+		assertEquals("devices", count, registry.devices().size());
+	}
+
+	public void testConnectionCounters() {
+		RemoteDeviceRegistry registry = new RemoteDeviceRegistry(0);
+		registry.putIfAbsent(1, "d1");
+		registry.putIfAbsent(2, "d2");
+		registry.connectionsChanged(1, "d1", 1);
+		registry.connectionsChanged(2, "d2", 1);
+		registry.connectionsChanged(2, "d2", 2);
+		assertEquals("openConnections", 3, registry.openConnections());
+		assertEquals("connectedDevices", 2, registry.connectedDevices());
+		registry.connectionsChanged(1, "d1", 0);
+		assertEquals("openConnections", 2, registry.openConnections());
+		assertEquals("connectedDevices", 1, registry.connectedDevices());
+		registry.connectionsChanged(2, "d2", 0);
+		assertEquals("openConnections", 0, registry.openConnections());
+		assertEquals("connectedDevices", 0, registry.connectedDevices());
+	}
+
+	public void testEviction() {
+		int max = 64;
+		RemoteDeviceRegistry registry = new RemoteDeviceRegistry(max);
+		long connected = BASE_ADDRESS;
+		registry.putIfAbsent(connected, "connected");
+		registry.connectionsChanged(connected, "connected", 1);
+		long recent = BASE_ADDRESS + 1;
+		registry.putIfAbsent(recent, "recent");
+		for (int i = 2; i < 2000; i++) {
+			registry.putIfAbsent(BASE_ADDRESS + i, "device" + i);
+			if (i % 3 == 0) {
+				assertEquals("recent", "recent", registry.get(recent));
+			}
+		}
+		assertTrue("size " + registry.size(), registry.size() <= max);
+		assertEquals("connected", "connected", registry.get(connected));
+		assertEquals("recent", "recent", registry.get(recent));
+		assertEquals("last", "device1999", registry.get(BASE_ADDRESS + 1999));
+		assertNull("evicted", registry.get(BASE_ADDRESS + 2));
+		assertEquals("openConnections", 1, registry.openConnections());
+
+		// All remaining entries can be found after removals
+		Vector devices = registry.devices();
+		assertEquals("devices", registry.size(), devices.size());
+		int found = 0;
+		for (int i = 0; i < 2000; i++) {
+			if (registry.get(BASE_ADDRESS + i) != null) {
+				found++;
+			}
+		}
+		assertEquals("found", devices.size(), found);
+	}
+
+	public void testEvictedDeviceConnected() {
+		RemoteDeviceRegistry registry = new RemoteDeviceRegistry(8);
+		registry.putIfAbsent(BASE_ADDRESS, "d0");
+		for (int i = 1; i < 200; i++) {
+			registry.putIfAbsent(BASE_ADDRESS + i, "device" + i);
+		}
+		assertNull("evicted", registry.get(BASE_ADDRESS));
+		registry.connectionsChanged(BASE_ADDRESS, "d0", 1);
+		assertEquals("registered again", "d0", registry.get(BASE_ADDRESS));
+		assertEquals("connectedDevices", 1, registry.connectedDevices());
+	}
+
+	public void testRecreatedDeviceConnections() {
+		RemoteDeviceRegistry registry = new RemoteDeviceRegistry(8);
+		registry.connectionsChanged(BASE_ADDRESS, "old", 2);
+		// Other device object for the same address
+		registry.connectionsChanged(BASE_ADDRESS, "new", 1);
+		assertEquals("connections", 3, registry.connections(BASE_ADDRESS));
+		assertEquals("openConnections", 3, registry.openConnections());
+		assertEquals("connectedDevices", 1, registry.connectedDevices());
+		assertEquals("connected objects", 2, registry.connectedDevices(BASE_ADDRESS).size());
+		registry.connectionsChanged(BASE_ADDRESS, "old", 0);
+		assertEquals("connections", 1, registry.connections(BASE_ADDRESS));
+		assertEquals("connectedDevices", 1, registry.connectedDevices());
+		assertEquals("connected objects", "new", registry.connectedDevicesList().firstElement());
+		registry.connectionsChanged(BASE_ADDRESS, "new", 0);
+		assertEquals("openConnections", 0, registry.openConnections());
+		assertEquals("connectedDevices", 0, registry.connectedDevices());
+		assertEquals("connected objects", 0, registry.connectedDevicesList().size());
+	}
+}
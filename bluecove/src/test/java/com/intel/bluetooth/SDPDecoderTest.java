@@ -0,0 +1,108 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.bluetooth.DataElement;
+import javax.bluetooth.UUID;
+
+/**
+ * Run SDPStreamTest conversions using SDPDecoder.
+ */
+public class SDPDecoderTest extends SDPStreamTest {
+
+	protected DataElement decode(byte[] blob) throws IOException {
+		DataElement element = SDPDecoder.decode(blob);
+		DataElement expected = (new SDPInputStream(new ByteArrayInputStream(blob))).readElement();
+		assertEquals("SDPInputStream ", expected, element);
+		return element;
+	}
+
+	private static byte[] encode(DataElement element) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		(new SDPOutputStream(out)).writeElement(element);
+		return out.toByteArray();
+	}
+
+	public void testUUID128BaseUUID() throws IOException {
+		// UUID 128-bit header and Bluetooth Base UUID form of 0x1105
+		byte[] blob = new byte[17];
+		blob[0] = 0x1C;
+		System.arraycopy(Utils.UUIDToByteArray("0000110500001000800000805f9b34fb"), 0, blob, 1, 16);
+		UUID uuid = (UUID) SDPDecoder.decode(blob).getValue();
+		assertEquals("UUID", new UUID(0x1105), uuid);
+		assertEquals("UUID string", "0000110500001000800000805f9b34fb", uuid.toString());
+	}
+
+	public void testSkipNestedSequence() throws IOException {
+		DataElement inner = new DataElement(DataElement.DATSEQ);
+		inner.addElement(new DataElement(DataElement.STRING, stringUTFData));
+		inner.addElement(new DataElement(DataElement.UUID, new UUID("B10C0BE1111111111111111111110001", false)));
+		DataElement seq = new DataElement(DataElement.DATSEQ);
+		seq.addElement(inner);
+		seq.addElement(new DataElement(DataElement.U_INT_2, 0x77));
+
+		byte[] blob = encode(seq);
+		SDPDecoder decoder = new SDPDecoder(blob);
+		int end = decoder.readSequence();
+		assertEquals("end", blob.length, end);
+		decoder.skipElement();
+		assertEquals("after nested", 0x77, decoder.readElement().getLong());
+		assertFalse("hasMoreElements", decoder.hasMoreElements());
+	}
+
+	public void testTruncated() throws IOException {
+		DataElement seq = new DataElement(DataElement.DATSEQ);
+		seq.addElement(new DataElement(DataElement.STRING, "BlueCove"));
+		seq.addElement(new DataElement(DataElement.U_INT_4, 0x15));
+		byte[] blob = encode(seq);
+		for (int len = 0; len < blob.length; len++) {
+			try {
+				(new SDPDecoder(blob, 0, len)).readElement();
+				fail("truncated at " + len + " should fail");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testLoadSelectedAttributes() throws IOException {
+		ServiceRecordImpl serviceRecord = new ServiceRecordImpl(null, null, 0);
+		serviceRecord.populateRFCOMMAttributes(1, 2, new UUID(3), "BBBB", true);
+		byte[] data = serviceRecord.toByteArray();
+
+		ServiceRecordImpl serviceRecord2 = new ServiceRecordImpl(null, null, 0);
+		serviceRecord2.loadByteArray(data, new int[] { BluetoothConsts.ProtocolDescriptorList,
+				BluetoothConsts.AttributeIDServiceName });
+		assertEquals("attributes", 2, serviceRecord2.getAttributeIDs().length);
+		assertEquals("ProtocolDescriptorList", serviceRecord.getAttributeValue(BluetoothConsts.ProtocolDescriptorList),
+				serviceRecord2.getAttributeValue(BluetoothConsts.ProtocolDescriptorList));
+		assertEquals("ServiceName", "BBBB", serviceRecord2.getAttributeValue(BluetoothConsts.AttributeIDServiceName)
+				.getValue());
+	}
+}
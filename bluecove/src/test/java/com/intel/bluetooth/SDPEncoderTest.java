@@ -0,0 +1,164 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.IOException;
+
+import javax.bluetooth.DataElement;
+import javax.bluetooth.UUID;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ */
+public class SDPEncoderTest extends TestCase {
+
+	protected void tearDown() throws Exception {
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_STRING_ENCODING_ASCII, null);
+		super.tearDown();
+	}
+
+	private static void assertEquals(String message, byte[] expected, byte[] actual) {
+		assertEquals(message + " length", expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(message + " byte[" + i + "]", expected[i], actual[i]);
+		}
+	}
+
+	public void testEncoding() throws IOException {
+		DataElement seq = new DataElement(DataElement.DATSEQ);
+		seq.addElement(new DataElement(DataElement.UUID, new UUID(0x0100)));
+		seq.addElement(new DataElement(DataElement.U_INT_1, 3));
+		seq.addElement(new DataElement(DataElement.STRING, "ab"));
+		byte[] expected = new byte[] { 0x35, 9, 0x19, 0x01, 0x00, 0x08, 0x03, 0x25, 2, 'a', 'b' };
+		assertEquals("DATSEQ", expected, (new SDPEncoder()).encode(seq));
+	}
+
+	public void testDATALT() throws IOException {
+		DataElement alt = new DataElement(DataElement.DATALT);
+		alt.addElement(new DataElement(DataElement.U_INT_2, 0x1234));
+		alt.addElement(new DataElement(true));
+		byte[] expected = new byte[] { 0x3D, 5, 0x09, 0x12, 0x34, 0x28, 0x01 };
+		byte[] data = (new SDPEncoder()).encode(alt);
+		assertEquals("DATALT", expected, data);
+		SDPStreamTest.assertEquals("decoded ", alt, SDPDecoder.decode(data));
+	}
+
+	public void testDATSEQ32() throws IOException {
+		DataElement seq = new DataElement(DataElement.DATSEQ);
+		seq.addElement(new DataElement(DataElement.STRING, SDPStreamTest.getLongString(0x10000)));
+		byte[] data = (new SDPEncoder()).encode(seq);
+		assertEquals("length", 5 + 5 + 0x10000, data.length);
+		assertEquals("length", data.length, SDPOutputStream.getLength(seq));
+		SDPStreamTest.assertEquals("decoded ", seq, SDPDecoder.decode(data));
+	}
+
+	private ServiceRecordImpl createServiceRecord() {
+		ServiceRecordImpl serviceRecord = new ServiceRecordImpl(null, null, 0);
+		serviceRecord.populateRFCOMMAttributes(1, 2, new UUID("B10C0BE1111111111111111111110001", false), "BlueCove",
+				true);
+		return serviceRecord;
+	}
+
+	public void testReuseEncodedValues() throws IOException {
+		ServiceRecordImpl serviceRecord = createServiceRecord();
+		byte[] data1 = serviceRecord.toByteArray();
+		assertEquals("same record", data1, serviceRecord.toByteArray());
+		assertEquals("new record", createServiceRecord().toByteArray(), serviceRecord.toByteArray());
+	}
+
+	public void testNestedSequenceModified() throws IOException {
+		ServiceRecordImpl serviceRecord = createServiceRecord();
+		byte[] data1 = serviceRecord.toByteArray();
+
+		DataElement protocolDescriptorList = serviceRecord.getAttributeValue(BluetoothConsts.ProtocolDescriptorList);
+		DataElement l2cap = new DataElement(DataElement.DATSEQ);
+		l2cap.addElement(new DataElement(DataElement.UUID, new UUID(0x0100)));
+		protocolDescriptorList.addElement(l2cap);
+
+		byte[] data2 = serviceRecord.toByteArray();
+		assertEquals("length", data1.length + 5, data2.length);
+
+		ServiceRecordImpl serviceRecord2 = new ServiceRecordImpl(null, null, 0);
+		serviceRecord2.loadByteArray(data2);
+		SDPStreamTest.assertEquals("modified ", serviceRecord, serviceRecord2);
+	}
+
+	public void testRetainedSequenceModified() throws IOException {
+		ServiceRecordImpl serviceRecord = new ServiceRecordImpl(null, null, 0);
+		DataElement serviceClassIDList = new DataElement(DataElement.DATSEQ);
+		serviceClassIDList.addElement(new DataElement(DataElement.UUID, new UUID(0x1101)));
+		serviceRecord.setAttributeValue(BluetoothConsts.ServiceClassIDList, serviceClassIDList);
+		byte[] data1 = serviceRecord.toByteArray();
+		assertEquals("length", 10, data1.length);
+
+		// Application keeps the DataElement it has set
+		serviceClassIDList.addElement(new DataElement(DataElement.UUID, new UUID(0x1102)));
+		byte[] data2 = serviceRecord.toByteArray();
+		assertEquals("length", data1.length + 3, data2.length);
+
+		ServiceRecordImpl serviceRecord2 = new ServiceRecordImpl(null, null, 0);
+		serviceRecord2.loadByteArray(data2);
+		assertEquals("elements", 2, serviceRecord2.getAttributeValue(BluetoothConsts.ServiceClassIDList).getSize());
+
+		data2[data2.length - 1] = 0;
+		assertEquals("not shared", data1.length + 3, serviceRecord.toByteArray().length);
+		assertEquals("copy", (byte) 0x02, serviceRecord.toByteArray()[data2.length - 1]);
+	}
+
+	public void testAttributeChanged() throws IOException {
+		ServiceRecordImpl serviceRecord = createServiceRecord();
+		byte[] data1 = serviceRecord.toByteArray();
+		assertNotSame("copy", data1, serviceRecord.toByteArray());
+		assertEquals("not changed", data1, serviceRecord.toByteArray());
+
+		serviceRecord.setAttributeValue(BluetoothConsts.ServiceAvailability, new DataElement(DataElement.U_INT_1, 0xFF));
+		byte[] data2 = serviceRecord.toByteArray();
+		assertEquals("length", data1.length + 5, data2.length);
+		assertEquals("not changed", data2, serviceRecord.toByteArray());
+
+		serviceRecord.setAttributeValue(BluetoothConsts.ServiceAvailability, new DataElement(DataElement.U_INT_1, 0x7F));
+		byte[] data3 = serviceRecord.toByteArray();
+		assertEquals("length", data2.length, data3.length);
+		ServiceRecordImpl serviceRecord3 = new ServiceRecordImpl(null, null, 0);
+		serviceRecord3.loadByteArray(data3);
+		assertEquals("ServiceAvailability", 0x7F, serviceRecord3.getAttributeValue(
+				BluetoothConsts.ServiceAvailability).getLong());
+
+		serviceRecord.setAttributeValue(BluetoothConsts.ServiceAvailability, null);
+		assertEquals("removed", data1, serviceRecord.toByteArray());
+	}
+
+	public void testStringEncodingChanged() throws IOException {
+		ServiceRecordImpl serviceRecord = new ServiceRecordImpl(null, null, 0);
+		serviceRecord.populateAttributeValue(BluetoothConsts.AttributeIDServiceName, new DataElement(
+				DataElement.STRING, SDPStreamTest.stringUTFData));
+		byte[] utf8 = serviceRecord.toByteArray();
+		BlueCoveImpl.setConfigProperty(BlueCoveConfigProperties.PROPERTY_SDP_STRING_ENCODING_ASCII, "true");
+		byte[] ascii = serviceRecord.toByteArray();
+		assertEquals("ASCII length", utf8.length - SDPStreamTest.stringUTFData.length(), ascii.length);
+	}
+}
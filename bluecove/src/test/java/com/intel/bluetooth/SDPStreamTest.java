@@ -117,11 +117,15 @@ public class SDPStreamTest extends TestCase {
 		}
 	}
 
+	protected DataElement decode(byte[] blob) throws IOException {
+		return (new SDPInputStream(new ByteArrayInputStream(blob))).readElement();
+	}
+
 	private DataElement doubleCovert(DataElement element) throws IOException {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		(new SDPOutputStream(out)).writeElement(element);
 		byte blob[] = out.toByteArray();
-		return (new SDPInputStream(new ByteArrayInputStream(blob))).readElement();
+		return decode(blob);
 	}
 
 	private void validateConversion(DataElement element) throws IOException {
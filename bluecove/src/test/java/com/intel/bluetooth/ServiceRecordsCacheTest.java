@@ -0,0 +1,201 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Vector;
+
+import javax.bluetooth.DataElement;
+import javax.bluetooth.UUID;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ */
+public class ServiceRecordsCacheTest extends TestCase {
+
+	private static final long address1 = 0x0B1000000001L;
+
+	private static final long address2 = 0x0B1000000002L;
+
+	private static final UUID uuid1 = new UUID(0x1101);
+
+	private static final UUID uuid2 = new UUID("B10C0BE1111111111111111111110001", false);
+
+	private static ServiceRecordsCache.CachedRecord createRecord(long handle, long state, String name) throws Exception {
+		ServiceRecordImpl record = new ServiceRecordImpl(null, null, handle);
+		record.populateAttributeValue(BluetoothConsts.ServiceRecordHandle, new DataElement(DataElement.U_INT_4, handle));
+		record.populateAttributeValue(BluetoothConsts.ServiceRecordState, new DataElement(DataElement.U_INT_4, state));
+		record.populateAttributeValue(BluetoothConsts.AttributeIDServiceName, new DataElement(DataElement.STRING, name));
+		return new ServiceRecordsCache.CachedRecord(record);
+	}
+
+	private static Vector records(ServiceRecordsCache.CachedRecord record) {
+		Vector v = new Vector();
+		v.addElement(record);
+		return v;
+	}
+
+	private static String name(Vector records) throws Exception {
+		ServiceRecordImpl record = ((ServiceRecordsCache.CachedRecord) records.elementAt(0)).createServiceRecord(null,
+				null);
+		return (String) record.getAttributeValue(BluetoothConsts.AttributeIDServiceName).getValue();
+	}
+
+	public void testKeyOrder() throws Exception {
+		ServiceRecordsCache cache = new ServiceRecordsCache(10, 0, null);
+		cache.put(address1, new UUID[] { uuid1, uuid2 }, new int[] { 0x100, 0x5 }, records(createRecord(1, 1, "A")));
+		Vector found = cache.get(address1, new UUID[] { uuid2, uuid1 }, new int[] { 0x5, 0x100 });
+		assertNotNull("found", found);
+		assertEquals("name", "A", name(found));
+		assertNull("other attributes", cache.get(address1, new UUID[] { uuid2, uuid1 }, null));
+		assertNull("other device", cache.get(address2, new UUID[] { uuid2, uuid1 }, new int[] { 0x5, 0x100 }));
+	}
+
+	public void testExpired() throws Exception {
+		ServiceRecordsCache cache = new ServiceRecordsCache(10, 50, null);
+		cache.put(address1, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "A")));
+		assertNotNull("found", cache.get(address1, new UUID[] { uuid1 }, null));
+		Thread.sleep(100);
+		assertNull("expired", cache.get(address1, new UUID[] { uuid1 }, null));
+		assertEquals("size", 0, cache.size());
+	}
+
+	public void testLeastRecentlyUsedRemoved() throws Exception {
+		ServiceRecordsCache cache = new ServiceRecordsCache(2, 0, null);
+		cache.put(address1, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "A")));
+		cache.put(address1, new UUID[] { uuid2 }, null, records(createRecord(2, 1, "B")));
+		assertNotNull("used", cache.get(address1, new UUID[] { uuid1 }, null));
+		cache.put(address2, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "C")));
+		assertEquals("size", 2, cache.size());
+		assertNotNull("recently used", cache.get(address1, new UUID[] { uuid1 }, null));
+		assertNull("least recently used", cache.get(address1, new UUID[] { uuid2 }, null));
+		assertNotNull("new", cache.get(address2, new UUID[] { uuid1 }, null));
+	}
+
+	public void testInvalidate() throws Exception {
+		ServiceRecordsCache cache = new ServiceRecordsCache(10, 0, null);
+		cache.put(address1, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "A")));
+		cache.put(address1, new UUID[] { uuid2 }, null, records(createRecord(2, 1, "B")));
+		cache.put(address2, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "C")));
+		cache.invalidate(address1);
+		assertNull("invalidated", cache.get(address1, new UUID[] { uuid1 }, null));
+		assertNull("invalidated", cache.get(address1, new UUID[] { uuid2 }, null));
+		assertNotNull("other device", cache.get(address2, new UUID[] { uuid1 }, null));
+	}
+
+	public void testServiceRecordStateChanged() throws Exception {
+		ServiceRecordsCache cache = new ServiceRecordsCache(10, 0, null);
+		cache.put(address1, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "A")));
+		cache.put(address1, new UUID[] { uuid2 }, null, records(createRecord(2, 1, "B")));
+		cache.put(address1, new UUID[] { uuid1, uuid2 }, null, records(createRecord(1, 2, "A2")));
+		assertNull("changed record", cache.get(address1, new UUID[] { uuid1 }, null));
+		assertNotNull("other record", cache.get(address1, new UUID[] { uuid2 }, null));
+		assertEquals("name", "A2", name(cache.get(address1, new UUID[] { uuid1, uuid2 }, null)));
+	}
+
+	public void testGetRecord() throws Exception {
+		ServiceRecordsCache cache = new ServiceRecordsCache(10, 0, null);
+		cache.put(address1, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "A")));
+		int[] attrIDs = new int[] { BluetoothConsts.ServiceRecordState, BluetoothConsts.AttributeIDServiceName };
+		assertNotNull("found", cache.getRecord(address1, 1, attrIDs));
+		assertNull("other handle", cache.getRecord(address1, 2, attrIDs));
+		assertNull("missing attribute", cache.getRecord(address1, 1, new int[] { BluetoothConsts.ServiceID }));
+	}
+
+	public void testPersistence() throws Exception {
+		File file = File.createTempFile("bluecove-sdp", ".cache");
+		try {
+			file.delete();
+			ServiceRecordsCache cache = new ServiceRecordsCache(10, 0, file);
+			cache.put(address1, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "A")));
+			cache.put(address2, new UUID[] { uuid2 }, new int[] { 0x100 }, records(createRecord(7, 3, "B")));
+			assertFalse("file saved later", file.exists());
+			cache.flush();
+			assertTrue("file saved", file.exists());
+
+			ServiceRecordsCache loaded = new ServiceRecordsCache(10, 0, file);
+			assertEquals("size", 2, loaded.size());
+			assertEquals("name", "A", name(loaded.get(address1, new UUID[] { uuid1 }, null)));
+			assertEquals("name", "B", name(loaded.get(address2, new UUID[] { uuid2 }, new int[] { 0x100 })));
+
+			loaded.invalidate(address1);
+			loaded.flush();
+			assertEquals("size after invalidate", 1, new ServiceRecordsCache(10, 0, file).size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testDelayedSave() throws Exception {
+		File file = File.createTempFile("bluecove-sdp", ".cache");
+		try {
+			file.delete();
+			ServiceRecordsCache cache = new ServiceRecordsCache(10, 0, file);
+			cache.put(address1, new UUID[] { uuid1 }, null, records(createRecord(1, 1, "A")));
+			cache.put(address2, new UUID[] { uuid2 }, null, records(createRecord(7, 3, "B")));
+			long end = System.currentTimeMillis() + ServiceRecordsCache.SAVE_DELAY + 5000;
+			while ((!file.exists()) && (System.currentTimeMillis() < end)) {
+				Thread.sleep(50);
+			}
+			assertEquals("size", 2, new ServiceRecordsCache(10, 0, file).size());
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void assertCorruptFileDiscarded(File file, int arrayLength) throws Exception {
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+		out.writeInt(0x53445043);
+		out.writeInt(1);
+		out.writeInt(1);
+		out.writeUTF("key");
+		out.writeLong(address1);
+		out.writeLong(System.currentTimeMillis());
+		out.writeInt(1);
+		out.writeLong(1);
+		out.writeLong(1);
+		out.writeInt(arrayLength);
+		out.close();
+		ServiceRecordsCache cache = new ServiceRecordsCache(10, 0, file);
+		assertEquals("size", 0, cache.size());
+		assertFalse("corrupt file removed", file.exists());
+	}
+
+	public void testCorruptFile() throws Exception {
+		File file = File.createTempFile("bluecove-sdp", ".cache");
+		try {
+			assertCorruptFileDiscarded(file, -1);
+			assertCorruptFileDiscarded(file, 0x7FFFFFFF);
+			// Truncated data
+			assertCorruptFileDiscarded(file, 0);
+		} finally {
+			file.delete();
+		}
+	}
+}
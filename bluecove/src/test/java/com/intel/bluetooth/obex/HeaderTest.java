@@ -100,6 +100,53 @@ public class HeaderTest extends TestCase {
 		validateReadWrite(hs);
 	}
 
+	public void testHeaderSingleResponseModeReadWrite() throws IOException {
+		OBEXHeaderSetImpl hs = new OBEXHeaderSetImpl();
+		hs.setHeader(HeaderSet.NAME, "Jumar");
+		hs.setSingleResponseMode(true);
+		byte b[] = OBEXHeaderSetImpl.toByteArray(hs);
+		assertEquals("length", 3 + 12 + 2, b.length);
+		OBEXHeaderSetImpl r = OBEXHeaderSetImpl.readHeaders((byte)0, b, 0);
+		assertTrue("SRM", r.isSingleResponseModeEnabled());
+		assertFalse("SRMP", r.isSingleResponseModeWait());
+		assertEquals("HeaderList.length", 1, r.getHeaderList().length);
+
+		byte srmp[] = new byte[] { (byte) OBEXHeaderSetImpl.OBEX_HDR_SRMP, OBEXHeaderSetImpl.OBEX_SRMP_WAIT };
+		r = OBEXHeaderSetImpl.readHeaders((byte)0, srmp, 0);
+		assertFalse("SRM", r.isSingleResponseModeEnabled());
+		assertTrue("SRMP", r.isSingleResponseModeWait());
+		assertNull("HeaderList", r.getHeaderList());
+	}
+
+	public void testHeaderOutgoingBodyWrite() throws IOException {
+		OBEXHeaderSetImpl hs = new OBEXHeaderSetImpl();
+		hs.setHeader(HeaderSet.NAME, "Jumar");
+		byte[] buffer = new byte[] { 1, 2, 3, 4, 5 };
+		hs.setOutgoingBody(true, buffer, 3);
+		byte b[] = OBEXHeaderSetImpl.toByteArray(hs);
+		assertEquals("length", 3 + 12 + 3 + 3, b.length);
+		assertEquals("Body is last", OBEXHeaderSetImpl.OBEX_HDR_BODY_END, b[3 + 12] & 0xFF);
+		HeaderSet r = OBEXHeaderSetImpl.readHeaders((byte)0, b, 0);
+		assertEquals("NAME", "Jumar", r.getHeader(HeaderSet.NAME));
+		byte[] body = (byte[]) r.getHeader(OBEXHeaderSetImpl.OBEX_HDR_BODY_END);
+		assertEquals("Body.length", 3, body.length);
+		for (int i = 0; i < body.length; i++) {
+			assertEquals("Body[" + i + "]", buffer[i], body[i]);
+		}
+	}
+
+	public void testHeaderWriteLimit() throws IOException {
+		OBEXHeaderSetImpl hs = new OBEXHeaderSetImpl();
+		hs.setHeader(HeaderSet.HTTP, new byte[20]);
+		byte[] buf = new byte[30];
+		assertEquals("offset", 5 + 3 + 20, OBEXHeaderSetImpl.writeHeaders(hs, buf, 5, buf.length));
+		try {
+			OBEXHeaderSetImpl.writeHeaders(hs, buf, 10, buf.length);
+			fail("Should not write beyond limit");
+		} catch (IOException e) {
+		}
+	}
+
 	public void testHeaderByteArrayReadWrite() throws IOException {
 		HeaderSet hs = new OBEXHeaderSetImpl();
 		hs.setHeader(HeaderSet.HTTP, new byte[]{1, -1, 120, -7});
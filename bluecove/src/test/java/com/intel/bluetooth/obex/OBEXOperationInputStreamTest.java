@@ -0,0 +1,144 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class OBEXOperationInputStreamTest extends TestCase {
+
+	/**
+	 * Delivers one Body packet on each receiveData() call.
+	 */
+	private static class PacketsOperation implements OBEXOperationReceive {
+
+		private byte[][] packets;
+
+		private int next = 0;
+
+		int receiveCalls = 0;
+
+		PacketsOperation(byte[][] packets) {
+			this.packets = packets;
+		}
+
+		public void receiveData(OBEXOperationInputStream is) throws IOException {
+			receiveCalls++;
+			if (next < packets.length) {
+				is.appendData(packets[next], (next == packets.length - 1));
+				next++;
+			} else {
+				is.appendData(null, true);
+			}
+		}
+
+		public boolean isClosed() {
+			return false;
+		}
+	}
+
+	private static byte[] makeData(int length, int start) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = (byte) (start + i);
+		}
+		return data;
+	}
+
+	private static byte[][] makePackets() {
+		return new byte[][] { makeData(10, 0), makeData(5, 10), makeData(20, 15) };
+	}
+
+	private static void assertData(String message, int start, byte[] b, int off, int len) {
+		for (int i = 0; i < len; i++) {
+			assertEquals(message + " [" + i + "]", (byte) (start + i), b[off + i]);
+		}
+	}
+
+	public void testReadByte() throws IOException {
+		OBEXOperationInputStream is = new OBEXOperationInputStream(new PacketsOperation(makePackets()));
+		for (int i = 0; i < 35; i++) {
+			assertEquals("byte " + i, i, is.read());
+		}
+		assertEquals("eof", -1, is.read());
+	}
+
+	public void testReadBulk() throws IOException {
+		PacketsOperation op = new PacketsOperation(makePackets());
+		OBEXOperationInputStream is = new OBEXOperationInputStream(op);
+		byte[] b = new byte[40];
+		assertEquals("first packet", 10, is.read(b, 0, 40));
+		assertData("first", 0, b, 0, 10);
+		assertEquals("receiveCalls", 1, op.receiveCalls);
+
+		assertEquals("part of second packet", 3, is.read(b, 0, 3));
+		assertData("second", 10, b, 0, 3);
+		assertEquals("available", 2, is.available());
+		assertEquals("second packet", 2, is.read(b, 3, 37));
+		assertData("second", 10, b, 0, 5);
+
+		assertEquals("third packet", 20, is.read(b, 5, 35));
+		assertData("third", 10, b, 0, 25);
+		assertEquals("eof", -1, is.read(b, 0, 40));
+		assertEquals("len 0", 0, is.read(b, 0, 0));
+	}
+
+	public void testSkip() throws IOException {
+		OBEXOperationInputStream is = new OBEXOperationInputStream(new PacketsOperation(makePackets()));
+		assertEquals("skip in first packet", 4, is.skip(4));
+		assertEquals("byte", 4, is.read());
+		assertEquals("skip rest of first packet", 5, is.skip(100));
+		assertEquals("skip second packet", 5, is.skip(100));
+		assertEquals("byte", 15, is.read());
+		assertEquals("skip third packet", 19, is.skip(100));
+		assertEquals("skip at eof", 0, is.skip(100));
+		assertEquals("eof", -1, is.read());
+	}
+
+	public void testTransferTo() throws IOException {
+		OBEXOperationInputStream is = new OBEXOperationInputStream(new PacketsOperation(makePackets()));
+		assertEquals("byte", 0, is.read());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals("transferred", 34, BlueCoveOBEX.transferTo(is, out));
+		byte[] b = out.toByteArray();
+		assertEquals("length", 34, b.length);
+		assertData("data", 1, b, 0, b.length);
+		assertEquals("eof", -1, is.read());
+	}
+
+	public void testClose() throws IOException {
+		OBEXOperationInputStream is = new OBEXOperationInputStream(new PacketsOperation(makePackets()));
+		assertEquals("byte", 0, is.read());
+		is.close();
+		assertEquals("available", 0, is.available());
+		try {
+			is.read(new byte[10], 0, 10);
+			fail("read after close");
+		} catch (IOException e) {
+		}
+	}
+}
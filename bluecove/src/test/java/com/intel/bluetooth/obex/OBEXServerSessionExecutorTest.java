@@ -0,0 +1,188 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+public class OBEXServerSessionExecutorTest extends TestCase {
+
+	/**
+	 * Session that runs until released by test.
+	 */
+	private static class TestSession implements Runnable {
+
+		boolean started = false;
+
+		boolean released = false;
+
+		boolean finished = false;
+
+		String threadName;
+
+		public synchronized void run() {
+			started = true;
+			threadName = Thread.currentThread().getName();
+			notifyAll();
+			while (!released) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			finished = true;
+			notifyAll();
+		}
+
+		synchronized void release() {
+			released = true;
+			notifyAll();
+		}
+
+		synchronized void waitStarted() throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000;
+			while (!started && (System.currentTimeMillis() < end)) {
+				wait(100);
+			}
+			assertTrue("session started", started);
+		}
+
+		synchronized void waitFinished() throws InterruptedException {
+			long end = System.currentTimeMillis() + 5000;
+			while (!finished && (System.currentTimeMillis() < end)) {
+				wait(100);
+			}
+			assertTrue("session finished", finished);
+		}
+	}
+
+	private static void waitActive(OBEXServerSessionExecutor executor, int expected) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while ((executor.getActiveCount() != expected) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		assertEquals("active", expected, executor.getActiveCount());
+	}
+
+	private static OBEXServerSessionExecutor createExecutor(String type, int maxSessions, int queue) throws IOException {
+		OBEXConnectionParams params = new OBEXConnectionParams();
+		params.serverExecutor = type;
+		params.serverMaxSessions = maxSessions;
+		params.serverQueue = queue;
+		return OBEXServerSessionExecutorImpl.createExecutor(params);
+	}
+
+	public void testThreadPerSessionLimit() throws Exception {
+		OBEXServerSessionExecutor executor = createExecutor(null, 2, 1);
+		TestSession s1 = new TestSession();
+		TestSession s2 = new TestSession();
+		TestSession s3 = new TestSession();
+		executor.execute(s1);
+		executor.execute(s2);
+		s1.waitStarted();
+		s2.waitStarted();
+		assertEquals("active", 2, executor.getActiveCount());
+
+		executor.execute(s3);
+		assertEquals("queued", 1, executor.getQueuedCount());
+		try {
+			executor.execute(new TestSession());
+			fail("session over limit should be rejected");
+		} catch (IOException e) {
+		}
+		assertEquals("rejected", 1, executor.getRejectedCount());
+
+		s1.release();
+		s3.waitStarted();
+		assertEquals("queued", 0, executor.getQueuedCount());
+		assertEquals("queued session runs in thread of finished one", s1.threadName, s3.threadName);
+		assertEquals("active", 2, executor.getActiveCount());
+
+		s2.release();
+		s3.release();
+		waitActive(executor, 0);
+		executor.shutdown();
+	}
+
+	public void testAwaitCapacity() throws Exception {
+		final OBEXServerSessionExecutor executor = createExecutor(OBEXServerSessionExecutorImpl.EXECUTOR_THREAD, 1, 0);
+		TestSession s1 = new TestSession();
+		executor.execute(s1);
+		s1.waitStarted();
+		final boolean[] capacity = new boolean[1];
+		Thread acceptThread = new Thread() {
+			public void run() {
+				try {
+					executor.awaitCapacity();
+					capacity[0] = true;
+				} catch (IOException e) {
+				}
+			}
+		};
+		acceptThread.start();
+		acceptThread.join(200);
+		assertFalse("no capacity while session runs", capacity[0]);
+		s1.release();
+		acceptThread.join(5000);
+		assertTrue("capacity after session ended", capacity[0]);
+		executor.shutdown();
+	}
+
+	public void testPoolReuseThreads() throws Exception {
+		OBEXServerSessionExecutor executor = createExecutor(OBEXServerSessionExecutorImpl.EXECUTOR_POOL, 0, 0);
+		TestSession s1 = new TestSession();
+		executor.execute(s1);
+		s1.waitStarted();
+		s1.release();
+		s1.waitFinished();
+		waitActive(executor, 0);
+
+		TestSession s2 = new TestSession();
+		executor.execute(s2);
+		s2.waitStarted();
+		assertEquals("pool thread reused", s1.threadName, s2.threadName);
+		s2.release();
+		waitActive(executor, 0);
+		executor.shutdown();
+		try {
+			executor.execute(new TestSession());
+			fail("session after shutdown should be rejected");
+		} catch (IOException e) {
+		}
+		assertEquals("rejected", 1, executor.getRejectedCount());
+	}
+
+	public void testVirtualFallback() throws Exception {
+		OBEXServerSessionExecutor executor = createExecutor(OBEXServerSessionExecutorImpl.EXECUTOR_VIRTUAL, 0, 0);
+		TestSession s1 = new TestSession();
+		executor.execute(s1);
+		s1.waitStarted();
+		assertEquals("active", 1, executor.getActiveCount());
+		s1.release();
+		waitActive(executor, 0);
+	}
+}
@@ -0,0 +1,130 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.microedition.io.Connection;
+import javax.obex.Operation;
+import javax.obex.ResponseCodes;
+import javax.obex.ServerRequestHandler;
+
+import junit.framework.TestCase;
+
+import com.intel.bluetooth.gcf.socket.ServerSocketConnection;
+import com.intel.bluetooth.gcf.socket.SocketConnection;
+
+public class OBEXSessionStatisticsTest extends TestCase {
+
+	private OBEXSessionNotifierImpl notifier;
+
+	private Connection serverSession;
+
+	private int received;
+
+	private OBEXClientSessionImpl connect(boolean serverAdaptive, boolean clientAdaptive) throws Exception {
+		ServerSocketConnection serverSocket = new ServerSocketConnection(0);
+		OBEXConnectionParams serverParams = new OBEXConnectionParams();
+		serverParams.mtuAdaptive = serverAdaptive;
+		notifier = new OBEXSessionNotifierImpl(serverSocket, serverParams);
+		Thread acceptThread = new Thread() {
+			public void run() {
+				try {
+					serverSession = notifier.acceptAndOpen(new ServerRequestHandler() {
+						public int onPut(Operation op) {
+							try {
+								ByteArrayOutputStream data = new ByteArrayOutputStream();
+								BlueCoveOBEX.transferTo(op.openInputStream(), data);
+								received = data.size();
+								return ResponseCodes.OBEX_HTTP_OK;
+							} catch (IOException e) {
+								return ResponseCodes.OBEX_HTTP_INTERNAL_ERROR;
+							}
+						}
+					});
+				} catch (IOException e) {
+				}
+			}
+		};
+		acceptThread.start();
+		OBEXConnectionParams clientParams = new OBEXConnectionParams();
+		clientParams.mtuAdaptive = clientAdaptive;
+		OBEXClientSessionImpl client = new OBEXClientSessionImpl(new SocketConnection("localhost", serverSocket
+				.getLocalPort()), clientParams);
+		client.connect(null);
+		acceptThread.join(5000);
+		return client;
+	}
+
+	protected void tearDown() throws Exception {
+		if (notifier != null) {
+			notifier.close();
+		}
+		if (serverSession != null) {
+			serverSession.close();
+		}
+	}
+
+	private void put(OBEXClientSessionImpl client, int size) throws IOException {
+		Operation op = client.put(client.createHeaderSet());
+		OutputStream os = op.openOutputStream();
+		os.write(new byte[size]);
+		os.close();
+		assertEquals("put", ResponseCodes.OBEX_HTTP_OK, op.getResponseCode());
+		op.close();
+	}
+
+	public void testAdaptiveMTU() throws Exception {
+		OBEXClientSessionImpl client = connect(true, true);
+		OBEXSessionStatistics stats = BlueCoveOBEX.getSessionStatistics(client);
+		assertEquals("client mtu", OBEXOperationCodes.OBEX_MAX_PACKET_LEN, stats.getPacketSize());
+		assertEquals("remote mtu", OBEXOperationCodes.OBEX_MAX_PACKET_LEN, stats.getRemotePacketSize());
+		assertEquals("server mtu", OBEXOperationCodes.OBEX_MAX_PACKET_LEN, BlueCoveOBEX.getSessionStatistics(
+				serverSession).getPacketSize());
+
+		int size = 1024 * 1024;
+		put(client, size);
+		assertEquals("received", size, received);
+		stats = BlueCoveOBEX.getSessionStatistics(client);
+		// CONNECT and 1M in 64K packets
+		assertTrue("packets " + stats, stats.getPacketsSent() <= 1 + (size / 0xFF00) + 2);
+		assertTrue("bytes " + stats, stats.getBytesSent() > size);
+		assertEquals("packets received", stats.getPacketsSent(), stats.getPacketsReceived());
+		client.close();
+	}
+
+	public void testAdaptiveAcceptsPeerMTU() throws Exception {
+		OBEXClientSessionImpl client = connect(false, true);
+		OBEXSessionStatistics stats = BlueCoveOBEX.getSessionStatistics(client);
+		assertEquals("client mtu", OBEXOperationCodes.OBEX_DEFAULT_MTU, stats.getPacketSize());
+		assertEquals("local mtu", OBEXOperationCodes.OBEX_MAX_PACKET_LEN, stats.getLocalPacketSize());
+		assertEquals("server mtu", OBEXOperationCodes.OBEX_MAX_PACKET_LEN, BlueCoveOBEX.getPacketSize(serverSession));
+		put(client, 10000);
+		assertEquals("received", 10000, received);
+		client.close();
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package com.intel.bluetooth.obex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Vector;
+
+import javax.obex.HeaderSet;
+import javax.obex.Operation;
+import javax.obex.ResponseCodes;
+import javax.obex.ServerRequestHandler;
+
+import junit.framework.TestCase;
+
+import com.intel.bluetooth.gcf.socket.SocketConnection;
+
+public class OBEXTCPSelectorServerTest extends TestCase {
+
+	private static class TestHandler extends ServerRequestHandler {
+
+		Vector received = new Vector();
+
+		public int onPut(Operation op) {
+			try {
+				InputStream is = op.openInputStream();
+				StringBuffer buf = new StringBuffer();
+				int b;
+				while ((b = is.read()) != -1) {
+					buf.append((char) b);
+				}
+				is.close();
+				synchronized (received) {
+					received.addElement(buf.toString());
+				}
+				return ResponseCodes.OBEX_HTTP_OK;
+			} catch (IOException e) {
+				return ResponseCodes.OBEX_HTTP_INTERNAL_ERROR;
+			}
+		}
+	}
+
+	private static void waitActive(OBEXServerSessionExecutor executor, int expected) throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while ((executor.getActiveCount() != expected) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		assertEquals("active", expected, executor.getActiveCount());
+	}
+
+	public void testIdleSessionsDoNotHoldThreads() throws Exception {
+		final int clientsCount = 20;
+		OBEXTCPSelectorServer server = new OBEXTCPSelectorServer(0);
+		int port = server.getLocalPort();
+		OBEXConnectionParams serverParams = new OBEXConnectionParams();
+		serverParams.serverExecutor = OBEXServerSessionExecutorImpl.EXECUTOR_POOL;
+		serverParams.serverMaxSessions = 4;
+		serverParams.serverQueue = clientsCount;
+		final OBEXSessionNotifierImpl notifier = new OBEXSessionNotifierImpl(server, serverParams);
+		final TestHandler handler = new TestHandler();
+		Thread acceptThread = new Thread() {
+			public void run() {
+				try {
+					while (true) {
+						notifier.acceptAndOpen(handler);
+					}
+				} catch (IOException e) {
+				}
+			}
+		};
+		acceptThread.start();
+
+		OBEXConnectionParams clientParams = new OBEXConnectionParams();
+		clientParams.timeouts = true;
+		clientParams.timeout = 10000;
+		OBEXClientSessionImpl[] clients = new OBEXClientSessionImpl[clientsCount];
+		try {
+			for (int i = 0; i < clientsCount; i++) {
+				clients[i] = new OBEXClientSessionImpl(new SocketConnection("localhost", port), clientParams);
+				HeaderSet hs = clients[i].connect(null);
+				assertEquals("connect", ResponseCodes.OBEX_HTTP_OK, hs.getResponseCode());
+			}
+			assertEquals("connections", clientsCount, server.getConnectionsCount());
+			waitActive(notifier.getServerSessionExecutor(), 0);
+
+			for (int i = 0; i < clientsCount; i++) {
+				Operation op = clients[i].put(clients[i].createHeaderSet());
+				OutputStream os = op.openOutputStream();
+				os.write(("data" + i).getBytes());
+				os.close();
+				assertEquals("put", ResponseCodes.OBEX_HTTP_OK, op.getResponseCode());
+				op.close();
+			}
+			assertEquals("received", clientsCount, handler.received.size());
+			assertTrue("data", handler.received.contains("data" + (clientsCount - 1)));
+			assertEquals("rejected", 0, notifier.getServerSessionExecutor().getRejectedCount());
+
+			for (int i = 0; i < clientsCount; i++) {
+				clients[i].disconnect(null);
+				clients[i].close();
+				clients[i] = null;
+			}
+		} finally {
+			for (int i = 0; i < clientsCount; i++) {
+				if (clients[i] != null) {
+					clients[i].close();
+				}
+			}
+			notifier.close();
+			acceptThread.join(5000);
+		}
+		assertFalse("accept ends", acceptThread.isAlive());
+		long end = System.currentTimeMillis() + 5000;
+		while ((server.getConnectionsCount() != 0) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(10);
+		}
+		assertEquals("connections closed", 0, server.getConnectionsCount());
+	}
+
+	public void testRequestAfterNotifierClose() throws Exception {
+		final int clientsCount = 2;
+		OBEXTCPSelectorServer server = new OBEXTCPSelectorServer(0);
+		OBEXConnectionParams serverParams = new OBEXConnectionParams();
+		serverParams.serverMaxSessions = 1;
+		serverParams.serverQueue = 0;
+		final OBEXSessionNotifierImpl notifier = new OBEXSessionNotifierImpl(server, serverParams);
+		final TestHandler handler = new TestHandler();
+		Thread acceptThread = new Thread() {
+			public void run() {
+				try {
+					while (true) {
+						notifier.acceptAndOpen(handler);
+					}
+				} catch (IOException e) {
+				}
+			}
+		};
+		acceptThread.start();
+		OBEXClientSessionImpl[] clients = new OBEXClientSessionImpl[clientsCount];
+		try {
+			for (int i = 0; i < clientsCount; i++) {
+				clients[i] = new OBEXClientSessionImpl(new SocketConnection("localhost", server.getLocalPort()),
+						new OBEXConnectionParams());
+				HeaderSet hs = clients[i].connect(null);
+				assertEquals("connect", ResponseCodes.OBEX_HTTP_OK, hs.getResponseCode());
+			}
+			waitActive(notifier.getServerSessionExecutor(), 0);
+			notifier.close();
+			acceptThread.join(5000);
+
+			// Connected sessions are not limited by the closed executor
+			for (int i = 0; i < clientsCount; i++) {
+				Operation op = clients[i].put(clients[i].createHeaderSet());
+				OutputStream os = op.openOutputStream();
+				os.write(("data" + i).getBytes());
+				os.close();
+				assertEquals("put", ResponseCodes.OBEX_HTTP_OK, op.getResponseCode());
+				op.close();
+			}
+			assertEquals("received", clientsCount, handler.received.size());
+			assertEquals("rejected", 0, notifier.getServerSessionExecutor().getRejectedCount());
+			for (int i = 0; i < clientsCount; i++) {
+				clients[i].disconnect(null);
+			}
+		} finally {
+			for (int i = 0; i < clientsCount; i++) {
+				if (clients[i] != null) {
+					clients[i].close();
+				}
+			}
+			notifier.close();
+		}
+	}
+
+	public void testLargePut() throws Exception {
+		OBEXTCPSelectorServer server = new OBEXTCPSelectorServer(0);
+		OBEXConnectionParams serverParams = new OBEXConnectionParams();
+		final OBEXSessionNotifierImpl notifier = new OBEXSessionNotifierImpl(server, serverParams);
+		final TestHandler handler = new TestHandler();
+		Thread acceptThread = new Thread() {
+			public void run() {
+				try {
+					notifier.acceptAndOpen(handler);
+				} catch (IOException e) {
+				}
+			}
+		};
+		acceptThread.start();
+		OBEXConnectionParams clientParams = new OBEXConnectionParams();
+		clientParams.mtu = OBEXOperationCodes.OBEX_MAX_PACKET_LEN;
+		OBEXClientSessionImpl client = new OBEXClientSessionImpl(new SocketConnection("localhost", server
+				.getLocalPort()), clientParams);
+		try {
+			client.connect(null);
+			StringBuffer data = new StringBuffer();
+			for (int i = 0; i < 200000; i++) {
+				data.append((char) ('a' + (i % 26)));
+			}
+			Operation op = client.put(client.createHeaderSet());
+			OutputStream os = op.openOutputStream();
+			os.write(data.toString().getBytes());
+			os.close();
+			assertEquals("put", ResponseCodes.OBEX_HTTP_OK, op.getResponseCode());
+			op.close();
+			assertEquals("received", data.toString(), handler.received.elementAt(0));
+			client.disconnect(null);
+		} finally {
+			client.close();
+			notifier.close();
+		}
+	}
+}
@@ -24,10 +24,14 @@
  */
 package com.intel.bluetooth.obex;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 
 import junit.framework.TestCase;
 
+import com.intel.bluetooth.TimedInputStream;
+
 public class OBEXUtilsTest extends TestCase {
 	
 	public void testBytesLoHi() {
@@ -66,4 +70,56 @@ public class OBEXUtilsTest extends TestCase {
 		assertEquals("UTF16 Rus String", value, OBEXUtils.newStringUTF16Simple(OBEXUtils.getUTF16Bytes(value)));
 	}
 
+	private static class TimedByteArrayInputStream extends ByteArrayInputStream implements TimedInputStream {
+
+		long lastTimeout = -1;
+
+		TimedByteArrayInputStream(byte[] buf) {
+			super(buf);
+		}
+
+		public synchronized int read(byte[] b, int off, int len, long timeout) {
+			lastTimeout = timeout;
+			if (available() == 0) {
+				return 0;
+			}
+			// Deliver one byte at a time
+			return read(b, off, 1);
+		}
+	}
+
+	private OBEXConnectionParams timeoutParams(int timeout) {
+		OBEXConnectionParams params = new OBEXConnectionParams();
+		params.timeouts = true;
+		params.timeout = timeout;
+		return params;
+	}
+
+	public void testReadFullyTimed() throws IOException {
+		TimedByteArrayInputStream is = new TimedByteArrayInputStream(new byte[] { 1, 2, 3, 4 });
+		byte[] b = new byte[3];
+		OBEXUtils.readFully(is, timeoutParams(1500), b);
+		assertEquals("timeout", 1500, is.lastTimeout);
+		assertEquals("data", 3, b[2]);
+		try {
+			OBEXUtils.readFully(is, timeoutParams(1500), b, 0, 2);
+			fail("Should timeout");
+		} catch (InterruptedIOException e) {
+		}
+	}
+
+	public void testReadFullyPollingTimeout() throws IOException {
+		ByteArrayInputStream is = new ByteArrayInputStream(new byte[] { 1, 2 });
+		byte[] b = new byte[3];
+		long start = System.currentTimeMillis();
+		try {
+			OBEXUtils.readFully(is, timeoutParams(300), b);
+			fail("Should timeout");
+		} catch (InterruptedIOException e) {
+		}
+		long duration = System.currentTimeMillis() - start;
+		assertTrue("timeout " + duration, duration >= 300);
+		assertEquals("data", 2, b[1]);
+	}
+
 }
@@ -0,0 +1,106 @@
+/**
+ *  BlueCove - Java library for Bluetooth
+ *  Copyright (C) 2009 Vlad Skarzhevskyy
+ *
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ *  @author vlads
+ *  @version $Id$
+ */
+package javax.bluetooth;
+
+import java.util.Enumeration;
+
+import junit.framework.TestCase;
+
+/**
+ *
+ */
+public class DataElementTest extends TestCase {
+
+	private static void assertElements(String message, DataElement seq, DataElement[] expected) {
+		assertEquals(message + " size", expected.length, seq.getSize());
+		Enumeration en = (Enumeration) seq.getValue();
+		for (int i = 0; i < expected.length; i++) {
+			assertTrue(message + " hasMoreElements " + i, en.hasMoreElements());
+			assertSame(message + " element " + i, expected[i], en.nextElement());
+		}
+		assertFalse(message + " hasMoreElements", en.hasMoreElements());
+	}
+
+	public void testSequence() {
+		DataElement seq = new DataElement(DataElement.DATSEQ);
+		assertElements("empty", seq, new DataElement[0]);
+		DataElement[] e = new DataElement[7];
+		for (int i = 0; i < e.length; i++) {
+			e[i] = new DataElement(DataElement.U_INT_1, i);
+		}
+		for (int i = 0; i < 5; i++) {
+			seq.addElement(e[i]);
+		}
+		assertElements("added", seq, new DataElement[] { e[0], e[1], e[2], e[3], e[4] });
+		seq.insertElementAt(e[5], 0);
+		seq.insertElementAt(e[6], 6);
+		assertElements("inserted", seq, new DataElement[] { e[5], e[0], e[1], e[2], e[3], e[4], e[6] });
+		assertTrue("removed", seq.removeElement(e[2]));
+		assertTrue("removed", seq.removeElement(e[6]));
+		assertFalse("not found", seq.removeElement(e[2]));
+		assertElements("removed", seq, new DataElement[] { e[5], e[0], e[1], e[3], e[4] });
+		try {
+			seq.insertElementAt(e[2], 6);
+			fail("IndexOutOfBoundsException expected");
+		} catch (IndexOutOfBoundsException ok) {
+		}
+		try {
+			seq.addElement(null);
+			fail("NullPointerException expected");
+		} catch (NullPointerException ok) {
+		}
+	}
+
+	public void testEnumerationSnapshot() {
+		DataElement seq = new DataElement(DataElement.DATALT);
+		DataElement e1 = new DataElement(DataElement.STRING, "1");
+		DataElement e2 = new DataElement(DataElement.STRING, "2");
+		DataElement e3 = new DataElement(DataElement.STRING, "3");
+		seq.addElement(e1);
+		seq.addElement(e2);
+		Enumeration en = (Enumeration) seq.getValue();
+		seq.addElement(e3);
+		seq.removeElement(e1);
+		seq.insertElementAt(e1, 1);
+		assertSame(e1, en.nextElement());
+		assertSame(e2, en.nextElement());
+		assertFalse(en.hasMoreElements());
+		assertElements("modified", seq, new DataElement[] { e2, e1, e3 });
+	}
+
+	public void testNotSequence() {
+		DataElement d = new DataElement(DataElement.NULL);
+		try {
+			d.addElement(new DataElement(DataElement.NULL));
+			fail("ClassCastException expected");
+		} catch (ClassCastException ok) {
+		}
+		try {
+			d.getSize();
+			fail("ClassCastException expected");
+		} catch (ClassCastException ok) {
+		}
+	}
+}